@@ -0,0 +1,216 @@
+package com.blackmoonit.androidbits.app;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects work bound for the UI thread and runs it once per frame instead of posting a
+ * message per Runnable, so background work finishing in a burst does not flood the main
+ * queue. Each frame gets a time budget; whatever does not fit carries over to the next one.
+ * <br>
+ * Work posted with a key replaces any work still pending under the same key, which suits
+ * state updates like progress where only the latest one matters; it keeps the queue
+ * position of the first post.<br>
+ * Frames are driven by Choreographer on API 16+ and by a Handler aligned to 16ms on older
+ * devices.
+ * @author baracudda
+ */
+@SuppressWarnings("unused")
+public class UIFrameDispatcher {
+	/** Default milliseconds per frame spent on queued work. */
+	static public final long DEFAULT_FRAME_BUDGET = 6L;
+	/** Frame length assumed when Choreographer is not available. */
+	static protected final long FALLBACK_FRAME_LENGTH = 16L;
+	static private volatile UIFrameDispatcher mMainInstance = null;
+
+	protected final Handler mHandler;
+	/** Runnables, or keys of {@link #mKeyedWork}, in the order they were posted. */
+	protected final ConcurrentLinkedQueue<Object> mPending = new ConcurrentLinkedQueue<Object>();
+	protected final ConcurrentHashMap<Object, Runnable> mKeyedWork = new ConcurrentHashMap<Object, Runnable>();
+	protected final AtomicBoolean bFrameRequested = new AtomicBoolean(false);
+	protected volatile long mFrameBudget = DEFAULT_FRAME_BUDGET;
+	/** Choreographer of the UI thread, fetched on that thread; NULL until then. */
+	protected volatile Object mChoreographer = null;
+	protected Object mFrameCallback = null;
+
+	protected final Runnable mDrainTask = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	protected final Runnable mRequestFrameTask = new Runnable() {
+		@Override
+		public void run() {
+			postFrameCallback();
+		}
+	};
+
+	/**
+	 * Holds the queue position of keyed work, the work itself is looked up when it is due.
+	 */
+	static protected class KeyMarker {
+		protected final Object mKey;
+
+		protected KeyMarker(Object aKey) {
+			mKey = aKey;
+		}
+	}
+
+	/**
+	 * @param aLooper - the looper of the thread to run work on.
+	 */
+	public UIFrameDispatcher(Looper aLooper) {
+		mHandler = new Handler(aLooper);
+	}
+
+	/**
+	 * The dispatcher of the main thread, created on first use.
+	 * @return Returns the shared main thread instance.
+	 */
+	static public UIFrameDispatcher getInstance() {
+		if (mMainInstance==null) {
+			synchronized (UIFrameDispatcher.class) {
+				if (mMainInstance==null)
+					mMainInstance = new UIFrameDispatcher(Looper.getMainLooper());
+			}
+		}
+		return mMainInstance;
+	}
+
+	/**
+	 * Set how long each frame may spend running queued work.
+	 * @param aBudget - milliseconds, at least one item runs per frame regardless.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public UIFrameDispatcher setFrameBudget(long aBudget) {
+		mFrameBudget = Math.max(aBudget, 0L);
+		return this;
+	}
+
+	/**
+	 * Run the action on the UI thread with the next frame.
+	 * @param aAction - the runnable to execute.
+	 */
+	public void post(Runnable aAction) {
+		if (aAction==null)
+			throw new IllegalArgumentException("Posting a NULL action, the shame!");
+		mPending.offer(aAction);
+		requestFrame();
+	}
+
+	/**
+	 * Run the action on the UI thread with the next frame, replacing any action still
+	 * pending under the same key.
+	 * @param aKey - identifies what the action updates, compared using equals().
+	 * @param aAction - the runnable to execute.
+	 */
+	public void post(Object aKey, Runnable aAction) {
+		if (aAction==null)
+			throw new IllegalArgumentException("Posting a NULL action, the shame!");
+		if (aKey==null) {
+			post(aAction);
+			return;
+		}
+		if (mKeyedWork.put(aKey, aAction)==null) {
+			mPending.offer(new KeyMarker(aKey));
+		}
+		requestFrame();
+	}
+
+	/**
+	 * Drop pending work posted under the key.
+	 * @param aKey - the key used to post.
+	 */
+	public void cancel(Object aKey) {
+		if (aKey!=null)
+			mKeyedWork.remove(aKey);
+	}
+
+	/** @return Returns TRUE if the current thread is the one work runs on. */
+	protected boolean isDispatchThread() {
+		return (Looper.myLooper()==mHandler.getLooper());
+	}
+
+	/**
+	 * Make sure a drain is coming, once per frame no matter how much work gets posted.
+	 */
+	protected void requestFrame() {
+		if (!bFrameRequested.compareAndSet(false, true))
+			return;
+		if (Build.VERSION.SDK_INT>=16) {
+			if (mChoreographer!=null || isDispatchThread())
+				postFrameCallback();
+			else
+				mHandler.post(mRequestFrameTask); //Choreographer is per thread
+		} else {
+			long theNow = SystemClock.uptimeMillis();
+			long theNextFrame = (theNow/FALLBACK_FRAME_LENGTH + 1)*FALLBACK_FRAME_LENGTH;
+			mHandler.postAtTime(mDrainTask, theNextFrame);
+		}
+	}
+
+	@TargetApi(16)
+	protected void postFrameCallback() {
+		if (mChoreographer==null) {
+			mFrameCallback = new Choreographer.FrameCallback() {
+				@Override
+				public void doFrame(long aFrameTimeNanos) {
+					drain();
+				}
+			};
+			mChoreographer = Choreographer.getInstance();
+		}
+		((Choreographer)mChoreographer).postFrameCallback((Choreographer.FrameCallback)mFrameCallback);
+	}
+
+	/**
+	 * Run pending work until the frame budget runs out. Always runs on the dispatch thread.
+	 */
+	protected void drain() {
+		long theDeadline = SystemClock.uptimeMillis()+mFrameBudget;
+		try {
+			Object theItem;
+			while ((theItem = mPending.poll())!=null) {
+				Runnable theAction;
+				if (theItem instanceof KeyMarker)
+					theAction = mKeyedWork.remove(((KeyMarker)theItem).mKey);
+				else
+					theAction = (Runnable)theItem;
+				if (theAction!=null)
+					theAction.run();
+				if (SystemClock.uptimeMillis()>=theDeadline)
+					break;
+			}
+		} finally {
+			bFrameRequested.set(false);
+			if (!mPending.isEmpty())
+				requestFrame();
+		}
+	}
+
+}
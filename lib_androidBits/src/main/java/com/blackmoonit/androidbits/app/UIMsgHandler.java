@@ -16,6 +16,7 @@ package com.blackmoonit.androidbits.app;
  */
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.UUID;
 
 import android.content.Context;
@@ -141,6 +142,36 @@ public abstract class UIMsgHandler extends Handler {
 		super.handleMessage(aMsg);
 	}
 
+	/**
+	 * Handle the message with the next frame, batched with other UI work by
+	 * {@link UIFrameDispatcher}, instead of as a message of its own. Only for handlers of
+	 * the main thread.
+	 * @param aMsg - the message, from one of the getMsg*() methods.
+	 */
+	public void sendMessageOnFrame(final Message aMsg) {
+		UIFrameDispatcher.getInstance().post(new Runnable() {
+			@Override
+			public void run() {
+				dispatchMessage(aMsg);
+			}
+		});
+	}
+
+	/**
+	 * Handle the message with the next frame, replacing any message with the same what and
+	 * obj which has not been handled, yet. Suits messages carrying absolute state where only
+	 * the latest one matters; not the progress updates, which carry increments.
+	 * @param aMsg - the message, from one of the getMsg*() methods.
+	 */
+	public void sendLatestMessageOnFrame(final Message aMsg) {
+		UIFrameDispatcher.getInstance().post(Arrays.asList(this, aMsg.what, aMsg.obj), new Runnable() {
+			@Override
+			public void run() {
+				dispatchMessage(aMsg);
+			}
+		});
+	}
+
 	/*========================================================================
 	 * Toast related methods
 	 *========================================================================*/
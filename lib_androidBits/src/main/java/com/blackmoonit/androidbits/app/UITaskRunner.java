@@ -34,12 +34,27 @@ public class UITaskRunner extends Handler {
 	}
 
 	/**
-	 * Run the action on the UI thread found out via the context used.
+	 * Run the action on the UI thread found out via the context used. The action is
+	 * batched with other UI work by {@link UIFrameDispatcher} and runs with the next frame.
 	 * @param aContext - the context to use (need not be an Activity).
 	 * @param aAction - the runnable to execute on the UI thread.
 	 */
 	static public void runOnUiThread( Context aContext, Runnable aAction ) {
-		new UITaskRunner(aContext).post(aAction);
+		runOnUiThread(aContext, null, aAction);
+	}
+
+	/**
+	 * Run the action on the UI thread with the next frame, replacing any action still
+	 * waiting under the same key.
+	 * @param aContext - the context to use (need not be an Activity).
+	 * @param aKey - identifies what the action updates, NULL to always run.
+	 * @param aAction - the runnable to execute on the UI thread.
+	 */
+	static public void runOnUiThread( Context aContext, Object aKey, Runnable aAction ) {
+		if (aContext.getMainLooper()==Looper.getMainLooper())
+			UIFrameDispatcher.getInstance().post(aKey, aAction);
+		else
+			new UITaskRunner(aContext).post(aAction);
 	}
 
 	/**
@@ -0,0 +1,91 @@
+package com.blackmoonit.androidbits.concurrent;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Idle strategy which spins a few times, then yields a few times, then parks for
+ * exponentially longer periods up to a maximum. Work arriving right after the thread went
+ * idle is picked up within microseconds, while a thread idle for long barely wakes up at
+ * all. Producers can cut a park short with {@link ThreadInterruptable#wakeUp()}.
+ * @author baracudda
+ */
+@SuppressWarnings("unused")
+public class BackoffIdleStrategy implements IdleStrategy
+{
+	static public final int DEFAULT_SPINS = 20;
+	static public final int DEFAULT_YIELDS = 10;
+	/** Default first park, in nanoseconds. */
+	static public final long DEFAULT_MIN_PARK = 50000L;
+	/** Default longest park, in nanoseconds. */
+	static public final long DEFAULT_MAX_PARK = 250000000L;
+	static private BackoffIdleStrategy mDefault = null;
+
+	protected final int mSpins;
+	protected final int mYields;
+	protected final long mMinPark;
+	protected final long mMaxPark;
+
+	/**
+	 * @param aSpins - idle iterations which just spin.
+	 * @param aYields - idle iterations after the spins which yield the CPU.
+	 * @param aMinPark - nanoseconds of the first park, doubled with each idle iteration.
+	 * @param aMaxPark - nanoseconds of the longest park.
+	 */
+	public BackoffIdleStrategy( int aSpins, int aYields, long aMinPark, long aMaxPark )
+	{
+		mSpins = Math.max(aSpins, 0);
+		mYields = Math.max(aYields, 0);
+		mMinPark = Math.max(aMinPark, 1L);
+		mMaxPark = Math.max(aMaxPark, mMinPark);
+	}
+
+	public BackoffIdleStrategy()
+	{ this(DEFAULT_SPINS, DEFAULT_YIELDS, DEFAULT_MIN_PARK, DEFAULT_MAX_PARK); }
+
+	/** @return Returns a shared instance using the defaults. */
+	static public synchronized BackoffIdleStrategy getDefault()
+	{
+		if ( mDefault == null ) {
+			mDefault = new BackoffIdleStrategy();
+		}
+		return mDefault;
+	}
+
+	@Override
+	public void idle( int aIdleCount ) throws InterruptedException
+	{
+		if ( aIdleCount <= mSpins ) {
+			return;
+		}
+		if ( aIdleCount <= mSpins + mYields ) {
+			Thread.yield();
+			return;
+		}
+		//double the park per idle iteration, shifting no further than needed to hit the max
+		int theShift = Math.min(aIdleCount - mSpins - mYields - 1, 62);
+		long thePark = mMinPark;
+		while ( theShift-- > 0 && thePark < mMaxPark ) {
+			thePark <<= 1;
+		}
+		LockSupport.parkNanos(Math.min(thePark, mMaxPark));
+		if ( Thread.interrupted() ) {
+			throw new InterruptedException();
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+package com.blackmoonit.androidbits.concurrent;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Decides how a {@link ThreadInterruptable} waits after an iteration which found no work,
+ * see {@link ThreadInterruptable#setIdleStrategy(IdleStrategy)}. Strategies keep no state
+ * of their own, so one instance may be shared by many threads.
+ * @author baracudda
+ */
+public interface IdleStrategy
+{
+	/**
+	 * Wait a little before the next iteration. A strategy which parks the thread must
+	 * return early on {@link java.util.concurrent.locks.LockSupport#unpark(Thread)}.
+	 * @param aIdleCount - number of idle iterations in a row, starting at 1.
+	 * @throws InterruptedException if the thread was interrupted while idle.
+	 */
+	public void idle(int aIdleCount) throws InterruptedException;
+}
@@ -18,7 +18,10 @@ package com.blackmoonit.androidbits.concurrent;
 import android.app.Activity;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -30,7 +33,11 @@ import java.util.concurrent.locks.ReentrantLock;
  * or it can be reset after the first read so that any future
  * read will cause the value to be obtained again.<br>
  * NULL is used as the wait condition, so it is the only value that cannot be
- * represented by this variable.
+ * represented by this variable.<br>
+ * Rather than park a worker thread until the user answers, {@link #getValueAsync()}
+ * hands back a {@link TaskFuture} that completes once the value is set, so the rest
+ * of the task can continue on an Executor of choice. Pending async reads honor the
+ * same timeout settings and may be cancelled.
  *
  * @param <V> - class of the value desired
  *
@@ -96,6 +103,10 @@ public class ModalVar<V> {
 	 * If a timeout is desired, optionally set the desired ModalVar value.
 	 */
 	public V mTimeOutValue = null;
+	/**
+	 * Async readers waiting for a value, guarded by {@link #mCheckDecision}.
+	 */
+	protected final ArrayList<TaskFuture<V>> mAsyncReaders = new ArrayList<TaskFuture<V>>();
 
 	/**
 	 * Default constructor, isResetOnRead is false.
@@ -263,13 +274,7 @@ public class ModalVar<V> {
 		try {
 			//if we do not have a value yet, obtain one if event is defined
 			if (mDecisionValue==null) {
-				if (mOnObtainDecision!=null)
-					mOnObtainDecision.run();
-				if (mOnObtainDecisionUI!=null && wAct!=null) {
-					Activity theAct = wAct.get();
-					if (theAct!=null)
-						theAct.runOnUiThread(mOnObtainDecisionUI);
-				}
+				fireObtainValue();
 			}
 
 			//await() will release the lock on mCheckDecision and sleep the current thread
@@ -299,6 +304,172 @@ public class ModalVar<V> {
 		}
 	}
 
+	/**
+	 * Fire the obtain value events. Call with {@link #mCheckDecision} held.
+	 */
+	protected void fireObtainValue() {
+		if (mOnObtainDecision!=null)
+			mOnObtainDecision.run();
+		if (mOnObtainDecisionUI!=null && wAct!=null) {
+			Activity theAct = wAct.get();
+			if (theAct!=null)
+				theAct.runOnUiThread(mOnObtainDecisionUI);
+		}
+	}
+
+	/**
+	 * Read the value without blocking. If a value is already set, the returned handle
+	 * is complete; otherwise the obtain value events fire just like for {@link #getValue()}
+	 * and the handle completes once {@link #setValue(Object)} is called.<br>
+	 * If a timeout is set, {@link #mTimeOutEvent} runs on a timer thread once it elapses
+	 * and the handle completes with {@link #mTimeOutValue}, or fails with a
+	 * TimeoutException if there is none. Cancel the handle to stop waiting.
+	 * @return Returns the handle of the value.
+	 */
+	public TaskFuture<V> getValueAsync() {
+		final TaskFuture<V> theReader = new TaskFuture<V>(null);
+		V theResult = null;
+		mCheckDecision.lock();
+		try {
+			if (mDecisionValue==null) {
+				fireObtainValue();
+			}
+			if (mDecisionValue!=null) {
+				theResult = mDecisionValue;
+				if (isResetOnRead())
+					reset();
+			} else {
+				mAsyncReaders.add(theReader);
+			}
+		} finally {
+			mCheckDecision.unlock();
+		}
+		if (theResult!=null) {
+			theReader.complete(theResult);
+			return theReader;
+		}
+
+		final TimerWheel.Timer theTimeOut = (mTimeOutUnits!=null && mTimeOutAmount!=null)
+				? TimerWheel.getShared().schedule(new Runnable() {
+					@Override
+					public void run() {
+						onAsyncTimeOut(theReader);
+					}
+				}, mTimeOutUnits.toMillis(mTimeOutAmount))
+				: null;
+		//however it completes, stop tracking it so a cancelled reader is not handed a value
+		theReader.whenComplete(new TaskFuture.OnComplete<V>() {
+			@Override
+			public void onComplete(TaskFuture<V> aFuture) {
+				if (theTimeOut!=null)
+					theTimeOut.cancel();
+				mCheckDecision.lock();
+				try {
+					mAsyncReaders.remove(aFuture);
+				} finally {
+					mCheckDecision.unlock();
+				}
+			}
+		}, null);
+		return theReader;
+	}
+
+	/**
+	 * Read the value without blocking, resuming with aContinuation once it is set.
+	 * @param aContinuation - receives the completed handle.
+	 * @param aExecutor - where to run aContinuation, e.g. {@link TaskFuture#UI_EXECUTOR}
+	 * or {@link ThreadTaskDaemon#getExecutor()}; NULL runs it on the thread setting the value.
+	 * @return Returns the handle of the value, cancel it to stop waiting.
+	 * @see #getValueAsync()
+	 */
+	public TaskFuture<V> getValueAsync(TaskFuture.OnComplete<V> aContinuation, Executor aExecutor) {
+		return getValueAsync().whenComplete(aContinuation, aExecutor);
+	}
+
+	/**
+	 * An async reader waited too long, mirror what a blocked reader does on timeout.
+	 * @param aReader - the reader which timed out.
+	 */
+	protected void onAsyncTimeOut(TaskFuture<V> aReader) {
+		if (aReader.isDone())
+			return;
+		if (mTimeOutEvent!=null)
+			mTimeOutEvent.run();
+		ArrayList<TaskFuture<V>> theReaders = null;
+		V theValue = null;
+		V theOwnValue = null;
+		mCheckDecision.lock();
+		try {
+			if (isResetOnRead()) {
+				//like a blocked reader, the one timing out consumes the timeout value itself
+				//and the others keep waiting
+				if (mTimeOutValue!=null && mAsyncReaders.remove(aReader))
+					theOwnValue = mTimeOutValue;
+			} else if (mDecisionValue==null && mTimeOutValue!=null) {
+				mDecisionValue = mTimeOutValue;
+				mObtainDecision.signalAll();
+				theValue = mDecisionValue;
+				theReaders = takeAsyncReaders();
+			}
+		} finally {
+			mCheckDecision.unlock();
+		}
+		resumeAsyncReaders(theReaders, theValue);
+		if (theOwnValue!=null)
+			aReader.complete(theOwnValue);
+		if (!aReader.isDone())
+			aReader.fail(new TimeoutException());
+	}
+
+	/**
+	 * Remove the async readers to be handed the value just set; call with
+	 * {@link #mCheckDecision} held. When resetting on read, only one reader gets it.
+	 * @return Returns the readers to complete once the lock is released, NULL if none.
+	 */
+	protected ArrayList<TaskFuture<V>> takeAsyncReaders() {
+		if (mAsyncReaders.isEmpty())
+			return null;
+		ArrayList<TaskFuture<V>> theResult;
+		if (isResetOnRead()) {
+			theResult = new ArrayList<TaskFuture<V>>(1);
+			theResult.add(mAsyncReaders.remove(0));
+			reset();
+		} else {
+			theResult = new ArrayList<TaskFuture<V>>(mAsyncReaders);
+			mAsyncReaders.clear();
+		}
+		return theResult;
+	}
+
+	/**
+	 * Complete the readers taken by {@link #takeAsyncReaders()}, outside of the lock so
+	 * that continuations without an Executor cannot deadlock. Should the one reader of
+	 * a reset on read value have been cancelled meanwhile, the value is put back.
+	 * @param aReaders - the readers to complete, may be NULL.
+	 * @param aValue - the value they get.
+	 */
+	protected void resumeAsyncReaders(ArrayList<TaskFuture<V>> aReaders, V aValue) {
+		while (aReaders!=null) {
+			boolean bDelivered = false;
+			for (TaskFuture<V> theReader : aReaders) {
+				bDelivered |= theReader.complete(aValue);
+			}
+			if (bDelivered || !isResetOnRead())
+				return;
+			mCheckDecision.lock();
+			try {
+				aReaders = null;
+				if (mDecisionValue==null) {
+					mDecisionValue = aValue;
+					mObtainDecision.signalAll();
+					aReaders = takeAsyncReaders();
+				}
+			} finally {
+				mCheckDecision.unlock();
+			}
+		}
+	}
+
 	/**
 	 * Sets the value to this parameter and signals those waiting to read it.
 	 * @param aValue - value to set. Note that if the value is NULL, it will
@@ -307,6 +478,7 @@ public class ModalVar<V> {
 	 * @return Returns "this" for chaining purposes.
 	 */
 	public ModalVar<V> setValue(V aValue) {
+		ArrayList<TaskFuture<V>> theReaders = null;
 		mCheckDecision.lock();
 		try {
 			if (aValue!=null && !aValue.equals(mDecisionValue)) {
@@ -321,12 +493,14 @@ public class ModalVar<V> {
 				}
 				//signal all waiting reader threads, if any
 				mObtainDecision.signalAll();
+				theReaders = takeAsyncReaders();
 			} else if (aValue==null) {
 				mDecisionValue = null;
 			}
 		} finally {
 			mCheckDecision.unlock();
 		}
+		resumeAsyncReaders(theReaders, aValue);
 		return this;
 	}
 
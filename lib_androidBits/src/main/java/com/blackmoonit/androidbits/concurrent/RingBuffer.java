@@ -0,0 +1,268 @@
+package com.blackmoonit.androidbits.concurrent;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.annotation.TargetApi;
+import android.os.Build;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, array-backed, lock-free queue for handing items from one thread to another.
+ * Slots are allocated once up front, so unlike a LinkedList no garbage is made per item.
+ * Capacity is rounded up to a power of two. A full buffer rejects the offer instead of
+ * growing or blocking; it is up to the producer what to do then.<br>
+ * Use {@link Spsc} when exactly one thread offers, {@link Mpsc} when several may; either
+ * way only one thread at a time may poll, peek, drain or clear.<br>
+ * The head and tail counters sit on cache lines of their own so the producer and the
+ * consumer do not false-share them, and values with a single writer are published with
+ * lazySet(), an ordered store which skips the full fence of a volatile set().
+ * @param <E> - class of the items, NULL items are not allowed.
+ * @author baracudda
+ */
+@SuppressWarnings("unused, UnusedReturnValue")
+public abstract class RingBuffer<E>
+{
+	protected final AtomicReferenceArray<E> mSlots;
+	protected final int mMask;
+	/** Index of the next slot to poll; only the consumer moves it. */
+	protected final AtomicLong mHead = new PaddedAtomicLong();
+	/** Index of the next slot to fill. */
+	protected final AtomicLong mTail = new PaddedAtomicLong();
+	/** lazySet() arrived with API 9; older devices fall back to set(). */
+	static protected final boolean LAZY_SET_AVAILABLE = ( Build.VERSION.SDK_INT >= 9 );
+
+	/**
+	 * AtomicLong padded out past a cache line, so the counter allocated after it cannot share
+	 * the line its value is on.
+	 */
+	static protected final class PaddedAtomicLong extends AtomicLong
+	{
+		static private final long serialVersionUID = 1L;
+		/** Padding, never used. */
+		public long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	/**
+	 * Receives items drained from the buffer.
+	 * @param <E> - class of the items.
+	 */
+	public interface ItemHandler<E>
+	{
+		public void onItem(E aItem);
+	}
+
+	/**
+	 * @param aCapacity - minimum number of items held, rounded up to a power of two.
+	 */
+	protected RingBuffer( int aCapacity )
+	{
+		if ( aCapacity < 1 || aCapacity > (1 << 30) )
+			throw new IllegalArgumentException("Capacity must be 1.." + (1 << 30) + ".");
+		int theCapacity = 1;
+		while ( theCapacity < aCapacity ) {
+			theCapacity <<= 1;
+		}
+		mSlots = new AtomicReferenceArray<E>(theCapacity);
+		mMask = theCapacity - 1;
+	}
+
+	/**
+	 * Add an item unless the buffer is full.
+	 * @param aItem - the item, not NULL.
+	 * @return Returns FALSE if the buffer was full.
+	 */
+	abstract public boolean offer( E aItem );
+
+	/**
+	 * Ordered store of a slot which only the calling thread may write right now.
+	 * @param aSlot - the slot index.
+	 * @param aItem - the item, NULL to empty the slot.
+	 */
+	@TargetApi(9)
+	protected void putSlot( int aSlot, E aItem )
+	{
+		if ( LAZY_SET_AVAILABLE )
+			mSlots.lazySet(aSlot, aItem);
+		else
+			mSlots.set(aSlot, aItem);
+	}
+
+	/**
+	 * Ordered store of a counter which only the calling thread writes.
+	 * @param aCounter - the head or, for a single producer, the tail.
+	 * @param aValue - the new value.
+	 */
+	@TargetApi(9)
+	static protected void putCounter( AtomicLong aCounter, long aValue )
+	{
+		if ( LAZY_SET_AVAILABLE )
+			aCounter.lazySet(aValue);
+		else
+			aCounter.set(aValue);
+	}
+
+	/** @return Returns the number of items the buffer holds when full. */
+	public int capacity()
+	{ return mMask + 1; }
+
+	/** @return Returns the number of items in the buffer, approximate while in use. */
+	public int size()
+	{
+		//read head first so a concurrent poll cannot make the result negative
+		long theHead = mHead.get();
+		return (int)Math.max(Math.min(mTail.get() - theHead, capacity()), 0L);
+	}
+
+	/** @return Returns TRUE if there was nothing to poll. */
+	public boolean isEmpty()
+	{ return ( peek() == null ); }
+
+	/**
+	 * Look at the next item without removing it; consumer thread only.
+	 * @return Returns the next item, NULL if none.
+	 */
+	public E peek()
+	{ return mSlots.get((int)mHead.get() & mMask); }
+
+	/**
+	 * Remove the next item; consumer thread only.
+	 * @return Returns the next item, NULL if none.
+	 */
+	public E poll()
+	{
+		long theHead = mHead.get();
+		int theSlot = (int)theHead & mMask;
+		//a filled slot is the only signal needed; a producer which claimed the slot but
+		//has not filled it, yet, just looks empty for a moment
+		E theItem = mSlots.get(theSlot);
+		if ( theItem != null ) {
+			putSlot(theSlot, null);
+			putCounter(mHead, theHead + 1);
+		}
+		return theItem;
+	}
+
+	/**
+	 * Remove up to aMax items, handing each to aHandler; consumer thread only. Cheaper than
+	 * polling one at a time since the head only moves once.
+	 * @param aHandler - receives the items in order.
+	 * @param aMax - most items to drain.
+	 * @return Returns the number of items drained.
+	 */
+	public int drain( ItemHandler<? super E> aHandler, int aMax )
+	{
+		long theHead = mHead.get();
+		int theCount = 0;
+		try {
+			while ( theCount < aMax ) {
+				int theSlot = (int)(theHead + theCount) & mMask;
+				E theItem = mSlots.get(theSlot);
+				if ( theItem == null )
+					break;
+				putSlot(theSlot, null);
+				theCount += 1;
+				aHandler.onItem(theItem);
+			}
+		} finally {
+			putCounter(mHead, theHead + theCount);
+		}
+		return theCount;
+	}
+
+	/**
+	 * Remove up to aMax items into a collection; consumer thread only.
+	 * @param aDest - receives the items in order.
+	 * @param aMax - most items to drain.
+	 * @return Returns the number of items drained.
+	 */
+	public int drainTo( final Collection<? super E> aDest, int aMax )
+	{
+		return drain(new ItemHandler<E>() {
+			@Override
+			public void onItem(E aItem)
+			{ aDest.add(aItem); }
+		}, aMax);
+	}
+
+	/**
+	 * Discard everything in the buffer; consumer thread only.
+	 */
+	public void clear()
+	{
+		while ( poll() != null ) {
+			//discard
+		}
+	}
+
+	/**
+	 * Ring buffer for exactly one producer thread and one consumer thread.
+	 * @param <E> - class of the items.
+	 */
+	static public class Spsc<E> extends RingBuffer<E>
+	{
+		/** Producer's copy of the head, refreshed only when the buffer looks full. */
+		protected long mHeadCache = 0L;
+
+		public Spsc( int aCapacity )
+		{ super(aCapacity); }
+
+		@Override
+		public boolean offer( E aItem )
+		{
+			if ( aItem == null )
+				throw new NullPointerException();
+			long theTail = mTail.get();
+			if ( theTail - mHeadCache > mMask ) {
+				mHeadCache = mHead.get();
+				if ( theTail - mHeadCache > mMask )
+					return false;
+			}
+			putSlot((int)theTail & mMask, aItem);
+			putCounter(mTail, theTail + 1);
+			return true;
+		}
+	}
+
+	/**
+	 * Ring buffer for any number of producer threads and one consumer thread.
+	 * @param <E> - class of the items.
+	 */
+	static public class Mpsc<E> extends RingBuffer<E>
+	{
+		public Mpsc( int aCapacity )
+		{ super(aCapacity); }
+
+		@Override
+		public boolean offer( E aItem )
+		{
+			if ( aItem == null )
+				throw new NullPointerException();
+			long theTail;
+			do {
+				theTail = mTail.get();
+				if ( theTail - mHead.get() > mMask )
+					return false;
+			} while ( !mTail.compareAndSet(theTail, theTail + 1) );
+			//the slot was emptied before the head moved past it, so it is ours to fill
+			putSlot((int)theTail & mMask, aItem);
+			return true;
+		}
+	}
+
+}
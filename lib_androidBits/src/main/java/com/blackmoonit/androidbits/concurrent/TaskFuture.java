@@ -0,0 +1,445 @@
+package com.blackmoonit.androidbits.concurrent;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.blackmoonit.androidbits.app.UIFrameDispatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle on the result of a task queued with {@link ThreadTaskDaemon#queueTask(Callable, String)}.
+ * Besides blocking on {@link #get()}, completion can be handled by callbacks run on an
+ * Executor of choice, results can be chained with {@link #then(Transform, Executor)} and
+ * several handles can be joined with {@link #allOf(List)}, so no thread needs to park
+ * waiting on a result.<br>
+ * Cancelling the handle cancels its TaskToRun, so a task that has not started never will;
+ * interrupting a task already running is optional. Cancelling or removing the TaskToRun
+ * cancels the handle as well.
+ * @param <V> - class of the result.
+ * @author baracudda
+ */
+@SuppressWarnings("unused, UnusedReturnValue")
+public class TaskFuture<V> implements Future<V>, Runnable
+{
+	static protected final int STATE_PENDING = 0;
+	static protected final int STATE_RUNNING = 1;
+	static protected final int STATE_SUCCEEDED = 2;
+	static protected final int STATE_FAILED = 3;
+	static protected final int STATE_CANCELLED = 4;
+
+	/** Runs callbacks on the UI thread with the next frame. */
+	static public final Executor UI_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable aCommand)
+		{ UIFrameDispatcher.getInstance().post(aCommand); }
+	};
+
+	protected final Callable<V> mCallable;
+	protected TaskToRun mTaskToRun = null;
+	protected int mState = STATE_PENDING;
+	protected V mResult = null;
+	protected Throwable mFailure = null;
+	/** The thread running the task, only set while it may be interrupted. */
+	protected Thread mRunner = null;
+	protected boolean bInterrupted = false;
+	protected ArrayList<Runnable> mCallbacks = null;
+
+	/**
+	 * Receives a handle once it is done, whether it succeeded, failed or was cancelled.
+	 * @param <V> - class of the result.
+	 */
+	public interface OnComplete<V>
+	{
+		/**
+		 * @param aFuture - the completed handle; {@link TaskFuture#getNow(Object)} and
+		 * {@link TaskFuture#getFailure()} do not block.
+		 */
+		public void onComplete(TaskFuture<V> aFuture);
+	}
+
+	/**
+	 * Turns one result into another for {@link TaskFuture#then(Transform, Executor)}.
+	 * @param <V> - class of the input.
+	 * @param <R> - class of the output.
+	 */
+	public interface Transform<V, R>
+	{
+		public R apply(V aValue) throws Exception;
+	}
+
+	/**
+	 * Completion callback handed to an Executor. Should the Executor turn it away, right
+	 * then or by dropping it later on, as a bounded {@link ThreadTaskDaemon} may, the handle
+	 * waiting on its outcome, if any, fails instead of never completing.
+	 */
+	protected class Callback implements Runnable
+	{
+		protected final OnComplete<V> mOnComplete;
+		/** Completed by mOnComplete, NULL if nothing waits on the callback. */
+		protected final TaskFuture<?> mDependent;
+
+		protected Callback( OnComplete<V> aOnComplete, TaskFuture<?> aDependent )
+		{
+			mOnComplete = aOnComplete;
+			mDependent = aDependent;
+		}
+
+		@Override
+		public void run()
+		{ mOnComplete.onComplete(TaskFuture.this); }
+
+		/**
+		 * The Executor will not run this callback.
+		 * @param aReason - why not.
+		 */
+		protected void onRejected( RejectedExecutionException aReason )
+		{
+			if ( mDependent != null ) {
+				mDependent.fail(aReason);
+			}
+		}
+	}
+
+	/**
+	 * @param aCallable - the work to run, may be NULL for a handle completed by hand.
+	 */
+	public TaskFuture( Callable<V> aCallable )
+	{ mCallable = aCallable; }
+
+	/**
+	 * Associate the TaskToRun which will run this handle's callable, so that cancelling
+	 * one cancels the other.
+	 * @param aTask - the queued task.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	protected TaskFuture<V> setTaskToRun( TaskToRun aTask )
+	{
+		synchronized (this) {
+			mTaskToRun = aTask;
+		}
+		return this;
+	}
+
+	/**
+	 * Run the callable and complete with its outcome. Does nothing if already started,
+	 * completed or cancelled.
+	 */
+	@Override
+	public void run()
+	{
+		synchronized (this) {
+			if ( mState != STATE_PENDING || mCallable == null )
+				return;
+			mState = STATE_RUNNING;
+			mRunner = Thread.currentThread();
+		}
+		V theResult = null;
+		Throwable theFailure = null;
+		try {
+			theResult = mCallable.call();
+		} catch (Throwable t) {
+			theFailure = t;
+		} finally {
+			boolean bClearInterrupt;
+			synchronized (this) {
+				mRunner = null;
+				bClearInterrupt = bInterrupted;
+			}
+			if ( bClearInterrupt ) {
+				//do not let our cancel() interrupt the worker's next task
+				Thread.interrupted();
+			}
+		}
+		if ( theFailure != null )
+			finish(STATE_FAILED, null, theFailure);
+		else
+			finish(STATE_SUCCEEDED, theResult, null);
+	}
+
+	/**
+	 * Complete with a result, unless already completed.
+	 * @param aResult - the result.
+	 * @return Returns TRUE if this call completed the handle.
+	 */
+	public boolean complete( V aResult )
+	{ return finish(STATE_SUCCEEDED, aResult, null); }
+
+	/**
+	 * Complete with a failure, unless already completed.
+	 * @param aFailure - why the task failed.
+	 * @return Returns TRUE if this call completed the handle.
+	 */
+	public boolean fail( Throwable aFailure )
+	{ return finish(STATE_FAILED, null, aFailure); }
+
+	/**
+	 * Cancel the task. If it has not started, it never will; if it is running, it is
+	 * interrupted only if asked to be.
+	 * @param bMayInterruptIfRunning - interrupt the thread running the task.
+	 * @return Returns TRUE if this call cancelled the handle.
+	 */
+	@Override
+	public boolean cancel( boolean bMayInterruptIfRunning )
+	{
+		TaskToRun theTask;
+		ArrayList<Runnable> theCallbacks;
+		synchronized (this) {
+			if ( mState >= STATE_SUCCEEDED )
+				return false;
+			//settle before interrupting so the task's reaction cannot complete it first
+			theCallbacks = settle(STATE_CANCELLED, null, new CancellationException());
+			if ( bMayInterruptIfRunning && mRunner != null ) {
+				bInterrupted = true;
+				mRunner.interrupt();
+			}
+			theTask = mTaskToRun;
+		}
+		runCallbacks(theCallbacks);
+		if ( theTask != null && !theTask.isCancelled() ) {
+			theTask.cancel();
+		}
+		return true;
+	}
+
+	protected boolean finish( int aState, V aResult, Throwable aFailure )
+	{
+		ArrayList<Runnable> theCallbacks;
+		synchronized (this) {
+			if ( mState >= STATE_SUCCEEDED )
+				return false;
+			theCallbacks = settle(aState, aResult, aFailure);
+		}
+		runCallbacks(theCallbacks);
+		return true;
+	}
+
+	/**
+	 * Record the outcome and wake any waiters. Call with the lock held.
+	 * @return Returns the callbacks to run once the lock is released.
+	 */
+	protected ArrayList<Runnable> settle( int aState, V aResult, Throwable aFailure )
+	{
+		mState = aState;
+		mResult = aResult;
+		mFailure = aFailure;
+		ArrayList<Runnable> theCallbacks = mCallbacks;
+		mCallbacks = null;
+		notifyAll();
+		return theCallbacks;
+	}
+
+	static protected void runCallbacks( ArrayList<Runnable> aCallbacks )
+	{
+		if ( aCallbacks != null ) {
+			for (Runnable theCallback : aCallbacks) {
+				theCallback.run();
+			}
+		}
+	}
+
+	@Override
+	public synchronized boolean isCancelled()
+	{ return ( mState == STATE_CANCELLED ); }
+
+	@Override
+	public synchronized boolean isDone()
+	{ return ( mState >= STATE_SUCCEEDED ); }
+
+	/** @return Returns TRUE if done without failing or being cancelled. */
+	public synchronized boolean isSucceeded()
+	{ return ( mState == STATE_SUCCEEDED ); }
+
+	/**
+	 * Get the result without blocking.
+	 * @param aDefault - returned if not successfully done.
+	 * @return Returns the result, or aDefault if it is not available.
+	 */
+	public synchronized V getNow( V aDefault )
+	{ return ( mState == STATE_SUCCEEDED ) ? mResult : aDefault; }
+
+	/** @return Returns what the task threw, a CancellationException if cancelled, else NULL. */
+	public synchronized Throwable getFailure()
+	{ return mFailure; }
+
+	protected V report() throws ExecutionException
+	{
+		if ( mState == STATE_CANCELLED )
+			throw new CancellationException();
+		if ( mState == STATE_FAILED )
+			throw new ExecutionException(mFailure);
+		return mResult;
+	}
+
+	@Override
+	public synchronized V get() throws InterruptedException, ExecutionException
+	{
+		while ( mState < STATE_SUCCEEDED ) {
+			wait();
+		}
+		return report();
+	}
+
+	@Override
+	public synchronized V get( long aTimeout, TimeUnit aUnit )
+			throws InterruptedException, ExecutionException, TimeoutException
+	{
+		long theDeadline = System.nanoTime() + aUnit.toNanos(aTimeout);
+		while ( mState < STATE_SUCCEEDED ) {
+			long theRemaining = theDeadline - System.nanoTime();
+			if ( theRemaining <= 0L )
+				throw new TimeoutException();
+			TimeUnit.NANOSECONDS.timedWait(this, theRemaining);
+		}
+		return report();
+	}
+
+	/**
+	 * Call back once done. Called right away if already done. A callback the Executor
+	 * rejects is dropped.
+	 * @param aCallback - the callback.
+	 * @param aExecutor - where to run the callback, e.g. {@link #UI_EXECUTOR} or
+	 * {@link ThreadTaskDaemon#getExecutor()}; NULL runs it on the completing thread.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskFuture<V> whenComplete( final OnComplete<V> aCallback, final Executor aExecutor )
+	{ return whenComplete(aCallback, aExecutor, null); }
+
+	/**
+	 * Call back once done. Called right away if already done.
+	 * @param aCallback - the callback.
+	 * @param aExecutor - where to run the callback, NULL runs it on the completing thread.
+	 * @param aDependent - handle completed by aCallback, failed if the Executor rejects it.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	protected TaskFuture<V> whenComplete( OnComplete<V> aCallback, final Executor aExecutor,
+			TaskFuture<?> aDependent )
+	{
+		final Callback theCall = new Callback(aCallback, aDependent);
+		Runnable theDispatch = ( aExecutor == null ) ? theCall : new Runnable() {
+			@Override
+			public void run()
+			{
+				try {
+					aExecutor.execute(theCall);
+				} catch (RejectedExecutionException e) {
+					theCall.onRejected(e);
+				}
+			}
+		};
+		synchronized (this) {
+			if ( mState < STATE_SUCCEEDED ) {
+				if ( mCallbacks == null )
+					mCallbacks = new ArrayList<Runnable>(2);
+				mCallbacks.add(theDispatch);
+				return this;
+			}
+		}
+		theDispatch.run();
+		return this;
+	}
+
+	/**
+	 * Chain follow-up work onto the result. Failure or cancellation of this handle passes
+	 * straight through to the returned one, which also fails if aExecutor rejects the
+	 * transform; cancelling the returned one does not cancel this one.
+	 * @param aTransform - turns this result into the next one.
+	 * @param aExecutor - where to run the transform, NULL for the completing thread.
+	 * @param <R> - class of the next result.
+	 * @return Returns the handle of the next result.
+	 */
+	public <R> TaskFuture<R> then( final Transform<? super V, ? extends R> aTransform,
+			Executor aExecutor )
+	{
+		final TaskFuture<R> theNext = new TaskFuture<R>(null);
+		whenComplete(new OnComplete<V>() {
+			@Override
+			public void onComplete(TaskFuture<V> aFuture)
+			{
+				if ( theNext.isDone() )
+					return;
+				if ( aFuture.isCancelled() ) {
+					theNext.cancel(false);
+				}
+				else if ( !aFuture.isSucceeded() ) {
+					theNext.fail(aFuture.getFailure());
+				}
+				else try {
+					theNext.complete(aTransform.apply(aFuture.getNow(null)));
+				} catch (Throwable t) {
+					theNext.fail(t);
+				}
+			}
+		}, aExecutor, theNext);
+		return theNext;
+	}
+
+	/**
+	 * Join several handles into one which succeeds with all their results, in order, once
+	 * they all succeed; or fails, or is cancelled, as soon as one of them does.
+	 * @param aFutures - the handles to join.
+	 * @param <V> - class of the results.
+	 * @return Returns the joined handle.
+	 */
+	static public <V> TaskFuture<List<V>> allOf( final List<? extends TaskFuture<? extends V>> aFutures )
+	{
+		final TaskFuture<List<V>> theAll = new TaskFuture<List<V>>(null);
+		final int theCount = aFutures.size();
+		if ( theCount == 0 ) {
+			theAll.complete(Collections.<V>emptyList());
+			return theAll;
+		}
+		final AtomicInteger theRemaining = new AtomicInteger(theCount);
+		OnComplete<Object> theJoin = new OnComplete<Object>() {
+			@Override
+			public void onComplete(TaskFuture<Object> aFuture)
+			{
+				if ( aFuture.isCancelled() ) {
+					theAll.cancel(false);
+				}
+				else if ( !aFuture.isSucceeded() ) {
+					theAll.fail(aFuture.getFailure());
+				}
+				else if ( theRemaining.decrementAndGet() == 0 ) {
+					ArrayList<V> theResults = new ArrayList<V>(theCount);
+					for (TaskFuture<? extends V> theFuture : aFutures) {
+						theResults.add(theFuture.getNow(null));
+					}
+					theAll.complete(theResults);
+				}
+			}
+		};
+		for (TaskFuture<? extends V> theFuture : aFutures) {
+			joinTo(theFuture, theJoin);
+		}
+		return theAll;
+	}
+
+	@SuppressWarnings("unchecked")
+	static private void joinTo( TaskFuture<?> aFuture, OnComplete<Object> aJoin )
+	{ ((TaskFuture<Object>)aFuture).whenComplete(aJoin, null); }
+
+}
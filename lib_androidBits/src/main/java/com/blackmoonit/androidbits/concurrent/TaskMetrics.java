@@ -0,0 +1,285 @@
+package com.blackmoonit.androidbits.concurrent;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free execution counters and latency histograms for the threads and tasks of this
+ * package. Recording is switched off by default; while off, the only cost is reading a
+ * volatile flag. Call {@link #setEnabled(boolean)} to start collecting and
+ * {@link #snapshot()} to get a consistent-enough copy to log or display.<br>
+ * Latencies are kept in microseconds in power-of-two buckets, so percentiles are
+ * estimates accurate to within a factor of two.
+ * @author baracudda
+ */
+@SuppressWarnings("unused")
+public class TaskMetrics
+{
+	static private volatile boolean bEnabled = false;
+
+	protected final AtomicLong mEnqueued = new AtomicLong();
+	protected final AtomicLong mCompleted = new AtomicLong();
+	protected final AtomicLong mFailed = new AtomicLong();
+	protected final AtomicLong mCancelled = new AtomicLong();
+	protected final AtomicLong mExpired = new AtomicLong();
+	protected final AtomicLong mRejected = new AtomicLong();
+	protected final AtomicInteger mQueueDepth = new AtomicInteger();
+	protected final AtomicInteger mQueueDepthHighWater = new AtomicInteger();
+	/** Time from being queued until starting to run. */
+	protected final Histogram mWaitTime = new Histogram();
+	/** Time spent running. */
+	protected final Histogram mRunTime = new Histogram();
+
+	/** @return Returns TRUE if metrics are being recorded. */
+	static public boolean isEnabled()
+	{ return bEnabled; }
+
+	/**
+	 * Turn recording on or off for every metrics object.
+	 * @param aEnabled - TRUE to record.
+	 */
+	static public void setEnabled( boolean aEnabled )
+	{ bEnabled = aEnabled; }
+
+	/** @return Returns a timestamp for the record* methods, 0 if metrics are disabled. */
+	static public long now()
+	{ return ( bEnabled ) ? System.nanoTime() : 0L; }
+
+	/**
+	 * Record a task entering the queue.
+	 */
+	public void recordEnqueue()
+	{
+		mEnqueued.incrementAndGet();
+		int theDepth = mQueueDepth.incrementAndGet();
+		int theHighWater;
+		while ( theDepth > (theHighWater = mQueueDepthHighWater.get()) ) {
+			if ( mQueueDepthHighWater.compareAndSet(theHighWater, theDepth) )
+				break;
+		}
+	}
+
+	/**
+	 * Record a task leaving the queue, whether it will run or not.
+	 */
+	public void recordDequeue()
+	{ mQueueDepth.decrementAndGet(); }
+
+	/**
+	 * Record how long a task waited before it started to run.
+	 * @param aQueuedAt - {@link #now()} when it was queued, ignored if 0.
+	 * @param aStartedAt - {@link #now()} when it started.
+	 */
+	public void recordWait( long aQueuedAt, long aStartedAt )
+	{
+		if ( aQueuedAt != 0L && aStartedAt != 0L )
+			mWaitTime.record((aStartedAt - aQueuedAt) / 1000L);
+	}
+
+	/**
+	 * Record a run which finished.
+	 * @param aStartedAt - {@link #now()} when it started, ignored if 0.
+	 * @param aSucceeded - FALSE if it threw.
+	 */
+	public void recordRun( long aStartedAt, boolean aSucceeded )
+	{
+		if ( aStartedAt != 0L )
+			mRunTime.record((System.nanoTime() - aStartedAt) / 1000L);
+		if ( aSucceeded )
+			mCompleted.incrementAndGet();
+		else
+			mFailed.incrementAndGet();
+	}
+
+	/** Record a task dropped because it was cancelled before it started. */
+	public void recordCancelled()
+	{ mCancelled.incrementAndGet(); }
+
+	/** Record a task dropped because its deadline passed before it started. */
+	public void recordExpired()
+	{ mExpired.incrementAndGet(); }
+
+	/**
+	 * Record a task turned away, or run by the caller, because the queue was full.
+	 * Counted even while disabled so that overload never goes unnoticed.
+	 */
+	public void recordRejected()
+	{ mRejected.incrementAndGet(); }
+
+	/** @return Returns the number of tasks rejected so far. */
+	public long getRejectedCount()
+	{ return mRejected.get(); }
+
+	/** @return Returns a copy of the current values. */
+	public Snapshot snapshot()
+	{ return new Snapshot(this); }
+
+	/**
+	 * Zero everything except the current queue depth.
+	 */
+	public void reset()
+	{
+		mEnqueued.set(0L);
+		mCompleted.set(0L);
+		mFailed.set(0L);
+		mCancelled.set(0L);
+		mExpired.set(0L);
+		mRejected.set(0L);
+		mQueueDepthHighWater.set(mQueueDepth.get());
+		mWaitTime.reset();
+		mRunTime.reset();
+	}
+
+	/**
+	 * Lock-free histogram of microsecond values in power-of-two buckets: bucket 0 counts
+	 * zeros, bucket N counts values from 2^(N-1) up to, but not including, 2^N.
+	 */
+	static public class Histogram
+	{
+		static public final int BUCKET_COUNT = 40;
+		protected final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+		protected final AtomicLong mSum = new AtomicLong();
+		protected final AtomicLong mMax = new AtomicLong();
+
+		/**
+		 * Add a value.
+		 * @param aMicros - the value in microseconds, negatives count as 0.
+		 */
+		public void record( long aMicros )
+		{
+			long theValue = Math.max(aMicros, 0L);
+			int theBucket = Math.min(64 - Long.numberOfLeadingZeros(theValue), BUCKET_COUNT-1);
+			mBuckets.incrementAndGet(theBucket);
+			mSum.addAndGet(theValue);
+			long theMax;
+			while ( theValue > (theMax = mMax.get()) ) {
+				if ( mMax.compareAndSet(theMax, theValue) )
+					break;
+			}
+		}
+
+		public void reset()
+		{
+			for (int i=0; i<BUCKET_COUNT; i++) {
+				mBuckets.set(i, 0L);
+			}
+			mSum.set(0L);
+			mMax.set(0L);
+		}
+	}
+
+	/**
+	 * Immutable copy of a histogram.
+	 */
+	static public class HistogramSnapshot
+	{
+		public final long[] buckets;
+		public final long count;
+		public final long sum;
+		public final long max;
+
+		protected HistogramSnapshot( Histogram aSource )
+		{
+			buckets = new long[Histogram.BUCKET_COUNT];
+			long theCount = 0L;
+			for (int i=0; i<Histogram.BUCKET_COUNT; i++) {
+				buckets[i] = aSource.mBuckets.get(i);
+				theCount += buckets[i];
+			}
+			//use the bucket total so percentiles agree with the buckets copied
+			count = theCount;
+			sum = aSource.mSum.get();
+			max = aSource.mMax.get();
+		}
+
+		/** @return Returns the mean in microseconds, 0 if empty. */
+		public long getMean()
+		{ return ( count > 0L ) ? sum / count : 0L; }
+
+		/**
+		 * Estimate a percentile.
+		 * @param aPercent - 0..100.
+		 * @return Returns the upper bound, in microseconds, of the bucket holding the
+		 * percentile, capped at the max seen; 0 if empty.
+		 */
+		public long getPercentile( double aPercent )
+		{
+			if ( count == 0L )
+				return 0L;
+			long theRank = (long)Math.ceil(count * Math.min(Math.max(aPercent, 0.0), 100.0) / 100.0);
+			long theSeen = 0L;
+			for (int i=0; i<buckets.length; i++) {
+				theSeen += buckets[i];
+				if ( theSeen >= theRank && theSeen > 0L ) {
+					long theUpperBound = ( i == 0 ) ? 0L : (1L << i) - 1L;
+					return Math.min(theUpperBound, max);
+				}
+			}
+			return max;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "n=" + count + " mean=" + getMean() + "us p50=" + getPercentile(50) +
+					"us p99=" + getPercentile(99) + "us max=" + max + "us";
+		}
+	}
+
+	/**
+	 * Immutable copy of a {@link TaskMetrics}.
+	 */
+	static public class Snapshot
+	{
+		public final long enqueued;
+		public final long completed;
+		public final long failed;
+		public final long cancelled;
+		public final long expired;
+		public final long rejected;
+		public final int queueDepth;
+		public final int queueDepthHighWater;
+		public final HistogramSnapshot waitTime;
+		public final HistogramSnapshot runTime;
+
+		protected Snapshot( TaskMetrics aSource )
+		{
+			enqueued = aSource.mEnqueued.get();
+			completed = aSource.mCompleted.get();
+			failed = aSource.mFailed.get();
+			cancelled = aSource.mCancelled.get();
+			expired = aSource.mExpired.get();
+			rejected = aSource.mRejected.get();
+			queueDepth = aSource.mQueueDepth.get();
+			queueDepthHighWater = aSource.mQueueDepthHighWater.get();
+			waitTime = new HistogramSnapshot(aSource.mWaitTime);
+			runTime = new HistogramSnapshot(aSource.mRunTime);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "queued=" + enqueued + " done=" + completed + " failed=" + failed +
+					" cancelled=" + cancelled + " expired=" + expired + " rejected=" + rejected +
+					" depth=" + queueDepth + " (max " + queueDepthHighWater + ")" +
+					" wait[" + waitTime + "] run[" + runTime + "]";
+		}
+	}
+
+}
@@ -0,0 +1,348 @@
+package com.blackmoonit.androidbits.concurrent;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.os.SystemClock;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking queue which orders tasks by their {@link TaskToRun#getPriorityClass() priority class}
+ * and, within a class, earliest deadline first. Tasks without a deadline are due once they
+ * have waited their class' aging limit, so within a class they run FIFO and a steady stream
+ * of higher class work cannot starve them: a lower class task that is overdue runs ahead of
+ * higher class tasks which are not.<br>
+ * Tasks which all use the default class and no deadline come out in FIFO order, same as
+ * a LinkedBlockingQueue would. Expired tasks are not removed here, see
+ * {@link ThreadTaskDaemon#onTaskExpired(TaskToRun)}.
+ * @author baracudda
+ */
+@SuppressWarnings("unused")
+public class TaskScheduleQueue extends AbstractQueue<TaskToRun> implements BlockingQueue<TaskToRun>
+{
+	/** Default number of milliseconds a task waits per class level before it is overdue. */
+	static public final long DEFAULT_AGING_INTERVAL = 1000L;
+	/** Orders tasks within a class by when they are due, then by arrival. */
+	static protected final Comparator<TaskToRun> DUE_ORDER = new Comparator<TaskToRun>() {
+		@Override
+		public int compare(TaskToRun lhs, TaskToRun rhs)
+		{
+			if ( lhs.mDueAt != rhs.mDueAt )
+				return ( lhs.mDueAt < rhs.mDueAt ) ? -1 : 1;
+			return ( lhs.mQueueSeq < rhs.mQueueSeq ) ? -1 : ((lhs.mQueueSeq == rhs.mQueueSeq) ? 0 : 1);
+		}
+	};
+	protected final ReentrantLock mLock = new ReentrantLock();
+	protected final Condition mNotEmpty = mLock.newCondition();
+	protected final ArrayList<PriorityQueue<TaskToRun>> mClasses;
+	protected int mCount = 0;
+	protected long mNextSeq = 0L;
+	/** Milliseconds a task of class N waits, times N+1, before it is overdue. */
+	protected volatile long mAgingInterval = DEFAULT_AGING_INTERVAL;
+
+	public TaskScheduleQueue()
+	{
+		mClasses = new ArrayList<PriorityQueue<TaskToRun>>(TaskToRun.PRIORITY_CLASS_COUNT);
+		for (int i=0; i<TaskToRun.PRIORITY_CLASS_COUNT; i++) {
+			mClasses.add(new PriorityQueue<TaskToRun>(11, DUE_ORDER));
+		}
+	}
+
+	/**
+	 * Set how fast waiting tasks age. Only affects tasks queued afterwards.
+	 * @param aInterval - milliseconds per class level, a task of class N is overdue after
+	 *   waiting (N+1) times this long.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskScheduleQueue setAgingInterval( long aInterval )
+	{ mAgingInterval = Math.max(aInterval, 1L); return this; }
+
+	/** @return Returns the aging interval in milliseconds. */
+	public long getAgingInterval()
+	{ return mAgingInterval; }
+
+	/**
+	 * Determine the head of the queue: the most overdue head among the classes, if any is
+	 * overdue, else the head of the highest class which has tasks. Call with the lock held.
+	 * @return Returns the class queue whose head is next, NULL if empty.
+	 */
+	protected PriorityQueue<TaskToRun> nextClass()
+	{
+		if ( mCount == 0 )
+			return null;
+		long theNow = SystemClock.uptimeMillis();
+		PriorityQueue<TaskToRun> theFirst = null;
+		PriorityQueue<TaskToRun> theOverdue = null;
+		long theOverdueAt = Long.MAX_VALUE;
+		for (PriorityQueue<TaskToRun> theClass : mClasses) {
+			TaskToRun theHead = theClass.peek();
+			if ( theHead == null )
+				continue;
+			if ( theFirst == null )
+				theFirst = theClass;
+			if ( theHead.mDueAt <= theNow && theHead.mDueAt < theOverdueAt ) {
+				theOverdue = theClass;
+				theOverdueAt = theHead.mDueAt;
+			}
+		}
+		return ( theOverdue != null ) ? theOverdue : theFirst;
+	}
+
+	/** Remove and return the head. Call with the lock held. */
+	protected TaskToRun dequeue()
+	{
+		PriorityQueue<TaskToRun> theClass = nextClass();
+		if ( theClass == null )
+			return null;
+		mCount -= 1;
+		return theClass.poll();
+	}
+
+	@Override
+	public boolean offer( TaskToRun aTask )
+	{
+		if ( aTask == null )
+			throw new NullPointerException();
+		int theClass = aTask.getPriorityClass();
+		long theNow = SystemClock.uptimeMillis();
+		long theDueAt = theNow + mAgingInterval * (theClass + 1);
+		if ( aTask.getDeadline() > 0L && aTask.getDeadline() < theDueAt )
+			theDueAt = aTask.getDeadline();
+		mLock.lock();
+		try {
+			aTask.mQueuedAt = theNow;
+			aTask.mDueAt = theDueAt;
+			aTask.mQueueSeq = mNextSeq++;
+			mClasses.get(theClass).offer(aTask);
+			mCount += 1;
+			mNotEmpty.signal();
+			return true;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	@Override
+	public void put( TaskToRun aTask ) throws InterruptedException
+	{ offer(aTask); }
+
+	@Override
+	public boolean offer( TaskToRun aTask, long aTimeout, TimeUnit aUnit ) throws InterruptedException
+	{ return offer(aTask); }
+
+	@Override
+	public TaskToRun poll()
+	{
+		mLock.lock();
+		try {
+			return dequeue();
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * Remove and return the task which would run last: the one due latest in the lowest
+	 * class which has tasks. Walks that class, so meant for the rare overloaded queue.
+	 * @return Returns the least urgent task, NULL if empty.
+	 */
+	public TaskToRun pollLeastUrgent()
+	{
+		mLock.lock();
+		try {
+			for (int i=mClasses.size()-1; i>=0; i--) {
+				PriorityQueue<TaskToRun> theClass = mClasses.get(i);
+				TaskToRun theLast = null;
+				for (TaskToRun theTask : theClass) {
+					if ( theLast == null || DUE_ORDER.compare(theTask, theLast) > 0 )
+						theLast = theTask;
+				}
+				if ( theLast != null ) {
+					theClass.remove(theLast);
+					mCount -= 1;
+					return theLast;
+				}
+			}
+			return null;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	@Override
+	public TaskToRun take() throws InterruptedException
+	{
+		mLock.lockInterruptibly();
+		try {
+			while ( mCount == 0 ) {
+				mNotEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	@Override
+	public TaskToRun poll( long aTimeout, TimeUnit aUnit ) throws InterruptedException
+	{
+		long theNanos = aUnit.toNanos(aTimeout);
+		mLock.lockInterruptibly();
+		try {
+			while ( mCount == 0 ) {
+				if ( theNanos <= 0L )
+					return null;
+				theNanos = mNotEmpty.awaitNanos(theNanos);
+			}
+			return dequeue();
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	@Override
+	public TaskToRun peek()
+	{
+		mLock.lock();
+		try {
+			PriorityQueue<TaskToRun> theClass = nextClass();
+			return ( theClass != null ) ? theClass.peek() : null;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	@Override
+	public int size()
+	{
+		mLock.lock();
+		try {
+			return mCount;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity()
+	{ return Integer.MAX_VALUE; }
+
+	@Override
+	public boolean remove( Object aTask )
+	{
+		if ( !(aTask instanceof TaskToRun) )
+			return false;
+		mLock.lock();
+		try {
+			for (PriorityQueue<TaskToRun> theClass : mClasses) {
+				if ( theClass.remove(aTask) ) {
+					mCount -= 1;
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		mLock.lock();
+		try {
+			for (PriorityQueue<TaskToRun> theClass : mClasses) {
+				theClass.clear();
+			}
+			mCount = 0;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo( Collection<? super TaskToRun> aDest )
+	{ return drainTo(aDest, Integer.MAX_VALUE); }
+
+	@Override
+	public int drainTo( Collection<? super TaskToRun> aDest, int aMax )
+	{
+		if ( aDest == null )
+			throw new NullPointerException();
+		if ( aDest == this )
+			throw new IllegalArgumentException();
+		mLock.lock();
+		try {
+			int theDrained = 0;
+			while ( theDrained < aMax && mCount > 0 ) {
+				aDest.add(dequeue());
+				theDrained += 1;
+			}
+			return theDrained;
+		} finally {
+			mLock.unlock();
+		}
+	}
+
+	/**
+	 * Iterates over a snapshot of the queued tasks, in no particular order.
+	 * @return Returns the snapshot iterator; removing through it removes from the queue.
+	 */
+	@Override
+	public Iterator<TaskToRun> iterator()
+	{
+		final ArrayList<TaskToRun> theSnapshot = new ArrayList<TaskToRun>();
+		mLock.lock();
+		try {
+			for (PriorityQueue<TaskToRun> theClass : mClasses) {
+				theSnapshot.addAll(theClass);
+			}
+		} finally {
+			mLock.unlock();
+		}
+		final Iterator<TaskToRun> theItr = theSnapshot.iterator();
+		return new Iterator<TaskToRun>() {
+			TaskToRun mLast = null;
+
+			@Override
+			public boolean hasNext()
+			{ return theItr.hasNext(); }
+
+			@Override
+			public TaskToRun next()
+			{ mLast = theItr.next(); return mLast; }
+
+			@Override
+			public void remove()
+			{
+				if ( mLast == null )
+					throw new IllegalStateException();
+				TaskScheduleQueue.this.remove(mLast);
+				mLast = null;
+			}
+		};
+	}
+
+}
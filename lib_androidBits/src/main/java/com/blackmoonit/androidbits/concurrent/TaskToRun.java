@@ -17,36 +17,105 @@ package com.blackmoonit.androidbits.concurrent;
 
 import android.app.Activity;
 import android.content.Context;
+import android.os.SystemClock;
 
-import com.blackmoonit.androidbits.app.UITaskRunner;
+import com.blackmoonit.androidbits.app.UIFrameDispatcher;
 
 import java.lang.ref.WeakReference;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A thread worker thread class that might run in the background or in the main thread.<br>
- * This class is designed to use Runnables instead of requiring subclasses to be defined.
+ * A unit of work that might run in the background or in the main thread.<br>
+ * This class is designed to use Runnables instead of requiring subclasses to be defined.<br>
+ * A TaskToRun is a plain Runnable so that queueing one into a {@link ThreadTaskDaemon} does
+ * not allocate a Thread; only {@link #execute()} spins up a thread of its own.<br>
+ * Tasks carry a priority class and an optional deadline which a {@link TaskScheduleQueue}
+ * uses to order them; a daemon drops tasks whose deadline passed before they could start.
  * @author baracudda
  */
 @SuppressWarnings("unused, UnusedReturnValue")
-public class TaskToRun extends ThreadTask implements Comparable<TaskToRun>
+public class TaskToRun implements Runnable, Comparable<TaskToRun>
 {
 	static protected final AtomicLong autoIDgen = new AtomicLong(1);
+	/** Priority class of work the user is waiting on, e.g. a visible refresh. */
+	static public final int PRIORITY_CLASS_USER = 0;
+	/** Priority class tasks get unless told otherwise. */
+	static public final int PRIORITY_CLASS_DEFAULT = 1;
+	/** Priority class of work nobody is waiting on, e.g. sync or cache upkeep. */
+	static public final int PRIORITY_CLASS_BACKGROUND = 2;
+	/** Number of priority classes. */
+	static public final int PRIORITY_CLASS_COUNT = 3;
+	protected Runnable mTask = null;
+	/** Thread priority to use if this task is executed on its own thread. */
+	protected Integer mThreadPriority = null;
+	/** The thread this task is running on if executed on its own thread. */
+	protected volatile ThreadTask mThread = null;
+	/** Cancelled tasks are skipped when their turn comes. */
+	protected volatile boolean bCancelled = false;
 	protected boolean bRunOnUi = false;
 	protected WeakReference<Activity> wrAct = null;
 	protected WeakReference<Context> wrContext = null;
+	/** UI tasks pending under the same key replace each other, see {@link UIFrameDispatcher}. */
+	protected Object mUiKey = null;
 	/** Task ID defaults to an auto-generated INT, but can be overridden as an UUID. */
 	protected String mTaskID = String.valueOf(autoIDgen.getAndAdd(1));
 	protected String mTaskName = null;
+	protected int mPriorityClass = PRIORITY_CLASS_DEFAULT;
+	/** {@link SystemClock#uptimeMillis()} by which the task must start, 0 means none. */
+	protected long mDeadline = 0L;
+	/** Run on the worker thread instead of this task if the deadline passed. */
+	protected Runnable mOnDeadlineMissed = null;
+	/** Scheduling state maintained by {@link TaskScheduleQueue}. */
+	long mQueuedAt = 0L;
+	long mDueAt = 0L;
+	long mQueueSeq = 0L;
+	/** Where to record wait and run times, NULL to not record them. */
+	protected volatile TaskMetrics mMetrics = null;
+	/** {@link TaskMetrics#now()} when queued, 0 if not measured. */
+	volatile long mMetricsQueuedAt = 0L;
 	
 	public TaskToRun(Runnable aTask)
-	{ super(aTask); }
+	{ setTask(aTask); }
 	
-	@Override
+	/**
+	 * Builder-chain friendly helper method.
+	 * @param aTask - task to perform
+	 * @return Returns this object so that a chain-call can be continued.
+	 * @throws IllegalArgumentException if the param is null.
+	 */
+	public TaskToRun setTask(Runnable aTask)
+	{
+		if ( aTask == null ) {
+			throw new IllegalArgumentException();
+		}
+		mTask = aTask;
+		return this;
+	}
+	
+	/** @return Returns the Runnable this task runs. */
+	public Runnable getTask()
+	{ return mTask; }
+	
+	/**
+	 * Builder-chain friendly helper method.
+	 * @param aName - task name, also used to name the thread if executed on its own.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
 	public TaskToRun setProcessName(String aName)
 	{
 		this.mTaskName = aName;
-		return (TaskToRun)super.setProcessName(aName);
+		return this;
+	}
+	
+	/**
+	 * Builder-chain friendly helper method.
+	 * @param aPriority - priority of the thread if executed on its own thread.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskToRun setProcessPriority(Integer aPriority)
+	{
+		mThreadPriority = aPriority;
+		return this;
 	}
 	
 	/**
@@ -81,6 +150,16 @@ public class TaskToRun extends ThreadTask implements Comparable<TaskToRun>
 		return this;
 	}
 	
+	/**
+	 * UI tasks are run with the next frame by the {@link UIFrameDispatcher}. Giving them a
+	 * key means a newer task with the same key replaces this one if it has not run, yet;
+	 * useful for state updates where only the latest one matters.
+	 * @param aKey - the key, NULL to always run.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskToRun setUiKey( Object aKey )
+	{ mUiKey = aKey; return this; }
+	
 	/**
 	 * Get he task ID used to determine uniqueness in the queue.
 	 * @return Returns the string used to determine uniqueness.
@@ -95,6 +174,93 @@ public class TaskToRun extends ThreadTask implements Comparable<TaskToRun>
 	public TaskToRun setTaskID( String aID )
 	{ mTaskID = aID; return this; }
 	
+	/**
+	 * Prevent this task from running if it has not started, yet. A queued task stays in
+	 * the queue and is skipped once its turn comes. A {@link TaskFuture} being run by this
+	 * task is cancelled as well.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskToRun cancel()
+	{
+		bCancelled = true;
+		if ( mTask instanceof TaskFuture<?> ) {
+			((TaskFuture<?>)mTask).cancel(false);
+		}
+		return this;
+	}
+	
+	/** @return Returns TRUE if {@link #cancel()} was called. */
+	public boolean isCancelled()
+	{ return bCancelled; }
+	
+	/** @return Returns the priority class, one of the PRIORITY_CLASS_* constants. */
+	public int getPriorityClass()
+	{ return mPriorityClass; }
+	
+	/**
+	 * Set the priority class used by {@link TaskScheduleQueue}; set it before queueing.
+	 * @param aPriorityClass - one of the PRIORITY_CLASS_* constants, lower runs sooner.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskToRun setPriorityClass( int aPriorityClass )
+	{
+		mPriorityClass = Math.min(Math.max(aPriorityClass, 0), PRIORITY_CLASS_COUNT-1);
+		return this;
+	}
+	
+	/** @return Returns the {@link SystemClock#uptimeMillis()} deadline, 0 if none. */
+	public long getDeadline()
+	{ return mDeadline; }
+	
+	/**
+	 * Set the time by which this task must start; set it before queueing. A task still
+	 * waiting in a daemon's queue past its deadline is dropped instead of run late.
+	 * @param aUptimeMillis - deadline in {@link SystemClock#uptimeMillis()} time, 0 for none.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskToRun setDeadline( long aUptimeMillis )
+	{ mDeadline = Math.max(aUptimeMillis, 0L); return this; }
+	
+	/**
+	 * Set the deadline relative to now, see {@link #setDeadline(long)}.
+	 * @param aMilliseconds - how long the task may wait before it is no longer worth running.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskToRun setTimeToLive( long aMilliseconds )
+	{ return setDeadline(SystemClock.uptimeMillis() + Math.max(aMilliseconds, 0L)); }
+	
+	/**
+	 * @param aNow - the current {@link SystemClock#uptimeMillis()}.
+	 * @return Returns TRUE if this task has a deadline and it has passed.
+	 */
+	public boolean isPastDeadline( long aNow )
+	{ return ( mDeadline > 0L && aNow > mDeadline ); }
+	
+	/**
+	 * Report a missed deadline. The Runnable is called on the thread which dropped the task.
+	 * @param aOnDeadlineMissed - called instead of the task, may be NULL.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskToRun setOnDeadlineMissed( Runnable aOnDeadlineMissed )
+	{ mOnDeadlineMissed = aOnDeadlineMissed; return this; }
+	
+	/** @return Returns what to run if the deadline is missed, may be NULL. */
+	public Runnable getOnDeadlineMissed()
+	{ return mOnDeadlineMissed; }
+	
+	/**
+	 * Record this task's wait and run times while {@link TaskMetrics#isEnabled()}. Queueing
+	 * the task in a {@link ThreadTaskDaemon} replaces this with the daemon's metrics.
+	 * @param aMetrics - where to record, NULL to stop recording.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskToRun setMetrics( TaskMetrics aMetrics )
+	{ mMetrics = aMetrics; return this; }
+	
+	/** @return Returns where this task records its times, may be NULL. */
+	public TaskMetrics getMetrics()
+	{ return mMetrics; }
+	
 	/**
 	 * Get the task name used to determine queue sort order, if necessary.
 	 * @return Returns the string used to determine possible queue sort order.
@@ -110,21 +276,45 @@ public class TaskToRun extends ThreadTask implements Comparable<TaskToRun>
 	public TaskToRun setTaskName( String aName )
 	{ return setProcessName(aName); }
 	
-	@Override
+	/**
+	 * Run the task on the current thread, or post it to the UI thread if so configured.
+	 * For a UI task, the run time recorded is only the time taken to post it.
+	 */
 	public void runTask()
 	{
-		if ( mTask == null ) return;
+		if ( mTask == null || bCancelled ) return;
+		TaskMetrics theMetrics = mMetrics;
+		long theStart = ( theMetrics != null ) ? TaskMetrics.now() : 0L;
+		if ( theStart == 0L ) {
+			dispatchTask();
+			return;
+		}
+		theMetrics.recordWait(mMetricsQueuedAt, theStart);
+		boolean bSucceeded = false;
+		try {
+			dispatchTask();
+			bSucceeded = true;
+		} finally {
+			theMetrics.recordRun(theStart, bSucceeded);
+		}
+	}
+	
+	/**
+	 * Run the task on the current thread, or post it to the UI thread if so configured.
+	 */
+	protected void dispatchTask()
+	{
 		//we have a task to run, see if it needs to run on UI thread
 		if ( bRunOnUi ) {
 			Activity theAct = (wrAct!=null) ? wrAct.get() : null;
-			if ( theAct!=null ) {
-				theAct.runOnUiThread(mTask);
+			Context theContext = (wrContext!=null) ? wrContext.get() : null;
+			if ( theAct!=null && ThreadInterruptable.isUiThread() ) {
+				//same as Activity.runOnUiThread() would do
+				mTask.run();
 			}
-			else {
-				Context theContext = (wrContext!=null) ? wrContext.get() : null;
-				if (theContext!=null) {
-					UITaskRunner.runOnUiThread(theContext, mTask);
-				}
+			else if ( theAct!=null || theContext!=null ) {
+				//batched with other UI work, run once per frame
+				UIFrameDispatcher.getInstance().post(mUiKey, mTask);
 			}
 		}
 		else {
@@ -132,6 +322,53 @@ public class TaskToRun extends ThreadTask implements Comparable<TaskToRun>
 		}
 	}
 	
+	@Override
+	public void run()
+	{ runTask(); }
+	
+	/**
+	 * Start executing this task on a thread of its own, if not already started.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TaskToRun execute()
+	{ return executeDelayed(0L); }
+	
+	/**
+	 * Start executing this task on a thread of its own after a delay, if not already started.
+	 * @param aDelayInMilliseconds - start task after a delay (in milliseconds).
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public synchronized TaskToRun executeDelayed(long aDelayInMilliseconds)
+	{
+		if ( mThread == null ) {
+			mThread = new ThreadTask(this, mTaskName, mThreadPriority);
+			if ( aDelayInMilliseconds > 0L )
+				mThread.executeDelayed(aDelayInMilliseconds);
+			else
+				mThread.execute();
+		}
+		return this;
+	}
+	
+	/** @return Returns TRUE if executing on a thread of its own which is still running. */
+	public boolean isAlive()
+	{
+		ThreadTask theThread = mThread;
+		return ( theThread != null && theThread.isAlive() );
+	}
+	
+	/**
+	 * Stops the thread this task was executed on, interrupting it if necessary. Has no
+	 * effect on a task run by a {@link ThreadTaskDaemon}.
+	 */
+	public void halt()
+	{
+		ThreadTask theThread = mThread;
+		if ( theThread != null ) {
+			theThread.halt();
+		}
+	}
+	
 	@Override
 	public int compareTo(TaskToRun o) {
 		if ( mTaskName != null )
@@ -157,7 +394,7 @@ public class TaskToRun extends ThreadTask implements Comparable<TaskToRun>
 	 * @return Returns the task wrapper created.
 	 */
 	static public TaskToRun runThisTask(Runnable aTask)
-	{ return (TaskToRun) (new TaskToRun(aTask)).execute(); }
+	{ return (new TaskToRun(aTask)).execute(); }
 	
 	/**
 	 * Immediately start executing this task.
@@ -166,7 +403,7 @@ public class TaskToRun extends ThreadTask implements Comparable<TaskToRun>
 	 * @return Returns the task wrapper created.
 	 */
 	static public TaskToRun runThisTask(Runnable aTask, String aName)
-	{ return (TaskToRun)prepThisTask(aTask, aName).execute(); }
+	{ return prepThisTask(aTask, aName).execute(); }
 	
 	/**
 	 * Immediately start executing this task after a set delay.
@@ -175,7 +412,7 @@ public class TaskToRun extends ThreadTask implements Comparable<TaskToRun>
 	 * @return Returns the task wrapper created.
 	 */
 	static public TaskToRun runThisTask(Runnable aTask, Long aDelayInMilliseconds)
-	{ return (TaskToRun) (new TaskToRun(aTask)).executeDelayed(aDelayInMilliseconds); }
+	{ return (new TaskToRun(aTask)).executeDelayed(aDelayInMilliseconds); }
 
 	/**
 	 * Immediately start executing this task after a set delay.
@@ -185,6 +422,6 @@ public class TaskToRun extends ThreadTask implements Comparable<TaskToRun>
 	 * @return Returns the task wrapper created.
 	 */
 	static public TaskToRun runThisTask(Runnable aTask, String aName, Long aDelayInMilliseconds)
-	{ return (TaskToRun)prepThisTask(aTask, aName).executeDelayed(aDelayInMilliseconds); }
+	{ return prepThisTask(aTask, aName).executeDelayed(aDelayInMilliseconds); }
 	
 }
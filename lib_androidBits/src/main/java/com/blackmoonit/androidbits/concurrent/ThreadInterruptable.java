@@ -18,9 +18,13 @@ package com.blackmoonit.androidbits.concurrent;
 import com.blackmoonit.androidbits.utils.BitsThreadUtils;
 
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Thread mechanism to overcome the limitations and shortcomings of stopping java threads.
+ * Thread mechanism to overcome the limitations and shortcomings of stopping java threads.<br>
+ * Daemons whose task polls for work, rather than blocking on it, should set an
+ * {@link IdleStrategy} and call {@link #reportNoWork()} when a run finds nothing to do, so
+ * that they back off while idle instead of spinning; producers call {@link #wakeUp()}.
  * @author baracudda
  */
 public abstract class ThreadInterruptable extends Thread
@@ -31,6 +35,14 @@ public abstract class ThreadInterruptable extends Thread
 	 */
 	protected Long mDaemonIntermission = null;
 	protected Long mDelayTask = null;
+	/** How to wait after a run which found no work, NULL to yield or sleep as always. */
+	protected volatile IdleStrategy mIdleStrategy = null;
+	/** Set by {@link #reportNoWork()} during the current run. */
+	protected boolean bFoundNoWork = false;
+	/** Runs in a row which found no work. */
+	protected int mIdleCount = 0;
+	/** Loop iteration times and failures, recorded while {@link TaskMetrics#isEnabled()}. */
+	protected final TaskMetrics mMetrics = new TaskMetrics();
 
 	public ThreadInterruptable() {
 		mBreakman = this;
@@ -48,9 +60,15 @@ public abstract class ThreadInterruptable extends Thread
 			try {
 				if (mDelayTask!=null)
 					Thread.sleep(mDelayTask);
-				runTask();
+				runIteration();
 				if (!this.isDaemon()) {
 					mBreakman = null;
+				} else if (mIdleStrategy!=null) {
+					if (bFoundNoWork) {
+						bFoundNoWork = false;
+						mIdleStrategy.idle(++mIdleCount);
+					} else
+						mIdleCount = 0;
 				} else {
 					if (!this.isDaemon() || mDaemonIntermission==null)
 						yield();
@@ -65,6 +83,71 @@ public abstract class ThreadInterruptable extends Thread
 		} while ((mBreakman==thisThread) && (!Thread.currentThread().isInterrupted()));
 	}
 
+	/**
+	 * Run the task once, recording how long it took if metrics are enabled. Interruption
+	 * and cancellation do not count as failures.
+	 * @throws InterruptedException a blocking queue might get interrupted.
+	 */
+	protected void runIteration() throws InterruptedException {
+		long theStart = TaskMetrics.now();
+		if (theStart==0L) {
+			runTask();
+			return;
+		}
+		boolean bSucceeded = false;
+		try {
+			runTask();
+			bSucceeded = true;
+		} catch (InterruptedException e) {
+			bSucceeded = true;
+			throw e;
+		} catch (CancellationException e) {
+			bSucceeded = true;
+			throw e;
+		} finally {
+			mMetrics.recordRun(theStart, bSucceeded);
+		}
+	}
+
+	/**
+	 * Called from within {@link #runTask()} when it found no work to do, so that the
+	 * {@link IdleStrategy} kicks in before the next run. Does nothing if the current
+	 * thread is not a ThreadInterruptable.
+	 */
+	static public void reportNoWork() {
+		Thread theThread = Thread.currentThread();
+		if (theThread instanceof ThreadInterruptable)
+			((ThreadInterruptable)theThread).bFoundNoWork = true;
+	}
+
+	/**
+	 * Cut short the idle wait of this thread, if any; call after handing it new work.
+	 * A wake-up arriving before the thread idles makes its next wait return at once,
+	 * so none get lost.
+	 */
+	public void wakeUp() {
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Wait using the strategy after runs which found no work, instead of yielding or
+	 * sleeping the intermission after every run. Builder-chain friendly.
+	 * @param aStrategy - the strategy, e.g. {@link BackoffIdleStrategy#getDefault()};
+	 * NULL restores the default behavior.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public ThreadInterruptable setIdleStrategy(IdleStrategy aStrategy) {
+		mIdleStrategy = aStrategy;
+		return this;
+	}
+
+	/**
+	 * @return Returns the metrics of this thread; see {@link TaskMetrics#snapshot()}.
+	 */
+	public TaskMetrics getMetrics() {
+		return mMetrics;
+	}
+
 	/**
 	 * Task to perform while this thread is active.
 	 * @throws InterruptedException a blocking queue might get interrupted.
@@ -17,28 +17,111 @@ package com.blackmoonit.androidbits.concurrent;
 
 import android.app.Activity;
 import android.content.Context;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
 import java.util.AbstractQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
 
 /**
  * ThreadTaskDaemon is a Daemon thread that will continue to execute the Runnable tasks in its
  * queue, and keeps doing so as the queue gets filled. If you use a queue that implements
  * BlockingQueue, then an empty queue will block this thread until a task is submitted,
- * waking it up.
+ * waking it up. Any other queue is polled using an {@link IdleStrategy}, by default a
+ * {@link BackoffIdleStrategy}, and queueing a task wakes up the threads.<br>
+ * By default this thread runs the tasks one at a time. Use {@link #setWorkerCount(int)} to
+ * have a bounded pool of named worker threads, this one included, pull from the same queue.<br>
+ * Pending tasks are indexed by task ID alongside the queue, so finding, uniquely queueing
+ * and removing a task by its ID does not scan the queue.<br>
+ * The default queue is a {@link TaskScheduleQueue}: tasks run by priority class and
+ * deadline, FIFO when neither is set. Tasks whose deadline passed while they waited are
+ * dropped, see {@link #onTaskExpired(TaskToRun)}.<br>
+ * While {@link TaskMetrics#isEnabled()}, {@link #getMetrics()} records queue depth and the
+ * wait and run times of the tasks, for all workers combined.<br>
+ * The queue is unbounded unless {@link #setCapacity(int)} is used; what happens to a task
+ * queued while it is full is up to the {@link #setOverloadPolicy(int) overload policy}.
+ * Every task turned away is counted by {@link TaskMetrics#recordRejected()}, see
+ * {@link #onTaskRejected(TaskToRun)}.
  */
 @SuppressWarnings("unused, UnusedReturnValue")
 public class ThreadTaskDaemon extends ThreadInterruptable
 {
-	protected AbstractQueue<TaskToRun> mTaskQueue;
+	/** Overload policy: the producer waits for room. */
+	static public final int OVERLOAD_BLOCK = 0;
+	/**
+	 * Overload policy: the least urgent pending task is dropped to make room. With the
+	 * default {@link TaskScheduleQueue} that is the latest due task of the lowest priority
+	 * class; with any other queue, the one it would hand out next, the oldest for FIFO.
+	 */
+	static public final int OVERLOAD_DROP_OLDEST = 1;
+	/** Overload policy: the task being queued is dropped. */
+	static public final int OVERLOAD_DROP_NEWEST = 2;
+	/** Overload policy: the task being queued runs right away on the producer's thread. */
+	static public final int OVERLOAD_CALLER_RUNS = 3;
+	/**
+	 * Overload policy: a pending task with the same ID as the one being queued is dropped
+	 * to make room for it; if there is no such task, the one being queued is dropped.
+	 */
+	static public final int OVERLOAD_COALESCE = 4;
+
+	protected volatile AbstractQueue<TaskToRun> mTaskQueue;
 	protected boolean bExecuteTaskAsSeparateThread = false;
+	/** Number of threads pulling tasks from the queue, this one included. */
+	protected int mWorkerCount = 1;
+	/** Worker threads helping this one, started along with it. */
+	protected final CopyOnWriteArrayList<ThreadInterruptable> mWorkers =
+			new CopyOnWriteArrayList<ThreadInterruptable>();
+	/** Tasks waiting in the queue, by task ID; kept in step with the queue. */
+	protected final ConcurrentHashMap<String, TaskToRun> mPendingTasks =
+			new ConcurrentHashMap<String, TaskToRun>();
+	/** Most tasks the queue may hold, 0 for no limit. */
+	protected int mCapacity = 0;
+	/** One permit per free spot in the queue, NULL if unbounded. */
+	protected volatile Semaphore mQueueSlots = null;
+	/** The capacity is fixed once the queue is in use. */
+	protected boolean bCapacityFixed = false;
+	protected volatile int mOverloadPolicy = OVERLOAD_BLOCK;
+	/** Queues Runnables as tasks, see {@link #getExecutor()}. */
+	protected final Executor mExecutor = new Executor() {
+		@Override
+		public void execute(Runnable aCommand)
+		{
+			boolean bQueued;
+			try {
+				bQueued = pushTask(TaskToRun.prepThisTask(aCommand, getName()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException(e);
+			}
+			if ( !bQueued )
+				throw new RejectedExecutionException("task queue is full");
+		}
+	};
 	
 	/** @return Creates and returns the queue instance to use if none has been set, yet. */
 	protected AbstractQueue<TaskToRun> createNewQueue()
-	{ return new LinkedBlockingQueue<TaskToRun>(); }
+	{ return new TaskScheduleQueue(); }
+	
+	/**
+	 * Create the default queue if none has been set, yet. Done from whichever thread gets
+	 * here first, producer or consumer, since {@link #setQueueToUse} no longer applies once
+	 * the daemon is running.
+	 */
+	protected synchronized void ensureTaskQueue()
+	{
+		if ( mTaskQueue == null ) {
+			mTaskQueue = createNewQueue();
+		}
+		bCapacityFixed = true;
+	}
 	
 	/**
 	 * Set our specific queue instance to be used for determining task order.
@@ -78,20 +161,122 @@ public class ThreadTaskDaemon extends ThreadInterruptable
 	
 	/**
 	 * Tasks are either executed in their own thread or via the queue thread (or UI thread).
+	 * Prefer {@link #setWorkerCount(int)}, which does not create a thread per task.
 	 * @param bRunAsThread - should task be executed in its own thread or not (default: TRUE)
 	 * @return Returns this object so that a chain-call can be continued.
 	 */
 	public ThreadTaskDaemon setRunTaskAsThread( boolean bRunAsThread )
 	{ bExecuteTaskAsSeparateThread = bRunAsThread; return this; }
 	
+	/** @return Returns the number of threads pulling tasks from the queue. */
+	public int getWorkerCount()
+	{ return mWorkerCount; }
+	
+	/**
+	 * Run the queued tasks on a pool of threads: this daemon thread plus aCount-1 worker
+	 * threads named after it, all pulling from the same queue. Tasks still start in queue
+	 * order, but no longer finish in it. Has no effect once the daemon is started.
+	 * @param aCount - number of threads, see {@link #getDefaultWorkerCount()}.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public ThreadTaskDaemon setWorkerCount( int aCount )
+	{
+		if ( !isAlive() ) {
+			mWorkerCount = Math.max(aCount, 1);
+		}
+		return this;
+	}
+	
+	/** @return Returns the most tasks the queue may hold, 0 if unbounded. */
+	public int getCapacity()
+	{ return mCapacity; }
+	
+	/**
+	 * Bound the queue so a producer outrunning the workers cannot exhaust memory. Cancelled
+	 * tasks still take up room until their turn comes. Has no effect once a task has been
+	 * queued or the daemon started.
+	 * @param aCapacity - most tasks the queue may hold, 0 for no limit (the default).
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public synchronized ThreadTaskDaemon setCapacity( int aCapacity )
+	{
+		if ( !bCapacityFixed ) {
+			mCapacity = Math.max(aCapacity, 0);
+			mQueueSlots = ( mCapacity > 0 ) ? new Semaphore(mCapacity) : null;
+		}
+		return this;
+	}
+	
+	/** @return Returns the overload policy, one of the OVERLOAD_* constants. */
+	public int getOverloadPolicy()
+	{ return mOverloadPolicy; }
+	
+	/**
+	 * Decide what happens to a task queued while the queue is at capacity.
+	 * @param aPolicy - one of the OVERLOAD_* constants, default is {@link #OVERLOAD_BLOCK}.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public ThreadTaskDaemon setOverloadPolicy( int aPolicy )
+	{ mOverloadPolicy = aPolicy; return this; }
+	
+	/** @return Returns a worker count suited to CPU bound tasks, one per core. */
+	static public int getDefaultWorkerCount()
+	{ return Math.max(Runtime.getRuntime().availableProcessors(), 1); }
+	
 	@Override
 	public void run()
 	{
-		if ( mTaskQueue == null )
-		{ setQueueToUse(createNewQueue()); }
+		if ( mTaskQueue == null ) {
+			if ( TextUtils.isEmpty(getName()) ) {
+				setProcessName(getClass().getSimpleName());
+			}
+			ensureTaskQueue();
+		}
+		if ( !(mTaskQueue instanceof BlockingQueue<?>) && mIdleStrategy == null ) {
+			setIdleStrategy(BackoffIdleStrategy.getDefault());
+		}
+		startWorkers();
 		super.run();
 	}
 	
+	/**
+	 * Start the worker threads helping this one, if any.
+	 */
+	protected void startWorkers()
+	{
+		synchronized (mWorkers) {
+			for (int i=mWorkers.size()+1; i<mWorkerCount; i++) {
+				ThreadInterruptable theWorker = new ThreadInterruptable() {
+					@Override
+					protected void runIteration()
+					{ runNextTask(); }
+					
+					@Override
+					public void runTask()
+					{ runNextTask(); }
+				};
+				theWorker.setDaemon(true);
+				theWorker.setProcessName(getName() + "-" + i);
+				theWorker.setProcessPriority(getPriority());
+				theWorker.setIdleStrategy(mIdleStrategy);
+				mWorkers.add(theWorker);
+				theWorker.execute();
+			}
+		}
+	}
+	
+	@Override
+	public void halt()
+	{
+		synchronized (mWorkers) {
+			for (ThreadInterruptable theWorker : mWorkers) {
+				theWorker.halt();
+			}
+			mWorkers.clear();
+		}
+		super.halt();
+	}
+	
 	/**
 	 * Find a specific task in the queue and return it.
 	 * @param aID - the ID of the task to search for.
@@ -99,14 +284,22 @@ public class ThreadTaskDaemon extends ThreadInterruptable
 	 */
 	public TaskToRun findTaskByID( String aID )
 	{
-		if ( aID != null && mTaskQueue != null ) {
-			for (TaskToRun theTask : mTaskQueue) {
-				if ( aID.equals(theTask.getTaskID()) ) {
-					return theTask;
-				}
-			}
+		return ( aID != null ) ? mPendingTasks.get(aID) : null;
+	}
+	
+	/**
+	 * Remove a pending task so that it will not run. The task is cancelled and dropped from
+	 * the ID index right away; the queue skips it once its turn comes.
+	 * @param aID - the ID of the task to remove.
+	 * @return Returns the task removed, NULL if no such task was pending.
+	 */
+	public TaskToRun removeTask( String aID )
+	{
+		TaskToRun theTask = ( aID != null ) ? mPendingTasks.remove(aID) : null;
+		if ( theTask != null ) {
+			theTask.cancel();
 		}
-		return null;
+		return theTask;
 	}
 
 	/**
@@ -132,44 +325,255 @@ public class ThreadTaskDaemon extends ThreadInterruptable
 	 * @return Returns TRUE if successfully added to the queue.
 	 * @throws InterruptedException a blocking queue might get interrupted.
 	 */
-	@SuppressWarnings("unchecked cast,UnusedReturnValue")
+	@SuppressWarnings("UnusedReturnValue")
 	public boolean pushTask( TaskToRun aTask ) throws InterruptedException
 	{
 		if (aTask==null)
 			throw new IllegalArgumentException("Queuing up a NULL task, the shame!");
-		if ( mTaskQueue instanceof BlockingQueue<?> ) {
-			((BlockingQueue<TaskToRun>)mTaskQueue).put(aTask);
-			return true;
+		String theTaskID = aTask.getTaskID();
+		TaskToRun theSameID = null;
+		if ( theTaskID != null ) {
+			theSameID = mPendingTasks.put(theTaskID, aTask);
 		}
-		else {
-			return mTaskQueue.add(aTask);
+		boolean bQueued = false;
+		try {
+			bQueued = offerTask(aTask, theSameID);
+		} finally {
+			if ( !bQueued && theTaskID != null ) {
+				restorePendingTask(theTaskID, aTask, theSameID);
+			}
+		}
+		return bQueued;
+	}
+	
+	/**
+	 * Undo the index update of {@link #pushTask(TaskToRun)} for a task which did not end up
+	 * queued, handing the ID back to the task it displaced so that the still queued task
+	 * can be found and no duplicate is admitted.
+	 * @param aTaskID - the ID of both tasks.
+	 * @param aTask - the task which was not queued.
+	 * @param aSameID - the pending task aTask displaced, if any.
+	 */
+	protected void restorePendingTask( String aTaskID, TaskToRun aTask, TaskToRun aSameID )
+	{
+		if ( aSameID == null ) {
+			mPendingTasks.remove(aTaskID, aTask);
+		}
+		else if ( mPendingTasks.replace(aTaskID, aTask, aSameID) && !mTaskQueue.contains(aSameID) ) {
+			//dequeued meanwhile, so its own index removal missed
+			mPendingTasks.remove(aTaskID, aSameID);
 		}
 	}
 	
+	/**
+	 * Place the task into the queue without touching the ID index.
+	 * @param aTask - the task to execute.
+	 * @return Returns TRUE if successfully added to the queue.
+	 * @throws InterruptedException a blocking queue might get interrupted.
+	 */
+	protected boolean offerTask( TaskToRun aTask ) throws InterruptedException
+	{ return offerTask(aTask, null); }
+	
+	/**
+	 * Place the task into the queue without touching the ID index, applying the overload
+	 * policy if the queue is full.
+	 * @param aTask - the task to execute.
+	 * @param aSameID - the pending task aTask took the ID of in the index, if any.
+	 * @return Returns TRUE if successfully added to the queue, or run by the caller.
+	 * @throws InterruptedException a blocking queue might get interrupted.
+	 */
+	@SuppressWarnings("unchecked cast")
+	protected boolean offerTask( TaskToRun aTask, TaskToRun aSameID ) throws InterruptedException
+	{
+		ensureTaskQueue();
+		Semaphore theSlots = mQueueSlots;
+		if ( theSlots != null && !theSlots.tryAcquire() ) {
+			switch ( mOverloadPolicy ) {
+				case OVERLOAD_BLOCK:
+					theSlots.acquire();
+					break;
+				case OVERLOAD_DROP_OLDEST:
+					acquireSlotFromOldest(theSlots);
+					break;
+				case OVERLOAD_CALLER_RUNS:
+					mMetrics.recordRejected();
+					if ( aTask.getTaskID() != null ) {
+						restorePendingTask(aTask.getTaskID(), aTask, aSameID);
+					}
+					aTask.runTask();
+					return true;
+				case OVERLOAD_COALESCE:
+					//the pending task's spot goes to its replacement
+					if ( aSameID != null && mTaskQueue.remove(aSameID) ) {
+						onTaskDequeued(aSameID);
+						onTaskRejected(aSameID);
+						break;
+					}
+					//no task to replace, drop the new one
+				default:
+					onTaskRejected(aTask);
+					return false;
+			}
+		}
+		long theQueuedAt = TaskMetrics.now();
+		aTask.mMetricsQueuedAt = theQueuedAt;
+		if ( theQueuedAt != 0L ) {
+			aTask.setMetrics(mMetrics);
+			mMetrics.recordEnqueue();
+		}
+		boolean bQueued = false;
+		try {
+			if ( mTaskQueue instanceof BlockingQueue<?> ) {
+				((BlockingQueue<TaskToRun>)mTaskQueue).put(aTask);
+				bQueued = true;
+			}
+			else {
+				bQueued = mTaskQueue.add(aTask);
+				if ( bQueued ) {
+					wakeUpAll();
+				}
+			}
+		} finally {
+			if ( !bQueued && theQueuedAt != 0L ) {
+				mMetrics.recordDequeue();
+			}
+			if ( !bQueued && theSlots != null ) {
+				theSlots.release();
+			}
+		}
+		return bQueued;
+	}
+	
+	/**
+	 * Wake up this thread and the workers, should they be idle polling the queue.
+	 */
+	protected void wakeUpAll()
+	{
+		wakeUp();
+		for (ThreadInterruptable theWorker : mWorkers) {
+			theWorker.wakeUp();
+		}
+	}
+	
+	/**
+	 * Make room by dropping the least urgent pending task, see {@link #OVERLOAD_DROP_OLDEST},
+	 * its spot going to the caller. Should workers empty the queue meanwhile, a spot they
+	 * freed is taken instead.
+	 * @param aSlots - the queue's permits.
+	 */
+	protected void acquireSlotFromOldest( Semaphore aSlots )
+	{
+		while ( !aSlots.tryAcquire() ) {
+			TaskToRun theVictim = ( mTaskQueue instanceof TaskScheduleQueue )
+					? ((TaskScheduleQueue)mTaskQueue).pollLeastUrgent()
+					: mTaskQueue.poll();
+			if ( theVictim != null ) {
+				onTaskDequeued(theVictim);
+				onTaskRejected(theVictim);
+				return;
+			}
+			//a worker took the last task but has yet to free its spot
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * A task was turned away because the queue was full, either the one being queued or
+	 * one dropped to make room for it. Counts it, logs it and fails its TaskFuture, if any,
+	 * or the TaskFuture waiting on it should it be a TaskFuture callback.
+	 * @param aTask - the task which will not be run.
+	 */
+	protected void onTaskRejected( TaskToRun aTask )
+	{
+		mMetrics.recordRejected();
+		Log.w(getName(), "[" + aTask.getTaskID() + "] rejected, the task queue is full.");
+		if ( aTask.getTask() instanceof TaskFuture<?> ) {
+			((TaskFuture<?>)aTask.getTask()).fail(new RejectedExecutionException("task queue is full"));
+		}
+		else if ( aTask.getTask() instanceof TaskFuture.Callback ) {
+			((TaskFuture<?>.Callback)aTask.getTask()).onRejected(
+					new RejectedExecutionException("task queue is full"));
+		}
+		aTask.cancel();
+	}
+	
 	/**
 	 * Pop off the next task for us to process.
-	 * @return Returns the task to execute.
+	 * @return Returns the task to execute, NULL if a non-blocking queue is empty.
 	 * @throws InterruptedException a blocking queue might get interrupted.
 	 */
 	@SuppressWarnings("unchecked cast,UnusedReturnValue")
 	public TaskToRun pullTask() throws InterruptedException
 	{
 		if ( mTaskQueue == null ) halt();
+		TaskToRun theTask;
 		if ( mTaskQueue instanceof BlockingQueue<?> ) {
-			return ((BlockingQueue<TaskToRun>)mTaskQueue).take();
+			theTask = ((BlockingQueue<TaskToRun>)mTaskQueue).take();
 		}
 		else {
-			return mTaskQueue.remove();
+			theTask = mTaskQueue.poll();
+			if ( theTask == null ) {
+				reportNoWork();
+			}
+		}
+		if ( theTask != null ) {
+			onTaskDequeued(theTask);
+			Semaphore theSlots = mQueueSlots;
+			if ( theSlots != null ) {
+				theSlots.release();
+			}
+		}
+		return theTask;
+	}
+	
+	/**
+	 * Bookkeeping for a task which left the queue, whether to run or not. Its spot in a
+	 * bounded queue is not freed here, it may be handed to another task.
+	 * @param aTask - the task taken from the queue.
+	 */
+	protected void onTaskDequeued( TaskToRun aTask )
+	{
+		if ( aTask.getTaskID() != null ) {
+			mPendingTasks.remove(aTask.getTaskID(), aTask);
+		}
+		if ( aTask.mMetricsQueuedAt != 0L ) {
+			mMetrics.recordDequeue();
 		}
 	}
 	
 	@Override
 	public void runTask()
+	{ runNextTask(); }
+	
+	/**
+	 * Tasks record their own times, so the loop iterations, which include waiting on an
+	 * empty queue, are not measured.
+	 */
+	@Override
+	protected void runIteration()
+	{ runNextTask(); }
+	
+	/**
+	 * Pull the next task from the queue and run it. Called by this thread as well as by
+	 * any worker threads.
+	 */
+	protected void runNextTask()
 	{
-		if ( !isInterrupted() ) try {
+		if ( !Thread.currentThread().isInterrupted() ) try {
 			TaskToRun theTask = pullTask();
-			if ( theTask != null ) {
-				if ( bExecuteTaskAsSeparateThread ) {
+			if ( theTask != null && theTask.isCancelled() ) {
+				if ( TaskMetrics.isEnabled() ) {
+					mMetrics.recordCancelled();
+				}
+			}
+			else if ( theTask != null ) {
+				if ( theTask.isPastDeadline(SystemClock.uptimeMillis()) ) {
+					if ( TaskMetrics.isEnabled() ) {
+						mMetrics.recordExpired();
+					}
+					onTaskExpired(theTask);
+				}
+				else if ( bExecuteTaskAsSeparateThread ) {
 					theTask.execute();
 				}
 				else {
@@ -181,6 +585,44 @@ public class ThreadTaskDaemon extends ThreadInterruptable
 		}
 	}
 	
+	/**
+	 * A task's deadline passed before it could start, so it is dropped. Logs the fact and
+	 * runs the task's {@link TaskToRun#getOnDeadlineMissed()}, if any, on the current thread.
+	 * @param aTask - the task which will not be run.
+	 */
+	protected void onTaskExpired( TaskToRun aTask )
+	{
+		Log.w(getName(), "[" + aTask.getTaskID() + "] missed its deadline by " +
+				(SystemClock.uptimeMillis() - aTask.getDeadline()) + "ms, dropped.");
+		Runnable theReport = aTask.getOnDeadlineMissed();
+		if ( theReport != null ) {
+			theReport.run();
+		}
+		if ( aTask.getTask() instanceof TaskFuture<?> ) {
+			((TaskFuture<?>)aTask.getTask()).fail(new TimeoutException("missed its deadline"));
+		}
+	}
+	
+	/**
+	 * Add task to the queue with a priority class and deadline. Builder-chain friendly.
+	 * @param aTask - the task to add to the queue
+	 * @param aName - the task name.
+	 * @param aPriorityClass - one of the TaskToRun.PRIORITY_CLASS_* constants.
+	 * @param aTimeToLive - milliseconds the task may wait to start, 0 for no deadline.
+	 * @return Returns this object so that a chain-call can be continued.
+	 * @throws InterruptedException a blocking queue might get interrupted.
+	 */
+	public ThreadTaskDaemon queueTask(Runnable aTask, String aName, int aPriorityClass,
+			long aTimeToLive) throws InterruptedException
+	{
+		TaskToRun theTask = TaskToRun.prepThisTask(aTask, aName).setPriorityClass(aPriorityClass);
+		if ( aTimeToLive > 0L ) {
+			theTask.setTimeToLive(aTimeToLive);
+		}
+		pushTask(theTask);
+		return this;
+	}
+	
 	/**
 	 * Stops this thread after the current task is finished.
 	 */
@@ -190,6 +632,11 @@ public class ThreadTaskDaemon extends ThreadInterruptable
 		//just set mBreakman to null and loop will end after
 		//  current task finishes and before another task is started.
 		mBreakman = null;
+		synchronized (mWorkers) {
+			for (ThreadInterruptable theWorker : mWorkers) {
+				theWorker.mBreakman = null;
+			}
+		}
     }
 	
 	/**
@@ -204,6 +651,35 @@ public class ThreadTaskDaemon extends ThreadInterruptable
 		return this;
 	}
 
+	/**
+	 * Add task to the queue, getting a handle on its result.
+	 * @param aTask - the task to add to the queue
+	 * @param aName - the task name.
+	 * @param <V> - class of the result.
+	 * @return Returns the handle used to get the result, chain follow-up work or cancel.
+	 * @throws InterruptedException a blocking queue might get interrupted.
+	 */
+	public <V> TaskFuture<V> queueTask(Callable<V> aTask, String aName) throws InterruptedException
+	{
+		if ( aTask == null ) {
+			throw new IllegalArgumentException("Queuing up a NULL task, the shame!");
+		}
+		TaskFuture<V> theResult = new TaskFuture<V>(aTask);
+		TaskToRun theTask = TaskToRun.prepThisTask(theResult, aName);
+		theResult.setTaskToRun(theTask);
+		pushTask(theTask);
+		return theResult;
+	}
+	
+	/**
+	 * Runnables given to this Executor are queued as tasks named after this daemon; handy
+	 * for running {@link TaskFuture} callbacks. One the bounded queue turns away throws
+	 * a RejectedExecutionException.
+	 * @return Returns the Executor view of this daemon.
+	 */
+	public Executor getExecutor()
+	{ return mExecutor; }
+	
 	/**
 	 * Add task that needs to be run on the UI thread to the queue. Builder-chain friendly.
 	 * @param aTask - the task to add to the queue
@@ -242,77 +718,83 @@ public class ThreadTaskDaemon extends ThreadInterruptable
 	 * @return Returns TRUE if the task ID is found in the queue already.
 	 */
 	protected boolean isTaskQueued( String aTaskID )
-	{ return (findTaskByID(aTaskID)!=null); }
+	{ return ( aTaskID != null && mPendingTasks.containsKey(aTaskID) ); }
+	
+	/**
+	 * Queue the task unless one with the same ID is already pending. Claiming the ID in the
+	 * index is what decides, so no lock is needed to keep concurrent callers from both
+	 * queueing the same ID.
+	 * @param aTask - the task to queue, its ID determines uniqueness.
+	 * @return Returns TRUE if queued, FALSE if a task with that ID was already pending.
+	 */
+	protected boolean pushUniqueTask( TaskToRun aTask )
+	{
+		String theTaskID = aTask.getTaskID();
+		if ( mPendingTasks.putIfAbsent(theTaskID, aTask) != null ) {
+			Log.w(getName(), "[" + theTaskID + "] already exists in task queue, ignoring.");
+			return false;
+		}
+		try {
+			if ( offerTask(aTask) )
+				return true;
+			mPendingTasks.remove(theTaskID, aTask);
+			return false;
+		} catch (InterruptedException e) {
+			mPendingTasks.remove(theTaskID, aTask);
+			Log.w(getName(), "[" + theTaskID + "] avoided the task queue: interrupted (non-fatal exception).");
+			return false;
+		}
+	}
 
 	/**
 	 * Queue the task into our task queue by first checking to make sure it isn't already
-	 * there.  Ensure other threads aren't adding to our queue by synchronizing the method.
+	 * there.  Other threads may be adding to our queue at the same time, the ID index
+	 * ensures only one of them succeeds.
 	 * @param aTask - the task to add to the queue
 	 * @param aTaskID - the task ID which determined uniqueness.
 	 * @param aTaskName - the task name which determines priority sort order, if necessary.
 	 * @return Returns this object so that a chain-call can be continued.
 	 */
-	public synchronized ThreadTaskDaemon queueUniqueTask( Runnable aTask,
+	public ThreadTaskDaemon queueUniqueTask( Runnable aTask,
 			String aTaskID, String aTaskName )
 	{
-		if ( isTaskQueued(aTaskID) ) {
-			Log.w(getName(), "[" + aTaskID + "] already exists in task queue, ignoring.");
-			return this;
-		}
-		try {
-			pushTask(TaskToRun.prepThisTask(aTask, aTaskName).setTaskID(aTaskID));
+		if ( pushUniqueTask(TaskToRun.prepThisTask(aTask, aTaskName).setTaskID(aTaskID)) ) {
 			Log.i(getName(), "[" + aTaskID + "] was added to the task queue.");
-		} catch (InterruptedException e) {
-			Log.w(getName(), "[" + aTaskID + "] avoided the task queue: interrupted (non-fatal exception).");
 		}
 		return this;
 	}
 
 	/**
 	 * Queue the task into our task queue by first checking to make sure it isn't already
-	 * there.  Ensure other threads aren't adding to our queue by synchronizing the method.
+	 * there.  Other threads may be adding to our queue at the same time, the ID index
+	 * ensures only one of them succeeds.
 	 * @param aTask - the task to add to the queue
 	 * @param aTaskID - the task ID which determined uniqueness.
 	 * @param aTaskName - the task name which determines priority sort order, if necessary.
 	 * @param aAct - Activity of the UI thread.
 	 * @return Returns this object so that a chain-call can be continued.
 	 */
-	public synchronized ThreadTaskDaemon queueUniqueTaskOnUI( Runnable aTask,
+	public ThreadTaskDaemon queueUniqueTaskOnUI( Runnable aTask,
 			String aTaskID, String aTaskName, Activity aAct )
 	{
-		if ( isTaskQueued(aTaskID) ) {
-			Log.w(getName(), "[" + aTaskID + "] already exists in task queue, ignoring.");
-			return this;
-		}
-		try {
-			pushTask(TaskToRun.prepThisTaskOnUI(aTask, aAct).setTaskName(aTaskName).setTaskID(aTaskID));
-		} catch (InterruptedException e) {
-			Log.w(getName(), "[" + aTaskID + "] avoided the task queue: interrupted (non-fatal exception).");
-		}
+		pushUniqueTask(TaskToRun.prepThisTaskOnUI(aTask, aAct).setTaskName(aTaskName).setTaskID(aTaskID));
 		return this;
 	}
 
 	/**
 	 * Queue the task into our task queue by first checking to make sure it isn't already
-	 * there.  Ensure other threads aren't adding to our queue by synchronizing the method.
+	 * there.  Other threads may be adding to our queue at the same time, the ID index
+	 * ensures only one of them succeeds.
 	 * @param aTask - the task to add to the queue
 	 * @param aTaskID - the task ID which determined uniqueness.
 	 * @param aTaskName - the task name which determines priority sort order, if necessary.
 	 * @param aContext - Context needed to determine the UI thread.
 	 * @return Returns this object so that a chain-call can be continued.
 	 */
-	public synchronized ThreadTaskDaemon queueUniqueTaskOnUI( Runnable aTask,
+	public ThreadTaskDaemon queueUniqueTaskOnUI( Runnable aTask,
 			String aTaskID, String aTaskName, Context aContext )
 	{
-		if ( isTaskQueued(aTaskID) ) {
-			Log.w(getName(), "[" + aTaskID + "] already exists in task queue, ignoring.");
-			return this;
-		}
-		try {
-			pushTask(TaskToRun.prepThisTaskOnUI(aTask, aContext).setTaskName(aTaskName).setTaskID(aTaskID));
-		} catch (InterruptedException e) {
-			Log.w(getName(), "[" + aTaskID + "] avoided the task queue: interrupted (non-fatal exception).");
-		}
+		pushUniqueTask(TaskToRun.prepThisTaskOnUI(aTask, aContext).setTaskName(aTaskName).setTaskID(aTaskID));
 		return this;
 	}
 
@@ -0,0 +1,445 @@
+package com.blackmoonit.androidbits.concurrent;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel which multiplexes one-shot and periodic work onto a single timer
+ * thread, handing expired timers to a pool of worker threads, instead of every periodic
+ * job owning a thread that mostly sleeps.<br>
+ * Time is divided into ticks; a timer lands in the wheel slot of the tick it is due in,
+ * so scheduling, rescheduling and cancelling are O(1). Timers are accurate to a tick;
+ * a timer given some slack is rounded up to a multiple of that slack so that timers which
+ * fall close together fire in the same tick.<br>
+ * The timer thread blocks while no timers are pending and otherwise sleeps until the
+ * earliest one is due, skipping the empty ticks in between. A timer never runs alongside
+ * itself; one scheduled while running waits for the run to end.
+ * @author baracudda
+ */
+@SuppressWarnings("unused, UnusedReturnValue")
+public class TimerWheel
+{
+	static private final String TAG = "TimerWheel";
+	/** Default tick length in milliseconds. */
+	static public final long DEFAULT_TICK = 10L;
+	/** Default number of slots in the wheel. */
+	static public final int DEFAULT_SLOTS = 512;
+	static private volatile TimerWheel mShared = null;
+
+	protected final long mTickLength;
+	protected final Timer[] mSlots;
+	protected final int mSlotMask;
+	protected final long mStartTime = SystemClock.uptimeMillis();
+	/** The last tick processed, only touched by the timer thread. */
+	protected long mTick = 0L;
+	/** Number of timers linked into the wheel, only touched by the timer thread. */
+	protected int mLinkedCount = 0;
+	/** Timers scheduled, rescheduled or cancelled since the last tick. */
+	protected final ConcurrentLinkedQueue<Timer> mChanged = new ConcurrentLinkedQueue<Timer>();
+	protected final Object mIdleLock = new Object();
+	protected volatile boolean bIdle = false;
+	protected final ThreadInterruptable mTimerThread;
+	protected final ThreadTaskDaemon mWorkers;
+
+	/**
+	 * One-shot or periodic piece of work scheduled on a {@link TimerWheel}.
+	 */
+	public class Timer implements Runnable
+	{
+		static protected final int STATE_IDLE = 0;
+		static protected final int STATE_PENDING = 1;
+		static protected final int STATE_EXPIRED = 2;
+		static protected final int STATE_RUNNING = 3;
+		static protected final int STATE_CANCELLED = 4;
+		protected final Runnable mTask;
+		protected final String mName;
+		protected final AtomicInteger mState = new AtomicInteger(STATE_IDLE);
+		protected volatile long mDeadline = 0L;
+		/** Fixed delay between the end of one run and the start of the next, 0 if one-shot. */
+		protected volatile long mPeriod = 0L;
+		/** Deadlines are rounded up to a multiple of this, if positive. */
+		protected volatile long mSlack = 0L;
+		//guarded by this timer's lock
+		protected boolean bRunning = false;
+		/** A schedule() made while running, applied once the run ends. */
+		protected boolean bRerunRequested = false;
+		protected long mRerunDelay = 0L;
+		//wheel linkage, only touched by the timer thread
+		protected Timer mPrev = null;
+		protected Timer mNext = null;
+		protected int mSlot = -1;
+		protected long mDueTick = 0L;
+
+		protected Timer( Runnable aTask, String aName )
+		{
+			if ( aTask == null )
+				throw new IllegalArgumentException("Timing a NULL task, the shame!");
+			mTask = aTask;
+			mName = ( aName != null ) ? aName : TAG;
+		}
+
+		/**
+		 * Allow this timer to fire up to aSlack milliseconds late so that it can share a
+		 * tick with other timers due around the same time.
+		 * @param aSlack - milliseconds of slack, 0 for none.
+		 * @return Returns this object so that a chain-call can be continued.
+		 */
+		public Timer setSlack( long aSlack )
+		{ mSlack = Math.max(aSlack, 0L); return this; }
+
+		/**
+		 * Run the task once after a delay, replacing any previous schedule.
+		 * @param aDelay - milliseconds from now.
+		 * @return Returns this object so that a chain-call can be continued.
+		 */
+		public Timer schedule( long aDelay )
+		{ return schedule(aDelay, 0L); }
+
+		/**
+		 * Run the task after a delay and then repeatedly, waiting aPeriod milliseconds after
+		 * each run finishes, until cancelled. Replaces any previous schedule. Called while
+		 * the task runs, the delay counts from the end of that run instead.
+		 * @param aDelay - milliseconds from now until the first run.
+		 * @param aPeriod - milliseconds between the end of a run and the next, 0 for one-shot.
+		 * @return Returns this object so that a chain-call can be continued.
+		 */
+		public Timer schedule( long aDelay, long aPeriod )
+		{
+			//locked against a run starting or ending meanwhile
+			synchronized (this) {
+				mPeriod = Math.max(aPeriod, 0L);
+				if ( bRunning ) {
+					//linking it now could start a second run alongside this one
+					bRerunRequested = true;
+					mRerunDelay = aDelay;
+					mState.set(STATE_RUNNING);
+					return this;
+				}
+				setDeadline(aDelay);
+				mState.set(STATE_PENDING);
+			}
+			changed(this);
+			return this;
+		}
+
+		/**
+		 * Move the next run to aDelay milliseconds from now, keeping the period. Also revives
+		 * a cancelled or finished timer.
+		 * @param aDelay - milliseconds from now.
+		 * @return Returns this object so that a chain-call can be continued.
+		 */
+		public Timer reschedule( long aDelay )
+		{ return schedule(aDelay, mPeriod); }
+
+		/**
+		 * Stop this timer. A run in progress finishes but a periodic timer will not run again.
+		 * @return Returns TRUE if the timer was pending or running.
+		 */
+		public boolean cancel()
+		{
+			int thePrevState = mState.getAndSet(STATE_CANCELLED);
+			if ( thePrevState == STATE_PENDING ) {
+				changed(this);
+			}
+			return ( thePrevState != STATE_IDLE && thePrevState != STATE_CANCELLED );
+		}
+
+		/** @return Returns TRUE if waiting to run. */
+		public boolean isPending()
+		{
+			int theState = mState.get();
+			return ( theState == STATE_PENDING || theState == STATE_EXPIRED );
+		}
+
+		/** @return Returns TRUE if {@link #cancel()} was called and not rescheduled since. */
+		public boolean isCancelled()
+		{ return ( mState.get() == STATE_CANCELLED ); }
+
+		/** @return Returns the name used for the worker task. */
+		public String getName()
+		{ return mName; }
+
+		protected void setDeadline( long aDelay )
+		{
+			long theDeadline = SystemClock.uptimeMillis() + Math.max(aDelay, 0L);
+			long theSlack = mSlack;
+			if ( theSlack > 1L ) {
+				theDeadline = ((theDeadline + theSlack - 1L) / theSlack) * theSlack;
+			}
+			mDeadline = theDeadline;
+		}
+
+		/**
+		 * Called on a worker thread once the timer expires.
+		 */
+		@Override
+		public void run()
+		{
+			synchronized (this) {
+				if ( !mState.compareAndSet(STATE_EXPIRED, STATE_RUNNING) )
+					return; //cancelled or rescheduled after it expired
+				bRunning = true;
+			}
+			try {
+				mTask.run();
+			} catch (RuntimeException e) {
+				Log.e(TAG, "[" + mName + "] failed.", e);
+			} finally {
+				boolean bRearmed = false;
+				synchronized (this) {
+					bRunning = false;
+					boolean bRerun = bRerunRequested;
+					bRerunRequested = false;
+					//a cancel() since leaves the state alone, so the CAS fails
+					if ( (bRerun || mPeriod > 0L) && mState.compareAndSet(STATE_RUNNING, STATE_PENDING) ) {
+						setDeadline(( bRerun ) ? mRerunDelay : mPeriod);
+						bRearmed = true;
+					}
+					else {
+						mState.compareAndSet(STATE_RUNNING, STATE_IDLE);
+					}
+				}
+				if ( bRearmed ) {
+					changed(this);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param aTickLength - milliseconds per tick, the timer accuracy.
+	 * @param aSlotCount - number of slots in the wheel, rounded up to a power of two.
+	 * @param aWorkerCount - number of threads running expired timers.
+	 */
+	public TimerWheel( long aTickLength, int aSlotCount, int aWorkerCount )
+	{
+		mTickLength = Math.max(aTickLength, 1L);
+		int theSlots = 1;
+		while ( theSlots < aSlotCount ) {
+			theSlots <<= 1;
+		}
+		mSlots = new Timer[theSlots];
+		mSlotMask = theSlots - 1;
+		mWorkers = new ThreadTaskDaemon();
+		mWorkers.setProcessName(TAG + "Worker");
+		mWorkers.setWorkerCount(aWorkerCount);
+		mTimerThread = new ThreadInterruptable() {
+			@Override
+			public void runTask() throws InterruptedException
+			{ processNextTick(); }
+		};
+		mTimerThread.setDaemon(true);
+		mTimerThread.setProcessName(TAG);
+		mTimerThread.setProcessPriority(Thread.NORM_PRIORITY);
+	}
+
+	/**
+	 * The wheel shared by the whole app, started on first use.
+	 * @return Returns the shared instance.
+	 */
+	static public TimerWheel getShared()
+	{
+		if ( mShared == null ) {
+			synchronized (TimerWheel.class) {
+				if ( mShared == null ) {
+					mShared = new TimerWheel(DEFAULT_TICK, DEFAULT_SLOTS,
+							ThreadTaskDaemon.getDefaultWorkerCount()).start();
+				}
+			}
+		}
+		return mShared;
+	}
+
+	/**
+	 * Start the timer and worker threads.
+	 * @return Returns this object so that a chain-call can be continued.
+	 */
+	public TimerWheel start()
+	{
+		mWorkers.execute();
+		mTimerThread.execute();
+		return this;
+	}
+
+	/**
+	 * Stop the timer and worker threads; pending timers will not fire.
+	 */
+	public void halt()
+	{
+		mTimerThread.halt();
+		mWorkers.halt();
+	}
+
+	/**
+	 * Create a timer which is not scheduled, yet.
+	 * @param aTask - the task to run when the timer fires.
+	 * @param aName - name used for logging, may be NULL.
+	 * @return Returns the new timer.
+	 */
+	public Timer newTimer( Runnable aTask, String aName )
+	{ return new Timer(aTask, aName); }
+
+	/**
+	 * Run the task once after a delay.
+	 * @param aTask - the task to run.
+	 * @param aDelay - milliseconds from now.
+	 * @return Returns the timer, which may be cancelled or rescheduled.
+	 */
+	public Timer schedule( Runnable aTask, long aDelay )
+	{ return newTimer(aTask, null).schedule(aDelay); }
+
+	/**
+	 * Run the task after a delay and then every aPeriod milliseconds after each run.
+	 * @param aTask - the task to run.
+	 * @param aName - name used for logging, may be NULL.
+	 * @param aDelay - milliseconds from now until the first run.
+	 * @param aPeriod - milliseconds between the end of a run and the start of the next.
+	 * @return Returns the timer, which may be cancelled or rescheduled.
+	 */
+	public Timer schedulePeriodic( Runnable aTask, String aName, long aDelay, long aPeriod )
+	{ return newTimer(aTask, aName).schedule(aDelay, Math.max(aPeriod, 1L)); }
+
+	/**
+	 * Hand a scheduled, rescheduled or cancelled timer to the timer thread.
+	 */
+	protected void changed( Timer aTimer )
+	{
+		mChanged.offer(aTimer);
+		if ( bIdle ) {
+			synchronized (mIdleLock) {
+				mIdleLock.notifyAll();
+			}
+		}
+	}
+
+	/** @return Returns the tick a time falls in, the first tick being 1. */
+	protected long tickOf( long aTime )
+	{ return (aTime - mStartTime) / mTickLength + 1L; }
+
+	/**
+	 * Wait until the earliest timer is due, or for a timer to be scheduled, rescheduled
+	 * or cancelled, then fire the timers due. Runs on the timer thread.
+	 * @throws InterruptedException if the wheel was halted.
+	 */
+	protected void processNextTick() throws InterruptedException
+	{
+		long theNextDueTick = findNextDueTick();
+		synchronized (mIdleLock) {
+			bIdle = true;
+			try {
+				while ( mChanged.isEmpty() ) {
+					if ( theNextDueTick == Long.MAX_VALUE ) {
+						mIdleLock.wait();
+						continue;
+					}
+					//a tick is processed once it has fully elapsed
+					long theWait = mStartTime + theNextDueTick * mTickLength - SystemClock.uptimeMillis();
+					if ( theWait <= 0L )
+						break;
+					mIdleLock.wait(theWait);
+				}
+			} finally {
+				bIdle = false;
+			}
+		}
+		long theCurrTick = tickOf(SystemClock.uptimeMillis()) - 1L;
+		//nothing is due before theNextDueTick, so the ticks up to it can be skipped
+		mTick = Math.max(mTick, Math.min(theCurrTick, theNextDueTick));
+		linkChangedTimers();
+		expireSlot((int)(mTick & mSlotMask));
+	}
+
+	/**
+	 * Find the earliest tick a linked timer is due in, looking at the slots ahead first.
+	 * @return Returns the tick, Long.MAX_VALUE if no timers are linked.
+	 */
+	protected long findNextDueTick()
+	{
+		long theResult = Long.MAX_VALUE;
+		if ( mLinkedCount == 0 )
+			return theResult;
+		for ( long theTick = mTick + 1L; theTick <= mTick + mSlots.length; theTick++ ) {
+			for ( Timer theTimer = mSlots[(int)(theTick & mSlotMask)]; theTimer != null; theTimer = theTimer.mNext ) {
+				if ( theTimer.mDueTick <= theTick )
+					return theTick;
+				theResult = Math.min(theResult, theTimer.mDueTick);
+			}
+		}
+		return theResult;
+	}
+
+	protected void linkChangedTimers()
+	{
+		Timer theTimer;
+		while ( (theTimer = mChanged.poll()) != null ) {
+			unlink(theTimer);
+			if ( theTimer.mState.get() == Timer.STATE_PENDING ) {
+				theTimer.mDueTick = Math.max(tickOf(theTimer.mDeadline), mTick);
+				link(theTimer, (int)(theTimer.mDueTick & mSlotMask));
+			}
+		}
+	}
+
+	protected void expireSlot( int aSlot )
+	{
+		Timer theTimer = mSlots[aSlot];
+		while ( theTimer != null ) {
+			Timer theNext = theTimer.mNext;
+			if ( theTimer.mDueTick <= mTick ) {
+				unlink(theTimer);
+				if ( theTimer.mState.compareAndSet(Timer.STATE_PENDING, Timer.STATE_EXPIRED) ) try {
+					mWorkers.pushTask(TaskToRun.prepThisTask(theTimer, theTimer.mName));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			theTimer = theNext;
+		}
+	}
+
+	protected void link( Timer aTimer, int aSlot )
+	{
+		aTimer.mSlot = aSlot;
+		aTimer.mPrev = null;
+		aTimer.mNext = mSlots[aSlot];
+		if ( aTimer.mNext != null )
+			aTimer.mNext.mPrev = aTimer;
+		mSlots[aSlot] = aTimer;
+		mLinkedCount += 1;
+	}
+
+	protected void unlink( Timer aTimer )
+	{
+		if ( aTimer.mSlot < 0 )
+			return;
+		if ( aTimer.mPrev != null )
+			aTimer.mPrev.mNext = aTimer.mNext;
+		else
+			mSlots[aTimer.mSlot] = aTimer.mNext;
+		if ( aTimer.mNext != null )
+			aTimer.mNext.mPrev = aTimer.mPrev;
+		aTimer.mPrev = null;
+		aTimer.mNext = null;
+		aTimer.mSlot = -1;
+		mLinkedCount -= 1;
+	}
+
+}
@@ -0,0 +1,280 @@
+package com.blackmoonit.androidbits.content;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.annotation.TargetApi;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keyset, or seek, pagination for {@link SqlContentProvider} queries. Instead of skipping
+ * OFFSET rows, which SQLite has to walk one by one, each page starts right after the sort
+ * key of the last row of the previous page, so an index on the sort columns takes any page
+ * straight to its first row.<br>
+ * Ask for the first page with an empty "after" parameter, {"content://blah/blah?limit=50&after="};
+ * the cursor's extras then hold the key of the next page, see {@link #getNextPageKey(Cursor)},
+ * which {@link #withAfterKey(Uri, String[])} turns into the Uri of the next page.<br>
+ * The sort order must be plain columns, each optionally ASC or DESC, and they must not hold
+ * NULLs; the table's ID column is appended to it to break ties. The key travels as text, so
+ * sort columns need a declared INTEGER, REAL or TEXT type for SQLite to compare it as such;
+ * REAL keys are written with full precision, which needs API 11 to tell them apart.
+ *
+ * @author baracudda
+ */
+public class KeysetPaging {
+	static public final String QUERY_AFTER = "after";
+	/**
+	 * Cursor extra holding the String[] sort key of the next page; missing on the last page.
+	 */
+	static public final String EXTRA_NEXT_PAGE_KEY = "com.blackmoonit.androidbits.NEXT_PAGE_KEY";
+
+	protected final String[] mColumns;
+	protected final boolean[] mDescending;
+	/**
+	 * Sort key to start after, NULL for the first page.
+	 */
+	protected final String[] mAfterKey;
+
+	protected KeysetPaging(String[] aColumns, boolean[] aDescending, String[] aAfterKey) {
+		mColumns = aColumns;
+		mDescending = aDescending;
+		mAfterKey = aAfterKey;
+	}
+
+	/**
+	 * Work out the paging requested by the Uri.
+	 * @param aUri - the query Uri.
+	 * @param aSortOrder - the ORDER BY clause without "ORDER BY".
+	 * @param aTiebreaker - unique column added to the sort order if not already in it.
+	 * @return Returns the paging to apply, NULL if the Uri did not ask for any.
+	 * @throws IllegalArgumentException if the sort order or the key cannot be used.
+	 */
+	static public KeysetPaging fromUri(Uri aUri, String aSortOrder, String aTiebreaker) {
+		List<String> theAfterKey = aUri.getQueryParameters(QUERY_AFTER);
+		if (theAfterKey==null || theAfterKey.isEmpty())
+			return null;
+		ArrayList<String> theColumns = new ArrayList<String>();
+		ArrayList<Boolean> theDescending = new ArrayList<Boolean>();
+		if (!TextUtils.isEmpty(aSortOrder)) {
+			for (String theTerm : aSortOrder.split(",")) {
+				String[] theTokens = theTerm.trim().split("\\s+");
+				String theDirection = (theTokens.length>1) ? theTokens[1].toUpperCase(Locale.US) : "ASC";
+				if (theTokens.length>2 || !(theDirection.equals("ASC") || theDirection.equals("DESC")))
+					throw new IllegalArgumentException("Keyset paging needs a sort order of plain columns: "+aSortOrder);
+				theColumns.add(theTokens[0]);
+				theDescending.add(theDirection.equals("DESC"));
+			}
+		}
+		if (aTiebreaker!=null && !theColumns.contains(aTiebreaker)) {
+			theColumns.add(aTiebreaker);
+			theDescending.add(false);
+		}
+		if (theColumns.isEmpty())
+			throw new IllegalArgumentException("Keyset paging needs a sort order.");
+		boolean[] theDescendingArray = new boolean[theDescending.size()];
+		for (int i=0; i<theDescendingArray.length; i++) {
+			theDescendingArray[i] = theDescending.get(i);
+		}
+		//a single empty value asks for the first page
+		String[] theKey = null;
+		if (theAfterKey.size()>1 || !TextUtils.isEmpty(theAfterKey.get(0))) {
+			if (theAfterKey.size()!=theColumns.size())
+				throw new IllegalArgumentException("Keyset paging key needs "+theColumns.size()+
+						" values, one per sort column: "+TextUtils.join(",", theColumns.toArray()));
+			theKey = theAfterKey.toArray(new String[theAfterKey.size()]);
+		}
+		return new KeysetPaging(theColumns.toArray(new String[theColumns.size()]),
+				theDescendingArray, theKey);
+	}
+
+	/**
+	 * @return Returns the ORDER BY clause, with the tiebreaker, to query with.
+	 */
+	public String getSortOrder() {
+		StringBuilder theResult = new StringBuilder();
+		for (int i=0; i<mColumns.length; i++) {
+			theResult.append((i>0) ? ", " : "").append(mColumns[i])
+					.append((mDescending[i]) ? " DESC" : " ASC");
+		}
+		return theResult.toString();
+	}
+
+	/**
+	 * Append the seek condition, written so that the leading sort column bounds the index
+	 * range, e.g. for (a, b):<br>
+	 * {@code a>=? AND (a>? OR (a=? AND (b>?)))}
+	 * @param aSelection - the selection so far, may be NULL.
+	 * @return Returns the selection including the seek condition.
+	 */
+	public String appendSelection(String aSelection) {
+		if (mAfterKey==null)
+			return aSelection;
+		StringBuilder theCondition = new StringBuilder();
+		theCondition.append(mColumns[0]).append((mDescending[0]) ? "<=?" : ">=?");
+		theCondition.append(" AND (");
+		for (int i=0; i<mColumns.length; i++) {
+			if (i>0)
+				theCondition.append(" OR (").append(mColumns[i-1]).append("=? AND (");
+			theCondition.append(mColumns[i]).append((mDescending[i]) ? "<?" : ">?");
+		}
+		for (int i=1; i<mColumns.length; i++) {
+			theCondition.append("))");
+		}
+		theCondition.append(")");
+		return SqlContentProvider.appendToSelection(aSelection, theCondition.toString());
+	}
+
+	/**
+	 * Append the arguments of the seek condition.
+	 * @param aSelectionArgs - the arguments so far, may be NULL.
+	 * @return Returns the arguments including those of the seek condition.
+	 */
+	public String[] appendSelArgs(String[] aSelectionArgs) {
+		if (mAfterKey==null)
+			return aSelectionArgs;
+		String[] theResult = aSelectionArgs;
+		theResult = SqlContentProvider.appendToSelArgs(theResult, mAfterKey[0]);
+		for (int i=0; i<mColumns.length; i++) {
+			if (i>0)
+				theResult = SqlContentProvider.appendToSelArgs(theResult, mAfterKey[i-1]);
+			theResult = SqlContentProvider.appendToSelArgs(theResult, mAfterKey[i]);
+		}
+		return theResult;
+	}
+
+	/**
+	 * Make sure the sort columns are part of the results so the next key can be read.
+	 * @param aProjection - the columns to query.
+	 * @return Returns the columns to query, with any missing sort columns added.
+	 */
+	public String[] ensureProjection(String[] aProjection) {
+		if (aProjection==null)
+			return null;
+		ArrayList<String> theResult = new ArrayList<String>(aProjection.length+mColumns.length);
+		for (String theColumn : aProjection) {
+			if (theColumn.equals("*"))
+				return aProjection;
+			theResult.add(theColumn);
+		}
+		for (String theColumn : mColumns) {
+			if (!theResult.contains(theColumn))
+				theResult.add(theColumn);
+		}
+		return theResult.toArray(new String[theResult.size()]);
+	}
+
+	/**
+	 * Wrap the page's cursor so its extras carry the key of the next page.
+	 * @param aCursor - the page of results.
+	 * @param aPageSize - the LIMIT used, 0 if none.
+	 * @return Returns the cursor to hand out.
+	 */
+	public Cursor wrap(Cursor aCursor, int aPageSize) {
+		return (aCursor!=null) ? new PageCursor(aCursor, mColumns, aPageSize) : null;
+	}
+
+	/**
+	 * Get the Uri of the page after the given key.
+	 * @param aUri - the Uri of the query, without any "after" parameters.
+	 * @param aKey - the key from {@link #getNextPageKey(Cursor)}, NULL for the first page.
+	 * @return Returns the Uri to query.
+	 */
+	static public Uri withAfterKey(Uri aUri, String[] aKey) {
+		Uri.Builder theBuilder = aUri.buildUpon();
+		if (aKey==null || aKey.length<1) {
+			theBuilder.appendQueryParameter(QUERY_AFTER, "");
+		} else {
+			for (String theValue : aKey) {
+				theBuilder.appendQueryParameter(QUERY_AFTER, theValue);
+			}
+		}
+		return theBuilder.build();
+	}
+
+	/**
+	 * Get the key of the page following the one in the cursor.
+	 * @param aCursor - a page of results.
+	 * @return Returns the key, NULL if the cursor holds the last page.
+	 */
+	static public String[] getNextPageKey(Cursor aCursor) {
+		Bundle theExtras = (aCursor!=null) ? aCursor.getExtras() : null;
+		return (theExtras!=null) ? theExtras.getStringArray(EXTRA_NEXT_PAGE_KEY) : null;
+	}
+
+	/**
+	 * Page of results which reports the key of the next page in its extras, worked out on
+	 * first request from the last row.
+	 */
+	static protected class PageCursor extends CursorWrapper {
+		protected final String[] mKeyColumns;
+		protected final int mPageSize;
+		protected Bundle mExtras = null;
+
+		protected PageCursor(Cursor aCursor, String[] aKeyColumns, int aPageSize) {
+			super(aCursor);
+			mKeyColumns = aKeyColumns;
+			mPageSize = aPageSize;
+		}
+
+		@Override
+		public Bundle getExtras() {
+			if (mExtras==null) {
+				Bundle theExtras = super.getExtras();
+				theExtras = (theExtras!=null) ? new Bundle(theExtras) : new Bundle();
+				int theCount = getCount();
+				//a short page is the last one
+				if (theCount>0 && (mPageSize<=0 || theCount>=mPageSize)) {
+					int thePosition = getPosition();
+					if (moveToLast()) {
+						String[] theKey = new String[mKeyColumns.length];
+						for (int i=0; i<theKey.length; i++) {
+							theKey[i] = getKeyValue(getColumnIndexOrThrow(mKeyColumns[i]));
+						}
+						theExtras.putStringArray(EXTRA_NEXT_PAGE_KEY, theKey);
+					}
+					moveToPosition(thePosition);
+				}
+				mExtras = theExtras;
+			}
+			return mExtras;
+		}
+
+		/**
+		 * SQLite turns a REAL into text with only 15 significant digits, which could skip or
+		 * repeat rows at page boundaries; Double.toString() is exact instead.
+		 * @param aColumnIndex - the key column.
+		 * @return Returns the key value of the current row as text.
+		 */
+		@TargetApi(11)
+		protected String getKeyValue(int aColumnIndex) {
+			if (Build.VERSION.SDK_INT<11 || getType(aColumnIndex)!=Cursor.FIELD_TYPE_FLOAT)
+				return getString(aColumnIndex);
+			double theValue = getDouble(aColumnIndex);
+			if (Double.isInfinite(theValue))
+				return (theValue>0) ? "9e999" : "-9e999"; //how SQLite spells infinity
+			return Double.toString(theValue);
+		}
+	}
+
+}
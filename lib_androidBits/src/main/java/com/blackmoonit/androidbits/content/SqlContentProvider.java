@@ -17,34 +17,94 @@ package com.blackmoonit.androidbits.content;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteProgram;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.BaseColumns;
 import android.text.TextUtils;
 
 import com.blackmoonit.androidbits.R;
+import com.blackmoonit.androidbits.database.ProviderDatabase;
+import com.blackmoonit.androidbits.database.SqlStatementCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Ancestor content provider that handles many of the mundane operations in a uniform way so that
  * any provider based on it will function similarly and with minimal hassle.
  * Query Uris can use the LIMIT and OFFSET keywords in their query as long as they make them part
  * of the Uri query parameters {"content://blah/blah?limit=1&offset=5"} as lowercase keys.
+ * Large result sets are better paged with the "after" key of {@link KeysetPaging} than OFFSET.
+ * Both {@link #bulkInsert(Uri, ContentValues[])} and {@link #applyBatch(ArrayList)} run in a
+ * single transaction and notify each affected Uri just once, after it commits.
+ * Past {@link #getNotifyCollapseThreshold()} row Uris of one table, the table Uri is notified
+ * instead, and {@link #getNotifyWindowMillis()} may gather the notifications of single writes.
+ * Writes to a Uri made by {@link #withoutNotify(Uri)} do not notify at all.
+ * Writes reuse compiled statements from a {@link SqlStatementCache}.
  *
  * @author baracudda
  */
 public abstract class SqlContentProvider extends ContentProvider {
 	static public final String QUERY_LIMIT = "limit";
 	static public final String QUERY_OFFSET = "offset";
+	/**
+	 * Uri query parameter which, set to "false", keeps a write from notifying observers.
+	 */
+	static public final String QUERY_NOTIFY = "notify";
+	static public final int DEFAULT_NOTIFY_COLLAPSE_THRESHOLD = 16;
 
 	protected SQLiteOpenHelper mDb;
 	protected UriMatcher mUriMatcher;
+	/**
+	 * Compiled write statements, shared with mDb if it is a {@link ProviderDatabase}.
+	 */
+	protected SqlStatementCache mStatementCache;
 	private int R_string_sql_content_provider_msg_insert_failed = 0;
 	private int R_string_sql_content_provider_msg_column_missing = 0;
+	/**
+	 * Notifications of the batch the current thread is running, if any.
+	 */
+	protected final ThreadLocal<NotifyBatch> mNotifyBatch = new ThreadLocal<NotifyBatch>();
+
+	/**
+	 * Change notifications held back until the batch they belong to is over.
+	 */
+	static protected class NotifyBatch {
+		protected int mDepth = 0;
+		protected final LinkedHashSet<Uri> mUris = new LinkedHashSet<Uri>();
+	}
+
+	/**
+	 * Notifications of writes outside any batch waiting for the window to close.
+	 */
+	protected final LinkedHashSet<Uri> mPendingUris = new LinkedHashSet<Uri>();
+	protected Handler mNotifyHandler = null;
+	protected final Runnable mSendPendingUris = new Runnable() {
+		@Override
+		public void run() {
+			sendPendingNotifications();
+		}
+	};
 
 	static protected int getResId(Context aContext, String aResType, String aResName) {
         try {
@@ -78,6 +138,9 @@ public abstract class SqlContentProvider extends ContentProvider {
 		R_string_sql_content_provider_msg_column_missing = getResId("string","sql_content_provider_msg_column_missing");
 		mUriMatcher = buildUriMatcher();
 		mDb = newDbInstance(getContext());
+		mStatementCache = (mDb instanceof ProviderDatabase)
+				? ((ProviderDatabase)mDb).getStatementCache()
+				: new SqlStatementCache(SqlStatementCache.DEFAULT_CAPACITY);
 		return (mDb!=null);
 	}
 
@@ -85,6 +148,9 @@ public abstract class SqlContentProvider extends ContentProvider {
 	 * Common cleanup when finished method called by shutdown() or finalize().
 	 */
 	protected void cleanup() {
+		sendPendingNotifications();
+		if (mStatementCache!=null)
+			mStatementCache.invalidate();
 		if (mDb!=null) {
 			mDb.close();
 			mDb = null;
@@ -104,6 +170,21 @@ public abstract class SqlContentProvider extends ContentProvider {
 		super.finalize();
 	}
 
+	/**
+	 * Match the Uri against {@link #mUriMatcher}.
+	 * @param aUri - the Uri to match.
+	 * @return Returns the match ID.
+	 * @throws UnsupportedOperationException if the Uri does not match any table.
+	 */
+	protected int matchUriOrThrow(Uri aUri) {
+		int theMatchId = mUriMatcher.match(aUri);
+		if (theMatchId==UriMatcher.NO_MATCH)
+			throw new UnsupportedOperationException(getContext().getString(
+					R.string.sql_contract_provider_msg_uri_no_match, aUri
+			));
+		return theMatchId;
+	}
+
 	protected abstract String getTableName(int aMatchId);
 
 	protected abstract String getDefaultSortOrder(int aMatchId);
@@ -165,14 +246,27 @@ public abstract class SqlContentProvider extends ContentProvider {
 		return theResult;
 	}
 
+	/**
+	 * Unique column used to break ties in the sort order of {@link KeysetPaging} queries.
+	 * @param aMatchId - match int defined in {@link #buildUriMatcher()}.
+	 * @return Returns the column name, {@link BaseColumns#_ID} by default.
+	 */
+	protected String getKeysetTiebreaker(int aMatchId) {
+		return BaseColumns._ID;
+	}
+
+	static protected int getQueryLimitValue(String aQueryLimit) {
+		try {
+			return (aQueryLimit!=null) ? Integer.parseInt(aQueryLimit.trim()) : 0;
+		} catch (NumberFormatException nfe) {
+			return 0;
+		}
+	}
+
 	@Override
 	public Cursor query(Uri aUri, String[] aProjection, String aSelection,
 			String[] aSelectionArgs, String aSortOrder) {
-		int theMatchId = mUriMatcher.match(aUri);
-		if (theMatchId==UriMatcher.NO_MATCH)
-			throw new UnsupportedOperationException(getContext().getString(
-					R.string.sql_contract_provider_msg_uri_no_match, aUri
-			));
+		int theMatchId = matchUriOrThrow(aUri);
 		if (TextUtils.isEmpty(aSortOrder)) {
 			aSortOrder = getDefaultSortOrder(theMatchId);
 		}
@@ -180,10 +274,22 @@ public abstract class SqlContentProvider extends ContentProvider {
 		String theSelection = appendSelection(aUri,theMatchId,aSelection);
 		String[] theSelectionArgs = appendSelArgs(aUri,theMatchId,aSelectionArgs);
 		String theQueryLimit = getQueryLimitClause(aUri);
+		KeysetPaging thePaging = KeysetPaging.fromUri(aUri, aSortOrder, getKeysetTiebreaker(theMatchId));
+		if (thePaging!=null) {
+			aSortOrder = thePaging.getSortOrder();
+			theCols = thePaging.ensureProjection(theCols);
+			theSelection = thePaging.appendSelection(theSelection);
+			theSelectionArgs = thePaging.appendSelArgs(theSelectionArgs);
+			//the key replaces any offset
+			theQueryLimit = aUri.getQueryParameter(QUERY_LIMIT);
+		}
 		Cursor theResult;
 		theResult = mDb.getReadableDatabase().query(getTableName(theMatchId),
 				theCols,theSelection,theSelectionArgs,null,null,aSortOrder,theQueryLimit);
 		theResult.setNotificationUri(getContext().getContentResolver(),aUri);
+		if (thePaging!=null) {
+			theResult = thePaging.wrap(theResult, getQueryLimitValue(theQueryLimit));
+		}
 		return theResult;
 	}
 
@@ -203,20 +309,203 @@ public abstract class SqlContentProvider extends ContentProvider {
         return ContentUris.withAppendedId(theResultUriBase,aInserted_ID);
     }
 
+	/**
+	 * Send a change notification, or hold it until the end of the batch the current thread
+	 * is running, if any. Every provider notification goes through here.
+	 * @param aUri - the Uri which changed.
+	 */
+	protected void notifyChange(Uri aUri) {
+		NotifyBatch theBatch = mNotifyBatch.get();
+		if (theBatch!=null) {
+			theBatch.mUris.add(aUri);
+			return;
+		}
+		long theWindow = getNotifyWindowMillis();
+		if (theWindow>0L) {
+			synchronized (mPendingUris) {
+				if (mPendingUris.isEmpty())
+					getNotifyHandler().postDelayed(mSendPendingUris, theWindow);
+				mPendingUris.add(aUri);
+			}
+		} else {
+			getContext().getContentResolver().notifyChange(aUri,null);
+		}
+	}
+
+	/**
+	 * Get the Uri to write to without notifying observers, e.g. while syncing many rows,
+	 * after which the caller notifies the table Uri once itself.
+	 * @param aUri - the Uri to write to.
+	 * @return Returns the Uri with notifications turned off.
+	 */
+	static public Uri withoutNotify(Uri aUri) {
+		return aUri.buildUpon().appendQueryParameter(QUERY_NOTIFY, "false").build();
+	}
+
+	/**
+	 * @param aUri - the Uri of the write.
+	 * @return Returns TRUE if the Uri asked for no notifications.
+	 * @see #withoutNotify(Uri)
+	 */
+	static public boolean isNotifySuppressed(Uri aUri) {
+		return "false".equalsIgnoreCase(aUri.getQueryParameter(QUERY_NOTIFY));
+	}
+
+	/**
+	 * When more row Uris than this of the same table are sent at once, the table Uri is sent
+	 * instead; observers of the rows get it too.
+	 * @return Returns the threshold, 0 to never collapse.
+	 */
+	protected int getNotifyCollapseThreshold() {
+		return DEFAULT_NOTIFY_COLLAPSE_THRESHOLD;
+	}
+
+	/**
+	 * How long the notifications of writes made outside a batch are gathered before they
+	 * are sent together; they are sent on the main thread.
+	 * @return Returns the window in milliseconds, 0 (the default) to send them right away.
+	 */
+	protected long getNotifyWindowMillis() {
+		return 0L;
+	}
+
+	protected Handler getNotifyHandler() {
+		synchronized (mPendingUris) {
+			if (mNotifyHandler==null)
+				mNotifyHandler = new Handler(Looper.getMainLooper());
+			return mNotifyHandler;
+		}
+	}
+
+	/**
+	 * Send the notifications gathered during the window right away.
+	 */
+	protected void sendPendingNotifications() {
+		Uri[] theUris;
+		synchronized (mPendingUris) {
+			if (mPendingUris.isEmpty())
+				return;
+			theUris = mPendingUris.toArray(new Uri[mPendingUris.size()]);
+			mPendingUris.clear();
+			if (mNotifyHandler!=null)
+				mNotifyHandler.removeCallbacks(mSendPendingUris);
+		}
+		sendNotifications(Arrays.asList(theUris));
+	}
+
+	/**
+	 * Notify each Uri, collapsing row Uris as per {@link #getNotifyCollapseThreshold()}.
+	 * @param aUris - the distinct Uris which changed.
+	 */
+	protected void sendNotifications(Collection<Uri> aUris) {
+		if (aUris.isEmpty())
+			return;
+		ContentResolver theResolver = getContext().getContentResolver();
+		for (Uri theUri : collapseRowUris(aUris, getNotifyCollapseThreshold())) {
+			theResolver.notifyChange(theUri,null);
+		}
+	}
+
+	/**
+	 * Replace the Uris sharing a parent by the parent Uri if there are more than aThreshold.
+	 * @param aUris - the distinct Uris.
+	 * @param aThreshold - the most Uris of one parent kept, 0 to keep them all.
+	 * @return Returns the Uris to notify.
+	 */
+	static public Collection<Uri> collapseRowUris(Collection<Uri> aUris, int aThreshold) {
+		if (aThreshold<1 || aUris.size()<=aThreshold)
+			return aUris;
+		LinkedHashMap<Uri, ArrayList<Uri>> theGroups = new LinkedHashMap<Uri, ArrayList<Uri>>();
+		for (Uri theUri : aUris) {
+			Uri theParent = getParentUri(theUri);
+			Uri theKey = (theParent!=null) ? theParent : theUri;
+			ArrayList<Uri> theGroup = theGroups.get(theKey);
+			if (theGroup==null) {
+				theGroup = new ArrayList<Uri>();
+				theGroups.put(theKey, theGroup);
+			}
+			theGroup.add(theUri);
+		}
+		LinkedHashSet<Uri> theResult = new LinkedHashSet<Uri>();
+		for (Map.Entry<Uri, ArrayList<Uri>> theEntry : theGroups.entrySet()) {
+			if (theEntry.getValue().size()>aThreshold)
+				theResult.add(theEntry.getKey());
+			else
+				theResult.addAll(theEntry.getValue());
+		}
+		return theResult;
+	}
+
+	/**
+	 * @param aUri - a row Uri, e.g. "content://blah/table/5".
+	 * @return Returns the Uri without its last path segment, NULL if it has less than two.
+	 */
+	static protected Uri getParentUri(Uri aUri) {
+		List<String> theSegments = aUri.getPathSegments();
+		if (theSegments==null || theSegments.size()<2)
+			return null;
+		Uri.Builder theBuilder = aUri.buildUpon().path("").clearQuery();
+		for (int i=0; i<theSegments.size()-1; i++) {
+			theBuilder.appendPath(theSegments.get(i));
+		}
+		return theBuilder.build();
+	}
+
+	/**
+	 * Hold back notifications of the current thread until the matching
+	 * {@link #endNotifyBatch(boolean)}; batches may nest.
+	 */
+	protected void beginNotifyBatch() {
+		NotifyBatch theBatch = mNotifyBatch.get();
+		if (theBatch==null) {
+			theBatch = new NotifyBatch();
+			mNotifyBatch.set(theBatch);
+		}
+		theBatch.mDepth += 1;
+	}
+
+	/**
+	 * End a batch started by {@link #beginNotifyBatch()}; the outermost one sends each
+	 * Uri collected once, see {@link #sendNotifications(Collection)}.
+	 * @param bSend - FALSE to drop the notifications, e.g. if the transaction rolled back.
+	 */
+	protected void endNotifyBatch(boolean bSend) {
+		NotifyBatch theBatch = mNotifyBatch.get();
+		if (theBatch==null)
+			return;
+		if (!bSend)
+			theBatch.mUris.clear();
+		theBatch.mDepth -= 1;
+		if (theBatch.mDepth<=0) {
+			mNotifyBatch.remove();
+			sendNotifications(theBatch.mUris);
+		}
+	}
+
 	protected void notifyInsert(int aMatchId, Uri aInsertResult) {
-		getContext().getContentResolver().notifyChange(aInsertResult,null);
+		notifyChange(aInsertResult);
 	}
 
-	@Override
-	public Uri insert(Uri aUri, ContentValues aValues) {
-		int theMatchId = mUriMatcher.match(aUri);
-		if (theMatchId==UriMatcher.NO_MATCH)
-			throw new UnsupportedOperationException(getContext().getString(
-					R.string.sql_contract_provider_msg_uri_no_match, aUri
-			));
-		long theRowIdAdded = -1L;
+	/**
+	 * Notify observers once after {@link #bulkInsert(Uri, ContentValues[])} added rows.
+	 * @param aMatchId - which table match ID being used.
+	 * @param aUri - the table Uri the rows were inserted into.
+	 * @param aNumInserted - the number of rows inserted.
+	 */
+	protected void notifyBulkInsert(int aMatchId, Uri aUri, int aNumInserted) {
+		notifyChange(aUri);
+	}
+
+	/**
+	 * Check the required columns are present and fill in default values.
+	 * @param aMatchId - which table match ID being used.
+	 * @param aValues - the values to insert, may be NULL.
+	 * @return Returns the values to insert.
+	 * @throws IllegalArgumentException if a required column is missing.
+	 */
+	protected ContentValues prepInsertValues(int aMatchId, ContentValues aValues) {
 		ContentValues theValues = (aValues!=null) ? aValues : new ContentValues();
-		for (String theColumnName : getRequiredColumns(theMatchId)) {
+		for (String theColumnName : getRequiredColumns(aMatchId)) {
 			if (!theValues.containsKey(theColumnName)) {
 				String s = (R_string_sql_content_provider_msg_column_missing!=0)
 						? getContext().getString(R_string_sql_content_provider_msg_column_missing,theColumnName)
@@ -224,59 +513,318 @@ public abstract class SqlContentProvider extends ContentProvider {
 				throw new IllegalArgumentException(s);
 			}
 		}
-		populateDefaultValues(theMatchId,theValues);
+		populateDefaultValues(aMatchId,theValues);
+		return theValues;
+	}
+
+	protected SQLException newInsertFailedException(Uri aUri) {
+		String s = (R_string_sql_content_provider_msg_insert_failed!=0)
+				? getContext().getString(R_string_sql_content_provider_msg_insert_failed,aUri.toString())
+				: "Failed to insert row into "+aUri.toString();
+		return new SQLException(s);
+	}
+
+	@Override
+	public Uri insert(Uri aUri, ContentValues aValues) {
+		int theMatchId = matchUriOrThrow(aUri);
+		long theRowIdAdded = -1L;
+		ContentValues theValues = prepInsertValues(theMatchId, aValues);
 		String theTableName = getTableName(theMatchId);
-		theRowIdAdded = mDb.getWritableDatabase().insert(theTableName,null,theValues);
+		theRowIdAdded = insertRow(mDb.getWritableDatabase(),theTableName,theValues);
 		if (theRowIdAdded > -1L) {
             Uri theResult = craftInsertResult(theMatchId,theValues,theRowIdAdded);
-			notifyInsert(theMatchId,theResult);
+			if (!isNotifySuppressed(aUri))
+				notifyInsert(theMatchId,theResult);
 			return theResult;
 		} else {
-			String s = (R_string_sql_content_provider_msg_insert_failed!=0)
-					? getContext().getString(R_string_sql_content_provider_msg_insert_failed,aUri.toString())
-					: "Failed to insert row into "+aUri.toString();
-			throw new SQLException(s);
+			throw newInsertFailedException(aUri);
 		}
 	}
 
+	/**
+	 * Get the sorted column names of the values, which identify the statement needed to
+	 * write them.
+	 * @param aValues - the values.
+	 * @return Returns the column names in ascending order.
+	 */
+	static public String[] getColumnSignature(ContentValues aValues) {
+		String[] theResult = new String[aValues.size()];
+		int i = 0;
+		for (Map.Entry<String, Object> theEntry : aValues.valueSet()) {
+			theResult[i++] = theEntry.getKey();
+		}
+		Arrays.sort(theResult);
+		return theResult;
+	}
+
+	/**
+	 * Build the SQL to insert a row with the given columns, one "?" per column.
+	 * @param aTableName - the table.
+	 * @param aColumns - the column names.
+	 * @return Returns the SQL for a compiled statement.
+	 */
+	static public String getInsertSql(String aTableName, String[] aColumns) {
+		StringBuilder theSql = new StringBuilder("INSERT INTO ").append(aTableName);
+		if (aColumns.length<1)
+			return theSql.append(" DEFAULT VALUES").toString();
+		theSql.append(" (");
+		for (int i=0; i<aColumns.length; i++) {
+			theSql.append((i>0) ? "," : "").append(aColumns[i]);
+		}
+		theSql.append(") VALUES (");
+		for (int i=0; i<aColumns.length; i++) {
+			theSql.append((i>0) ? ",?" : "?");
+		}
+		return theSql.append(")").toString();
+	}
+
+	/**
+	 * Bind a value the same way SQLiteDatabase does for ContentValues.
+	 * @param aProgram - the compiled statement.
+	 * @param aIndex - the 1-based parameter index.
+	 * @param aValue - the value, may be NULL.
+	 */
+	static public void bindValue(SQLiteProgram aProgram, int aIndex, Object aValue) {
+		if (aValue==null)
+			aProgram.bindNull(aIndex);
+		else if (aValue instanceof Double || aValue instanceof Float)
+			aProgram.bindDouble(aIndex, ((Number)aValue).doubleValue());
+		else if (aValue instanceof Number)
+			aProgram.bindLong(aIndex, ((Number)aValue).longValue());
+		else if (aValue instanceof Boolean)
+			aProgram.bindLong(aIndex, ((Boolean)aValue) ? 1L : 0L);
+		else if (aValue instanceof byte[])
+			aProgram.bindBlob(aIndex, (byte[])aValue);
+		else
+			aProgram.bindString(aIndex, aValue.toString());
+	}
+
+	/**
+	 * Bind the values of the given columns, in order, starting at parameter aFirstIndex.
+	 * @param aProgram - the compiled statement.
+	 * @param aFirstIndex - the 1-based parameter index of the first column.
+	 * @param aColumns - the column names.
+	 * @param aValues - the values.
+	 */
+	static public void bindValues(SQLiteProgram aProgram, int aFirstIndex, String[] aColumns,
+			ContentValues aValues) {
+		for (int i=0; i<aColumns.length; i++) {
+			bindValue(aProgram, aFirstIndex+i, aValues.get(aColumns[i]));
+		}
+	}
+
+	/**
+	 * Build the SQL to update the given columns, one "?" per column ahead of any in the
+	 * selection.
+	 * @param aTableName - the table.
+	 * @param aColumns - the column names.
+	 * @param aSelection - the WHERE clause without "WHERE", may be NULL.
+	 * @return Returns the SQL for a compiled statement.
+	 */
+	static public String getUpdateSql(String aTableName, String[] aColumns, String aSelection) {
+		StringBuilder theSql = new StringBuilder("UPDATE ").append(aTableName).append(" SET ");
+		for (int i=0; i<aColumns.length; i++) {
+			theSql.append((i>0) ? "," : "").append(aColumns[i]).append("=?");
+		}
+		if (!TextUtils.isEmpty(aSelection))
+			theSql.append(" WHERE ").append(aSelection);
+		return theSql.toString();
+	}
+
+	/**
+	 * Build the SQL to delete rows.
+	 * @param aTableName - the table.
+	 * @param aSelection - the WHERE clause without "WHERE", may be NULL.
+	 * @return Returns the SQL for a compiled statement.
+	 */
+	static public String getDeleteSql(String aTableName, String aSelection) {
+		return "DELETE FROM "+aTableName+((!TextUtils.isEmpty(aSelection)) ? " WHERE "+aSelection : "");
+	}
+
+	/**
+	 * Insert a row using a cached compiled statement.
+	 * @param aDb - the writable database.
+	 * @param aTableName - the table.
+	 * @param aValues - the values of the row.
+	 * @return Returns the new row ID, -1 if it failed.
+	 */
+	protected long insertRow(SQLiteDatabase aDb, String aTableName, ContentValues aValues) {
+		String[] theColumns = getColumnSignature(aValues);
+		SqlStatementCache.CachedStatement theStatement =
+				mStatementCache.acquire(aDb, getInsertSql(aTableName, theColumns));
+		try {
+			bindValues(theStatement.getStatement(), 1, theColumns, aValues);
+			return theStatement.getStatement().executeInsert();
+		} catch (SQLException sqle) {
+			//unlike SQLiteDatabase.insert(), the statement throws on constraint violations;
+			//  callers expect -1 so they can report the failure their own way
+			return -1L;
+		} finally {
+			mStatementCache.release(theStatement);
+		}
+	}
+
+	/**
+	 * Update rows using a cached compiled statement; before API 11 statements cannot
+	 * report the rows changed, so SQLiteDatabase does the work instead.
+	 * @param aDb - the writable database.
+	 * @param aTableName - the table.
+	 * @param aValues - the values to set.
+	 * @param aSelection - the WHERE clause without "WHERE", may be NULL.
+	 * @param aSelectionArgs - the arguments of the selection, may be NULL.
+	 * @return Returns the number of rows updated.
+	 */
+	@TargetApi(11)
+	protected int updateRows(SQLiteDatabase aDb, String aTableName, ContentValues aValues,
+			String aSelection, String[] aSelectionArgs) {
+		if (Build.VERSION.SDK_INT<11)
+			return aDb.update(aTableName,aValues,aSelection,aSelectionArgs);
+		if (aValues==null || aValues.size()<1)
+			throw new IllegalArgumentException("Empty values");
+		String[] theColumns = getColumnSignature(aValues);
+		SqlStatementCache.CachedStatement theStatement =
+				mStatementCache.acquire(aDb, getUpdateSql(aTableName, theColumns, aSelection));
+		try {
+			bindValues(theStatement.getStatement(), 1, theColumns, aValues);
+			if (aSelectionArgs!=null) {
+				for (int i=0; i<aSelectionArgs.length; i++) {
+					bindValue(theStatement.getStatement(), theColumns.length+1+i, aSelectionArgs[i]);
+				}
+			}
+			return theStatement.getStatement().executeUpdateDelete();
+		} finally {
+			mStatementCache.release(theStatement);
+		}
+	}
+
+	/**
+	 * Delete rows using a cached compiled statement; before API 11 statements cannot
+	 * report the rows changed, so SQLiteDatabase does the work instead.
+	 * @param aDb - the writable database.
+	 * @param aTableName - the table.
+	 * @param aSelection - the WHERE clause without "WHERE", may be NULL.
+	 * @param aSelectionArgs - the arguments of the selection, may be NULL.
+	 * @return Returns the number of rows deleted.
+	 */
+	@TargetApi(11)
+	protected int deleteRows(SQLiteDatabase aDb, String aTableName, String aSelection,
+			String[] aSelectionArgs) {
+		if (Build.VERSION.SDK_INT<11)
+			return aDb.delete(aTableName,aSelection,aSelectionArgs);
+		SqlStatementCache.CachedStatement theStatement =
+				mStatementCache.acquire(aDb, getDeleteSql(aTableName, aSelection));
+		try {
+			if (aSelectionArgs!=null) {
+				for (int i=0; i<aSelectionArgs.length; i++) {
+					bindValue(theStatement.getStatement(), 1+i, aSelectionArgs[i]);
+				}
+			}
+			return theStatement.getStatement().executeUpdateDelete();
+		} finally {
+			mStatementCache.release(theStatement);
+		}
+	}
+
+	/**
+	 * Insert all the rows within a single transaction, reusing the compiled statement of
+	 * each set of columns seen. Either all rows are inserted or, if one fails, none are.
+	 * Observers are notified once for aUri rather than once per row.
+	 * @param aUri - the table Uri.
+	 * @param aValuesList - the rows to insert.
+	 * @return Returns the number of rows inserted.
+	 */
+	@Override
+	public int bulkInsert(Uri aUri, ContentValues[] aValuesList) {
+		int theMatchId = matchUriOrThrow(aUri);
+		if (aValuesList==null || aValuesList.length<1)
+			return 0;
+		String theTableName = getTableName(theMatchId);
+		SQLiteDatabase theDb = mDb.getWritableDatabase();
+		int theNumInserted = 0;
+		theDb.beginTransaction();
+		try {
+			for (ContentValues theRow : aValuesList) {
+				ContentValues theValues = prepInsertValues(theMatchId, theRow);
+				if (insertRow(theDb, theTableName, theValues)<0L)
+					throw newInsertFailedException(aUri);
+				theNumInserted += 1;
+			}
+			theDb.setTransactionSuccessful();
+		} finally {
+			theDb.endTransaction();
+		}
+		if (!isNotifySuppressed(aUri))
+			notifyBulkInsert(theMatchId, aUri, theNumInserted);
+		return theNumInserted;
+	}
+
+	/**
+	 * Apply all the operations within a single transaction; if one fails, those since the
+	 * last yield point are rolled back. Operations allowing it let other threads at the
+	 * database if they are waiting. Each Uri affected is notified once, at the end.
+	 * @param aOperations - the operations to apply.
+	 * @return Returns the results of the operations.
+	 * @throws OperationApplicationException if an operation fails.
+	 */
+	@Override
+	public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> aOperations)
+			throws OperationApplicationException {
+		SQLiteDatabase theDb = mDb.getWritableDatabase();
+		ContentProviderResult[] theResults = new ContentProviderResult[aOperations.size()];
+		boolean bCommitted = false;
+		boolean bYielded = false;
+		beginNotifyBatch();
+		try {
+			theDb.beginTransaction();
+			try {
+				for (int i=0; i<theResults.length; i++) {
+					ContentProviderOperation theOperation = aOperations.get(i);
+					if (i>0 && theOperation.isYieldAllowed() && theDb.yieldIfContendedSafely())
+						bYielded = true;
+					theResults[i] = theOperation.apply(this, theResults, i);
+				}
+				theDb.setTransactionSuccessful();
+				bCommitted = true;
+			} finally {
+				theDb.endTransaction();
+			}
+		} finally {
+			//work committed at a yield point stays committed, so keep its notifications
+			endNotifyBatch(bCommitted || bYielded);
+		}
+		return theResults;
+	}
+
 	protected void notifyDelete(int aMatchId, Uri aUri, int aNumDeleted) {
-		getContext().getContentResolver().notifyChange(aUri,null);
+		notifyChange(aUri);
 	}
 
 	@Override
 	public int delete(Uri aUri, String aSelection, String[] aSelectionArgs) {
-		int theMatchId = mUriMatcher.match(aUri);
-		if (theMatchId==UriMatcher.NO_MATCH)
-			throw new UnsupportedOperationException(getContext().getString(
-					R.string.sql_contract_provider_msg_uri_no_match, aUri
-			));
+		int theMatchId = matchUriOrThrow(aUri);
 		int theNumDel = 0;
 		aSelection = appendSelection(aUri, theMatchId, aSelection);
 		aSelectionArgs = appendSelArgs(aUri, theMatchId, aSelectionArgs);
-		theNumDel = mDb.getWritableDatabase().delete(getTableName(theMatchId),aSelection,aSelectionArgs);
-		if (theNumDel>0) {
+		theNumDel = deleteRows(mDb.getWritableDatabase(),getTableName(theMatchId),aSelection,aSelectionArgs);
+		if (theNumDel>0 && !isNotifySuppressed(aUri)) {
 			notifyDelete(theMatchId, aUri, theNumDel);
 		}
 		return theNumDel;
 	}
 
 	protected void notifyUpdate(int aMatchId, Uri aUri, int aNumUpdated) {
-		getContext().getContentResolver().notifyChange(aUri,null);
+		notifyChange(aUri);
 	}
 
 	@Override
 	public int update(Uri aUri, ContentValues aValues, String aSelection, String[] aSelectionArgs) {
-		int theMatchId = mUriMatcher.match(aUri);
-		if (theMatchId==UriMatcher.NO_MATCH)
-			throw new UnsupportedOperationException(getContext().getString(
-					R.string.sql_contract_provider_msg_uri_no_match, aUri
-			));
+		int theMatchId = matchUriOrThrow(aUri);
 		int theNumUpdated = 0;
 		aSelection = appendSelection(aUri, theMatchId, aSelection);
 		aSelectionArgs = appendSelArgs(aUri, theMatchId, aSelectionArgs);
 		String theTableName = getTableName(theMatchId);
-		theNumUpdated = mDb.getWritableDatabase().update(theTableName,aValues,aSelection,aSelectionArgs);
-		if (theNumUpdated>0) {
+		theNumUpdated = updateRows(mDb.getWritableDatabase(),theTableName,aValues,aSelection,aSelectionArgs);
+		if (theNumUpdated>0 && !isNotifySuppressed(aUri)) {
 			notifyUpdate(theMatchId,aUri,theNumUpdated);
 		}
 		return theNumUpdated;
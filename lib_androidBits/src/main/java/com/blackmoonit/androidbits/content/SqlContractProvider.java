@@ -180,6 +180,16 @@ abstract public class SqlContractProvider extends SqlContentProvider {
 		}
 	}
 
+	@Override
+	protected String getKeysetTiebreaker(int aMatchId) {
+		TableProviderInfo theTableInfo = getTableInfo(aMatchId);
+		if (theTableInfo!=null) {
+			return theTableInfo.getTableContract().getIdFieldName();
+		} else {
+			return super.getKeysetTiebreaker(aMatchId);
+		}
+	}
+
 	@Override
 	protected String[] getRequiredColumns(int aMatchId) {
 		TableProviderInfo theTableInfo = getTableInfo(aMatchId);
@@ -250,7 +260,16 @@ abstract public class SqlContractProvider extends SqlContentProvider {
 		// do not have to execute the code in sequence, parallel would be nice.
 		super.notifyInsert(aMatchId, aInsertResult);
 		Uri theObserverUri = TableProviderInfo.cnvContentUriToObserverUri(aInsertResult,Database.DATA_ACTION_INSERT);
-		getContext().getContentResolver().notifyChange(theObserverUri,null);
+		notifyChange(theObserverUri);
+	}
+
+	@Override
+	protected void notifyBulkInsert(int aMatchId, Uri aUri, int aNumInserted) {
+		// Note, written with different local vars so that multi-core processors
+		// do not have to execute the code in sequence, parallel would be nice.
+		super.notifyBulkInsert(aMatchId, aUri, aNumInserted);
+		Uri theObserverUri = TableProviderInfo.cnvContentUriToObserverUri(aUri,Database.DATA_ACTION_INSERT);
+		notifyChange(theObserverUri);
 	}
 
 	@Override
@@ -259,7 +278,7 @@ abstract public class SqlContractProvider extends SqlContentProvider {
 		// do not have to execute the code in sequence, parallel would be nice.
 		super.notifyDelete(aMatchId, aUri, aNumDeleted);
 		Uri theObserverUri = TableProviderInfo.cnvContentUriToObserverUri(aUri,Database.DATA_ACTION_DELETE);
-		getContext().getContentResolver().notifyChange(theObserverUri,null);
+		notifyChange(theObserverUri);
 	}
 
 	@Override
@@ -268,7 +287,7 @@ abstract public class SqlContractProvider extends SqlContentProvider {
 		// do not have to execute the code in sequence, parallel would be nice.
 		super.notifyUpdate(aMatchId, aUri, aNumUpdated);
 		Uri theObserverUri = TableProviderInfo.cnvContentUriToObserverUri(aUri,Database.DATA_ACTION_UPDATE);
-		getContext().getContentResolver().notifyChange(theObserverUri,null);
+		notifyChange(theObserverUri);
 	}
 
 }
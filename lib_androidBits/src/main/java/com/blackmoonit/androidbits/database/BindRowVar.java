@@ -0,0 +1,44 @@
+package com.blackmoonit.androidbits.database;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link ProviderContract.RowVar} class to have a {@link RowVarBinder} generated for it
+ * at compile time by the optional androidBits processor module, see the README. The binder
+ * reads and writes the RowVar's fields directly, using the COL_* constants of the given table contract
+ * just like {@link ProviderContract.TableProviderInfo#getColNamesFromMyContract()} does at
+ * runtime. Without the processor, the annotation does nothing and the reflective
+ * {@link RowVarBinding} is used as usual.<br><code>
+ * dependencies {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;annotationProcessor project(':androidBits_processor')<br>
+ * }<br>
+ * </code>
+ *
+ * @author baracudda
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface BindRowVar {
+	/**
+	 * @return Returns the table contract whose COL_* and _ID constants name the columns.
+	 */
+	Class<? extends ProviderContract.Table> value();
+}
@@ -15,17 +15,22 @@ package com.blackmoonit.androidbits.database;
  * limitations under the License.
  */
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.RemoteException;
 import android.provider.BaseColumns;
 import android.text.TextUtils;
 import android.util.Log;
@@ -284,6 +289,25 @@ public class ProviderContract {
 			return aUri;
 		}
 
+		/**
+		 * Apply the operations in one round trip; a
+		 * {@link com.blackmoonit.androidbits.content.SqlContentProvider SqlContentProvider}
+		 * runs them in a single transaction and notifies observers once at the end.
+		 * @param aContext - context to use.
+		 * @param aContentResolver - ContentResolver to use (unit tests use a mock one).
+		 * @param aOperations - the operations, such as from {@link RowVar#newInsertOperation()}.
+		 * @return Returns the results of the operations.
+		 * @throws RemoteException if the provider process died.
+		 * @throws OperationApplicationException if an operation failed.
+		 */
+		public ContentProviderResult[] applyBatch(Context aContext, ContentResolver aContentResolver,
+				ArrayList<ContentProviderOperation> aOperations)
+				throws RemoteException, OperationApplicationException {
+			if (aContentResolver==null)
+				aContentResolver = aContext.getContentResolver();
+			return aContentResolver.applyBatch(getAuthority(), aOperations);
+		}
+
 		private ArrayList<ProviderContract.Table> mTableList = null;
 		public ArrayList<ProviderContract.Table> getTableList() {
 			if (mTableList==null) {
@@ -588,6 +612,38 @@ public class ProviderContract {
 			return getTableContract().newRowVar().setFromCursor(aCursor);
 		}
 
+		/**
+		 * Insert many rows into this table in one round trip; a
+		 * {@link com.blackmoonit.androidbits.content.SqlContentProvider SqlContentProvider}
+		 * inserts them in a single transaction and notifies observers once.
+		 * @param aContext - context to use.
+		 * @param aContentResolver - ContentResolver to use (unit tests use a mock one).
+		 * @param aRows - the rows to insert.
+		 * @return Returns the number of rows inserted.
+		 */
+		public int insertRows(Context aContext, ContentResolver aContentResolver,
+				List<? extends RowVar> aRows) {
+			if (aRows==null || aRows.isEmpty())
+				return 0;
+			if (aContentResolver==null)
+				aContentResolver = aContext.getContentResolver();
+			ContentValues[] theValues = new ContentValues[aRows.size()];
+			for (int i=0; i<theValues.length; i++) {
+				theValues[i] = aRows.get(i).toContentValues(true);
+			}
+			return aContentResolver.bulkInsert(getContentUri(null), theValues);
+		}
+
+		/**
+		 * Insert many rows into this table in one round trip.
+		 * @param aContext - context to use.
+		 * @param aRows - the rows to insert.
+		 * @return Returns the number of rows inserted.
+		 */
+		public int insertRows(Context aContext, List<? extends RowVar> aRows) {
+			return insertRows(aContext, null, aRows);
+		}
+
 		/**
 		 * Called to create the table if it does not exist.
 		 * @param db - the database object
@@ -688,7 +744,10 @@ public class ProviderContract {
 		public Object getMyIdValue() {
 			String myIdFieldName = myTableInfo.getTableContract().getIdFieldName();
 			try {
-				return this.getClass().getField(myIdFieldName).get(this);
+				Field myIdField = getBinding().getField(myIdFieldName);
+				if (myIdField==null)
+					throw new NoSuchFieldException(myIdFieldName);
+				return myIdField.get(this);
 			} catch (IllegalAccessException e) {
 				e.printStackTrace();
 				Log.wtf(TAG,String.format(Locale.ENGLISH,
@@ -737,7 +796,7 @@ public class ProviderContract {
 
 		public Object getColValue(String aColName) throws IllegalArgumentException {
 			try {
-				getRowField(cnvColNameToRowFieldName(aColName)).get(this);
+				return getRowField(cnvColNameToRowFieldName(aColName)).get(this);
 			} catch (IllegalAccessException e) {
 				e.printStackTrace();
 				throw new IllegalArgumentException(aColName+" does not match any accessible "+
@@ -747,7 +806,6 @@ public class ProviderContract {
 				throw new IllegalArgumentException(aColName+" does not match any accessible "+
 						"fields inside the RowVar class \""+getClass().getSimpleName()+"\"");
 			}
-			return null;
 		}
 
 		public <T extends RowVar> T setColValue(String aColName, Object aColValue) {
@@ -759,47 +817,17 @@ public class ProviderContract {
 			return (T)this;
 		}
 
+		/**
+		 * The binding plan of this RowVar's class, shared by all its instances.
+		 * @return Returns the plan used to copy data in and out of this RowVar.
+		 */
+		public RowVarBinding getBinding() {
+			return RowVarBinding.getFor(this);
+		}
+
 		public <T extends RowVar> T setFromCursor(Cursor aCursor) {
 			if (aCursor != null) {
-				for (String theColName : getColNamesFromMyContract()) {
-					//inner loop vars used so multi-core processors with preditive branch
-					//  processing are not constrained by accessing a single var; results
-					//  in multiple loops being processed concurrently, thus enhancing speed
-					//  at the sacrifice of a bit of memory/garbage collecting
-					Field theRowField;
-					int theColIdx;
-					try {
-						theRowField = getRowField(cnvColNameToRowFieldName(theColName));
-						theColIdx = aCursor.getColumnIndex(theColName);
-						if (theColIdx>=0) {
-							Class<?> theRowFieldType = theRowField.getType();
-							//Cursor does not have a generic GET method, so need to check types
-							if (theRowFieldType.equals(String.class)) {
-								setRowField(theRowField, aCursor.getString(theColIdx));
-							} else if (theRowFieldType.equals(Integer.TYPE) || theRowFieldType==Integer.class) {
-								setRowField(theRowField, aCursor.getInt(theColIdx));
-							} else if (theRowFieldType.equals(Long.TYPE) || theRowFieldType==Long.class) {
-								setRowField(theRowField, aCursor.getLong(theColIdx));
-							} else if (theRowFieldType.equals(Float.TYPE) || theRowFieldType==Float.class) {
-								setRowField(theRowField, aCursor.getFloat(theColIdx));
-							} else if (theRowFieldType.equals(Double.TYPE) || theRowFieldType==Double.class) {
-								setRowField(theRowField, aCursor.getDouble(theColIdx));
-							} else if (theRowFieldType.equals(Boolean.TYPE) || theRowFieldType==Boolean.class) {
-								setRowField(theRowField, (aCursor.getInt(theColIdx)>0));
-							} else if (theRowFieldType.equals(Character.TYPE) || theRowFieldType==Character.class) {
-								String s = aCursor.getString(theColIdx);
-								if (s!=null && s.length()>0)
-									setRowField(theRowField, s.charAt(0));
-							} else if (theRowFieldType.equals(Byte.TYPE) || theRowFieldType==Byte.class) {
-								setRowField(theRowField,  Byte.parseByte(aCursor.getString(theColIdx)));
-							} else if (theRowFieldType.equals(Short.TYPE) || theRowFieldType==Short.class) {
-								setRowField(theRowField,  aCursor.getShort(theColIdx));
-							}
-						}
-					} catch (NoSuchFieldException e) {
-						e.printStackTrace();
-					}
-				}
+				getBinding().setFromCursor(this, aCursor);
 			}
 			return (T)this;
 		}
@@ -837,19 +865,7 @@ public class ProviderContract {
 
 		public <T extends RowVar> T setFromBundle(Bundle aBundle) {
 			if (aBundle!=null) {
-				for (String theColName : getColNamesFromMyContract()) {
-					//inner loop vars used so multi-core processors with preditive branch
-					//  processing are not constrained by accessing a single var; results
-					//  in multiple loops being processed concurrently, thus enhancing speed
-					//  at the sacrifice of a bit of memory/garbage collecting
-					Field theRowField;
-					try {
-						theRowField = getRowField(cnvColNameToRowFieldName(theColName));
-						setRowField(theRowField, aBundle.get(theRowField.getName()));
-					} catch (NoSuchFieldException e) {
-						e.printStackTrace();
-					}
-				}
+				getBinding().setFromBundle(this, aBundle);
 			}
 			return (T)this;
 		}
@@ -872,22 +888,7 @@ public class ProviderContract {
 		 */
 		public <T extends RowVar> T setFromRowVar(RowVar aRowVar) {
 			if (aRowVar!=null) {
-				Field[] theRowVarFields = aRowVar.getClass().getFields();
-				for (Field theRowVarField : theRowVarFields) {
-					//inner loop vars used so multi-core processors with preditive branch
-					//  processing are not constrained by accessing a single var; results
-					//  in multiple loops being processed concurrently, thus enhancing speed
-					//  at the sacrifice of a bit of memory/garbage collecting
-					Field myField;
-					try {
-						myField = getRowField(theRowVarField.getName());
-						setRowField(myField, theRowVarField.get(aRowVar));
-					} catch (NoSuchFieldException e) {
-						//do not care
-					} catch (IllegalAccessException e) {
-						//do not care
-					}
-				}
+				getBinding().setFromRowVar(this, aRowVar);
 			}
 			return (T)this;
 		}
@@ -911,47 +912,7 @@ public class ProviderContract {
 
 		public Bundle toBundle(Bundle aBundle) {
 			Bundle theResults = (aBundle!=null) ? new Bundle(aBundle) : new Bundle();
-			for (String theColName : getColNamesFromMyContract()) {
-				//inner loop vars used so multi-core processors with preditive branch
-				//  processing are not constrained by accessing a single var; results
-				//  in multiple loops being processed concurrently, thus enhancing speed
-				//  at the sacrifice of a bit of memory/garbage collecting
-				String theRowFieldName = cnvColNameToRowFieldName(theColName);
-				Field theRowField;
-				try {
-					theRowField = getRowField(theRowFieldName);
-					Class<?> theRowFieldType = theRowField.getType();
-					//Bundle does not have a generic PUT method, so need to check types
-					if (theRowFieldType.equals(String.class)) {
-						theResults.putString(theRowFieldName, (String) theRowField.get(this));
-					} else if (theRowFieldType.equals(Integer.TYPE) || theRowFieldType==Integer.class) {
-						theResults.putInt(theRowFieldName, (Integer) theRowField.get(this));
-					} else if (theRowFieldType.equals(Long.TYPE) ||
-							(theRowFieldType==Long.class && theRowField.get(this)!=null) ) {
-						theResults.putLong(theRowFieldName, (Long) theRowField.get(this));
-					} else if (theRowFieldType.equals(Float.TYPE) ||
-							(theRowFieldType==Float.class && theRowField.get(this)!=null) ) {
-						theResults.putFloat(theRowFieldName, (Float) theRowField.get(this));
-					} else if (theRowFieldType.equals(Double.TYPE) ||
-							(theRowFieldType==Double.class && theRowField.get(this)!=null) ) {
-						theResults.putDouble(theRowFieldName, (Double) theRowField.get(this));
-					} else if (theRowFieldType.equals(Boolean.TYPE) || theRowFieldType==Boolean.class) {
-						theResults.putBoolean(theRowFieldName, (Boolean) theRowField.get(this));
-					} else if (theRowFieldType.equals(Character.TYPE) || theRowFieldType==Character.class) {
-						theResults.putChar(theRowFieldName, (Character) theRowField.get(this));
-					} else if (theRowFieldType.equals(Byte.TYPE) ||
-							(theRowFieldType==Byte.class && theRowField.get(this)!=null) ) {
-						theResults.putByte(theRowFieldName, (Byte) theRowField.get(this));
-					} else if (theRowFieldType.equals(Short.TYPE) ||
-							(theRowFieldType==Short.class && theRowField.get(this)!=null) ) {
-						theResults.putShort(theRowFieldName, (Short) theRowField.get(this));
-					}
-				} catch (IllegalAccessException e) {
-					e.printStackTrace();
-				} catch (NoSuchFieldException e) {
-					e.printStackTrace();
-				}
-			}
+			getBinding().writeToBundle(this, theResults);
 			if (getMyIdValue()!=null)
 				theResults.putParcelable("android.intent.extra.ORIGINATING_URI", getMyUri());
 			return theResults;
@@ -962,113 +923,39 @@ public class ProviderContract {
 		}
 
 		public ContentValues toContentValues(boolean bOmitNulls) {
-			ContentValues theResults = new ContentValues();
-			for (String theColName : getColNamesFromMyContract()) {
-				//inner loop vars used so multi-core processors with preditive branch
-				//  processing are not constrained by accessing a single var; results
-				//  in multiple loops being processed concurrently, thus enhancing speed
-				//  at the sacrifice of a bit of memory/garbage collecting
-				String theRowFieldName = cnvColNameToRowFieldName(theColName);
-				Field theRowField;
-				Object theColValue;
-				try {
-					theRowField = getRowField(theRowFieldName);
-					Class<?> theRowFieldType = theRowField.getType();
-					theColValue = theRowField.get(this);
-					if (theColValue!=null || !bOmitNulls) {
-						if (theColValue==null)
-							theResults.putNull(theColName);
-						else
-						//ContentValues does not have a generic PUT method, so need to check types
-						if (theRowFieldType.equals(String.class)) {
-							theResults.put(theColName, (String) theColValue);
-						} else if (theRowFieldType.equals(Integer.TYPE) || theRowFieldType==Integer.class) {
-							theResults.put(theColName, (Integer) theColValue);
-						} else if (theRowFieldType.equals(Long.TYPE) || theRowFieldType==Long.class) {
-							theResults.put(theColName, (Long) theColValue);
-						} else if (theRowFieldType.equals(Float.TYPE) || theRowFieldType==Float.class) {
-							theResults.put(theColName, (Float) theColValue);
-						} else if (theRowFieldType.equals(Double.TYPE) || theRowFieldType==Double.class) {
-							theResults.put(theColName, (Double) theColValue);
-						} else if (theRowFieldType.equals(Boolean.TYPE) || theRowFieldType==Boolean.class) {
-							theResults.put(theColName, (Boolean) theColValue);
-						} else if (theRowFieldType.equals(Character.TYPE) || theRowFieldType==Character.class) {
-							theResults.put(theColName, (String) theColValue);
-						} else if (theRowFieldType.equals(Byte.TYPE) || theRowFieldType==Byte.class) {
-							theResults.put(theColName, (Byte) theColValue);
-						} else if (theRowFieldType.equals(Short.TYPE) || theRowFieldType==Short.class) {
-							theResults.put(theColName, (Short) theColValue);
-						}
-					}
-				} catch (IllegalAccessException e) {
-					e.printStackTrace();
-				} catch (NoSuchFieldException e) {
-					e.printStackTrace();
-				}
+			return getBinding().toContentValues(this, bOmitNulls);
+		}
+
+		/**
+		 * Write this RowVar's columns to a Parcel, such as from a Parcelable descendant.
+		 * @param aDest - the Parcel to write to.
+		 */
+		public void writeToParcel(Parcel aDest) {
+			getBinding().writeToParcel(this, aDest);
+		}
+
+		/**
+		 * Load this RowVar's columns from a Parcel written by {@link #writeToParcel(Parcel)}.
+		 * @param aSource - the Parcel to read from.
+		 */
+		public <T extends RowVar> T setFromParcel(Parcel aSource) {
+			if (aSource!=null) {
+				getBinding().setFromParcel(this, aSource);
 			}
-			return theResults;
+			return (T)this;
 		}
 
 		public String toString() {
-			String theResult = "{" + getClass().getSimpleName();
-			for (String theColName : getColNamesFromMyContract()) {
-				//inner loop vars used so multi-core processors with preditive branch
-				//  processing are not constrained by accessing a single var; results
-				//  in multiple loops being processed concurrently, thus enhancing speed
-				//  at the sacrifice of a bit of memory/garbage collecting
-				Field theRowField;
-				try {
-					theRowField = getRowField(cnvColNameToRowFieldName(theColName));
-					Object theRowValue = theRowField.get(this);
-					if (theRowValue!=null)
-						theResult += ", "+theRowField.getName()+"="+String.valueOf(theRowValue);
-				} catch (NoSuchFieldException e) {
-					e.printStackTrace();
-				} catch (IllegalAccessException e) {
-					e.printStackTrace();
-				}
-			}
-			theResult += "}";
-			return theResult;
+			StringBuilder theResult = new StringBuilder("{").append(getClass().getSimpleName());
+			getBinding().appendTo(this, theResult);
+			return theResult.append("}").toString();
 		}
 
 		/**
 		 * Clear out all data and set to elements to NULL/0 where appropriate.
 		 */
 		public <T extends RowVar> T clear() {
-			for (String theColName : getColNamesFromMyContract()) {
-				//inner loop vars used so multi-core processors with preditive branch
-				//  processing are not constrained by accessing a single var; results
-				//  in multiple loops being processed concurrently, thus enhancing speed
-				//  at the sacrifice of a bit of memory/garbage collecting
-				Field theRowField;
-				try {
-					theRowField = getRowField(cnvColNameToRowFieldName(theColName));
-					Class<?> theRowFieldType = theRowField.getType();
-					if (theRowFieldType.equals(String.class)) {
-						setRowField(theRowField, null);
-					} else if (theRowFieldType.equals(Integer.TYPE) || theRowFieldType==Integer.class) {
-						setRowField(theRowField, 0);
-					} else if (theRowFieldType.equals(Long.TYPE) || theRowFieldType==Long.class) {
-						setRowField(theRowField, 0L);
-					} else if (theRowFieldType.equals(Float.TYPE) || theRowFieldType==Float.class) {
-						setRowField(theRowField, 0.0f);
-					} else if (theRowFieldType.equals(Double.TYPE) || theRowFieldType==Double.class) {
-						setRowField(theRowField, 0.0d);
-					} else if (theRowFieldType.equals(Boolean.TYPE) || theRowFieldType==Boolean.class) {
-						setRowField(theRowField, false);
-					} else if (theRowFieldType.equals(Character.TYPE) || theRowFieldType==Character.class) {
-						setRowField(theRowField, '\u0000');
-					} else if (theRowFieldType.equals(Byte.TYPE) || theRowFieldType==Byte.class) {
-						setRowField(theRowField, 0);
-					} else if (theRowFieldType.equals(Short.TYPE) || theRowFieldType==Short.class) {
-						setRowField(theRowField, 0);
-					} else
-						setRowField(theRowField, null);
-				} catch (NoSuchFieldException e) {
-					e.printStackTrace();
-				}
-			}
+			getBinding().clear(this);
 			return (T)this;
 		}
 
@@ -1257,6 +1144,18 @@ public class ProviderContract {
 				return false;
 		}
 
+		/**
+		 * @return Returns the values to update my row with, which leave out the ID columns.
+		 */
+		protected ContentValues toUpdateValues() {
+			ContentValues theValues = toContentValues(false);
+			//do not update ID columns
+			theValues.remove(BaseColumns._ID);
+			//do not update primary IdField either
+			theValues.remove(myTableInfo.mTableContract.getIdFieldName());
+			return theValues;
+		}
+
 		/**
 		 * Update a record in RowVar's table using the RowVar's data.
 		 * @param aContext - context to use.
@@ -1266,13 +1165,8 @@ public class ProviderContract {
 		public boolean updateSingleRow(Context aContext, ContentResolver aContentResolver) {
 			if (aContentResolver==null)
 				aContentResolver = aContext.getContentResolver();
-			ContentValues theValues = toContentValues(false);
-			//do not update ID columns
-			theValues.remove(BaseColumns._ID);
-			//do not update primary IdField either
-			theValues.remove(myTableInfo.mTableContract.getIdFieldName());
 			if (getMyIdValue()!=null)
-				return (aContentResolver.update(getMyUri(), theValues, null, null)>0);
+				return (aContentResolver.update(getMyUri(), toUpdateValues(), null, null)>0);
 			else
 				return false;
 		}
@@ -1285,6 +1179,40 @@ public class ProviderContract {
 			return updateSingleRow(aContext, null);
 		}
 
+		/**
+		 * Batched version of {@link #insertIntoTable(Context)}.
+		 * @return Returns the operation to pass to {@link DbProviderInfo#applyBatch}.
+		 */
+		public ContentProviderOperation newInsertOperation() {
+			return ContentProviderOperation.newInsert(getMyTableUri())
+					.withValues(toContentValues(true)).build();
+		}
+
+		/**
+		 * Batched version of {@link #updateSingleRow(Context)}.
+		 * @return Returns the operation to pass to {@link DbProviderInfo#applyBatch},
+		 * NULL if I have no ID value.
+		 */
+		public ContentProviderOperation newUpdateOperation() {
+			if (getMyIdValue()!=null)
+				return ContentProviderOperation.newUpdate(getMyUri())
+						.withValues(toUpdateValues()).build();
+			else
+				return null;
+		}
+
+		/**
+		 * Batched version of {@link #removeMyself(Context)}.
+		 * @return Returns the operation to pass to {@link DbProviderInfo#applyBatch},
+		 * NULL if I have no ID value.
+		 */
+		public ContentProviderOperation newDeleteOperation() {
+			if (getMyIdValue()!=null)
+				return ContentProviderOperation.newDelete(getMyUri()).build();
+			else
+				return null;
+		}
+
 	}
 
 }
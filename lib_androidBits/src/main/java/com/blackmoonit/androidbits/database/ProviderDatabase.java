@@ -31,6 +31,11 @@ import java.lang.ref.WeakReference;
 public class ProviderDatabase extends SQLiteOpenHelper {
 	protected final ProviderContract.Database mDbContract;
 	protected final WeakReference<Context> mContext;
+	/**
+	 * Compiled write statements of this database's connection.
+	 */
+	protected final SqlStatementCache mStatementCache =
+			new SqlStatementCache(SqlStatementCache.DEFAULT_CAPACITY);
 
 	public ProviderDatabase(Context aContext, ProviderContract.Database aDbContract) {
 		super(aContext, aDbContract.getDbInfo().getDbFilename(), null, aDbContract.getDbVersion());
@@ -46,6 +51,14 @@ public class ProviderDatabase extends SQLiteOpenHelper {
 		return mDbContract;
 	}
 
+	/**
+	 * Statements compiled against this database, dropped whenever its schema changes.
+	 * @return Returns the statement cache.
+	 */
+	public SqlStatementCache getStatementCache() {
+		return mStatementCache;
+	}
+
 	@Override
 	public void onCreate(SQLiteDatabase db) {
 		Log.w(getDbContract().getDbName()+" db", "Creating database");
@@ -61,6 +74,7 @@ public class ProviderDatabase extends SQLiteOpenHelper {
 		for (ProviderContract.Table theContractTable : getDbContract().getDbInfo().getTableList()) {
 			theContractTable.getTableInfo().onUpgrade(db, oldVersion, newVersion);
 		}
+		mStatementCache.invalidate();
 	}
 
 	@Override
@@ -70,6 +84,13 @@ public class ProviderDatabase extends SQLiteOpenHelper {
 		for (ProviderContract.Table theContractTable : getDbContract().getDbInfo().getTableList()) {
 			theContractTable.getTableInfo().onDowngrade(db, oldVersion, newVersion);
 		}
+		mStatementCache.invalidate();
+	}
+
+	@Override
+	public synchronized void close() {
+		mStatementCache.invalidate();
+		super.close();
 	}
 
 	/**
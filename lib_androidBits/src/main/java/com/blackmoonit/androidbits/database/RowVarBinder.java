@@ -0,0 +1,129 @@
+package com.blackmoonit.androidbits.database;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.Parcel;
+
+/**
+ * Direct-access counterpart of {@link RowVarBinding} for one RowVar class, generated at
+ * compile time for classes marked with {@link BindRowVar}. Fields are read and written
+ * with plain assignments, so no reflection is involved and primitives stay unboxed except
+ * where ContentValues and Bundle box them anyway.<br>
+ * The generated class is named after the RowVar's binary name with "$" replaced by "_" plus
+ * {@link #CLASS_SUFFIX}, lives in the same package, and is found by
+ * {@link RowVarBinding#getFor(ProviderContract.RowVar)}; it must behave exactly like the
+ * reflective plan it replaces.
+ * @param <T> - the RowVar class bound.
+ *
+ * @author baracudda
+ */
+public abstract class RowVarBinder<T extends ProviderContract.RowVar> {
+	static public final String CLASS_SUFFIX = "_Binder";
+
+	/**
+	 * Column indexes of the cursor last read from.
+	 */
+	private volatile RowVarBinding.CursorColumns mLastCursorColumns = null;
+
+	/**
+	 * Get the name of the generated binder class of a RowVar class.
+	 * @param aRowClass - the RowVar class.
+	 * @return Returns the fully qualified binder class name.
+	 */
+	static public String getBinderClassName(Class<?> aRowClass) {
+		String theName = aRowClass.getName();
+		int idx = theName.lastIndexOf('.');
+		return theName.substring(0, idx+1)+theName.substring(idx+1).replace('$', '_')+CLASS_SUFFIX;
+	}
+
+	/**
+	 * @return Returns the contract column names bound, which is also the projection needed
+	 * to fully load a row; do not modify.
+	 */
+	abstract public String[] getProjection();
+
+	/**
+	 * Get the column indexes of the cursor, reusing those of the last cursor read if it is
+	 * the same one.
+	 * @param aCursor - the cursor.
+	 * @return Returns the indexes in the order of {@link #getProjection()}, -1 if missing.
+	 */
+	protected int[] getColumnIndexes(Cursor aCursor) {
+		RowVarBinding.CursorColumns theColumns = mLastCursorColumns;
+		if (theColumns==null || !theColumns.isFor(aCursor)) {
+			theColumns = new RowVarBinding.CursorColumns(aCursor, getProjection());
+			mLastCursorColumns = theColumns;
+		}
+		return theColumns.mIndexes;
+	}
+
+	/**
+	 * Load the row from the cursor's current position.
+	 * @param aRow - the row to load.
+	 * @param aCursor - the cursor.
+	 */
+	public void setFromCursor(T aRow, Cursor aCursor) {
+		readCursor(aRow, aCursor, getColumnIndexes(aCursor));
+	}
+
+	/**
+	 * Load the row from the cursor's current position.
+	 * @param aRow - the row to load.
+	 * @param aCursor - the cursor.
+	 * @param aColIdx - column indexes in the order of {@link #getProjection()}, -1 to skip.
+	 */
+	abstract protected void readCursor(T aRow, Cursor aCursor, int[] aColIdx);
+
+	/**
+	 * Load the row from a Bundle keyed by field name.
+	 * @param aRow - the row to load.
+	 * @param aBundle - the values.
+	 */
+	abstract public void setFromBundle(T aRow, Bundle aBundle);
+
+	/**
+	 * Write the row's columns to ContentValues keyed by column name.
+	 * @param aRow - the row.
+	 * @param aValues - the values to write to.
+	 * @param bOmitNulls - skip NULL values rather than put NULL.
+	 */
+	abstract public void writeToContentValues(T aRow, ContentValues aValues, boolean bOmitNulls);
+
+	/**
+	 * Write the row's non-NULL columns to a Bundle keyed by field name.
+	 * @param aRow - the row.
+	 * @param aBundle - the Bundle to write to.
+	 */
+	abstract public void writeToBundle(T aRow, Bundle aBundle);
+
+	/**
+	 * Write the row's columns to a Parcel, in the order of {@link #getProjection()}.
+	 * @param aRow - the row.
+	 * @param aDest - the Parcel to write to.
+	 */
+	abstract public void writeToParcel(T aRow, Parcel aDest);
+
+	/**
+	 * Load the row from a Parcel written by {@link #writeToParcel(ProviderContract.RowVar, Parcel)}.
+	 * @param aRow - the row to load.
+	 * @param aSource - the Parcel to read from.
+	 */
+	abstract public void setFromParcel(T aRow, Parcel aSource);
+
+}
@@ -0,0 +1,751 @@
+package com.blackmoonit.androidbits.database;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binding plan of a {@link ProviderContract.RowVar} class: the field of each contract column
+ * along with a getter/setter specialized for its type, worked out once per class instead
+ * of looking up fields by name and checking their type for every column of every row.
+ * Cursor column indexes are resolved once per cursor as well, so hydrating many rows from
+ * the same cursor only costs the field accesses themselves.<br>
+ * Plans are immutable once built and shared by all threads. If a {@link RowVarBinder} was
+ * generated for the class, see {@link BindRowVar}, the plan hands the hot paths over to it.
+ *
+ * @author baracudda
+ */
+public class RowVarBinding {
+	static public final String TAG = RowVarBinding.class.getSimpleName();
+
+	/**
+	 * Plans by RowVar class.
+	 */
+	static private final ConcurrentHashMap<Class<?>, RowVarBinding> mPlans =
+			new ConcurrentHashMap<Class<?>, RowVarBinding>();
+
+	/**
+	 * Bindings of the contract's columns which have a matching field.
+	 */
+	protected final ColumnBinding[] mColumns;
+	/**
+	 * Column names of {@link #mColumns}.
+	 */
+	protected final String[] mColNames;
+	/**
+	 * All public fields of the class by name, used to copy from other RowVars.
+	 */
+	protected final HashMap<String, Field> mFieldsByName;
+	/**
+	 * Public fields of the class, the source side of a RowVar copy.
+	 */
+	protected final Field[] mFields;
+	/**
+	 * Column indexes of the cursor last read from.
+	 */
+	protected volatile CursorColumns mLastCursorColumns = null;
+	/**
+	 * Generated direct-access binder of the class, NULL if there is none.
+	 */
+	protected final RowVarBinder<ProviderContract.RowVar> mBinder;
+
+	/**
+	 * Column indexes of one cursor, in the order of {@link #mColumns}.
+	 */
+	static protected class CursorColumns {
+		protected final WeakReference<Cursor> wCursor;
+		protected final int mColumnCount;
+		protected final int[] mIndexes;
+
+		protected CursorColumns(Cursor aCursor, String[] aColNames) {
+			wCursor = new WeakReference<Cursor>(aCursor);
+			mColumnCount = aCursor.getColumnCount();
+			mIndexes = new int[aColNames.length];
+			for (int i=0; i<aColNames.length; i++) {
+				mIndexes[i] = aCursor.getColumnIndex(aColNames[i]);
+			}
+		}
+
+		protected boolean isFor(Cursor aCursor) {
+			return (wCursor.get()==aCursor && mColumnCount==aCursor.getColumnCount());
+		}
+	}
+
+	/**
+	 * Get the plan of the row's class, building it the first time around.
+	 * @param aRow - a RowVar of the class.
+	 * @return Returns the plan of aRow's class.
+	 */
+	static public RowVarBinding getFor(ProviderContract.RowVar aRow) {
+		RowVarBinding thePlan = mPlans.get(aRow.getClass());
+		if (thePlan==null) {
+			//racing threads build equal plans, whichever lands first is kept
+			thePlan = new RowVarBinding(aRow);
+			RowVarBinding thePrevPlan = mPlans.putIfAbsent(aRow.getClass(), thePlan);
+			if (thePrevPlan!=null)
+				thePlan = thePrevPlan;
+		}
+		return thePlan;
+	}
+
+	/**
+	 * Work out the plan using the row's contract and its field naming.
+	 * @param aRow - a RowVar of the class to plan for.
+	 */
+	protected RowVarBinding(ProviderContract.RowVar aRow) {
+		ArrayList<ColumnBinding> theColumns = new ArrayList<ColumnBinding>();
+		for (String theColName : aRow.getColNamesFromMyContract()) {
+			try {
+				Field theField = aRow.getRowField(aRow.cnvColNameToRowFieldName(theColName));
+				theColumns.add(newColumnBinding(theColName, theField));
+			} catch (NoSuchFieldException e) {
+				Log.w(TAG, aRow.getClass().getSimpleName()+" has no field for column "+theColName);
+			}
+		}
+		mColumns = theColumns.toArray(new ColumnBinding[theColumns.size()]);
+		mColNames = new String[mColumns.length];
+		for (int i=0; i<mColumns.length; i++) {
+			mColNames[i] = mColumns[i].mColName;
+		}
+		mFields = aRow.getClass().getFields();
+		mFieldsByName = new HashMap<String, Field>(mFields.length);
+		for (Field theField : mFields) {
+			mFieldsByName.put(theField.getName(), theField);
+		}
+		mBinder = loadBinder(aRow.getClass());
+	}
+
+	/**
+	 * Instantiate the generated binder of a RowVar class, if there is one.
+	 * @param aRowClass - the RowVar class.
+	 * @return Returns the binder, NULL if none was generated.
+	 */
+	@SuppressWarnings("unchecked")
+	static protected RowVarBinder<ProviderContract.RowVar> loadBinder(Class<?> aRowClass) {
+		try {
+			Class<?> theBinderClass = Class.forName(RowVarBinder.getBinderClassName(aRowClass),
+					true, aRowClass.getClassLoader());
+			return (RowVarBinder<ProviderContract.RowVar>) theBinderClass.newInstance();
+		} catch (ClassNotFoundException e) {
+			//not generated, reflection it is
+		} catch (InstantiationException e) {
+			Log.w(TAG, "Generated binder of "+aRowClass.getName()+" not usable: "+e);
+		} catch (IllegalAccessException e) {
+			Log.w(TAG, "Generated binder of "+aRowClass.getName()+" not usable: "+e);
+		} catch (ClassCastException e) {
+			Log.w(TAG, "Generated binder of "+aRowClass.getName()+" not usable: "+e);
+		}
+		return null;
+	}
+
+	/**
+	 * Create the binding specialized for the field's type.
+	 * @param aColName - the contract column name.
+	 * @param aField - the RowVar field holding the column's value.
+	 * @return Returns the column binding.
+	 */
+	static protected ColumnBinding newColumnBinding(String aColName, Field aField) {
+		Class<?> theType = aField.getType();
+		if (theType==String.class)
+			return new StringColumn(aColName, aField);
+		else if (theType==Integer.TYPE || theType==Integer.class)
+			return new IntColumn(aColName, aField);
+		else if (theType==Long.TYPE || theType==Long.class)
+			return new LongColumn(aColName, aField);
+		else if (theType==Float.TYPE || theType==Float.class)
+			return new FloatColumn(aColName, aField);
+		else if (theType==Double.TYPE || theType==Double.class)
+			return new DoubleColumn(aColName, aField);
+		else if (theType==Boolean.TYPE || theType==Boolean.class)
+			return new BooleanColumn(aColName, aField);
+		else if (theType==Character.TYPE || theType==Character.class)
+			return new CharColumn(aColName, aField);
+		else if (theType==Byte.TYPE || theType==Byte.class)
+			return new ByteColumn(aColName, aField);
+		else if (theType==Short.TYPE || theType==Short.class)
+			return new ShortColumn(aColName, aField);
+		else
+			return new ColumnBinding(aColName, aField);
+	}
+
+	/**
+	 * @return Returns the bindings of the columns, in contract order.
+	 */
+	public ColumnBinding[] getColumns() {
+		return mColumns;
+	}
+
+	/**
+	 * @return Returns TRUE if a generated binder does the work instead of reflection.
+	 */
+	public boolean isGenerated() {
+		return (mBinder!=null);
+	}
+
+	/**
+	 * @return Returns the column names bound, which is also the projection needed to
+	 * fully load a row; do not modify.
+	 */
+	public String[] getProjection() {
+		return (mBinder!=null) ? mBinder.getProjection() : mColNames;
+	}
+
+	/**
+	 * Find the field of the given name.
+	 * @param aFieldName - the field name.
+	 * @return Returns the public field, NULL if there is none.
+	 */
+	public Field getField(String aFieldName) {
+		return mFieldsByName.get(aFieldName);
+	}
+
+	/**
+	 * Get the column indexes of the cursor, reusing those of the last cursor read if it is
+	 * the same one.
+	 * @param aCursor - the cursor.
+	 * @return Returns the indexes in the order of {@link #getColumns()}, -1 if missing.
+	 */
+	protected int[] getColumnIndexes(Cursor aCursor) {
+		CursorColumns theColumns = mLastCursorColumns;
+		if (theColumns==null || !theColumns.isFor(aCursor)) {
+			theColumns = new CursorColumns(aCursor, mColNames);
+			mLastCursorColumns = theColumns;
+		}
+		return theColumns.mIndexes;
+	}
+
+	/**
+	 * Load the row from the cursor's current position.
+	 * @param aRow - the row to load.
+	 * @param aCursor - the cursor.
+	 */
+	public void setFromCursor(ProviderContract.RowVar aRow, Cursor aCursor) {
+		if (mBinder!=null) {
+			mBinder.setFromCursor(aRow, aCursor);
+			return;
+		}
+		int[] theIndexes = getColumnIndexes(aCursor);
+		for (int i=0; i<mColumns.length; i++) {
+			if (theIndexes[i]>=0) try {
+				mColumns[i].readCursor(aRow, aCursor, theIndexes[i]);
+			} catch (IllegalAccessException e) {
+				mColumns[i].onAccessDenied(e);
+			}
+		}
+	}
+
+	/**
+	 * Load the row from a Bundle keyed by field name.
+	 * @param aRow - the row to load.
+	 * @param aBundle - the values.
+	 */
+	public void setFromBundle(ProviderContract.RowVar aRow, Bundle aBundle) {
+		if (mBinder!=null) {
+			mBinder.setFromBundle(aRow, aBundle);
+			return;
+		}
+		for (ColumnBinding theColumn : mColumns) {
+			Object theValue = aBundle.get(theColumn.mField.getName());
+			//primitives cannot hold a missing value
+			if (theValue!=null || !theColumn.bPrimitive) try {
+				theColumn.mField.set(aRow, theValue);
+			} catch (IllegalAccessException e) {
+				theColumn.onAccessDenied(e);
+			}
+		}
+	}
+
+	/**
+	 * Copy the fields of aSource into the same named fields of aRow.
+	 * @param aRow - the row to load, of this plan's class.
+	 * @param aSource - the row to copy from, of any RowVar class.
+	 */
+	public void setFromRowVar(ProviderContract.RowVar aRow, ProviderContract.RowVar aSource) {
+		for (Field theSourceField : getFor(aSource).mFields) {
+			Field theField = mFieldsByName.get(theSourceField.getName());
+			if (theField!=null && !Modifier.isStatic(theField.getModifiers())) try {
+				aRow.setRowField(theField, theSourceField.get(aSource));
+			} catch (IllegalAccessException e) {
+				//do not care
+			}
+		}
+	}
+
+	/**
+	 * Write the row's columns to ContentValues keyed by column name.
+	 * @param aRow - the row.
+	 * @param bOmitNulls - skip NULL values rather than put NULL.
+	 * @return Returns the values.
+	 */
+	public ContentValues toContentValues(ProviderContract.RowVar aRow, boolean bOmitNulls) {
+		ContentValues theResults = new ContentValues(mColumns.length);
+		if (mBinder!=null) {
+			mBinder.writeToContentValues(aRow, theResults, bOmitNulls);
+			return theResults;
+		}
+		for (ColumnBinding theColumn : mColumns) {
+			try {
+				Object theValue = theColumn.mField.get(aRow);
+				if (theValue!=null)
+					theColumn.putValue(theResults, theValue);
+				else if (!bOmitNulls)
+					theResults.putNull(theColumn.mColName);
+			} catch (IllegalAccessException e) {
+				theColumn.onAccessDenied(e);
+			}
+		}
+		return theResults;
+	}
+
+	/**
+	 * Write the row's columns to a Bundle keyed by field name.
+	 * @param aRow - the row.
+	 * @param aBundle - the Bundle to write to.
+	 */
+	public void writeToBundle(ProviderContract.RowVar aRow, Bundle aBundle) {
+		if (mBinder!=null) {
+			mBinder.writeToBundle(aRow, aBundle);
+			return;
+		}
+		for (ColumnBinding theColumn : mColumns) {
+			try {
+				Object theValue = theColumn.mField.get(aRow);
+				if (theValue!=null)
+					theColumn.putValue(aBundle, theValue);
+			} catch (IllegalAccessException e) {
+				theColumn.onAccessDenied(e);
+			}
+		}
+	}
+
+	/**
+	 * Write the row's columns to a Parcel, in the order of {@link #getProjection()}.
+	 * @param aRow - the row.
+	 * @param aDest - the Parcel to write to.
+	 */
+	public void writeToParcel(ProviderContract.RowVar aRow, Parcel aDest) {
+		if (mBinder!=null) {
+			mBinder.writeToParcel(aRow, aDest);
+			return;
+		}
+		for (ColumnBinding theColumn : mColumns) {
+			Object theValue = null;
+			try {
+				theValue = theColumn.mField.get(aRow);
+			} catch (IllegalAccessException e) {
+				theColumn.onAccessDenied(e);
+			}
+			//always write something so the reading side stays in step
+			aDest.writeValue(theValue);
+		}
+	}
+
+	/**
+	 * Load the row from a Parcel written by {@link #writeToParcel(ProviderContract.RowVar, Parcel)}.
+	 * @param aRow - the row to load.
+	 * @param aSource - the Parcel to read from.
+	 */
+	public void setFromParcel(ProviderContract.RowVar aRow, Parcel aSource) {
+		if (mBinder!=null) {
+			mBinder.setFromParcel(aRow, aSource);
+			return;
+		}
+		ClassLoader theClassLoader = aRow.getClass().getClassLoader();
+		for (ColumnBinding theColumn : mColumns) {
+			Object theValue = aSource.readValue(theClassLoader);
+			//primitives cannot hold a missing value
+			if (theValue!=null || !theColumn.bPrimitive) try {
+				theColumn.mField.set(aRow, theValue);
+			} catch (IllegalAccessException e) {
+				theColumn.onAccessDenied(e);
+			}
+		}
+	}
+
+	/**
+	 * Set the row's columns to NULL/0 where appropriate.
+	 * @param aRow - the row.
+	 */
+	public void clear(ProviderContract.RowVar aRow) {
+		for (ColumnBinding theColumn : mColumns) {
+			try {
+				theColumn.clear(aRow);
+			} catch (IllegalAccessException e) {
+				theColumn.onAccessDenied(e);
+			}
+		}
+	}
+
+	/**
+	 * Append the row's non-NULL columns as ", name=value" pairs.
+	 * @param aRow - the row.
+	 * @param aBuilder - the string being built.
+	 */
+	public void appendTo(ProviderContract.RowVar aRow, StringBuilder aBuilder) {
+		for (ColumnBinding theColumn : mColumns) {
+			try {
+				Object theValue = theColumn.mField.get(aRow);
+				if (theValue!=null)
+					aBuilder.append(", ").append(theColumn.mField.getName()).append("=").append(theValue);
+			} catch (IllegalAccessException e) {
+				theColumn.onAccessDenied(e);
+			}
+		}
+	}
+
+	/**
+	 * Binding of a column to a field whose type has no specialized handling; it is
+	 * copied to and from Bundles, but not read from cursors or written to ContentValues.
+	 */
+	static public class ColumnBinding {
+		public final String mColName;
+		public final Field mField;
+		public final boolean bPrimitive;
+
+		protected ColumnBinding(String aColName, Field aField) {
+			mColName = aColName;
+			mField = aField;
+			bPrimitive = aField.getType().isPrimitive();
+		}
+
+		/**
+		 * Set the field from the cursor column.
+		 */
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			//Cursor does not have a generic GET method
+		}
+
+		/**
+		 * Put the non-NULL field value into ContentValues.
+		 */
+		protected void putValue(ContentValues aValues, Object aValue) {
+			//ContentValues does not have a generic PUT method
+		}
+
+		/**
+		 * Put the non-NULL field value into a Bundle.
+		 */
+		protected void putValue(Bundle aBundle, Object aValue) {
+			//Bundle does not have a generic PUT method
+		}
+
+		/**
+		 * Reset the field to NULL/0.
+		 */
+		protected void clear(Object aRow) throws IllegalAccessException {
+			if (!bPrimitive)
+				mField.set(aRow, null);
+		}
+
+		protected void onAccessDenied(IllegalAccessException e) {
+			if (!Modifier.isFinal(mField.getModifiers()))
+				e.printStackTrace();
+		}
+	}
+
+	static protected class StringColumn extends ColumnBinding {
+		protected StringColumn(String aColName, Field aField) {
+			super(aColName, aField);
+		}
+
+		@Override
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			mField.set(aRow, aCursor.getString(aColIdx));
+		}
+
+		@Override
+		protected void putValue(ContentValues aValues, Object aValue) {
+			aValues.put(mColName, (String)aValue);
+		}
+
+		@Override
+		protected void putValue(Bundle aBundle, Object aValue) {
+			aBundle.putString(mField.getName(), (String)aValue);
+		}
+	}
+
+	static protected class IntColumn extends ColumnBinding {
+		protected IntColumn(String aColName, Field aField) {
+			super(aColName, aField);
+		}
+
+		@Override
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setInt(aRow, aCursor.getInt(aColIdx));
+			else
+				mField.set(aRow, aCursor.getInt(aColIdx));
+		}
+
+		@Override
+		protected void putValue(ContentValues aValues, Object aValue) {
+			aValues.put(mColName, (Integer)aValue);
+		}
+
+		@Override
+		protected void putValue(Bundle aBundle, Object aValue) {
+			aBundle.putInt(mField.getName(), (Integer)aValue);
+		}
+
+		@Override
+		protected void clear(Object aRow) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setInt(aRow, 0);
+			else
+				mField.set(aRow, 0);
+		}
+	}
+
+	static protected class LongColumn extends ColumnBinding {
+		protected LongColumn(String aColName, Field aField) {
+			super(aColName, aField);
+		}
+
+		@Override
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setLong(aRow, aCursor.getLong(aColIdx));
+			else
+				mField.set(aRow, aCursor.getLong(aColIdx));
+		}
+
+		@Override
+		protected void putValue(ContentValues aValues, Object aValue) {
+			aValues.put(mColName, (Long)aValue);
+		}
+
+		@Override
+		protected void putValue(Bundle aBundle, Object aValue) {
+			aBundle.putLong(mField.getName(), (Long)aValue);
+		}
+
+		@Override
+		protected void clear(Object aRow) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setLong(aRow, 0L);
+			else
+				mField.set(aRow, 0L);
+		}
+	}
+
+	static protected class FloatColumn extends ColumnBinding {
+		protected FloatColumn(String aColName, Field aField) {
+			super(aColName, aField);
+		}
+
+		@Override
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setFloat(aRow, aCursor.getFloat(aColIdx));
+			else
+				mField.set(aRow, aCursor.getFloat(aColIdx));
+		}
+
+		@Override
+		protected void putValue(ContentValues aValues, Object aValue) {
+			aValues.put(mColName, (Float)aValue);
+		}
+
+		@Override
+		protected void putValue(Bundle aBundle, Object aValue) {
+			aBundle.putFloat(mField.getName(), (Float)aValue);
+		}
+
+		@Override
+		protected void clear(Object aRow) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setFloat(aRow, 0.0f);
+			else
+				mField.set(aRow, 0.0f);
+		}
+	}
+
+	static protected class DoubleColumn extends ColumnBinding {
+		protected DoubleColumn(String aColName, Field aField) {
+			super(aColName, aField);
+		}
+
+		@Override
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setDouble(aRow, aCursor.getDouble(aColIdx));
+			else
+				mField.set(aRow, aCursor.getDouble(aColIdx));
+		}
+
+		@Override
+		protected void putValue(ContentValues aValues, Object aValue) {
+			aValues.put(mColName, (Double)aValue);
+		}
+
+		@Override
+		protected void putValue(Bundle aBundle, Object aValue) {
+			aBundle.putDouble(mField.getName(), (Double)aValue);
+		}
+
+		@Override
+		protected void clear(Object aRow) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setDouble(aRow, 0.0d);
+			else
+				mField.set(aRow, 0.0d);
+		}
+	}
+
+	static protected class BooleanColumn extends ColumnBinding {
+		protected BooleanColumn(String aColName, Field aField) {
+			super(aColName, aField);
+		}
+
+		@Override
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setBoolean(aRow, aCursor.getInt(aColIdx)>0);
+			else
+				mField.set(aRow, aCursor.getInt(aColIdx)>0);
+		}
+
+		@Override
+		protected void putValue(ContentValues aValues, Object aValue) {
+			aValues.put(mColName, (Boolean)aValue);
+		}
+
+		@Override
+		protected void putValue(Bundle aBundle, Object aValue) {
+			aBundle.putBoolean(mField.getName(), (Boolean)aValue);
+		}
+
+		@Override
+		protected void clear(Object aRow) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setBoolean(aRow, false);
+			else
+				mField.set(aRow, false);
+		}
+	}
+
+	static protected class CharColumn extends ColumnBinding {
+		protected CharColumn(String aColName, Field aField) {
+			super(aColName, aField);
+		}
+
+		@Override
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			String theValue = aCursor.getString(aColIdx);
+			if (theValue!=null && theValue.length()>0) {
+				if (bPrimitive)
+					mField.setChar(aRow, theValue.charAt(0));
+				else
+					mField.set(aRow, theValue.charAt(0));
+			}
+		}
+
+		@Override
+		protected void putValue(ContentValues aValues, Object aValue) {
+			aValues.put(mColName, String.valueOf(aValue));
+		}
+
+		@Override
+		protected void putValue(Bundle aBundle, Object aValue) {
+			aBundle.putChar(mField.getName(), (Character)aValue);
+		}
+
+		@Override
+		protected void clear(Object aRow) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setChar(aRow, '\u0000');
+			else
+				mField.set(aRow, '\u0000');
+		}
+	}
+
+	static protected class ByteColumn extends ColumnBinding {
+		protected ByteColumn(String aColName, Field aField) {
+			super(aColName, aField);
+		}
+
+		@Override
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			byte theValue = Byte.parseByte(aCursor.getString(aColIdx));
+			if (bPrimitive)
+				mField.setByte(aRow, theValue);
+			else
+				mField.set(aRow, theValue);
+		}
+
+		@Override
+		protected void putValue(ContentValues aValues, Object aValue) {
+			aValues.put(mColName, (Byte)aValue);
+		}
+
+		@Override
+		protected void putValue(Bundle aBundle, Object aValue) {
+			aBundle.putByte(mField.getName(), (Byte)aValue);
+		}
+
+		@Override
+		protected void clear(Object aRow) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setByte(aRow, (byte)0);
+			else
+				mField.set(aRow, (byte)0);
+		}
+	}
+
+	static protected class ShortColumn extends ColumnBinding {
+		protected ShortColumn(String aColName, Field aField) {
+			super(aColName, aField);
+		}
+
+		@Override
+		protected void readCursor(Object aRow, Cursor aCursor, int aColIdx) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setShort(aRow, aCursor.getShort(aColIdx));
+			else
+				mField.set(aRow, aCursor.getShort(aColIdx));
+		}
+
+		@Override
+		protected void putValue(ContentValues aValues, Object aValue) {
+			aValues.put(mColName, (Short)aValue);
+		}
+
+		@Override
+		protected void putValue(Bundle aBundle, Object aValue) {
+			aBundle.putShort(mField.getName(), (Short)aValue);
+		}
+
+		@Override
+		protected void clear(Object aRow) throws IllegalAccessException {
+			if (bPrimitive)
+				mField.setShort(aRow, (short)0);
+			else
+				mField.set(aRow, (short)0);
+		}
+	}
+
+}
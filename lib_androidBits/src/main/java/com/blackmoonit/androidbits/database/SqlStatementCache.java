@@ -0,0 +1,178 @@
+package com.blackmoonit.androidbits.database;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of compiled statements for one database connection, keyed by their SQL, so
+ * that writes repeating the same table and column pattern skip parsing and planning.<br>
+ * A statement is taken out of the cache while in use and put back when released, so no
+ * lock is held while it executes and two threads never bind the same statement. If the
+ * database object changes, or {@link #invalidate()} is called after a schema change, all
+ * statements compiled before are closed rather than reused.
+ *
+ * @author baracudda
+ */
+public class SqlStatementCache {
+	static public final int DEFAULT_CAPACITY = 32;
+
+	protected final int mCapacity;
+	/**
+	 * Idle statements by SQL, least recently used first.
+	 */
+	protected final LinkedHashMap<String, SQLiteStatement> mStatements;
+	/**
+	 * Statements evicted by the last put, closed once outside the lock.
+	 */
+	protected final ArrayList<SQLiteStatement> mEvicted = new ArrayList<SQLiteStatement>();
+	/**
+	 * The database the cached statements were compiled against.
+	 */
+	protected SQLiteDatabase mDb = null;
+	/**
+	 * Bumped whenever the cached statements become unusable.
+	 */
+	protected int mGeneration = 0;
+
+	/**
+	 * A statement checked out of the cache; hand it back with {@link #release(CachedStatement)}.
+	 */
+	static public class CachedStatement {
+		protected final String mSql;
+		protected final SQLiteStatement mStatement;
+		protected final int mGeneration;
+
+		protected CachedStatement(String aSql, SQLiteStatement aStatement, int aGeneration) {
+			mSql = aSql;
+			mStatement = aStatement;
+			mGeneration = aGeneration;
+		}
+
+		public SQLiteStatement getStatement() {
+			return mStatement;
+		}
+	}
+
+	/**
+	 * @param aCapacity - the most idle statements kept.
+	 */
+	public SqlStatementCache(int aCapacity) {
+		mCapacity = Math.max(aCapacity, 1);
+		mStatements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> aEldest) {
+				if (size()>mCapacity) {
+					mEvicted.add(aEldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Check out the compiled statement for the SQL, compiling it if none is idle.
+	 * @param aDb - the database to run it against.
+	 * @param aSql - the SQL of the statement.
+	 * @return Returns the statement, to be released after use even if it fails.
+	 */
+	public CachedStatement acquire(SQLiteDatabase aDb, String aSql) {
+		SQLiteStatement theStatement;
+		int theGeneration;
+		synchronized (this) {
+			if (aDb!=mDb) {
+				clear();
+				mDb = aDb;
+			}
+			theGeneration = mGeneration;
+			theStatement = mStatements.remove(aSql);
+		}
+		closeEvicted();
+		if (theStatement==null) {
+			//compiled outside the lock since it may wait on the database
+			theStatement = aDb.compileStatement(aSql);
+		}
+		return new CachedStatement(aSql, theStatement, theGeneration);
+	}
+
+	/**
+	 * Return a statement to the cache, or close it if the cache was invalidated meanwhile.
+	 * @param aCachedStatement - the statement from {@link #acquire(SQLiteDatabase, String)}.
+	 */
+	public void release(CachedStatement aCachedStatement) {
+		if (aCachedStatement==null)
+			return;
+		SQLiteStatement theStatement = aCachedStatement.mStatement;
+		theStatement.clearBindings();
+		synchronized (this) {
+			if (aCachedStatement.mGeneration==mGeneration) {
+				//another thread may have put back its own copy meanwhile
+				theStatement = mStatements.put(aCachedStatement.mSql, theStatement);
+			}
+			if (theStatement!=null)
+				mEvicted.add(theStatement);
+		}
+		closeEvicted();
+	}
+
+	/**
+	 * Close all idle statements; those checked out are closed when released. Call after
+	 * any schema change.
+	 */
+	public void invalidate() {
+		synchronized (this) {
+			clear();
+			mDb = null;
+		}
+		closeEvicted();
+	}
+
+	/**
+	 * Evict every idle statement and bump the generation; caller holds the lock.
+	 */
+	protected void clear() {
+		mEvicted.addAll(mStatements.values());
+		mStatements.clear();
+		mGeneration += 1;
+	}
+
+	protected void closeEvicted() {
+		SQLiteStatement[] theStatements;
+		synchronized (this) {
+			if (mEvicted.isEmpty())
+				return;
+			theStatements = mEvicted.toArray(new SQLiteStatement[mEvicted.size()]);
+			mEvicted.clear();
+		}
+		for (SQLiteStatement theStatement : theStatements) {
+			theStatement.close();
+		}
+	}
+
+	/**
+	 * @return Returns the number of idle statements cached.
+	 */
+	synchronized public int size() {
+		return mStatements.size();
+	}
+
+}
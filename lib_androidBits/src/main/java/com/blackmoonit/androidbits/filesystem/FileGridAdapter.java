@@ -32,7 +32,12 @@ abstract public class FileGridAdapter extends FileListAdapter {
 
 	protected void applyFileImg(final FileListAdapterElement anItem, ImageView v) {
 		//we do not want to scale the thumbnail any larger than a normal icon in grid view
-		mFileIcons.setFileIcon(v, anItem, 1);
+		mFileIcons.setFileIcon(v, anItem, 1, mBindingPosition);
+	}
+
+	@Override
+	protected int getPrefetchScaleFactor() {
+		return 1;
 	}
 
 }
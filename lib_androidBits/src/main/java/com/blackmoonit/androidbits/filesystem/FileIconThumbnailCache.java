@@ -16,19 +16,62 @@ package com.blackmoonit.androidbits.filesystem;
  */
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import android.graphics.drawable.Drawable;
 
 
 /**
  * Thumbnail cache holding image file's thumbnail. Hashmap wrapper to help facilitate using file cache.
+ * Several thumbnail workers write into it while the UI thread reads, so access is synchronized.
  *
  * @author baracudda
  */
 public class FileIconThumbnailCache extends HashMap<String, Drawable> {
 	static private final long serialVersionUID = 786992526469278470L;
 
+	@Override
+	public synchronized Drawable get(Object aKey) {
+		return super.get(aKey);
+	}
+
+	@Override
+	public synchronized Drawable put(String aKey, Drawable aValue) {
+		return super.put(aKey, aValue);
+	}
+
+	@Override
+	public synchronized Drawable remove(Object aKey) {
+		return super.remove(aKey);
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object aKey) {
+		return super.containsKey(aKey);
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+	}
+
+	@Override
+	public synchronized int size() {
+		return super.size();
+	}
+
+	/**
+	 * Empty the cache, handing back what it held.
+	 * @return Returns the thumbnails removed.
+	 */
+	public synchronized List<Drawable> removeAll() {
+		ArrayList<Drawable> theResult = new ArrayList<Drawable>(values());
+		super.clear();
+		return theResult;
+	}
+
 	public String getCacheKey(File aFile, int aScaleFactor) {
 		return Integer.toString(aScaleFactor)+aFile.getPath();
 	}
@@ -57,10 +100,11 @@ public class FileIconThumbnailCache extends HashMap<String, Drawable> {
 		}
 	}
 
-	public void removeFile(File aFile, int aScaleFactor) {
+	public Drawable removeFile(File aFile, int aScaleFactor) {
 		if (aFile!=null) {
-			remove(getCacheKey(aFile,aScaleFactor));
+			return remove(getCacheKey(aFile,aScaleFactor));
 		}
+		return null;
 	}
 
 }
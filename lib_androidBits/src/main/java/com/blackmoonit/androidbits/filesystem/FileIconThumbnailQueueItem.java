@@ -21,27 +21,73 @@ import android.widget.ImageView;
 import com.blackmoonit.androidbits.utils.BitsStringUtils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Thumbnail queue item holding all data needed to retrieve and then set an image file's thumbnail.
+ * Queue order is determined by the item's list position relative to the visible range snapshot
+ * pushed by the adapter, see {@link #updateViewRank(int, int)}; items not yet ranked are FIFO.<br>
+ * FileIcons keeps only one pending item per file and scale factor; later requests for the
+ * same thumbnail attach their views to it via {@link #attachView(ImageView, int)}.
  *
  * @author baracudda
  */
 public class FileIconThumbnailQueueItem implements Comparable<FileIconThumbnailQueueItem> {
-	//private static final AtomicLong seq = new AtomicLong();
-	//private final long seqNum;  //used to determine FIFO/FILO, but calc screen coordinates instead now
+	/** Rank of items whose list position is unknown; they sort after visible rows. */
+	static public final int VIEW_RANK_UNKNOWN = Integer.MAX_VALUE/2;
+	/** Rank offset applied to items outside the visible range, plus their distance from it. */
+	static public final int VIEW_RANK_OFFSCREEN = 1024;
+	/** Initial rank of prefetch items, always after items that have a view waiting on them. */
+	static private final int INITIAL_RANK_PREFETCH = 2;
+	private static final AtomicLong seq = new AtomicLong();
+	private final long seqNum;  //used to keep FIFO order among items of equal rank
 	public final ImageView iconView;
 	public final File imageFile;
 	public final String imageTag;
 	public final int imageSize;
 	public final String mimeType;
 	public final String mimeCategory;
-	private final int mInitialViewRank;
+	private volatile int mInitialViewRank;
+	/** Adapter position of the row this icon most recently belonged to, -1 if unknown. */
+	public volatile int listPosition;
+	private volatile int mViewRank = VIEW_RANK_UNKNOWN;
 	public int mThumbnailScaleFactor; //cannot be made "final" since we decrease this in some OOM cases
+	/** Encoded thumbnail found in the disk store by the I/O stage, if any. */
+	public volatile byte[] cachedThumbnailData = null;
+	/** Set once the I/O stage found nothing in the disk store, so decoding need not look again. */
+	volatile boolean bStoreMissed = false;
+	/** Prefetch items have no view, their result only goes into the memory cache. */
+	public volatile boolean isPrefetch;
+	private volatile boolean bCancelled = false;
+	/** Views which asked for the same thumbnail while this item was pending. */
+	private final ArrayList<ImageView> mExtraViews = new ArrayList<ImageView>(2);
+	/** Key FileIcons tracks this item under while it is pending. */
+	volatile String pendingKey = null;
+	/** Items get one more try after running out of memory, at a reduced size. */
+	volatile boolean bRetried = false;
 
 	public FileIconThumbnailQueueItem(ImageView aIconView, File aImageFile, String aMimeType, int aImageSize,
 			int aScaleFactor) {
-		//seqNum = seq.getAndIncrement();
+		this(aIconView, aImageFile, aMimeType, aImageSize, aScaleFactor, -1);
+	}
+
+	/**
+	 * Queue item which knows the adapter position of its row so that it can be ranked against
+	 * the visible range without touching the View from a background thread.
+	 * @param aIconView - the view which will receive the thumbnail.
+	 * @param aImageFile - the file to thumbnail.
+	 * @param aMimeType - MIME type of the file.
+	 * @param aImageSize - base icon size in pixels.
+	 * @param aScaleFactor - thumbnail scale factor.
+	 * @param aListPosition - adapter position of the row, -1 if unknown.
+	 */
+	public FileIconThumbnailQueueItem(ImageView aIconView, File aImageFile, String aMimeType, int aImageSize,
+			int aScaleFactor, int aListPosition) {
+		seqNum = seq.getAndIncrement();
+		listPosition = aListPosition;
+		isPrefetch = false;
 		iconView = aIconView;
 		imageFile = aImageFile;
 		imageTag = imageFile.getPath();
@@ -52,26 +98,121 @@ public class FileIconThumbnailQueueItem implements Comparable<FileIconThumbnailQ
 			mimeCategory = mimeType.substring(0,mimeType.lastIndexOf("/"))+"/*";
 		else
 			mimeCategory = "*/*";
-		String theParentTag = (String)((View)iconView.getParent()).getTag();
+		mInitialViewRank = calcInitialViewRank(iconView);
+		mThumbnailScaleFactor = aScaleFactor;
+
+	}
+
+	static private int calcInitialViewRank(ImageView aIconView) {
+		String theParentTag = (String)((View)aIconView.getParent()).getTag();
 		if (BitsStringUtils.isEqual(theParentTag, "GridDetail") ||
 				(BitsStringUtils.isEqual(theParentTag,"JumpPoint")) ) {
-			mInitialViewRank = 0;
+			return 0;
 		} else {
-			mInitialViewRank = 1;
+			return 1;
 		}
+	}
+
+	/**
+	 * Prefetch item for a row that is not on screen yet. It ranks after every item with a
+	 * view and is cancelled, via {@link #cancel()}, once its row leaves the prefetch window.
+	 * @param aImageFile - the file to thumbnail.
+	 * @param aMimeType - MIME type of the file.
+	 * @param aImageSize - base icon size in pixels.
+	 * @param aScaleFactor - thumbnail scale factor.
+	 * @param aListPosition - adapter position of the row.
+	 */
+	public FileIconThumbnailQueueItem(File aImageFile, String aMimeType, int aImageSize,
+			int aScaleFactor, int aListPosition) {
+		seqNum = seq.getAndIncrement();
+		listPosition = aListPosition;
+		isPrefetch = true;
+		iconView = null;
+		imageFile = aImageFile;
+		imageTag = imageFile.getPath();
+		imageSize = aImageSize;
+		mimeType = aMimeType;
+		if (mimeType!=null)
+			mimeCategory = mimeType.substring(0,mimeType.lastIndexOf("/"))+"/*";
+		else
+			mimeCategory = "*/*";
+		mInitialViewRank = INITIAL_RANK_PREFETCH;
 		mThumbnailScaleFactor = aScaleFactor;
+	}
 
+	/**
+	 * Prevent this item from being processed if it has not been already.
+	 */
+	public void cancel() {
+		bCancelled = true;
+	}
+
+	/**
+	 * Another view wants this same thumbnail, have it receive the result too. A prefetch item
+	 * gets promoted to a regular one since a view is now waiting on it. Must be called on the
+	 * UI thread and, for a prefetch item, only while it is not inside a priority queue.
+	 * @param aIconView - the view which will also receive the thumbnail.
+	 * @param aListPosition - adapter position of the view's row, -1 if unknown.
+	 */
+	public void attachView(ImageView aIconView, int aListPosition) {
+		aIconView.setTag(imageTag);
+		synchronized (mExtraViews) {
+			if (aIconView!=iconView && !mExtraViews.contains(aIconView))
+				mExtraViews.add(aIconView);
+		}
+		if (aListPosition>=0)
+			listPosition = aListPosition;
+		if (isPrefetch) {
+			mInitialViewRank = calcInitialViewRank(aIconView);
+			isPrefetch = false;
+		}
+		bCancelled = false;
+	}
+
+	/**
+	 * The views still showing this item's file, must be called on the UI thread.
+	 * @return Returns the views which should receive the thumbnail, possibly empty.
+	 */
+	public List<ImageView> getTargetViews() {
+		ArrayList<ImageView> theResult = new ArrayList<ImageView>(1+mExtraViews.size());
+		if (iconView!=null && isShowingImage(iconView))
+			theResult.add(iconView);
+		synchronized (mExtraViews) {
+			for (ImageView theView : mExtraViews) {
+				if (isShowingImage(theView))
+					theResult.add(theView);
+			}
+		}
+		return theResult;
+	}
+
+	private boolean isShowingImage(ImageView aView) {
+		String theTag = (String)(aView.getTag());
+		return (theTag!=null && theTag.equals(imageTag));
 	}
 
 	public Boolean viewHasNotBeenRecycled() {
-		String theTag = (String)(iconView.getTag());
-		if (theTag!=null) {
-			return (theTag.equals(imageTag));
-		} else {
+		if (bCancelled)
 			return false;
+		if (isPrefetch)
+			return true;
+		if (iconView!=null && isShowingImage(iconView))
+			return true;
+		synchronized (mExtraViews) {
+			for (ImageView theView : mExtraViews) {
+				if (isShowingImage(theView))
+					return true;
+			}
 		}
+		return false;
 	}
 
+	/**
+	 * Calculates the rank based on the view's location on screen. Must only be called
+	 * from the UI thread.
+	 * @return Returns the screen based rank.
+	 * @deprecated queue order is based on {@link #updateViewRank(int, int)} snapshots now.
+	 */
 	public int calcViewRank() {
 			int[] q = new int[2];
 			iconView.getLocationOnScreen(q);
@@ -79,14 +220,37 @@ public class FileIconThumbnailQueueItem implements Comparable<FileIconThumbnailQ
 			return (theResult>0) ? theResult : Integer.MAX_VALUE;
 	}
 
+	/**
+	 * Recompute this item's rank from a visible range snapshot. Items inside the range rank
+	 * top to bottom, those outside rank by their distance from it. Only call this while the
+	 * item is not inside a priority queue, otherwise the queue's ordering becomes corrupt.
+	 * @param aFirstVisible - first visible adapter position, -1 if unknown.
+	 * @param aLastVisible - last visible adapter position, -1 if unknown.
+	 */
+	public void updateViewRank(int aFirstVisible, int aLastVisible) {
+		if (listPosition<0 || aFirstVisible<0 || aLastVisible<aFirstVisible) {
+			mViewRank = VIEW_RANK_UNKNOWN;
+		} else if (listPosition<aFirstVisible) {
+			mViewRank = VIEW_RANK_OFFSCREEN+(aFirstVisible-listPosition);
+		} else if (listPosition>aLastVisible) {
+			mViewRank = VIEW_RANK_OFFSCREEN+(listPosition-aLastVisible);
+		} else {
+			mViewRank = listPosition-aFirstVisible;
+		}
+	}
+
+	/** @return Returns the rank as of the last {@link #updateViewRank(int, int)}. */
+	public int getViewRank() {
+		return mViewRank;
+	}
+
 	@Override
 	public int compareTo(FileIconThumbnailQueueItem another) {
-		if (mInitialViewRank==another.mInitialViewRank) {
-			int theViewRank = calcViewRank();
-			return theViewRank-another.calcViewRank();
-		} else {
+		if (mInitialViewRank!=another.mInitialViewRank)
 			return mInitialViewRank-another.mInitialViewRank;
-		}
+		if (mViewRank!=another.mViewRank)
+			return (mViewRank<another.mViewRank) ? -1 : 1;
+		return (seqNum<another.seqNum) ? -1 : ((seqNum==another.seqNum) ? 0 : 1);
 	}
 
 }
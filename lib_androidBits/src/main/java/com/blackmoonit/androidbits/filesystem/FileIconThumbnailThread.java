@@ -23,28 +23,63 @@ import android.graphics.drawable.Drawable;
 import com.blackmoonit.androidbits.concurrent.ThreadDaemon;
 import com.blackmoonit.androidbits.utils.BitsGraphicsUtils;
 import com.blackmoonit.androidbits.utils.BitsThumbnailUtils;
+import com.blackmoonit.androidbits.utils.VideoFrameGrabber;
 
+import java.io.File;
 import java.lang.ref.WeakReference;
 
 /**
  * Thumbnail thread used to generate live thumbnails and place them in their appropriate views.
+ * FileIcons runs a small pool of these in two stages: the I/O stage looks up the encoded
+ * thumbnail in the disk store and hands the item to the decode stage, which decodes the
+ * cached data or generates the thumbnail from the original file. Videos without a cached
+ * thumbnail go to the video stage instead, which grabs their frames within a time budget.
  *
  * @author baracudda
  */
 public class FileIconThumbnailThread extends ThreadDaemon {
 	private final WeakReference<Activity> mApp;
 	private final FileIcons mFileIcons;
+	/** Disk store lookup stage. */
+	static public final int STAGE_IO = 0;
+	/** Decode stage. */
+	static public final int STAGE_DECODE = 1;
+	/** Video frame grabbing stage. */
+	static public final int STAGE_VIDEO = 2;
+	private final int mStage;
 
 	public FileIconThumbnailThread(Activity aApp, FileIcons aFileIcons) {
+		this(aApp, aFileIcons, STAGE_DECODE, 0);
+	}
+
+	public FileIconThumbnailThread(Activity aApp, FileIcons aFileIcons, boolean aIOStage, int aWorkerNum) {
+		this(aApp, aFileIcons, (aIOStage) ? STAGE_IO : STAGE_DECODE, aWorkerNum);
+	}
+
+	/**
+	 * Worker for one stage of the thumbnail pipeline.
+	 * @param aApp - the Activity whose views are being updated.
+	 * @param aFileIcons - the FileIcons object owning the queues.
+	 * @param aStage - one of {@link #STAGE_IO}, {@link #STAGE_DECODE} or {@link #STAGE_VIDEO}.
+	 * @param aWorkerNum - number used to name the thread (debugger friendly!).
+	 */
+	public FileIconThumbnailThread(Activity aApp, FileIcons aFileIcons, int aStage, int aWorkerNum) {
 		super(0L);
 		//setProcessPriority(MIN_PRIORITY+1);
-		setProcessName("FileIconThumbnails");
+		mStage = aStage;
+		setProcessName("FileIconThumbnails"+((mStage==STAGE_IO) ? "IO" :
+				(mStage==STAGE_VIDEO) ? "Video" : "Decode")+aWorkerNum);
 		mTask = new Runnable() {
 			@Override
 			public void run() {
 				try {
 					if (mApp!=null && mApp.get()!=null && mFileIcons!=null) {
-						consume(mFileIcons.take());
+						if (mStage==STAGE_IO)
+							fetch(mFileIcons.take());
+						else if (mStage==STAGE_VIDEO)
+							consume(mFileIcons.takeForVideo());
+						else
+							consume(mFileIcons.takeForDecode());
 					}
 				} catch (InterruptedException e) {
 					//watches the queue indefinately, stop watching if interrupted
@@ -55,13 +90,40 @@ public class FileIconThumbnailThread extends ThreadDaemon {
 		mFileIcons = aFileIcons;
 	}
 
+	/**
+	 * I/O stage: read the encoded thumbnail from the disk store, if present, then pass the
+	 * item along to the decode stage, or to the video stage if it is a video with nothing
+	 * cached. Items whose view was recycled are dropped here.
+	 * @param aItem - queue item to process.
+	 */
+	void fetch(final FileIconThumbnailQueueItem aItem) {
+		if (aItem==null)
+			return;
+		if (!mFileIcons.isEnabled() || !aItem.viewHasNotBeenRecycled()) {
+			mFileIcons.finishPending(aItem);
+			return;
+		}
+		try {
+			aItem.cachedThumbnailData = BitsThumbnailUtils.loadThumbnailDataFromCache(
+					aItem.imageFile,aItem.mThumbnailScaleFactor);
+		} catch (Exception e) {
+			aItem.cachedThumbnailData = null;
+		}
+		aItem.bStoreMissed = (aItem.cachedThumbnailData==null);
+		if (aItem.cachedThumbnailData==null && aItem.mimeCategory.equals("video/*"))
+			mFileIcons.queueForVideo(aItem);
+		else
+			mFileIcons.queueForDecode(aItem);
+	}
+
     /**
      * Gets a video frame to represent it as a thumbnail.
      *
      * @param aItem - queue item representing the video file
-     * @return The bitmap to be used or null if none was found.
+     * @return The bitmap to be used or null if none was found within the time budget.
+     * @throws InterruptedException if the worker is halted while waiting.
      */
-	private Bitmap getVideoFrame(FileIconThumbnailQueueItem aItem) {
+	private Bitmap getVideoFrame(final FileIconThumbnailQueueItem aItem) throws InterruptedException {
 		if (aItem==null)
 			return null;
 		/* cannot use this code for anything less than Android 2.0
@@ -75,40 +137,77 @@ public class FileIconThumbnailThread extends ThreadDaemon {
 		} else
 			return null;
 		*/
-		return BitsThumbnailUtils.getVideoThumbnail(aItem.imageFile);
+		return mFileIcons.grabVideoFrame(aItem.imageFile, new VideoFrameGrabber.OnLateFrame() {
+			@Override
+			public void onLateFrame(File aFile, Bitmap aFrame) {
+				//too late for the view, but worth keeping for next time
+				try {
+					int theScaleFactor = aItem.mThumbnailScaleFactor;
+					BitmapDrawable theThumbnail = new BitmapDrawable(
+							scaleVideoFrame(aFrame, aItem.imageSize, theScaleFactor));
+					BitsThumbnailUtils.saveThumbnailToCache(aFile, theThumbnail, theScaleFactor);
+					mFileIcons.addThumbnail(aFile, theScaleFactor, theThumbnail);
+				} catch (Exception e) {
+					//do not care
+				} catch (OutOfMemoryError oom) {
+					//do not care
+				}
+			}
+		});
+	}
+
+	/**
+	 * Scale a video frame to the thumbnail size.
+	 * @param aFrame - the frame, handed to the bitmap pool if a scaled copy is made.
+	 * @param aImageSize - base icon size in pixels.
+	 * @param aScaleFactor - thumbnail scale factor.
+	 * @return Returns the scaled frame.
+	 */
+	static protected Bitmap scaleVideoFrame(Bitmap aFrame, int aImageSize, int aScaleFactor) {
+		boolean bFilter = false; //icon sized, not much to filter anyway, so go for speed
+		//modify the size of the thumbnail according to settings
+		int newW = aImageSize*aScaleFactor;
+		int newH = newW;
+		if (aScaleFactor>1) {
+			int origW = Math.max(aFrame.getWidth(),1);	//prevent /0 on next line
+			int origH = Math.max(aFrame.getHeight(),1); //prevent /0 on next line
+			float p = Math.min((float)newW/origW,(float)newH/origH);
+			newW = Math.min(Math.round(origW*p),origW);
+			newH = Math.min(Math.round(origH*p),origH);
+			if (aScaleFactor>=4)
+				bFilter = true; //larger thumbnails should look better
+		}
+		Thread.yield();
+		Bitmap theResult = Bitmap.createScaledBitmap(aFrame,newW,newH,bFilter);
+		if (theResult!=aFrame)
+			BitsGraphicsUtils.releaseImage(aFrame);
+		return theResult;
 	}
 
 	protected Drawable getThumbnail(FileIconThumbnailQueueItem aItem) {
 		//using some trickery to ensure Grid icons are always small, but GridDetail and others aren't
 		//int theEffectiveScaleFactor = Math.max(1,(mFileIcons.scaleFactor*aItem.mThumbnailScaleFactorOverride));
 		int theEffectiveScaleFactor = aItem.mThumbnailScaleFactor;
-		Drawable theResult = BitsThumbnailUtils.loadThumbnailFromCache(aItem.imageFile,theEffectiveScaleFactor);
+		byte[] theCachedData = aItem.cachedThumbnailData;
+		aItem.cachedThumbnailData = null;
+		Drawable theResult = null;
+		if (theCachedData!=null)
+			theResult = BitsThumbnailUtils.decodeThumbnailData(theCachedData);
+		else if (!aItem.bStoreMissed) //the I/O stage already probed the store for us
+			theResult = BitsThumbnailUtils.loadThumbnailFromCache(aItem.imageFile,theEffectiveScaleFactor);
 		if (theResult!=null)
 			return theResult;
 		try {
 			Bitmap bmOrig = null;
 			if (aItem.mimeCategory.equals("image/*")) {
 				int theThumbSize = aItem.imageSize * theEffectiveScaleFactor;
-				bmOrig = BitsGraphicsUtils.getImage(mApp.get(), aItem.imageFile, -1, theThumbSize, theThumbSize, true);
+				bmOrig = BitsThumbnailUtils.getImageThumbnail(mApp.get(), aItem.imageFile, theThumbSize);
 			} else if (aItem.mimeCategory.equals("video/*")) {
 				bmOrig = getVideoFrame(aItem);
-				if (bmOrig!=null) {
-					boolean bFilter = false; //icon sized, not much to filter anyway, so go for speed
-					//modify the size of the thumbnail according to settings
-					int newW = aItem.imageSize*theEffectiveScaleFactor;
-					int newH = newW;
-					if (theEffectiveScaleFactor>1) {
-						int origW = Math.max(bmOrig.getWidth(),1);	//prevent /0 on next line
-						int origH = Math.max(bmOrig.getHeight(),1); //prevent /0 on next line
-						float p = Math.min((float)newW/origW,(float)newH/origH);
-						newW = Math.min(Math.round(origW*p),origW);
-						newH = Math.min(Math.round(origH*p),origH);
-						if (theEffectiveScaleFactor>=4)
-							bFilter = true; //larger thumbnails should look better
-					}
-					Thread.yield();
-					bmOrig = Bitmap.createScaledBitmap(bmOrig,newW,newH,bFilter);
-				}
+				if (bmOrig!=null)
+					bmOrig = scaleVideoFrame(bmOrig, aItem.imageSize, theEffectiveScaleFactor);
+				else //over its time budget or unreadable, keep the generic icon
+					mFileIcons.markThumbnailFailed(aItem);
 			}
 			Thread.yield();
 			if (bmOrig!=null) {
@@ -117,31 +216,41 @@ public class FileIconThumbnailThread extends ThreadDaemon {
 				return theResult;
 			} else
 				return null;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			return null;
 		} catch (Exception e) {
 			return null;
 		}
 	}
 
 	void consume(final FileIconThumbnailQueueItem aItem) {
+		if (aItem==null)
+			return;
 		final Activity theAct = mApp.get();
+		boolean bBusy = false;
+		boolean bRequeued = false;
 		try {
 			if (mFileIcons.isEnabled()) {
 				if (aItem.viewHasNotBeenRecycled()) {
-					if (theAct!=null) {
-						theAct.runOnUiThread(new Runnable() {
-							@Override
-							public void run() {
-								theAct.setProgressBarIndeterminateVisibility(true);
-							}
-						});
+					bBusy = !aItem.isPrefetch;
+					if (bBusy)
+						mFileIcons.setBusy(true);
+					//an earlier item for the same file may have finished since this one was queued
+					Drawable theThumbnail = mFileIcons.getThumbnail(aItem.imageFile,aItem.mThumbnailScaleFactor);
+					if (theThumbnail==null) {
+						theThumbnail = getThumbnail(aItem);
+						if (theThumbnail!=null) {
+							mFileIcons.checkRecycle();
+							mFileIcons.addThumbnail(aItem.imageFile,aItem.mThumbnailScaleFactor,theThumbnail);
+						}
 					}
-					final Drawable theThumbnail = getThumbnail(aItem);
+					//views attached from now on will find the thumbnail in the memory cache
+					mFileIcons.finishPending(aItem);
 					if (theThumbnail!=null) {
-						mFileIcons.checkRecycle();
-						mFileIcons.addThumbnail(aItem.imageFile,aItem.mThumbnailScaleFactor,theThumbnail);
 						Thread.yield();
 						//Activity theAct = mApp.get();
-						if (theAct!=null) {
+						if (theAct!=null && !aItem.isPrefetch) {
 							theAct.runOnUiThread(new Runnable() {
 								@Override
 								public void run() {
@@ -150,14 +259,6 @@ public class FileIconThumbnailThread extends ThreadDaemon {
 							});
 						}
 					}
-					if (theAct!=null) {
-						theAct.runOnUiThread(new Runnable() {
-							@Override
-							public void run() {
-								theAct.setProgressBarIndeterminateVisibility(false);
-							}
-						});
-					}
 				}
 			} else {
 				mFileIcons.checkRecycle();
@@ -172,11 +273,19 @@ public class FileIconThumbnailThread extends ThreadDaemon {
 				}
 			} else
 				mFileIcons.emptyRecycleBin();
-			if (aItem.viewHasNotBeenRecycled()) {
-				mFileIcons.requestThumbnail(aItem.iconView,aItem.imageFile,aItem.mThumbnailScaleFactor);
+			//retry the same item once rather than queueing a duplicate
+			if (!aItem.bRetried && !aItem.isPrefetch && aItem.viewHasNotBeenRecycled()) {
+				aItem.bRetried = true;
+				mFileIcons.requeueThumbnail(aItem);
+				bRequeued = true;
 			}
 		} catch (Error e) {
 			//also do not care, just do not create one
+		} finally {
+			if (!bRequeued)
+				mFileIcons.finishPending(aItem);
+			if (bBusy)
+				mFileIcons.setBusy(false);
 		}
 	}
 
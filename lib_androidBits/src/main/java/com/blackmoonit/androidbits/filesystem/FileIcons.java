@@ -17,7 +17,10 @@ package com.blackmoonit.androidbits.filesystem;
 
 import android.app.Activity;
 import android.app.ListActivity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
@@ -28,34 +31,93 @@ import android.net.Uri;
 import android.widget.ImageView;
 
 import com.blackmoonit.androidbits.R;
+import com.blackmoonit.androidbits.concurrent.RingBuffer;
+import com.blackmoonit.androidbits.concurrent.TimerWheel;
+import com.blackmoonit.androidbits.utils.BitmapPool;
 import com.blackmoonit.androidbits.utils.BitsGraphicsUtils;
 import com.blackmoonit.androidbits.utils.BitsThumbnailUtils;
-import com.blackmoonit.androidbits.utils.FifoQueue;
+import com.blackmoonit.androidbits.utils.VideoFrameGrabber;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Manage icon retrieval for various file types. Folders are not handled.
+ * Manage icon retrieval for various file types. Folders are not handled.<br>
+ * Thumbnails are generated by a small pool of {@link FileIconThumbnailThread} workers: one
+ * I/O stage worker reads cached thumbnails from disk and several decode stage workers turn
+ * them (or the original files) into Drawables. Videos with no cached thumbnail go to their own
+ * lane of video workers instead, so slow frame grabs never hold up photos. All queues are
+ * ordered by the visible range snapshot the adapter pushes via {@link #setVisibleRange(int, int)}.<br>
+ * Only one item per file and scale factor is ever pending; requesting a thumbnail that is
+ * already queued or being generated just adds the view to the pending item's targets.<br>
+ * The icon of the app handling a MIME type is resolved once and cached until a package is
+ * added, removed or replaced; {@link #prewarmIcons(List)} resolves a listing's types in the
+ * background, once per extension, so binding rows does not need to query the PackageManager.
  *
  * @author baracudda
  */
 public class FileIcons {
 	static private final long LOW_MEMORY_WARNING = 1024*64;
+	static private final int MAX_DECODE_WORKERS = 4;
+	static private final int RECYCLE_BIN_CAPACITY = 1024;
 	private final Activity mAct;
 	private final MIMEtypeMap mMimeMap;
 	private final PriorityBlockingQueue<FileIconThumbnailQueueItem> mThumbnailQueue;
+	private final PriorityBlockingQueue<FileIconThumbnailQueueItem> mDecodeQueue;
+	private final PriorityBlockingQueue<FileIconThumbnailQueueItem> mVideoQueue;
+	private final VideoFrameGrabber mVideoGrabber;
+	/** Thumbnails which could not be made, by cache key, so they are not attempted again. */
+	private final ConcurrentHashMap<String, Boolean> mFailedThumbnails;
 	private final FileIconThumbnailCache mThumbnailCache;
-	private final FifoQueue<String> mThumbnailRecycleBin;
-	private FileIconThumbnailThread mThumbnailThread;
-	private final Intent mActivityIconIntent;
+	/**
+	 * Cache keys of thumbnails no longer on screen. Offered to from the UI thread and the
+	 * workers, drained by whichever thread gets to empty it first.
+	 */
+	private final RingBuffer.Mpsc<String> mThumbnailRecycleBin;
+	private final AtomicBoolean bEmptyingRecycleBin = new AtomicBoolean(false);
+	/**
+	 * Views given an icon, so a thumbnail leaving the cache is only pooled once none of them
+	 * shows it any more. UI thread only.
+	 */
+	private final WeakHashMap<ImageView, Boolean> mIconViews = new WeakHashMap<ImageView, Boolean>();
+	private final ArrayList<FileIconThumbnailThread> mThumbnailThreads;
+	/** Items queued or in flight, keyed by thumbnail cache key. */
+	private final ConcurrentHashMap<String, FileIconThumbnailQueueItem> mPendingItems;
+	private final AtomicInteger mBusyCount = new AtomicInteger(0);
+	private volatile int mVisibleFirst = -1;
+	private volatile int mVisibleLast = -1;
+	private volatile int mPrefetchFirst = -1;
+	private volatile int mPrefetchLast = -1;
 	private final PackageManager mPkgMgr;
+	/** Icon of the app handling a MIME type, or mDefaultFileIcon if none does. */
+	private final ConcurrentHashMap<String, Drawable> mMIMEiconCache;
+	private volatile int mMIMEiconCacheState = 0;
+	/** Extensions handed to the prewarm task since the last package change. */
+	private final ConcurrentHashMap<String, Boolean> mPrewarmedExts = new ConcurrentHashMap<String, Boolean>();
+	private volatile int mPrewarmedState = 0;
+	private final ConcurrentLinkedQueue<File> mPrewarmQueue = new ConcurrentLinkedQueue<File>();
+	private final TimerWheel.Timer mPrewarmTask;
+	private final Drawable mDefaultFileIcon;
+	/** Changes whenever a package is added, removed or replaced. */
+	static private final AtomicInteger mInstallState = new AtomicInteger(0);
+	static private BroadcastReceiver mPackageWatcher = null;
 	private String mLastMIMEtype = "";
 	private Drawable mLastMIMEicon = null;
 	private boolean mEnableThumbnails = false;
 	public int origIconSize = 48;
 	public int scaleFactor = 1;
+	/** Number of decode stage workers started when thumbnails get enabled. */
+	public int decodeWorkerCount = getDefaultDecodeWorkerCount();
+	/** Number of video lane workers started when thumbnails get enabled. */
+	public int videoWorkerCount = 1;
 
 	public interface OnSetThumbnail {
 		public void onSetThumbnail(ImageView v, Drawable d);
@@ -67,10 +129,52 @@ public class FileIcons {
 		mPkgMgr = mAct.getPackageManager();
 		mMimeMap = aMimeMap;
 		mThumbnailQueue = new PriorityBlockingQueue<FileIconThumbnailQueueItem>();
+		mDecodeQueue = new PriorityBlockingQueue<FileIconThumbnailQueueItem>();
+		mVideoQueue = new PriorityBlockingQueue<FileIconThumbnailQueueItem>();
+		//one spare grabber for a grab abandoned over its time budget
+		mVideoGrabber = new VideoFrameGrabber(videoWorkerCount+1, VideoFrameGrabber.DEFAULT_TIME_BUDGET);
+		mFailedThumbnails = new ConcurrentHashMap<String, Boolean>();
+		mThumbnailThreads = new ArrayList<FileIconThumbnailThread>();
+		mPendingItems = new ConcurrentHashMap<String, FileIconThumbnailQueueItem>();
 		mThumbnailCache = new FileIconThumbnailCache();
-		mThumbnailRecycleBin = new FifoQueue<String>();
-		mActivityIconIntent = new Intent(Intent.ACTION_VIEW);
+		mThumbnailRecycleBin = new RingBuffer.Mpsc<String>(RECYCLE_BIN_CAPACITY);
+		mMIMEiconCache = new ConcurrentHashMap<String, Drawable>();
+		mPrewarmTask = TimerWheel.getShared().newTimer(new Runnable() {
+			@Override
+			public void run() {
+				prewarmQueuedIcons();
+			}
+		}, "FileIconsPrewarm");
+		mDefaultFileIcon = mAct.getResources().getDrawable(R.drawable.item_file);
 		origIconSize = BitsGraphicsUtils.dipsToPixels(mAct, origIconSize);
+		watchPackages(mAct);
+	}
+
+	/**
+	 * Installing or removing apps changes which app handles a MIME type, so watch for it.
+	 * One receiver per process suffices; it is registered with the application context so
+	 * that it does not hold on to any Activity.
+	 * @param aContext - any context.
+	 */
+	static private synchronized void watchPackages(Context aContext) {
+		if (mPackageWatcher==null) {
+			mPackageWatcher = new BroadcastReceiver() {
+				@Override
+				public void onReceive(Context aContext, Intent aIntent) {
+					mInstallState.incrementAndGet();
+				}
+			};
+			IntentFilter theFilter = new IntentFilter();
+			theFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+			theFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+			theFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+			theFilter.addDataScheme("package");
+			try {
+				aContext.getApplicationContext().registerReceiver(mPackageWatcher,theFilter);
+			} catch (Exception e) {
+				//without the receiver, the cache just never gets invalidated
+			}
+		}
 	}
 
 	/**
@@ -113,8 +217,27 @@ public class FileIcons {
 		return aResolveInfo.activityInfo.name.equals("com.blackmoonit.android.FileBrowser.ViewFileAsJumpPoint");
 	}
 
+	/**
+	 * Set the icon of aFile into the ImageView, requesting a thumbnail if appropriate.
+	 * @param aFileIcon - the view to receive the icon.
+	 * @param aFile - the file the icon represents.
+	 * @param aScaleFactor - thumbnail scale factor, &lt;1 means use {@link #scaleFactor}.
+	 */
 	public void setFileIcon(final ImageView aFileIcon, final File aFile, int aScaleFactor) {
+		setFileIcon(aFileIcon, aFile, aScaleFactor, -1);
+	}
+
+	/**
+	 * Set the icon of aFile into the ImageView, requesting a thumbnail if appropriate.
+	 * @param aFileIcon - the view to receive the icon.
+	 * @param aFile - the file the icon represents.
+	 * @param aScaleFactor - thumbnail scale factor, &lt;1 means use {@link #scaleFactor}.
+	 * @param aListPosition - adapter position of the row, used to prioritize the thumbnail.
+	 */
+	public void setFileIcon(final ImageView aFileIcon, final File aFile, int aScaleFactor,
+			int aListPosition) {
 		int theScaleFactor = (aScaleFactor<1) ? scaleFactor : aScaleFactor;
+		mIconViews.put(aFileIcon, Boolean.TRUE);
 		try {
 			String theMIMEtype = mMimeMap.guessMIMEtype(aFile.getName());
 			String theMIMEcategory = mMimeMap.getMIMEcategory(theMIMEtype);
@@ -144,30 +267,7 @@ public class FileIcons {
 				} else if (bMIMEtypeChanged && theMIMEtype.equals("application/zip")) {
 					mLastMIMEicon = mAct.getResources().getDrawable(R.drawable.item_zip);
 				} else if (theMIMEcategory!=null) {
-					//use cached icon if same MIMEtype else get icon
-					if (bMIMEtypeChanged || mLastMIMEicon==null ||
-							(mEnableThumbnails && isVisualMedia) ) {
-						mActivityIconIntent.setDataAndType(Uri.fromFile(aFile), theMIMEtype);
-						try {
-							//mLastMIMEicon = mPkgMgr.getActivityIcon(mActivityIconIntent);
-							List<ResolveInfo> appList = mPkgMgr.queryIntentActivities(mActivityIconIntent,PackageManager.MATCH_DEFAULT_ONLY);
-							if (appList.size()==0)
-								appList = mPkgMgr.queryIntentActivities(mActivityIconIntent,PackageManager.GET_ACTIVITIES);
-							if (appList.size()>0) {
-								if (!isJumpActivity(appList.get(0)))
-									mLastMIMEicon = appList.get(0).loadIcon(mPkgMgr);
-								else {
-									if (appList.size()>1)
-										mLastMIMEicon = appList.get(1).loadIcon(mPkgMgr);
-									else
-										mLastMIMEicon = null;
-								}
-							} else
-								mLastMIMEicon = null;
-						} catch (Exception e) {
-							mLastMIMEicon = null;
-						}
-					}
+					mLastMIMEicon = getMIMEicon(theMIMEtype,aFile);
 				}
 			} else {
 				mLastMIMEicon = null;
@@ -196,7 +296,7 @@ public class FileIcons {
 			}
 
 			if (mEnableThumbnails && !bUsedCache && isVisualMedia) {
-				requestThumbnail(aFileIcon,aFile,theScaleFactor);
+				requestThumbnail(aFileIcon,aFile,theScaleFactor,aListPosition);
 			}
 
 		} catch (Exception e) {
@@ -208,6 +308,128 @@ public class FileIcons {
 		}
 	}
 
+	/**
+	 * Icon of the app which handles the MIME type, resolved only if not already cached.
+	 * @param aMIMEtype - the MIME type.
+	 * @param aFile - a file of that type.
+	 * @return Returns the app icon or the default file icon if no app handles the type.
+	 */
+	protected Drawable getMIMEicon(String aMIMEtype, File aFile) {
+		int theInstallState = mInstallState.get();
+		if (theInstallState!=mMIMEiconCacheState) {
+			mMIMEiconCache.clear();
+			mMIMEiconCacheState = theInstallState;
+		}
+		Drawable theResult = mMIMEiconCache.get(aMIMEtype);
+		if (theResult==null) {
+			theResult = resolveMIMEicon(aMIMEtype,aFile);
+			if (theResult==null)
+				theResult = mDefaultFileIcon;
+			mMIMEiconCache.put(aMIMEtype,theResult);
+		}
+		return theResult;
+	}
+
+	/**
+	 * Query the PackageManager for the icon of the app which would view the file. Safe to
+	 * call from a background thread.
+	 * @param aMIMEtype - the MIME type.
+	 * @param aFile - a file of that type.
+	 * @return Returns the app icon or NULL if no app handles the type.
+	 */
+	protected Drawable resolveMIMEicon(String aMIMEtype, File aFile) {
+		Intent theIntent = new Intent(Intent.ACTION_VIEW);
+		theIntent.setDataAndType(Uri.fromFile(aFile), aMIMEtype);
+		try {
+			//return mPkgMgr.getActivityIcon(theIntent);
+			List<ResolveInfo> appList = mPkgMgr.queryIntentActivities(theIntent,PackageManager.MATCH_DEFAULT_ONLY);
+			if (appList.size()==0)
+				appList = mPkgMgr.queryIntentActivities(theIntent,PackageManager.GET_ACTIVITIES);
+			if (appList.size()>0) {
+				if (!isJumpActivity(appList.get(0)))
+					return appList.get(0).loadIcon(mPkgMgr);
+				else if (appList.size()>1)
+					return appList.get(1).loadIcon(mPkgMgr);
+			}
+		} catch (Exception e) {
+			//no icon then
+		}
+		return null;
+	}
+
+	/**
+	 * Resolve, in the background, the icons for the MIME types present in a listing so that
+	 * binding its rows finds them already cached. Call this whenever the listing changes.
+	 * @param aFiles - the files about to be displayed.
+	 * @see #prewarmIcon(File)
+	 */
+	public void prewarmIcons(List<? extends File> aFiles) {
+		if (aFiles!=null) {
+			for (File theFile : aFiles) {
+				prewarmIcon(theFile);
+			}
+		}
+	}
+
+	/**
+	 * Hand the file to the background prewarm task unless one with the same extension was
+	 * already; cheap enough to call for every row of a listing on the UI thread.
+	 * @param aFile - a file about to be displayed.
+	 */
+	public void prewarmIcon(File aFile) {
+		if (aFile==null)
+			return;
+		//a folder named like a file must not claim that file's extension
+		boolean bIsFolder = (aFile instanceof FileListAdapterElement)
+				? !((FileListAdapterElement)aFile).bIsFile : aFile.isDirectory();
+		if (bIsFolder)
+			return;
+		int theInstallState = mInstallState.get();
+		if (theInstallState!=mPrewarmedState) {
+			mPrewarmedExts.clear();
+			mPrewarmedState = theInstallState;
+		}
+		if (mPrewarmedExts.putIfAbsent(getPrewarmKey(aFile.getName()),Boolean.TRUE)==null) {
+			mPrewarmQueue.offer(aFile);
+			//one task drains the queue; scheduled while running, it runs once more afterwards
+			mPrewarmTask.schedule(0L);
+		}
+	}
+
+	/**
+	 * The part of a filename its MIME type is guessed from.
+	 * @param aFilename - the filename.
+	 * @return Returns the lowercase extension, or "._" for AppleDouble files.
+	 */
+	static protected String getPrewarmKey(String aFilename) {
+		if (aFilename.startsWith("._"))
+			return "._";
+		int theDot = aFilename.lastIndexOf('.');
+		return (theDot>=0) ? aFilename.substring(theDot+1).toLowerCase() : "";
+	}
+
+	/**
+	 * Resolve the icons of the files queued by {@link #prewarmIcon(File)}; runs on a
+	 * {@link TimerWheel} worker.
+	 */
+	protected void prewarmQueuedIcons() {
+		File theFile;
+		while ((theFile = mPrewarmQueue.poll())!=null) {
+			int theInstallState = mInstallState.get();
+			String theMIMEtype = mMimeMap.guessMIMEtype(theFile.getName());
+			if (theMIMEtype!=null && !mMIMEiconCache.containsKey(theMIMEtype) &&
+					!theMIMEtype.equals("application/vnd.android.package-archive") &&
+					!theMIMEtype.equals("application/zip") &&
+					mMimeMap.getMIMEcategory(theMIMEtype)!=null) {
+				Drawable theIcon = resolveMIMEicon(theMIMEtype,theFile);
+				//do not cache what was resolved against an outdated set of packages
+				if (theInstallState==mInstallState.get() && theInstallState==mMIMEiconCacheState)
+					mMIMEiconCache.putIfAbsent(theMIMEtype,(theIcon!=null) ? theIcon : mDefaultFileIcon);
+				Thread.yield();
+			}
+		}
+	}
+
 	/**
 	 * Enable or disable the generation of thumbnails.
 	 *
@@ -232,20 +454,45 @@ public class FileIcons {
 	 * @param b - true will stop the thread, false will start it if enabled.
 	 */
 	public void setSuspend(boolean b) {
-		if (!b && mEnableThumbnails) {
-			if (mThumbnailThread==null) {
-				mThumbnailThread = new FileIconThumbnailThread(mAct,this);
-				mThumbnailThread.start();
+		synchronized (mThumbnailThreads) {
+			if (!b && mEnableThumbnails) {
+				if (mThumbnailThreads.isEmpty()) {
+					mThumbnailThreads.add(new FileIconThumbnailThread(mAct,this,
+							FileIconThumbnailThread.STAGE_IO,0));
+					for (int i=0; i<Math.max(1,decodeWorkerCount); i++) {
+						mThumbnailThreads.add(new FileIconThumbnailThread(mAct,this,
+								FileIconThumbnailThread.STAGE_DECODE,i));
+					}
+					for (int i=0; i<Math.max(1,videoWorkerCount); i++) {
+						mThumbnailThreads.add(new FileIconThumbnailThread(mAct,this,
+								FileIconThumbnailThread.STAGE_VIDEO,i));
+					}
+					for (FileIconThumbnailThread theThread : mThumbnailThreads) {
+						theThread.start();
+					}
+				}
+			} else if (!mThumbnailThreads.isEmpty()) {
+				for (FileIconThumbnailThread theThread : mThumbnailThreads) {
+					theThread.halt();
+				}
+				mThumbnailThreads.clear();
 			}
-		} else if (mThumbnailThread!=null) {
-			mThumbnailThread.halt();
-			mThumbnailThread = null;
 		}
 	}
 
+	/**
+	 * Decoding is CPU bound, so leave one core for the UI thread and do not go overboard.
+	 * @return Returns the default number of decode stage workers.
+	 */
+	static public int getDefaultDecodeWorkerCount() {
+		int theCores = Runtime.getRuntime().availableProcessors();
+		return Math.max(1, Math.min(MAX_DECODE_WORKERS, theCores-1));
+	}
+
 	@Override
 	protected void finalize() throws Throwable {
 		setSuspend(true);
+		mVideoGrabber.close();
 		super.finalize();
 	}
 
@@ -254,9 +501,268 @@ public class FileIcons {
 	}
 
 	public void requestThumbnail(final ImageView aFileIcon, final File aFile, final int aScaleFactor) {
+		requestThumbnail(aFileIcon, aFile, aScaleFactor, -1);
+	}
+
+	/**
+	 * Queue up the generation of a thumbnail for the given file. If the same thumbnail is
+	 * already pending, the view is attached to that item instead of queueing another one.
+	 * Must be called on the UI thread.
+	 * @param aFileIcon - the view to receive the thumbnail.
+	 * @param aFile - the file to thumbnail.
+	 * @param aScaleFactor - thumbnail scale factor.
+	 * @param aListPosition - adapter position of the row, -1 if unknown.
+	 */
+	public void requestThumbnail(final ImageView aFileIcon, final File aFile, final int aScaleFactor,
+			final int aListPosition) {
 		if (mThumbnailQueue!=null && aFileIcon!=null && aFile!=null && aFile.canRead()) {
-			mThumbnailQueue.offer(new FileIconThumbnailQueueItem(aFileIcon,aFile,
-					mMimeMap.guessMIMEtype(aFile),origIconSize,aScaleFactor));
+			String theKey = mThumbnailCache.getCacheKey(aFile,aScaleFactor);
+			if (mFailedThumbnails.containsKey(theKey))
+				return;
+			FileIconThumbnailQueueItem thePendingItem = mPendingItems.get(theKey);
+			if (thePendingItem!=null) {
+				attachToPending(thePendingItem,aFileIcon,aListPosition);
+				return;
+			}
+			FileIconThumbnailQueueItem theItem = new FileIconThumbnailQueueItem(aFileIcon,aFile,
+					mMimeMap.guessMIMEtype(aFile),origIconSize,aScaleFactor,aListPosition);
+			theItem.pendingKey = theKey;
+			theItem.updateViewRank(mVisibleFirst,mVisibleLast);
+			mPendingItems.put(theKey,theItem);
+			mThumbnailQueue.offer(theItem);
+		}
+	}
+
+	/**
+	 * Add a view to an item which is already pending. Attaching to a prefetch item raises
+	 * its rank, so it is taken out of whichever queue it is waiting in and put back.
+	 * @param aItem - the pending item.
+	 * @param aFileIcon - the view to receive the thumbnail.
+	 * @param aListPosition - adapter position of the row, -1 if unknown.
+	 */
+	protected void attachToPending(FileIconThumbnailQueueItem aItem, ImageView aFileIcon,
+			int aListPosition) {
+		if (aItem.isPrefetch) {
+			PriorityBlockingQueue<FileIconThumbnailQueueItem> theQueue = null;
+			if (mThumbnailQueue.remove(aItem))
+				theQueue = mThumbnailQueue;
+			else if (mDecodeQueue.remove(aItem))
+				theQueue = mDecodeQueue;
+			else if (mVideoQueue.remove(aItem))
+				theQueue = mVideoQueue;
+			aItem.attachView(aFileIcon,aListPosition);
+			aItem.updateViewRank(mVisibleFirst,mVisibleLast);
+			if (theQueue!=null)
+				theQueue.offer(aItem);
+		} else {
+			aItem.attachView(aFileIcon,aListPosition);
+		}
+	}
+
+	/**
+	 * The item is done, or was dropped, so later requests for it will queue a new one.
+	 * @param aItem - the item no longer pending.
+	 */
+	void finishPending(FileIconThumbnailQueueItem aItem) {
+		if (aItem!=null && aItem.pendingKey!=null) {
+			mPendingItems.remove(aItem.pendingKey,aItem);
+		}
+	}
+
+	/**
+	 * No thumbnail could be made for the item, do not try again until {@link #clear()}.
+	 * @param aItem - the item which failed.
+	 */
+	void markThumbnailFailed(FileIconThumbnailQueueItem aItem) {
+		if (aItem!=null && aItem.pendingKey!=null) {
+			mFailedThumbnails.put(aItem.pendingKey,Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * Give an item which ran out of memory another go, it remains the pending item for its
+	 * thumbnail so that no duplicate gets queued meanwhile.
+	 * @param aItem - the item to retry.
+	 */
+	void requeueThumbnail(FileIconThumbnailQueueItem aItem) {
+		aItem.cachedThumbnailData = null;
+		aItem.bStoreMissed = false;
+		aItem.updateViewRank(mVisibleFirst,mVisibleLast);
+		mThumbnailQueue.offer(aItem);
+	}
+
+	/**
+	 * Queue up a low priority thumbnail for a row about to scroll into view. The result only
+	 * goes into the memory cache so the row finds it there once bound. Prefetch work always
+	 * ranks after thumbnails a visible view is waiting on.
+	 * @param aFile - the file to thumbnail.
+	 * @param aScaleFactor - thumbnail scale factor, &lt;1 means use {@link #scaleFactor}.
+	 * @param aListPosition - adapter position of the row.
+	 */
+	public void prefetchThumbnail(final File aFile, int aScaleFactor, int aListPosition) {
+		if (!mEnableThumbnails || aFile==null || aFile.isDirectory())
+			return;
+		int theScaleFactor = (aScaleFactor<1) ? scaleFactor : aScaleFactor;
+		String theMIMEtype = mMimeMap.guessMIMEtype(aFile.getName());
+		String theMIMEcategory = mMimeMap.getMIMEcategory(theMIMEtype);
+		boolean isVisualMedia = (theMIMEcategory!=null) &&
+				(theMIMEcategory.equals("image/*") || theMIMEcategory.equals("video/*"));
+		if (isVisualMedia && !mThumbnailCache.containsFile(aFile,theScaleFactor) && aFile.canRead()) {
+			String theKey = mThumbnailCache.getCacheKey(aFile,theScaleFactor);
+			if (mPendingItems.containsKey(theKey) || mFailedThumbnails.containsKey(theKey))
+				return;
+			FileIconThumbnailQueueItem theItem = new FileIconThumbnailQueueItem(aFile,
+					theMIMEtype,origIconSize,theScaleFactor,aListPosition);
+			theItem.pendingKey = theKey;
+			theItem.updateViewRank(mVisibleFirst,mVisibleLast);
+			mPendingItems.put(theKey,theItem);
+			mThumbnailQueue.offer(theItem);
+		}
+	}
+
+	/**
+	 * The adapter pushes the range of rows it is prefetching ahead of the scroll direction.
+	 * Pending prefetch items outside of it are cancelled. Must be called on the UI thread.
+	 * @param aFirst - first adapter position being prefetched.
+	 * @param aLast - last adapter position being prefetched.
+	 */
+	public void setPrefetchRange(int aFirst, int aLast) {
+		if (aFirst==mPrefetchFirst && aLast==mPrefetchLast)
+			return;
+		mPrefetchFirst = aFirst;
+		mPrefetchLast = aLast;
+		reprioritize(mThumbnailQueue);
+		reprioritize(mDecodeQueue);
+		reprioritize(mVideoQueue);
+	}
+
+	/**
+	 * Determine if a pending item is still wanted.
+	 * @param aItem - the queue item.
+	 * @return Returns TRUE if the item should still be processed.
+	 */
+	protected boolean isStillWanted(FileIconThumbnailQueueItem aItem) {
+		if (aItem.isPrefetch && (aItem.listPosition<mPrefetchFirst || aItem.listPosition>mPrefetchLast)) {
+			aItem.cancel();
+		}
+		return aItem.viewHasNotBeenRecycled();
+	}
+
+	/**
+	 * The adapter pushes a snapshot of its visible range whenever it scrolls. Pending items
+	 * are re-ranked against it and items whose view has since been recycled are cancelled.
+	 * Must be called on the UI thread.
+	 * @param aFirstVisible - first visible adapter position.
+	 * @param aLastVisible - last visible adapter position.
+	 */
+	public void setVisibleRange(int aFirstVisible, int aLastVisible) {
+		if (aFirstVisible==mVisibleFirst && aLastVisible==mVisibleLast)
+			return;
+		mVisibleFirst = aFirstVisible;
+		mVisibleLast = aLastVisible;
+		reprioritize(mThumbnailQueue);
+		reprioritize(mDecodeQueue);
+		reprioritize(mVideoQueue);
+	}
+
+	/**
+	 * Re-rank every pending item by draining the queue and putting them back, since ranks
+	 * may not change while an item is inside a priority queue.
+	 * @param aQueue - the queue to re-rank.
+	 */
+	protected void reprioritize(PriorityBlockingQueue<FileIconThumbnailQueueItem> aQueue) {
+		if (aQueue==null || aQueue.isEmpty())
+			return;
+		ArrayList<FileIconThumbnailQueueItem> thePending = new ArrayList<FileIconThumbnailQueueItem>(aQueue.size());
+		aQueue.drainTo(thePending);
+		int theFirst = mVisibleFirst;
+		int theLast = mVisibleLast;
+		for (FileIconThumbnailQueueItem theItem : thePending) {
+			if (isStillWanted(theItem)) {
+				theItem.updateViewRank(theFirst,theLast);
+				aQueue.offer(theItem);
+			} else {
+				finishPending(theItem);
+			}
+		}
+	}
+
+	/**
+	 * Hand an item from the I/O stage over to the decode stage.
+	 * @param aItem - the item to decode.
+	 */
+	public void queueForDecode(FileIconThumbnailQueueItem aItem) {
+		if (aItem!=null) {
+			aItem.updateViewRank(mVisibleFirst,mVisibleLast);
+			mDecodeQueue.offer(aItem);
+		}
+	}
+
+	/**
+	 * Hand a video with no cached thumbnail from the I/O stage over to the video lane.
+	 * @param aItem - the item whose frame needs grabbing.
+	 */
+	public void queueForVideo(FileIconThumbnailQueueItem aItem) {
+		if (aItem!=null) {
+			aItem.updateViewRank(mVisibleFirst,mVisibleLast);
+			mVideoQueue.offer(aItem);
+		}
+	}
+
+	/**
+	 * Video lane workers block here until an item is ready for them.
+	 * @return Returns the next item to grab a frame for.
+	 * @throws InterruptedException if the worker is halted.
+	 */
+	public FileIconThumbnailQueueItem takeForVideo() throws InterruptedException {
+		return mVideoQueue.take();
+	}
+
+	/**
+	 * Grab a frame of the video within the grabber's time budget. A frame that shows up
+	 * late is still given to the listener so it can be cached for next time.
+	 * @param aFile - the video file.
+	 * @param aLateListener - receives a frame which arrives after the budget ran out.
+	 * @return Returns the frame or NULL if none was grabbed within the time budget.
+	 * @throws InterruptedException if the worker is halted.
+	 */
+	Bitmap grabVideoFrame(File aFile, VideoFrameGrabber.OnLateFrame aLateListener)
+			throws InterruptedException {
+		return mVideoGrabber.grabFrame(aFile,0,aLateListener);
+	}
+
+	/**
+	 * Number of milliseconds a video may take to produce a frame before its generic icon
+	 * is kept instead.
+	 * @param aTimeBudget - the time budget in milliseconds.
+	 */
+	public void setVideoTimeBudget(long aTimeBudget) {
+		mVideoGrabber.mTimeBudget = aTimeBudget;
+	}
+
+	/**
+	 * Decode stage workers block here until an item is ready for them.
+	 * @return Returns the next item to decode.
+	 * @throws InterruptedException if the worker is halted.
+	 */
+	public FileIconThumbnailQueueItem takeForDecode() throws InterruptedException {
+		return mDecodeQueue.take();
+	}
+
+	/**
+	 * Workers report when they start and stop generating a thumbnail so the Activity's
+	 * progress indicator is shown while any of them are busy.
+	 * @param bBusy - TRUE when work starts, FALSE when it ends.
+	 */
+	void setBusy(boolean bBusy) {
+		int theCount = (bBusy) ? mBusyCount.incrementAndGet() : mBusyCount.decrementAndGet();
+		if ((bBusy && theCount==1) || (!bBusy && theCount==0)) {
+			mAct.runOnUiThread(new Runnable() {
+				@Override
+				public void run() {
+					mAct.setProgressBarIndeterminateVisibility(mBusyCount.get()>0);
+				}
+			});
 		}
 	}
 
@@ -276,14 +782,14 @@ public class FileIcons {
 
 	public void removeThumbnail(final File aFile) {
 		if (aFile!=null) {
-			if (mThumbnailRecycleBin!=null) {
-				int idx = mThumbnailRecycleBin.indexOf(aFile.getPath());
-				if (idx>-1) {
-					mThumbnailRecycleBin.remove(idx);
-				}
-			}
+			//any key left in the recycle bin just removes nothing from the cache later on
 			if (mThumbnailCache!=null) {
-				mThumbnailCache.removeFile(aFile,scaleFactor);
+				Drawable theThumbnail = mThumbnailCache.removeFile(aFile,scaleFactor);
+				if (theThumbnail!=null) {
+					ArrayList<Drawable> theRemoved = new ArrayList<Drawable>(1);
+					theRemoved.add(theThumbnail);
+					releaseThumbnails(theRemoved);
+				}
 			}
 			BitsThumbnailUtils.removeThumbnailCacheFile(aFile, scaleFactor);
 		}
@@ -291,24 +797,64 @@ public class FileIcons {
 
 	public boolean isRecycleBinEmpty() {
 		if (mThumbnailRecycleBin!=null)
-			return (mThumbnailRecycleBin.size()==0);
+			return mThumbnailRecycleBin.isEmpty();
 		else
 			return true;
 	}
 
 	public void emptyRecycleBin() {
-		if (mThumbnailRecycleBin!=null && mThumbnailCache!=null) {
-			if (mThumbnailCache.size()>0 && mEnableThumbnails) {
-				while (mThumbnailRecycleBin.size()>0) {
-					mThumbnailCache.remove(mThumbnailRecycleBin.remove());
+		//the bin has but one consumer; if another thread is emptying it already, let it
+		if (mThumbnailRecycleBin!=null && mThumbnailCache!=null &&
+				bEmptyingRecycleBin.compareAndSet(false, true)) {
+			try {
+				final ArrayList<Drawable> theRemoved = new ArrayList<Drawable>();
+				if (mThumbnailCache.size()>0 && mEnableThumbnails) {
+					mThumbnailRecycleBin.drain(new RingBuffer.ItemHandler<String>() {
+						@Override
+						public void onItem(String aItem) {
+							Drawable theThumbnail = mThumbnailCache.remove(aItem);
+							if (theThumbnail!=null)
+								theRemoved.add(theThumbnail);
+						}
+					}, Integer.MAX_VALUE);
 				}
+				theRemoved.addAll(mThumbnailCache.removeAll());
+				mThumbnailRecycleBin.clear();
+				releaseThumbnails(theRemoved);
+			} finally {
+				bEmptyingRecycleBin.set(false);
 			}
-			mThumbnailCache.clear();
-			mThumbnailRecycleBin.clear();
 			System.gc();
 		}
 	}
 
+	/**
+	 * Hand thumbnails which left the memory cache to the bitmap pool so later decodes can
+	 * reuse their memory. The check runs on the UI thread, the only one which sets icons,
+	 * and skips any thumbnail a view still shows. Nothing is pooled while
+	 * {@link #mOnSetThumbnail} is set since it may display them some other way.
+	 * @param aThumbnails - the thumbnails no longer in the cache.
+	 */
+	protected void releaseThumbnails(final List<Drawable> aThumbnails) {
+		if (aThumbnails.isEmpty() || mOnSetThumbnail!=null || !BitmapPool.isReuseSupported())
+			return;
+		mAct.runOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				HashSet<Drawable> theShown = new HashSet<Drawable>();
+				for (ImageView theView : mIconViews.keySet()) {
+					Drawable theDrawable = theView.getDrawable();
+					if (theDrawable!=null)
+						theShown.add(theDrawable);
+				}
+				for (Drawable theThumbnail : aThumbnails) {
+					if (theThumbnail instanceof BitmapDrawable && !theShown.contains(theThumbnail))
+						BitsGraphicsUtils.releaseImage(((BitmapDrawable)theThumbnail).getBitmap());
+				}
+			}
+		});
+	}
+
 	public FileIconThumbnailQueueItem take() throws InterruptedException {
 		if (mThumbnailQueue!=null) {
 			try {
@@ -351,7 +897,7 @@ public class FileIcons {
 
 	public boolean isQueueEmpty() {
 		if (mThumbnailQueue!=null)
-			return mThumbnailQueue.isEmpty();
+			return mThumbnailQueue.isEmpty() && mDecodeQueue.isEmpty() && mVideoQueue.isEmpty();
 		else
 			return true;
 	}
@@ -359,6 +905,10 @@ public class FileIcons {
 	public void clear() {
 		if (mThumbnailQueue!=null) {
 			mThumbnailQueue.clear();
+			mDecodeQueue.clear();
+			mVideoQueue.clear();
+			mPendingItems.clear();
+			mFailedThumbnails.clear();
 		}
 	}
 
@@ -368,13 +918,22 @@ public class FileIcons {
 		}
 	}
 
+	/**
+	 * Put a cache key in the recycle bin. A full bin drops the key, emptying the bin clears
+	 * the entire cache anyway.
+	 * @param aCacheKey - the thumbnail's cache key.
+	 */
+	protected void recycleThumbnail(String aCacheKey) {
+		mThumbnailRecycleBin.offer(aCacheKey);
+	}
+
 	public void checkRecycleView(ImageView aView, File aFile) {
 		if (mThumbnailRecycleBin!=null && aView!=null && aFile!=null) {
 			String oldTag = (String)(aView.getTag());
 			String newTag = aFile.getPath();
 			aView.setTag(newTag);
 			if ((oldTag!=null) && !oldTag.equals(newTag)) {
-				mThumbnailRecycleBin.offer(oldTag);
+				recycleThumbnail(oldTag);
 			}
 		}
 	}
@@ -387,22 +946,25 @@ public class FileIcons {
 		if (mThumbnailRecycleBin!=null && aView!=null) {
 			String theTag = (String)(aView.getTag());
 			if (theTag!=null)
-				mThumbnailRecycleBin.offer(theTag);
+				recycleThumbnail(theTag);
 		}
 	}
 
 	public void setThumbnail(FileIconThumbnailQueueItem aItem) {
-		if (aItem!=null) {
-			if (aItem.viewHasNotBeenRecycled()) {
-				if (mOnSetThumbnail!=null) {
-					mOnSetThumbnail.onSetThumbnail(aItem.iconView,getThumbnail(
-							aItem.imageFile,aItem.mThumbnailScaleFactor));
-				} else {
-					aItem.iconView.setImageDrawable(getThumbnail(
-							aItem.imageFile,aItem.mThumbnailScaleFactor));
+		if (aItem!=null && !aItem.isPrefetch) {
+			List<ImageView> theViews = aItem.getTargetViews();
+			if (!theViews.isEmpty()) {
+				Drawable theThumbnail = getThumbnail(aItem.imageFile,aItem.mThumbnailScaleFactor);
+				for (ImageView theView : theViews) {
+					mIconViews.put(theView, Boolean.TRUE);
+					if (mOnSetThumbnail!=null) {
+						mOnSetThumbnail.onSetThumbnail(theView,theThumbnail);
+					} else {
+						theView.setImageDrawable(theThumbnail);
+					}
 				}
 			} else if (mThumbnailRecycleBin!=null) {
-				mThumbnailRecycleBin.offer(aItem.imageFile.getPath());
+				recycleThumbnail(aItem.imageFile.getPath());
 			}
 		}
 	}
@@ -17,22 +17,47 @@ package com.blackmoonit.androidbits.filesystem;
 
 import android.content.Context;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.blackmoonit.androidbits.R;
 import com.blackmoonit.androidbits.widget.BitsArrayAdapter;
 
+
 /**
- * Adapter for a list of files.
+ * Adapter for a list of files.<br>
+ * Register the adapter as the list's {@link AbsListView.OnScrollListener} so that it can push
+ * visible range snapshots to {@link FileIcons}, which uses them to order thumbnail work. While
+ * scrolling, thumbnails for the rows about to come into view are prefetched ahead of the scroll
+ * direction; the faster the fling, the further ahead it reaches.
  *
  * @author baracudda
  */
-abstract public class FileListAdapter extends BitsArrayAdapter<FileListAdapterElement> {
+abstract public class FileListAdapter extends BitsArrayAdapter<FileListAdapterElement>
+		implements AbsListView.OnScrollListener {
+	protected final FileListDataSource mDataSource;
 	protected final FileIcons mFileIcons;
 	protected final Drawable mFolderIcon;
 	public boolean bShowFolderInfo = false;
+	/** Adapter position of the row currently being bound in {@link #getView}. */
+	protected int mBindingPosition = -1;
+	/** Maximum number of rows prefetched ahead of the visible ones. */
+	public int mMaxPrefetchRows = 24;
+	/** How far ahead, in seconds of scrolling at the current speed, to prefetch. */
+	static protected final float PREFETCH_LOOKAHEAD_SECS = 0.5f;
+	private int mLastFirstVisible = -1;
+	private long mLastScrollTime = 0L;
+	/** Smoothed scroll velocity in rows per second, negative when scrolling up. */
+	private float mScrollVelocity = 0f;
+	private int mPrefetchFirst = -1;
+	private int mPrefetchLast = -1;
+	private int mPrewarmedGeneration = -1;
+	/** Rows of the current listing already handed to {@link FileIcons#prewarmIcon}. */
+	private int mPrewarmedRows = 0;
 
 	public FileListAdapter(Context aContext, FileListDataSource aDataSource, FileIcons aFileIcons,
 			int aContentLayoutResourceId) {
@@ -42,6 +67,7 @@ abstract public class FileListAdapter extends BitsArrayAdapter<FileListAdapterEl
 	protected FileListAdapter(Context aContext, int aLayoutResId,
 			FileListDataSource aDataSource, FileIcons aFileIcons) {
 		super(aContext, aLayoutResId, aDataSource);
+		mDataSource = aDataSource;
 		mFileIcons = aFileIcons;
 		mFolderIcon = aContext.getResources().getDrawable(R.drawable.item_folder);
 		mResizableTextViews = getResizeableTextViews();
@@ -96,7 +122,7 @@ abstract public class FileListAdapter extends BitsArrayAdapter<FileListAdapterEl
 	}
 
 	protected void applyFileImg(final FileListAdapterElement anItem, ImageView v) {
-		mFileIcons.setFileIcon(v,anItem,mFileIcons.scaleFactor);
+		mFileIcons.setFileIcon(v,anItem,mFileIcons.scaleFactor,mBindingPosition);
 	}
 
 	public void applyFileIcon(final FileListAdapterElement anItem, ImageView v) {
@@ -156,4 +182,109 @@ abstract public class FileListAdapter extends BitsArrayAdapter<FileListAdapterEl
 	 */
 	abstract public void onRecycleView(View anItemView);
 
+	@Override
+	public View getView(int position, View convertView, ViewGroup aParent) {
+		mBindingPosition = position;
+		try {
+			return super.getView(position, convertView, aParent);
+		} finally {
+			mBindingPosition = -1;
+		}
+	}
+
+	@Override
+	public void notifyDataSetChanged() {
+		super.notifyDataSetChanged();
+		//only rows appended since the last notify are handed over, so a re-sort or a redraw
+		//  costs nothing and a streaming search only pays for its new finds
+		int theGeneration = mDataSource.getListingGeneration();
+		if (theGeneration!=mPrewarmedGeneration) {
+			mPrewarmedGeneration = theGeneration;
+			mPrewarmedRows = 0;
+		}
+		int theCount = getCount();
+		for (int i=mPrewarmedRows; i<theCount; i++) {
+			mFileIcons.prewarmIcon(getItem(i));
+		}
+		mPrewarmedRows = theCount;
+	}
+
+	/**
+	 * Scale factor to use for prefetched thumbnails, must match what {@link #applyFileImg}
+	 * asks for or the prefetched thumbnail will not be found in the cache.
+	 * @return Returns the thumbnail scale factor.
+	 */
+	protected int getPrefetchScaleFactor() {
+		return mFileIcons.scaleFactor;
+	}
+
+	@Override
+	public void onScrollStateChanged(AbsListView aView, int aScrollState) {
+		if (aScrollState==SCROLL_STATE_IDLE) {
+			mScrollVelocity = 0f;
+			mLastScrollTime = 0L;
+		}
+	}
+
+	@Override
+	public void onScroll(AbsListView aView, int aFirstVisibleItem, int aVisibleItemCount,
+			int aTotalItemCount) {
+		if (aVisibleItemCount>0) {
+			int theLastVisible = aFirstVisibleItem+aVisibleItemCount-1;
+			mFileIcons.setVisibleRange(aFirstVisibleItem, theLastVisible);
+			trackScrollVelocity(aFirstVisibleItem);
+			prefetchAhead(aFirstVisibleItem, theLastVisible, Math.min(aTotalItemCount, getCount()));
+		}
+	}
+
+	private void trackScrollVelocity(int aFirstVisibleItem) {
+		long theNow = SystemClock.uptimeMillis();
+		if (mLastScrollTime>0L && aFirstVisibleItem!=mLastFirstVisible) {
+			long theElapsed = Math.max(theNow-mLastScrollTime, 1L);
+			float theVelocity = (aFirstVisibleItem-mLastFirstVisible)*1000f/theElapsed;
+			//smooth out the jitter of individual scroll events
+			mScrollVelocity = (mScrollVelocity==0f) ? theVelocity : (mScrollVelocity+theVelocity)/2f;
+		}
+		if (mLastScrollTime==0L || aFirstVisibleItem!=mLastFirstVisible) {
+			mLastFirstVisible = aFirstVisibleItem;
+			mLastScrollTime = theNow;
+		}
+	}
+
+	/**
+	 * Prefetch the rows about to scroll into view. Only rows newly entering the prefetch
+	 * window are requested; FileIcons cancels any pending ones that fall out of it.
+	 * @param aFirstVisible - first visible position.
+	 * @param aLastVisible - last visible position.
+	 * @param aCount - number of items in the list.
+	 */
+	protected void prefetchAhead(int aFirstVisible, int aLastVisible, int aCount) {
+		if (mScrollVelocity==0f || mMaxPrefetchRows<1 || !mFileIcons.isEnabled())
+			return;
+		int theVisibleCount = aLastVisible-aFirstVisible+1;
+		int theRows = Math.round(Math.abs(mScrollVelocity)*PREFETCH_LOOKAHEAD_SECS);
+		theRows = Math.min(Math.max(theRows, theVisibleCount), mMaxPrefetchRows);
+		int theFirst, theLast;
+		if (mScrollVelocity>0f) {
+			theFirst = aLastVisible+1;
+			theLast = Math.min(aLastVisible+theRows, aCount-1);
+		} else {
+			theFirst = Math.max(aFirstVisible-theRows, 0);
+			theLast = aFirstVisible-1;
+		}
+		if (theFirst>theLast)
+			return;
+		int theScaleFactor = getPrefetchScaleFactor();
+		for (int i=theFirst; i<=theLast; i++) {
+			if (i>=mPrefetchFirst && i<=mPrefetchLast)
+				continue;
+			FileListAdapterElement theItem = getItem(i);
+			if (theItem!=null && !theItem.isDirectory())
+				mFileIcons.prefetchThumbnail(theItem, theScaleFactor, i);
+		}
+		mPrefetchFirst = theFirst;
+		mPrefetchLast = theLast;
+		mFileIcons.setPrefetchRange(theFirst, theLast);
+	}
+
 }
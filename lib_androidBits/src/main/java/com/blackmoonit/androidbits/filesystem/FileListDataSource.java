@@ -19,9 +19,9 @@ import android.app.Activity;
 import android.app.ListActivity;
 import android.os.Environment;
 
-import com.blackmoonit.androidbits.concurrent.ThreadDaemon;
 import com.blackmoonit.androidbits.concurrent.ThreadInterruptable;
 import com.blackmoonit.androidbits.concurrent.ThreadTask;
+import com.blackmoonit.androidbits.concurrent.TimerWheel;
 
 import java.io.File;
 import java.io.FileFilter;
@@ -51,9 +51,11 @@ public class FileListDataSource extends ArrayList<FileListAdapterElement> {
 	protected String mSearchRoot = null;
 	protected FileOrchard mSearchResults = null;
 	public ThreadTask mProduceSearchResultsTask = null;
-	public ThreadDaemon mConsumeSearchResultsTask = null;
+	public TimerWheel.Timer mConsumeSearchResultsTask = null;
 	protected Runnable mOnFinishSearchTask = null;
 	public FileFilter mFileFilter = null;
+	/** Changes each time the list is cleared to hold a new listing. */
+	protected volatile int mListingGeneration = 0;
 
 	/**
 	 * Non UI constructor for background thread work like pruning recycle bin.
@@ -225,6 +227,21 @@ public class FileListDataSource extends ArrayList<FileListAdapterElement> {
 		return theFolder;
 	}
 
+	@Override
+	public void clear() {
+		mListingGeneration += 1;
+		super.clear();
+	}
+
+	/**
+	 * Rows are only ever appended to a listing until it is cleared again, so comparing this
+	 * value lets a caller tell a new listing from one that merely grew or was re-sorted.
+	 * @return Returns a number that changes whenever the list is cleared.
+	 */
+	public int getListingGeneration() {
+		return mListingGeneration;
+	}
+
 	/**
 	 * Add a file to the data source.
 	 * @param aFile - file to add
@@ -368,7 +385,7 @@ public class FileListDataSource extends ArrayList<FileListAdapterElement> {
 			mProduceSearchResultsTask = null;
 		}
 		if (mConsumeSearchResultsTask!=null) {
-			mConsumeSearchResultsTask.halt();
+			mConsumeSearchResultsTask.cancel();
 			mConsumeSearchResultsTask = null;
 		}
 	}
@@ -401,10 +418,8 @@ public class FileListDataSource extends ArrayList<FileListAdapterElement> {
 		mFileMatcher = new FileMatcher(aQuery);
 		mFileMatcher.mMimeMap = mMimeMap;
 
-		//consumer thread that will display finds to the UI
-		mConsumeSearchResultsTask = new ThreadDaemon(1000L);
-		mConsumeSearchResultsTask.setProcessName("display search results");
-		mConsumeSearchResultsTask.setTask(new Runnable() {
+		//consumer that will display finds to the UI, run every second on the shared timer
+		final Runnable theConsumer = new Runnable() {
 			@Override
 			public void run() {
 				if (mCurrPath.equals("?")) {
@@ -437,7 +452,7 @@ public class FileListDataSource extends ArrayList<FileListAdapterElement> {
 							mAct.setProgressBarIndeterminateVisibility(false);
 
 						if (mConsumeSearchResultsTask!=null) {
-							mConsumeSearchResultsTask.halt();
+							mConsumeSearchResultsTask.cancel();
 							mConsumeSearchResultsTask = null;
 						}
 
@@ -448,7 +463,16 @@ public class FileListDataSource extends ArrayList<FileListAdapterElement> {
 					}
 				}
 			}
-		},(mAct!=null),mAct);
+		};
+		mConsumeSearchResultsTask = TimerWheel.getShared().newTimer(new Runnable() {
+			@Override
+			public void run() {
+				if (mAct!=null)
+					mAct.runOnUiThread(theConsumer);
+				else
+					theConsumer.run();
+			}
+		},"display search results");
 
 		mProduceSearchResultsTask = new ThreadTask(new Runnable() {
 			@Override
@@ -479,7 +503,7 @@ public class FileListDataSource extends ArrayList<FileListAdapterElement> {
 			//start the threads
 			mProduceSearchResultsTask.start();
 			Thread.yield();
-			mConsumeSearchResultsTask.start();
+			mConsumeSearchResultsTask.schedule(0L,1000L);
 		}
 	}
 
@@ -18,8 +18,8 @@ package com.blackmoonit.androidbits.filesystem;
 import android.os.Build;
 import android.os.Environment;
 
+import com.blackmoonit.androidbits.concurrent.RingBuffer;
 import com.blackmoonit.androidbits.utils.BitsStringUtils;
-import com.blackmoonit.androidbits.utils.FifoQueue;
 
 import java.io.File;
 import java.io.FileFilter;
@@ -49,6 +49,8 @@ public class FileMatcher {
 	private static final int OP_DUPLICATES = 7;
 
 	public static final long ONE_DAY_MILLIS = 86400000L; //1000*60*60*24 milliseconds
+	/** Subfolders queued during a search before further ones are searched depth-first. */
+	protected static final int FOLDER_QUEUE_CAPACITY = 1024;
 
 	private class FileMatcherTerm {
 		@SuppressWarnings("unused")
@@ -379,39 +381,58 @@ public class FileMatcher {
 			if (aFolder.getPath().equals(theSysFolder)) {
 				theSysFolder = "";
 			}
-			//search file system using a queue instead of resursive function calls
-			FifoQueue<File> theFileList = new FifoQueue<File>(aFolder.listFiles());
-			File subFile;
-			while (!theFileList.isEmpty() && !Thread.interrupted()) {
-				if (mMaxResults>0 && mSearchResultCounter>mMaxResults)
-					break;
-				try {
-					subFile = theFileList.remove();
-					boolean bFileIsJumpPoint = BitsFileUtils.isFileJumpPoint(subFile);
-					if (!bFileIsJumpPoint) {
-						if (!subFile.isHidden() && subFile.canRead()) {
-							if (matchFile(subFile)) {
-								mSearchResults.add(subFile);
-								mSearchResultCounter += 1;
-							}
-							if (subFile.isDirectory() && !subFile.getPath().equals(theSysFolder) &&
-									!bFileIsJumpPoint) {
-								theFileList.addAll(subFile.listFiles());
-							}
+			//search file system using a queue instead of resursive function calls; only
+			//folders are queued, their contents are matched when the folder is dequeued
+			RingBuffer.Spsc<File> theFolderQueue = new RingBuffer.Spsc<File>(FOLDER_QUEUE_CAPACITY);
+			File theFolder = aFolder;
+			while (theFolder!=null && searchFolderItems(theFolder.listFiles(), theFolderQueue, theSysFolder)) {
+				theFolder = theFolderQueue.poll();
+			}
+		}
+	}
+
+	/**
+	 * Match the items of a folder, queueing its subfolders to be searched later. Should the
+	 * queue be full, the subfolder is searched right away instead.
+	 *
+	 * @param aItems - the folder contents, may be NULL.
+	 * @param aFolderQueue - subfolders yet to search.
+	 * @param aSysFolder - path of the folder not to descend into.
+	 * @return Returns FALSE if the search should stop.
+	 */
+	protected boolean searchFolderItems(File[] aItems, RingBuffer.Spsc<File> aFolderQueue,
+			String aSysFolder) {
+		if (aItems==null)
+			return true;
+		for (File subFile : aItems) {
+			if (Thread.interrupted() || (mMaxResults>0 && mSearchResultCounter>mMaxResults))
+				return false;
+			try {
+				boolean bFileIsJumpPoint = BitsFileUtils.isFileJumpPoint(subFile);
+				if (!bFileIsJumpPoint) {
+					if (!subFile.isHidden() && subFile.canRead()) {
+						if (matchFile(subFile)) {
+							mSearchResults.add(subFile);
+							mSearchResultCounter += 1;
+						}
+						if (subFile.isDirectory() && !subFile.getPath().equals(aSysFolder) &&
+								!aFolderQueue.offer(subFile)) {
+							if (!searchFolderItems(subFile.listFiles(), aFolderQueue, aSysFolder))
+								return false;
 						}
 					}
-					subFile = null;
-				} catch (OutOfMemoryError oom) {
-					System.gc();
-					try {
-						Thread.sleep(1000L);
-					} catch (InterruptedException e) {
-						//exit, nothing to do
-					}
 				}
-				Thread.yield();
-			}//while
+			} catch (OutOfMemoryError oom) {
+				System.gc();
+				try {
+					Thread.sleep(1000L);
+				} catch (InterruptedException e) {
+					//exit, nothing to do
+				}
+			}
+			Thread.yield();
 		}
+		return true;
 	}
 
 	/**
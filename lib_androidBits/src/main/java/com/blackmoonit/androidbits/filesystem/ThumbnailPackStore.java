@@ -0,0 +1,701 @@
+package com.blackmoonit.androidbits.filesystem;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.blackmoonit.androidbits.concurrent.ThreadTask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Thumbnail store made of a single append-only data file plus a hashed index so that
+ * a folder full of photos does not turn into a folder full of tiny thumbnail files.<br>
+ * Each record in the data file is self-describing:
+ * <pre>[int magic][short keyLen][key bytes][int dataLen][data bytes]</pre>
+ * The index maps the 64-bit hash of a record key to its offset and length so that a
+ * load is one in-memory probe plus one positional file read, made outside the store lock
+ * so that loads do not wait on each other or on appends. The index is persisted next to
+ * the data file and any records appended after the last persisted index are recovered
+ * by scanning the tail of the data file on open.<br>
+ * Dead records (replaced, removed or evicted) are reclaimed by a background compactor
+ * which also enforces the total size budget by dropping the least recently used entries.
+ *
+ * @author baracudda
+ */
+@SuppressWarnings("unused, UnusedReturnValue")
+public class ThumbnailPackStore {
+	static public final String DEFAULT_STORE_NAME = "thumbs";
+	static public final long DEFAULT_SIZE_BUDGET = 1024L*1024L*32L; //32MB
+	static private final String DATA_FILE_EXT = ".dat";
+	static private final String INDEX_FILE_EXT = ".idx";
+	static private final String COMPACT_FILE_EXT = ".tmp";
+	static private final String PENDING_FILE_EXT = ".new";
+	static private final int RECORD_MAGIC = 0x54484D42; //"THMB"
+	static private final int INDEX_MAGIC = 0x54484958; //"THIX"
+	static private final int INDEX_VERSION = 1;
+	static private final int RECORD_HEADER_SIZE = 4+2+4;
+	/** Number of appends between index snapshots. */
+	static private final int INDEX_SAVE_FREQUENCY = 32;
+	/** Compaction keeps this fraction of the size budget so it does not re-trigger at once. */
+	static private final float COMPACT_TARGET_RATIO = 0.75f;
+
+	/**
+	 * Index entry pointing to a single record inside the data file.
+	 */
+	static protected class IndexEntry {
+		public long offset;
+		public int length;
+		public long lastUsed;
+
+		public IndexEntry(long aOffset, int aLength, long aLastUsed) {
+			offset = aOffset;
+			length = aLength;
+			lastUsed = aLastUsed;
+		}
+	}
+
+	protected final File mDataFile;
+	protected final File mIndexFile;
+	protected final long mSizeBudget;
+	protected final HashMap<Long, IndexEntry> mIndex = new HashMap<Long, IndexEntry>();
+	/**
+	 * Records are appended through the file under the store lock. Only the compactor uses
+	 * the channel: an interrupted thread doing channel I/O would close it, and the file
+	 * with it, for everyone.
+	 */
+	protected RandomAccessFile mDataRAF = null;
+	protected volatile FileChannel mDataChannel = null;
+	/**
+	 * Read-only channel loads use for positional reads without holding the store lock.
+	 * Reopened should an interrupted reader close it, replaced along with the data file.
+	 */
+	protected volatile FileChannel mReadChannel = null;
+	protected long mDataLength = 0L;
+	protected long mLiveBytes = 0L;
+	protected long mUseCounter = 0L;
+	protected int mAppendsSinceIndexSave = 0;
+	protected volatile boolean bCompacting = false;
+
+	/**
+	 * Open (or create) the thumbnail store inside the given folder.
+	 * @param aFolder - folder which will contain the data and index files.
+	 * @param aStoreName - base filename of the store, NULL means {@link #DEFAULT_STORE_NAME}.
+	 * @param aSizeBudget - total number of bytes the data file may use, 0 means
+	 * {@link #DEFAULT_SIZE_BUDGET}.
+	 * @throws IOException if the data file cannot be opened.
+	 */
+	public ThumbnailPackStore(File aFolder, String aStoreName, long aSizeBudget) throws IOException {
+		if (aFolder==null)
+			throw new IllegalArgumentException("Thumbnail store requires a folder.");
+		String theName = (aStoreName!=null) ? aStoreName : DEFAULT_STORE_NAME;
+		mDataFile = new File(aFolder, theName+DATA_FILE_EXT);
+		mIndexFile = new File(aFolder, theName+INDEX_FILE_EXT);
+		mSizeBudget = (aSizeBudget>0) ? aSizeBudget : DEFAULT_SIZE_BUDGET;
+		if (!aFolder.isDirectory() && !aFolder.mkdirs())
+			throw new IOException("Cannot create thumbnail store folder "+aFolder.getPath());
+		open();
+	}
+
+	/**
+	 * Construct the record key. Size and modified time are part of the key so that an edited
+	 * file never matches the thumbnail of its previous contents.
+	 * @param aFile - the file the thumbnail represents.
+	 * @param aScale - thumbnails come in different sizes.
+	 * @return Returns the key string.
+	 */
+	static public String getThumbnailKey(File aFile, int aScale) {
+		return aFile.getPath()+"|"+aFile.length()+"|"+aFile.lastModified()+"|"+aScale;
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the key bytes, used as the index key.
+	 * @param aKey - UTF-8 bytes of the record key.
+	 * @return Returns the hash value.
+	 */
+	static protected long hashKey(byte[] aKey) {
+		long theHash = 0xcbf29ce484222325L;
+		for (byte b : aKey) {
+			theHash ^= (b & 0xff);
+			theHash *= 0x100000001b3L;
+		}
+		return theHash;
+	}
+
+	static protected byte[] getKeyBytes(String aKey) {
+		try {
+			return aKey.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			return aKey.getBytes();
+		}
+	}
+
+	/**
+	 * Open the data file and load the index, recovering any records appended since the
+	 * index was last saved.
+	 * @throws IOException if the data file cannot be opened.
+	 */
+	protected synchronized void open() throws IOException {
+		mDataRAF = new RandomAccessFile(mDataFile, "rw");
+		mDataChannel = mDataRAF.getChannel();
+		mDataLength = mDataRAF.length();
+		replaceReadChannel();
+		long theScanFrom = loadIndex();
+		if (theScanFrom>mDataLength) {
+			//index is newer than the data file, cannot trust it
+			mIndex.clear();
+			mLiveBytes = 0L;
+			theScanFrom = 0L;
+		}
+		scanRecords(theScanFrom);
+	}
+
+	/**
+	 * Read the persisted index, if any.
+	 * @return Returns the data file offset the index covers, 0 if no usable index exists.
+	 */
+	protected long loadIndex() {
+		mIndex.clear();
+		mLiveBytes = 0L;
+		if (!mIndexFile.isFile())
+			return 0L;
+		DataInputStream theIn = null;
+		try {
+			theIn = new DataInputStream(new BufferedInputStream(new FileInputStream(mIndexFile)));
+			if (theIn.readInt()!=INDEX_MAGIC || theIn.readInt()!=INDEX_VERSION)
+				return 0L;
+			long theCovered = theIn.readLong();
+			int theCount = theIn.readInt();
+			for (int i=0; i<theCount; i++) {
+				long theHash = theIn.readLong();
+				IndexEntry theEntry = new IndexEntry(theIn.readLong(), theIn.readInt(), theIn.readLong());
+				mIndex.put(theHash, theEntry);
+				mLiveBytes += theEntry.length;
+				mUseCounter = Math.max(mUseCounter, theEntry.lastUsed);
+			}
+			return theCovered;
+		} catch (IOException e) {
+			mIndex.clear();
+			mLiveBytes = 0L;
+			return 0L;
+		} finally {
+			if (theIn!=null) try {
+				theIn.close();
+			} catch (IOException e) {
+				//nothing to do
+			}
+		}
+	}
+
+	/**
+	 * Walk the record headers from the given offset to the end of the data file, adding each
+	 * valid record to the index. A torn record at the end (crash mid-append) is truncated.
+	 * @param aOffset - data file offset to start scanning from.
+	 * @throws IOException if the data file cannot be read.
+	 */
+	protected void scanRecords(long aOffset) throws IOException {
+		byte[] theHeader = new byte[4+2];
+		long thePos = aOffset;
+		while (thePos+RECORD_HEADER_SIZE<=mDataLength) {
+			if (!readFully(mDataRAF, theHeader, thePos) || ByteBuffer.wrap(theHeader).getInt(0)!=RECORD_MAGIC)
+				break;
+			int theKeyLen = ByteBuffer.wrap(theHeader).getShort(4) & 0xffff;
+			byte[] theKeyAndLen = new byte[theKeyLen+4];
+			if (!readFully(mDataRAF, theKeyAndLen, thePos+6))
+				break;
+			int theDataLen = ByteBuffer.wrap(theKeyAndLen).getInt(theKeyLen);
+			int theRecLen = RECORD_HEADER_SIZE+theKeyLen+theDataLen;
+			if (theDataLen<0 || thePos+theRecLen>mDataLength)
+				break;
+			byte[] theKey = new byte[theKeyLen];
+			System.arraycopy(theKeyAndLen, 0, theKey, 0, theKeyLen);
+			putIndexEntry(hashKey(theKey), new IndexEntry(thePos, theRecLen, ++mUseCounter));
+			thePos += theRecLen;
+		}
+		if (thePos<mDataLength) {
+			mDataRAF.setLength(thePos);
+			mDataLength = thePos;
+		}
+	}
+
+	/**
+	 * Read the buffer full from the given position of the file; caller holds the store lock.
+	 * @return Returns FALSE if the end of the file was reached first.
+	 */
+	static protected boolean readFully(RandomAccessFile aFile, byte[] aBuffer, long aPosition)
+			throws IOException {
+		aFile.seek(aPosition);
+		int theDone = 0;
+		while (theDone<aBuffer.length) {
+			int theCount = aFile.read(aBuffer, theDone, aBuffer.length-theDone);
+			if (theCount<0)
+				return false;
+			theDone += theCount;
+		}
+		return true;
+	}
+
+	/**
+	 * Read the buffer full from the given position of the channel, without moving it.
+	 * @return Returns FALSE if the end of the file was reached first.
+	 */
+	static protected boolean readFully(FileChannel aChannel, ByteBuffer aBuffer, long aPosition)
+			throws IOException {
+		while (aBuffer.hasRemaining()) {
+			if (aChannel.read(aBuffer, aPosition+aBuffer.position())<0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Open a fresh read channel on the data file, closing the old one; caller holds the
+	 * store lock. Readers still using the old one get a ClosedChannelException and retry.
+	 */
+	protected void replaceReadChannel() {
+		FileChannel theOld = mReadChannel;
+		try {
+			mReadChannel = new FileInputStream(mDataFile).getChannel();
+		} catch (IOException e) {
+			mReadChannel = null;
+		}
+		if (theOld!=null) try {
+			theOld.close();
+		} catch (IOException e) {
+			//nothing to do
+		}
+	}
+
+	/**
+	 * An interrupted reader closed the read channel, reopen it unless already done.
+	 * @param aClosed - the channel which got closed.
+	 */
+	protected synchronized void reopenReadChannel(FileChannel aClosed) {
+		if (mReadChannel==aClosed && !aClosed.isOpen() && mDataRAF!=null)
+			replaceReadChannel();
+	}
+
+	protected void putIndexEntry(long aHash, IndexEntry aEntry) {
+		IndexEntry theOld = mIndex.put(aHash, aEntry);
+		if (theOld!=null)
+			mLiveBytes -= theOld.length;
+		mLiveBytes += aEntry.length;
+	}
+
+	/**
+	 * Persist the index so the next open only needs to scan records appended after now.
+	 */
+	protected synchronized void saveIndex() {
+		File theTempFile = new File(mIndexFile.getPath()+COMPACT_FILE_EXT);
+		if (writeIndex(theTempFile, mIndex, mDataLength)) {
+			if (!theTempFile.renameTo(mIndexFile)) {
+				mIndexFile.delete();
+				theTempFile.renameTo(mIndexFile);
+			}
+			mAppendsSinceIndexSave = 0;
+		}
+	}
+
+	/**
+	 * Write an index file.
+	 * @param aFile - the file to write, deleted if the write fails.
+	 * @param aIndex - the index entries.
+	 * @param aCovered - the data file length the index describes.
+	 * @return Returns TRUE if the file was written.
+	 */
+	static protected boolean writeIndex(File aFile, Map<Long, IndexEntry> aIndex, long aCovered) {
+		DataOutputStream theOut = null;
+		try {
+			theOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(aFile)));
+			theOut.writeInt(INDEX_MAGIC);
+			theOut.writeInt(INDEX_VERSION);
+			theOut.writeLong(aCovered);
+			theOut.writeInt(aIndex.size());
+			for (Map.Entry<Long, IndexEntry> theItem : aIndex.entrySet()) {
+				IndexEntry theEntry = theItem.getValue();
+				theOut.writeLong(theItem.getKey());
+				theOut.writeLong(theEntry.offset);
+				theOut.writeInt(theEntry.length);
+				theOut.writeLong(theEntry.lastUsed);
+			}
+			theOut.close();
+			theOut = null;
+			return true;
+		} catch (IOException e) {
+			aFile.delete();
+			return false;
+		} finally {
+			if (theOut!=null) try {
+				theOut.close();
+			} catch (IOException e) {
+				//nothing to do
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the encoded thumbnail stored under the given key.
+	 * @param aKey - the key as returned by {@link #getThumbnailKey(File, int)}.
+	 * @return Returns the encoded thumbnail bytes or NULL if not stored.
+	 */
+	public byte[] get(String aKey) {
+		if (aKey==null)
+			return null;
+		byte[] theKey = getKeyBytes(aKey);
+		long theHash = hashKey(theKey);
+		//a second try covers a compaction swapping the data file mid-read
+		for (int theTry=0; theTry<2; theTry++) {
+			FileChannel theChannel;
+			long theOffset;
+			ByteBuffer theRecord;
+			synchronized (this) {
+				IndexEntry theEntry = mIndex.get(theHash);
+				if (theEntry==null || mDataRAF==null)
+					return null;
+				theEntry.lastUsed = ++mUseCounter;
+				theOffset = theEntry.offset;
+				theRecord = ByteBuffer.allocate(theEntry.length);
+				theChannel = mReadChannel;
+				if (theChannel==null || Thread.currentThread().isInterrupted()) {
+					//channel I/O would fail at once, read the rare odd case through the file
+					try {
+						return (readFully(mDataRAF, theRecord.array(), theOffset))
+								? getRecordData(theRecord, theKey) : null;
+					} catch (IOException e) {
+						return null;
+					}
+				}
+			}
+			try {
+				return (readFully(theChannel, theRecord, theOffset)) ? getRecordData(theRecord, theKey) : null;
+			} catch (ClosedByInterruptException e) {
+				reopenReadChannel(theChannel);
+				return null;
+			} catch (ClosedChannelException e) {
+				//another reader was interrupted or a compaction replaced the file, try again
+				reopenReadChannel(theChannel);
+			} catch (IOException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check that the record is the one for the key and extract its data.
+	 * @param aRecord - the whole record as read from the data file.
+	 * @param aKey - UTF-8 bytes of the record key.
+	 * @return Returns the record data, NULL if the record is not the key's.
+	 */
+	static protected byte[] getRecordData(ByteBuffer aRecord, byte[] aKey) {
+		int theLength = aRecord.capacity();
+		int theKeyLen = aRecord.getShort(4) & 0xffff;
+		if (aRecord.getInt(0)!=RECORD_MAGIC || theKeyLen!=aKey.length)
+			return null;
+		for (int i=0; i<theKeyLen; i++) {
+			if (aRecord.get(6+i)!=aKey[i])
+				return null; //hash collision, not our record
+		}
+		int theDataLen = aRecord.getInt(6+theKeyLen);
+		if (theDataLen<0 || theDataLen>theLength-RECORD_HEADER_SIZE-theKeyLen)
+			return null;
+		byte[] theResult = new byte[theDataLen];
+		aRecord.position(RECORD_HEADER_SIZE+theKeyLen);
+		aRecord.get(theResult);
+		return theResult;
+	}
+
+	/**
+	 * Append the encoded thumbnail to the data file and point the index at it.
+	 * @param aKey - the key as returned by {@link #getThumbnailKey(File, int)}.
+	 * @param aData - encoded thumbnail bytes.
+	 * @return Returns TRUE if the thumbnail was stored.
+	 */
+	public synchronized boolean put(String aKey, byte[] aData) {
+		if (aKey==null || aData==null || mDataRAF==null)
+			return false;
+		byte[] theKey = getKeyBytes(aKey);
+		if (theKey.length>0xffff)
+			return false;
+		int theRecLen = RECORD_HEADER_SIZE+theKey.length+aData.length;
+		ByteBuffer theRecord = ByteBuffer.allocate(theRecLen);
+		theRecord.putInt(RECORD_MAGIC).putShort((short)theKey.length).put(theKey)
+				.putInt(aData.length).put(aData);
+		try {
+			mDataRAF.seek(mDataLength);
+			mDataRAF.write(theRecord.array());
+		} catch (IOException e) {
+			return false;
+		}
+		putIndexEntry(hashKey(theKey), new IndexEntry(mDataLength, theRecLen, ++mUseCounter));
+		mDataLength += theRecLen;
+		if (++mAppendsSinceIndexSave>=INDEX_SAVE_FREQUENCY || isCompactionNeeded())
+			scheduleCompaction();
+		return true;
+	}
+
+	/**
+	 * Drop the key from the index. The record bytes are reclaimed during the next compaction.
+	 * @param aKey - the key as returned by {@link #getThumbnailKey(File, int)}.
+	 */
+	public synchronized void remove(String aKey) {
+		if (aKey!=null) {
+			IndexEntry theOld = mIndex.remove(hashKey(getKeyBytes(aKey)));
+			if (theOld!=null)
+				mLiveBytes -= theOld.length;
+		}
+	}
+
+	/** @return Returns the number of thumbnails in the store. */
+	public synchronized int size() {
+		return mIndex.size();
+	}
+
+	/** @return Returns the number of bytes used by the data file. */
+	public synchronized long getDataLength() {
+		return mDataLength;
+	}
+
+	/** @return Returns TRUE if the data file is over budget or mostly dead records. */
+	protected boolean isCompactionNeeded() {
+		return (mDataLength>mSizeBudget) || (mDataLength>1024*1024 && mLiveBytes<mDataLength/2);
+	}
+
+	/**
+	 * Run the index save and, if needed, the compaction on a background thread.
+	 */
+	protected void scheduleCompaction() {
+		if (bCompacting)
+			return;
+		bCompacting = true;
+		ThreadTask.runThisTask(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					boolean bCompact;
+					synchronized (ThumbnailPackStore.this) {
+						bCompact = isCompactionNeeded();
+					}
+					if (bCompact)
+						compact();
+					else
+						saveIndex();
+				} finally {
+					bCompacting = false;
+				}
+			}
+		}, "ThumbnailPackStore");
+	}
+
+	/**
+	 * Rewrite the live records into a fresh data file, most recently used first, stopping
+	 * once the size budget target is reached. Appends made while the copy is in progress
+	 * are carried over before the new file replaces the old one.
+	 */
+	public void compact() {
+		ArrayList<Map.Entry<Long, IndexEntry>> theLiveList;
+		FileChannel theSrc;
+		long theSnapshotLength;
+		synchronized (this) {
+			theSrc = mDataChannel;
+			if (theSrc==null)
+				return;
+			theSnapshotLength = mDataLength;
+			theLiveList = new ArrayList<Map.Entry<Long, IndexEntry>>(mIndex.size());
+			for (Map.Entry<Long, IndexEntry> theItem : mIndex.entrySet()) {
+				IndexEntry theEntry = theItem.getValue();
+				theLiveList.add(new AbstractMap.SimpleEntry<Long, IndexEntry>(theItem.getKey(),
+						new IndexEntry(theEntry.offset, theEntry.length, theEntry.lastUsed)));
+			}
+		}
+		Collections.sort(theLiveList, new Comparator<Map.Entry<Long, IndexEntry>>() {
+			@Override
+			public int compare(Map.Entry<Long, IndexEntry> lhs, Map.Entry<Long, IndexEntry> rhs) {
+				long l = lhs.getValue().lastUsed;
+				long r = rhs.getValue().lastUsed;
+				return (l<r) ? 1 : ((l==r) ? 0 : -1);
+			}
+		});
+
+		File theTempFile = new File(mDataFile.getPath()+COMPACT_FILE_EXT);
+		RandomAccessFile theDestRAF = null;
+		try {
+			theDestRAF = new RandomAccessFile(theTempFile, "rw");
+			theDestRAF.setLength(0L);
+			FileChannel theDest = theDestRAF.getChannel();
+			long theTarget = (long)(mSizeBudget*COMPACT_TARGET_RATIO);
+			HashMap<Long, IndexEntry> theNewIndex = new HashMap<Long, IndexEntry>(theLiveList.size()*2);
+			long theDestPos = 0L;
+			for (Map.Entry<Long, IndexEntry> theItem : theLiveList) {
+				IndexEntry theEntry = theItem.getValue();
+				if (theDestPos+theEntry.length>theTarget)
+					break;
+				theSrc.transferTo(theEntry.offset, theEntry.length, theDest);
+				theNewIndex.put(theItem.getKey(), new IndexEntry(theDestPos, theEntry.length, theEntry.lastUsed));
+				theDestPos += theEntry.length;
+			}
+
+			synchronized (this) {
+				if (mDataChannel!=theSrc) {
+					theTempFile.delete();
+					return;
+				}
+				//carry over anything appended while we were copying
+				if (mDataLength>theSnapshotLength) {
+					long theTailLen = mDataLength-theSnapshotLength;
+					theSrc.transferTo(theSnapshotLength, theTailLen, theDest);
+					for (Map.Entry<Long, IndexEntry> theItem : mIndex.entrySet()) {
+						IndexEntry theEntry = theItem.getValue();
+						if (theEntry.offset>=theSnapshotLength)
+							theNewIndex.put(theItem.getKey(), new IndexEntry(
+									theDestPos+(theEntry.offset-theSnapshotLength),
+									theEntry.length, theEntry.lastUsed));
+					}
+					theDestPos += theTailLen;
+				}
+				//drop anything removed from the index while we were copying
+				Iterator<Map.Entry<Long, IndexEntry>> theNewItems = theNewIndex.entrySet().iterator();
+				while (theNewItems.hasNext()) {
+					Map.Entry<Long, IndexEntry> theItem = theNewItems.next();
+					IndexEntry theCurr = mIndex.get(theItem.getKey());
+					if (theCurr==null) {
+						theNewItems.remove();
+					} else {
+						theItem.getValue().lastUsed = theCurr.lastUsed;
+					}
+				}
+				theDest.force(false);
+				theDestRAF.close();
+				theDestRAF = null;
+				//the old index must never describe the new data file, so it goes before the
+				//swap; a crash until the new one is in place just means a full scan on open
+				File theNewIndexFile = new File(mIndexFile.getPath()+PENDING_FILE_EXT);
+				if (!writeIndex(theNewIndexFile, theNewIndex, theDestPos))
+					throw new IOException("Cannot write thumbnail store index.");
+				if (mIndexFile.exists() && !mIndexFile.delete()) {
+					theNewIndexFile.delete();
+					throw new IOException("Cannot replace thumbnail store index.");
+				}
+				mDataChannel = null;
+				mDataRAF.close();
+				if (!theTempFile.renameTo(mDataFile)) {
+					//keep the live data file, mIndex still describes it
+					theNewIndexFile.delete();
+					mDataRAF = new RandomAccessFile(mDataFile, "rw");
+					mDataChannel = mDataRAF.getChannel();
+					saveIndex();
+					throw new IOException("Cannot replace thumbnail store data file.");
+				}
+				mDataRAF = new RandomAccessFile(mDataFile, "rw");
+				mDataChannel = mDataRAF.getChannel();
+				replaceReadChannel();
+				mDataLength = theDestPos;
+				mIndex.clear();
+				mLiveBytes = 0L;
+				for (Map.Entry<Long, IndexEntry> theItem : theNewIndex.entrySet()) {
+					putIndexEntry(theItem.getKey(), theItem.getValue());
+				}
+				if (theNewIndexFile.renameTo(mIndexFile)) {
+					mAppendsSinceIndexSave = 0;
+				} else {
+					theNewIndexFile.delete();
+					saveIndex();
+				}
+			}
+		} catch (IOException e) {
+			theTempFile.delete();
+			synchronized (this) {
+				if (mDataChannel==null || !mDataChannel.isOpen()) try {
+					//failed mid-swap, start over with whatever data file exists
+					mIndex.clear();
+					mLiveBytes = 0L;
+					mIndexFile.delete();
+					open();
+				} catch (IOException ioe) {
+					mDataChannel = null;
+					mDataRAF = null;
+				}
+			}
+		} finally {
+			if (theDestRAF!=null) try {
+				theDestRAF.close();
+			} catch (IOException e) {
+				//nothing to do
+			}
+		}
+	}
+
+	/**
+	 * Remove all thumbnails from the store.
+	 */
+	public synchronized void clear() {
+		mIndex.clear();
+		mLiveBytes = 0L;
+		if (mDataRAF!=null) try {
+			mDataRAF.setLength(0L);
+		} catch (IOException e) {
+			//next compaction will clean it up
+		}
+		mDataLength = 0L;
+		saveIndex();
+	}
+
+	/**
+	 * Save the index and release the data file.
+	 */
+	public synchronized void close() {
+		if (mDataChannel!=null) {
+			saveIndex();
+			try {
+				mDataRAF.close();
+			} catch (IOException e) {
+				//nothing to do
+			}
+			mDataChannel = null;
+			mDataRAF = null;
+			if (mReadChannel!=null) try {
+				mReadChannel.close();
+			} catch (IOException e) {
+				//nothing to do
+			}
+			mReadChannel = null;
+		}
+	}
+
+	/** @return Returns the folder containing the store files. */
+	public File getFolder() {
+		return mDataFile.getParentFile();
+	}
+
+}
@@ -0,0 +1,218 @@
+package com.blackmoonit.androidbits.utils;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * Size-bucketed pool of mutable Bitmaps to be handed to BitmapFactory as
+ * {@link android.graphics.BitmapFactory.Options#inBitmap} so that decoding does not allocate
+ * a fresh Bitmap every time.<br>
+ * Android 4.4+ can decode into any Bitmap at least as large as the result, so bitmaps are
+ * bucketed by the power of 2 of their allocation size. Android 3.0 - 4.3 requires an exact
+ * match, so bitmaps are bucketed by width, height and config. Older versions cannot reuse
+ * bitmaps at all and the pool stays empty.<br>
+ * Also provides per-thread decode scratch buffers for
+ * {@link android.graphics.BitmapFactory.Options#inTempStorage}.
+ *
+ * @author baracudda
+ */
+@SuppressWarnings("unused, UnusedReturnValue")
+@TargetApi(19)
+public class BitmapPool {
+	/** Size Android recommends for inTempStorage. */
+	static public final int DECODE_SCRATCH_SIZE = 1024*16;
+	static private final ThreadLocal<byte[]> mDecodeScratch = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[DECODE_SCRATCH_SIZE];
+		}
+	};
+
+	protected final long mMaxBytes;
+	protected long mCurrBytes = 0L;
+	protected final HashMap<Long, ArrayList<Bitmap>> mBuckets = new HashMap<Long, ArrayList<Bitmap>>();
+	/** Oldest first, used to evict when the pool grows past its maximum size. */
+	protected final LinkedList<Bitmap> mAgeList = new LinkedList<Bitmap>();
+
+	/**
+	 * Construct a pool which will hold at most the given number of bytes worth of Bitmaps.
+	 * @param aMaxBytes - pool size limit.
+	 */
+	public BitmapPool(long aMaxBytes) {
+		mMaxBytes = aMaxBytes;
+	}
+
+	/**
+	 * The decode scratch buffer belonging to the current thread. Never share it with
+	 * another thread.
+	 * @return Returns the scratch buffer to use as inTempStorage.
+	 */
+	static public byte[] getDecodeScratch() {
+		return mDecodeScratch.get();
+	}
+
+	/** @return Returns TRUE if BitmapFactory can decode into an existing Bitmap. */
+	static public boolean isReuseSupported() {
+		return (Build.VERSION.SDK_INT>=Build.VERSION_CODES.HONEYCOMB);
+	}
+
+	/** @return Returns TRUE if BitmapFactory can decode into any large enough Bitmap. */
+	static public boolean isFlexibleReuseSupported() {
+		return (Build.VERSION.SDK_INT>=Build.VERSION_CODES.KITKAT);
+	}
+
+	/**
+	 * Bytes per pixel used by a Bitmap config.
+	 * @param aConfig - the config, NULL means ARGB_8888.
+	 * @return Returns the number of bytes needed per pixel.
+	 */
+	static public int getBytesPerPixel(Bitmap.Config aConfig) {
+		if (aConfig==Bitmap.Config.ALPHA_8)
+			return 1;
+		else if (aConfig==Bitmap.Config.RGB_565 || aConfig==Bitmap.Config.ARGB_4444)
+			return 2;
+		else
+			return 4;
+	}
+
+	/**
+	 * Number of bytes the Bitmap's pixel buffer occupies.
+	 * @param aBitmap - the bitmap.
+	 * @return Returns the byte size of the bitmap.
+	 */
+	static public int getAllocationSize(Bitmap aBitmap) {
+		if (isFlexibleReuseSupported())
+			return aBitmap.getAllocationByteCount();
+		else
+			return aBitmap.getWidth()*aBitmap.getHeight()*getBytesPerPixel(aBitmap.getConfig());
+	}
+
+	/**
+	 * Bucket for flexible reuse: smallest power of 2 holding the byte size.
+	 * @param aByteSize - byte size.
+	 * @return Returns the bucket key.
+	 */
+	static protected long getSizeBucket(int aByteSize) {
+		return 32-Integer.numberOfLeadingZeros(Math.max(aByteSize-1,1));
+	}
+
+	/**
+	 * Bucket for exact reuse: width, height and config must all match.
+	 * @return Returns the bucket key.
+	 */
+	static protected long getExactBucket(int aWidth, int aHeight, Bitmap.Config aConfig) {
+		int theConfig = (aConfig!=null) ? aConfig.ordinal() : Bitmap.Config.ARGB_8888.ordinal();
+		return ((long)aWidth<<36) | ((long)aHeight<<8) | theConfig;
+	}
+
+	protected long getBucketKey(Bitmap aBitmap) {
+		if (isFlexibleReuseSupported())
+			return getSizeBucket(aBitmap.getAllocationByteCount());
+		else
+			return getExactBucket(aBitmap.getWidth(), aBitmap.getHeight(), aBitmap.getConfig());
+	}
+
+	/**
+	 * Remove and return a pooled Bitmap that a decode of the given size can reuse.
+	 * @param aWidth - expected width of the decoded image.
+	 * @param aHeight - expected height of the decoded image.
+	 * @param aConfig - expected config of the decoded image, NULL means ARGB_8888.
+	 * @return Returns a reusable Bitmap or NULL if none is available.
+	 */
+	public synchronized Bitmap get(int aWidth, int aHeight, Bitmap.Config aConfig) {
+		if (aWidth<=0 || aHeight<=0 || !isReuseSupported() || mAgeList.isEmpty())
+			return null;
+		if (isFlexibleReuseSupported()) {
+			int theNeeded = aWidth*aHeight*getBytesPerPixel(aConfig);
+			long theKey = getSizeBucket(theNeeded);
+			//look one bucket up as well, wasting at most 2x the memory needed
+			Bitmap theResult = takeFromBucket(theKey, theNeeded);
+			return (theResult!=null) ? theResult : takeFromBucket(theKey+1, theNeeded);
+		} else {
+			return takeFromBucket(getExactBucket(aWidth, aHeight, aConfig), 0);
+		}
+	}
+
+	protected Bitmap takeFromBucket(long aKey, int aMinBytes) {
+		ArrayList<Bitmap> theBucket = mBuckets.get(aKey);
+		if (theBucket!=null) {
+			for (int i=theBucket.size()-1; i>=0; i--) {
+				Bitmap theBitmap = theBucket.get(i);
+				int theSize = getAllocationSize(theBitmap);
+				if (theSize>=aMinBytes) {
+					theBucket.remove(i);
+					mAgeList.remove(theBitmap);
+					mCurrBytes -= theSize;
+					return theBitmap;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Give a Bitmap to the pool for later reuse. The caller must no longer use it.
+	 * Immutable or recycled Bitmaps are not pooled.
+	 * @param aBitmap - the bitmap no longer needed.
+	 * @return Returns TRUE if pooled, FALSE if the caller should just let it go.
+	 */
+	public synchronized boolean put(Bitmap aBitmap) {
+		if (aBitmap==null || !isReuseSupported() || aBitmap.isRecycled() || !aBitmap.isMutable())
+			return false;
+		int theSize = getAllocationSize(aBitmap);
+		if (theSize>mMaxBytes/2)
+			return false;
+		long theKey = getBucketKey(aBitmap);
+		ArrayList<Bitmap> theBucket = mBuckets.get(theKey);
+		if (theBucket==null) {
+			theBucket = new ArrayList<Bitmap>(4);
+			mBuckets.put(theKey, theBucket);
+		}
+		theBucket.add(aBitmap);
+		mAgeList.addLast(aBitmap);
+		mCurrBytes += theSize;
+		while (mCurrBytes>mMaxBytes && !mAgeList.isEmpty()) {
+			Bitmap theOldest = mAgeList.removeFirst();
+			ArrayList<Bitmap> theOldBucket = mBuckets.get(getBucketKey(theOldest));
+			if (theOldBucket!=null)
+				theOldBucket.remove(theOldest);
+			mCurrBytes -= getAllocationSize(theOldest);
+		}
+		return true;
+	}
+
+	/**
+	 * Let go of every pooled Bitmap, useful when memory runs low.
+	 */
+	public synchronized void clear() {
+		mBuckets.clear();
+		mAgeList.clear();
+		mCurrBytes = 0L;
+	}
+
+	/** @return Returns the number of bytes currently held by the pool. */
+	public synchronized long getPooledBytes() {
+		return mCurrBytes;
+	}
+
+}
@@ -0,0 +1,274 @@
+package com.blackmoonit.androidbits.utils;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Static class for reading the bits of JPEG EXIF metadata needed to make thumbnails: the
+ * orientation and the embedded thumbnail. Only the header segments are read, never the
+ * compressed image data, and the read is bounded so a malformed file cannot make us scan
+ * the entire thing.
+ *
+ * @author baracudda
+ */
+public final class BitsExifUtils {
+	/** EXIF orientation meaning no transform is needed. */
+	static public final int ORIENTATION_NORMAL = 1;
+	/** Stop looking for the metadata once this far into the file. */
+	static public final int MAX_HEADER_BYTES = 1024*256;
+	/** Stop looking for the metadata after this many segments. */
+	static private final int MAX_SEGMENTS = 32;
+	static private final int TAG_COMPRESSION = 0x0103;
+	static private final int TAG_ORIENTATION = 0x0112;
+	static private final int TAG_THUMBNAIL_OFFSET = 0x0201;
+	static private final int TAG_THUMBNAIL_LENGTH = 0x0202;
+	static private final int COMPRESSION_JPEG = 6;
+
+	private BitsExifUtils() {} //do not instanciate this class
+
+	/**
+	 * What was found in the JPEG header.
+	 */
+	static public class ExifInfo {
+		/** EXIF orientation, 1..8, {@link #ORIENTATION_NORMAL} if absent. */
+		public int orientation = ORIENTATION_NORMAL;
+		/** Width of the main image as stored (before orientation), 0 if unknown. */
+		public int imageWidth = 0;
+		/** Height of the main image as stored (before orientation), 0 if unknown. */
+		public int imageHeight = 0;
+		/** The embedded JPEG thumbnail, NULL if there is none. */
+		public byte[] thumbnailData = null;
+
+		/** @return Returns TRUE if the orientation swaps width and height. */
+		public boolean isTransposed() {
+			return (orientation>=5 && orientation<=8);
+		}
+	}
+
+	/**
+	 * Read the EXIF orientation and embedded thumbnail from a JPEG file.
+	 * @param aFile - the JPEG file.
+	 * @return Returns the info found or NULL if the file is not a readable JPEG.
+	 */
+	static public ExifInfo readExifInfo(File aFile) {
+		if (aFile==null || !aFile.isFile())
+			return null;
+		DataInputStream theInput = null;
+		try {
+			theInput = new DataInputStream(new BufferedInputStream(new FileInputStream(aFile),1024*8));
+			return readExifInfo(theInput);
+		} catch (IOException e) {
+			return null;
+		} catch (RuntimeException e) {
+			//a malformed header is no reason to fail the caller, it just has no EXIF info
+			return null;
+		} finally {
+			if (theInput!=null) {
+				try {
+					theInput.close();
+				} catch (IOException e) {
+					//nothing to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * Walk the JPEG segments up to the main frame header, parsing the first EXIF segment.
+	 * @param aInput - stream positioned at the start of the file.
+	 * @return Returns the info found or NULL if the stream is not a JPEG.
+	 * @throws IOException if the read fails.
+	 */
+	static protected ExifInfo readExifInfo(DataInputStream aInput) throws IOException {
+		if (aInput.readUnsignedShort()!=0xFFD8)
+			return null;
+		ExifInfo theResult = new ExifInfo();
+		boolean bFoundExif = false;
+		int thePos = 2;
+		for (int theSegment=0; theSegment<MAX_SEGMENTS && thePos<MAX_HEADER_BYTES; theSegment++) {
+			int theMarker = aInput.readUnsignedByte();
+			if (theMarker!=0xFF)
+				break;
+			while (theMarker==0xFF) { //fill bytes may precede a marker
+				theMarker = aInput.readUnsignedByte();
+				thePos++;
+			}
+			thePos++;
+			if (theMarker==0xD8 || (theMarker>=0xD0 && theMarker<=0xD7) || theMarker==0x01)
+				continue; //standalone markers have no length
+			if (theMarker==0xD9 || theMarker==0xDA)
+				break; //end of image or start of the compressed data
+			int theLength = aInput.readUnsignedShort()-2;
+			thePos += 2;
+			if (theLength<0)
+				break;
+			if (theMarker==0xE1 && !bFoundExif && theLength>14) {
+				byte[] theSegmentData = new byte[theLength];
+				aInput.readFully(theSegmentData);
+				bFoundExif = parseExifSegment(theSegmentData,theResult);
+			} else if (isFrameHeader(theMarker) && theLength>=5) {
+				aInput.readUnsignedByte(); //sample precision
+				theResult.imageHeight = aInput.readUnsignedShort();
+				theResult.imageWidth = aInput.readUnsignedShort();
+				break; //APP segments all come before the frame header
+			} else {
+				skipFully(aInput,theLength);
+			}
+			thePos += theLength;
+		}
+		return theResult;
+	}
+
+	static private boolean isFrameHeader(int aMarker) {
+		return (aMarker>=0xC0 && aMarker<=0xCF && aMarker!=0xC4 && aMarker!=0xC8 && aMarker!=0xCC);
+	}
+
+	static private void skipFully(DataInputStream aInput, int aCount) throws IOException {
+		int theRemaining = aCount;
+		while (theRemaining>0) {
+			int theSkipped = (int)aInput.skip(theRemaining);
+			if (theSkipped<=0) {
+				if (aInput.read()<0)
+					throw new EOFException();
+				theSkipped = 1;
+			}
+			theRemaining -= theSkipped;
+		}
+	}
+
+	/**
+	 * Parse an APP1 segment body for the orientation and thumbnail.
+	 * @param aSegment - the segment data following the length field.
+	 * @param aResult - where to place what is found.
+	 * @return Returns TRUE if the segment was an EXIF segment.
+	 */
+	static protected boolean parseExifSegment(byte[] aSegment, ExifInfo aResult) {
+		if (aSegment[0]!='E' || aSegment[1]!='x' || aSegment[2]!='i' || aSegment[3]!='f' ||
+				aSegment[4]!=0 || aSegment[5]!=0)
+			return false;
+		final int theBase = 6; //TIFF offsets are relative to the TIFF header
+		boolean bLittleEndian;
+		if (aSegment[theBase]=='I' && aSegment[theBase+1]=='I')
+			bLittleEndian = true;
+		else if (aSegment[theBase]=='M' && aSegment[theBase+1]=='M')
+			bLittleEndian = false;
+		else
+			return true;
+		if (readUShort(aSegment,theBase+2,bLittleEndian)!=42)
+			return true;
+		int theIfd0 = readInt(aSegment,theBase+4,bLittleEndian);
+		int theIfd1 = 0;
+		int theEntries = readIfdEntryCount(aSegment,theBase,theIfd0,bLittleEndian);
+		for (int i=0; i<theEntries; i++) {
+			int theEntry = theBase+theIfd0+2+i*12;
+			if (readUShort(aSegment,theEntry,bLittleEndian)==TAG_ORIENTATION) {
+				int theOrientation = readUShort(aSegment,theEntry+8,bLittleEndian);
+				if (theOrientation>=1 && theOrientation<=8)
+					aResult.orientation = theOrientation;
+			}
+		}
+		if (theEntries>0)
+			theIfd1 = readInt(aSegment,theBase+theIfd0+2+theEntries*12,bLittleEndian);
+		theEntries = readIfdEntryCount(aSegment,theBase,theIfd1,bLittleEndian);
+		int theThumbOffset = -1;
+		int theThumbLength = -1;
+		int theCompression = COMPRESSION_JPEG;
+		for (int i=0; i<theEntries; i++) {
+			int theEntry = theBase+theIfd1+2+i*12;
+			int theTag = readUShort(aSegment,theEntry,bLittleEndian);
+			if (theTag==TAG_THUMBNAIL_OFFSET)
+				theThumbOffset = readInt(aSegment,theEntry+8,bLittleEndian);
+			else if (theTag==TAG_THUMBNAIL_LENGTH)
+				theThumbLength = readInt(aSegment,theEntry+8,bLittleEndian);
+			else if (theTag==TAG_COMPRESSION)
+				theCompression = readUShort(aSegment,theEntry+8,bLittleEndian);
+		}
+		//offsets come straight from the file, so bound them in long arithmetic to avoid overflow
+		if (theCompression==COMPRESSION_JPEG && theThumbOffset>0 && theThumbLength>4 &&
+				theThumbOffset<=aSegment.length &&
+				(long)theBase+theThumbOffset+theThumbLength<=aSegment.length &&
+				(aSegment[theBase+theThumbOffset]&0xFF)==0xFF &&
+				(aSegment[theBase+theThumbOffset+1]&0xFF)==0xD8) {
+			aResult.thumbnailData = new byte[theThumbLength];
+			System.arraycopy(aSegment,theBase+theThumbOffset,aResult.thumbnailData,0,theThumbLength);
+		}
+		return true;
+	}
+
+	/**
+	 * Number of entries in the IFD, 0 if it does not fit within the segment.
+	 */
+	static private int readIfdEntryCount(byte[] aSegment, int aBase, int aIfdOffset, boolean bLittleEndian) {
+		if (aIfdOffset<8 || aIfdOffset>aSegment.length || (long)aBase+aIfdOffset+2>aSegment.length)
+			return 0;
+		int theCount = readUShort(aSegment,aBase+aIfdOffset,bLittleEndian);
+		if ((long)aBase+aIfdOffset+2+theCount*12+4>aSegment.length)
+			return 0;
+		return theCount;
+	}
+
+	static private int readUShort(byte[] aBuf, int aPos, boolean bLittleEndian) {
+		if (bLittleEndian)
+			return (aBuf[aPos]&0xFF) | ((aBuf[aPos+1]&0xFF)<<8);
+		else
+			return ((aBuf[aPos]&0xFF)<<8) | (aBuf[aPos+1]&0xFF);
+	}
+
+	static private int readInt(byte[] aBuf, int aPos, boolean bLittleEndian) {
+		if (bLittleEndian)
+			return readUShort(aBuf,aPos,true) | (readUShort(aBuf,aPos+2,true)<<16);
+		else
+			return (readUShort(aBuf,aPos,false)<<16) | readUShort(aBuf,aPos+2,false);
+	}
+
+	/**
+	 * Transform the image so it displays upright according to its EXIF orientation. The
+	 * original is handed to {@link BitsGraphicsUtils#releaseImage(Bitmap)} if a new Bitmap
+	 * had to be created.
+	 * @param aBitmap - the image as stored in the file.
+	 * @param aOrientation - EXIF orientation, 1..8.
+	 * @return Returns the upright image, which is aBitmap itself if no change was needed.
+	 */
+	static public Bitmap applyOrientation(Bitmap aBitmap, int aOrientation) {
+		if (aBitmap==null || aOrientation<=ORIENTATION_NORMAL || aOrientation>8)
+			return aBitmap;
+		Matrix theMatrix = new Matrix();
+		switch (aOrientation) {
+			case 2: theMatrix.setScale(-1,1); break;
+			case 3: theMatrix.setRotate(180); break;
+			case 4: theMatrix.setScale(1,-1); break;
+			case 5: theMatrix.setRotate(90); theMatrix.postScale(-1,1); break;
+			case 6: theMatrix.setRotate(90); break;
+			case 7: theMatrix.setRotate(-90); theMatrix.postScale(-1,1); break;
+			case 8: theMatrix.setRotate(-90); break;
+		}
+		Bitmap theResult = Bitmap.createBitmap(aBitmap,0,0,aBitmap.getWidth(),aBitmap.getHeight(),
+				theMatrix,true);
+		if (theResult!=aBitmap)
+			BitsGraphicsUtils.releaseImage(aBitmap);
+		return theResult;
+	}
+
+}
@@ -15,6 +15,7 @@ package com.blackmoonit.androidbits.utils;
  * limitations under the License.
  */
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
@@ -25,6 +26,7 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.util.TypedValue;
 
 import java.io.File;
@@ -35,6 +37,12 @@ import java.io.File;
  */
 public final class BitsGraphicsUtils {
 
+	/**
+	 * Pool of Bitmaps that image decodes may reuse, see {@link BitmapPool}.
+	 */
+	static public final BitmapPool mBitmapPool = new BitmapPool(
+			Math.min(Runtime.getRuntime().maxMemory()/16, 1024L*1024L*8L));
+
 	/**
 	 * Converts the given DIPs into current device/resolution pixels.
 	 * @param aContext - context required to retrieve device metrics
@@ -181,10 +189,80 @@ public final class BitsGraphicsUtils {
         return aContext.getApplicationContext().getResources().getIdentifier(aResName,"drawable",
                 aContext.getPackageName());
     }
-    private static final byte[] tempStorageForImageLoad = new byte[1024*64];
 
     /**
-     * Load a scaled image from the file system (handles large photos).
+     * Give a Bitmap that is no longer displayed or referenced back to the decoder so that a
+     * future {@link #getImage} can reuse its memory.
+     * @param aBitmap - the bitmap no longer needed.
+     */
+    static public void releaseImage(Bitmap aBitmap) {
+        mBitmapPool.put(aBitmap);
+    }
+
+    /**
+     * Decode the file, reusing a pooled Bitmap if the platform allows it.
+     * @param aPath - path of the image file.
+     * @param aOptions - decode options, inBitmap and inMutable will be set here.
+     * @param aWidth - expected width of the decoded image.
+     * @param aHeight - expected height of the decoded image.
+     * @return Returns the decoded image.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    static protected Bitmap decodeFileReusing(String aPath, BitmapFactory.Options aOptions,
+            int aWidth, int aHeight) {
+        if (BitmapPool.isReuseSupported()) {
+            aOptions.inMutable = true;
+            //Android 3.0 - 4.3 can only reuse Bitmaps for decodes that do not subsample
+            if (BitmapPool.isFlexibleReuseSupported() || aOptions.inSampleSize==1)
+                aOptions.inBitmap = mBitmapPool.get(aWidth, aHeight, aOptions.inPreferredConfig);
+        }
+        try {
+            return BitmapFactory.decodeFile(aPath, aOptions);
+        } catch (IllegalArgumentException e) {
+            if (aOptions.inBitmap==null)
+                throw e;
+            //pooled Bitmap was not acceptable after all, decode into a fresh one
+            aOptions.inBitmap = null;
+            return BitmapFactory.decodeFile(aPath, aOptions);
+        }
+    }
+
+    /**
+     * Decode the encoded image, reusing a pooled Bitmap if the platform allows it.
+     * @param aData - the encoded image.
+     * @param aOptions - decode options, inBitmap and inMutable will be set here.
+     * @return Returns the decoded image.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    static public Bitmap decodeByteArrayReusing(byte[] aData, BitmapFactory.Options aOptions) {
+        if (BitmapPool.isReuseSupported()) {
+            //only the header is parsed to learn the size the pooled Bitmap needs
+            aOptions.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(aData,0,aData.length,aOptions);
+            aOptions.inJustDecodeBounds = false;
+            int theSampleSize = Math.max(aOptions.inSampleSize,1);
+            aOptions.inMutable = true;
+            if (aOptions.outWidth>0 && (BitmapPool.isFlexibleReuseSupported() || theSampleSize==1))
+                aOptions.inBitmap = mBitmapPool.get((aOptions.outWidth+theSampleSize-1)/theSampleSize,
+                        (aOptions.outHeight+theSampleSize-1)/theSampleSize, aOptions.inPreferredConfig);
+        }
+        try {
+            return BitmapFactory.decodeByteArray(aData,0,aData.length,aOptions);
+        } catch (IllegalArgumentException e) {
+            if (aOptions.inBitmap==null)
+                throw e;
+            //pooled Bitmap was not acceptable after all, decode into a fresh one
+            aOptions.inBitmap = null;
+            return BitmapFactory.decodeByteArray(aData,0,aData.length,aOptions);
+        }
+    }
+
+    /**
+     * Load a scaled image from the file system (handles large photos).<br>
+     * The final size is computed before decoding. On Android 4.4+ an aspect ratio preserving
+     * downscale is done by the decoder itself, otherwise the subsampled decode lands in a
+     * pooled Bitmap which is returned to the pool once the scaled copy is made. Either way the
+     * result carries the display's density, as a plain decode would.
      *
      * @param aContext - context required to check for avail mem (protect against very large images)
      * @param aImageFile - File to load
@@ -201,29 +279,50 @@ public final class BitsGraphicsUtils {
             if (theImgSize!=null && !isImageFileTooBig(aContext,theImgSize)) {
                 BitmapFactory.Options options = new BitmapFactory.Options();
                 options.inSampleSize = computeSampleSize(theImgSize,aOutputW,aOutputH,!bRespectAspectRatioOfImage);
-                options.inTempStorage = tempStorageForImageLoad;
+                options.inTempStorage = BitmapPool.getDecodeScratch();
                 //options.inDither = true;  //images look blurry if I set this to TRUE
                 boolean bSkipScaling = false;
                 if ((aScaling<0 && options.inSampleSize<1) || (aScaling>0 && options.inSampleSize>1)) {
                     options.inSampleSize = 1;
                     bSkipScaling = true;
                 }
+                options.inSampleSize = Math.max(options.inSampleSize,1);
+                //inSampleSize will bring us close to our thumbnail size, figure out the
+                //  accurate size now so the decode can produce it directly
+                int newW = aOutputW;
+                int newH = aOutputH;
+                if (bRespectAspectRatioOfImage) {
+                    int origW = theImgSize.outWidth;
+                    int origH = theImgSize.outHeight;
+                    float p = Math.min((float)newW/origW,(float)newH/origH);
+                    newW = Math.min(Math.round(origW*p),newW);
+                    newH = Math.min(Math.round(origH*p),newH);
+                }
+                int theDecodeW = (theImgSize.outWidth+options.inSampleSize-1)/options.inSampleSize;
+                int theDecodeH = (theImgSize.outHeight+options.inSampleSize-1)/options.inSampleSize;
+                if (!bSkipScaling && bRespectAspectRatioOfImage && theDecodeW>newW &&
+                        BitmapPool.isFlexibleReuseSupported()) {
+                    //let the decoder do the final downscale, avoids a 2nd full sized Bitmap
+                    options.inScaled = true;
+                    options.inDensity = theDecodeW;
+                    options.inTargetDensity = newW;
+                    theDecodeH = Math.round(theDecodeH*((float)newW/theDecodeW));
+                    theDecodeW = newW;
+                }
                 Thread.yield();
-                Bitmap bmOrig = BitmapFactory.decodeFile(aImageFile.getPath(),options);
+                Bitmap bmOrig = decodeFileReusing(aImageFile.getPath(),options,theDecodeW,theDecodeH);
                 Thread.yield();
-                if (!bSkipScaling && bmOrig!=null) {
-                    //inSampleSize will bring us close to our thumbnail size, but we will need to
-                    //  create a scaled bitmap to be accurate
-                    int newW = aOutputW;
-                    int newH = aOutputH;
-                    if (bRespectAspectRatioOfImage) {
-                        int origW = options.outWidth;
-                        int origH = options.outHeight;
-                        float p = Math.min((float)newW/origW,(float)newH/origH);
-                        newW = Math.min(Math.round(origW*p),newW);
-                        newH = Math.min(Math.round(origH*p),newH);
-                    }
-                    bmOrig = Bitmap.createScaledBitmap(bmOrig,newW,newH,true);
+                if (bmOrig!=null && options.inScaled && options.inDensity!=0) {
+                    //the densities only served to scale the decode, do not let them size the drawable
+                    Resources theRes = (aContext!=null) ? aContext.getResources() : Resources.getSystem();
+                    bmOrig.setDensity(theRes.getDisplayMetrics().densityDpi);
+                }
+                if (!bSkipScaling && bmOrig!=null &&
+                        (Math.abs(bmOrig.getWidth()-newW)>1 || Math.abs(bmOrig.getHeight()-newH)>1)) {
+                    Bitmap theScaled = Bitmap.createScaledBitmap(bmOrig,newW,newH,true);
+                    if (theScaled!=bmOrig)
+                        releaseImage(bmOrig);
+                    bmOrig = theScaled;
                     Thread.yield();
                 }
                 return bmOrig;
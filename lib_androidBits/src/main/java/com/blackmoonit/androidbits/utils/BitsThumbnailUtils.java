@@ -22,6 +22,7 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.CompressFormat;
+import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.media.MediaMetadataRetriever;
@@ -29,7 +30,9 @@ import android.os.StatFs;
 
 import com.blackmoonit.androidbits.content.BitsIntent;
 import com.blackmoonit.androidbits.filesystem.MIMEtypeMap;
+import com.blackmoonit.androidbits.filesystem.ThumbnailPackStore;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -48,6 +51,14 @@ public final class BitsThumbnailUtils {
 	static public final String DEFAULT_THUMBNAIL_FILE_PREFIX = "thumb";
 	static public String mThumbnailFilePrefix = DEFAULT_THUMBNAIL_FILE_PREFIX;
 	static public final long THUMBNAIL_TOUCH_FREQUENCY = 1000*60*60*24; //miliseconds in 1 day
+	/**
+	 * Total number of bytes the thumbnail store may occupy inside {@link #mThumbnailCacheFolder}.
+	 * Capped to a quarter of the free space available when the store is opened.
+	 */
+	static public long mThumbnailCacheBudget = ThumbnailPackStore.DEFAULT_SIZE_BUDGET;
+	/** JPEG quality used for opaque thumbnails; those with alpha are kept as PNG. */
+	static public int mThumbnailQuality = 85;
+	static private ThumbnailPackStore mThumbnailStore = null;
 
 	private BitsThumbnailUtils() {} //do not instanciate this class
 
@@ -67,26 +78,47 @@ public final class BitsThumbnailUtils {
 	 * @return Returns the Drawable thumbnail.
 	 */
 	static public Bitmap getVideoThumbnail(File aFile, int aIconSize) {
-		Bitmap theResult = null;
 		//available for all Android versions, but different methods as of API 10 (2.3.3)
 		MediaMetadataRetriever theRetriever = new MediaMetadataRetriever();
+		try {
+			return getVideoThumbnail(theRetriever, aFile, aIconSize);
+		} finally {
+			try {
+				theRetriever.release();
+				theRetriever = null;
+			} catch (RuntimeException ex) {
+				//nothing to do
+			}
+		}
+	}
+
+	/**
+	 * Get a representative thumbnail of a video file using a retriever which the caller
+	 * owns and may reuse for other files, see {@link VideoFrameGrabber}.
+	 * @param aRetriever - the retriever to use, it is not released.
+	 * @param aFile - file to determine what icon to use
+	 * @param aIconSize - scale the thumbnail to this square size
+	 * @return Returns the Drawable thumbnail.
+	 */
+	static public Bitmap getVideoThumbnail(MediaMetadataRetriever aRetriever, File aFile, int aIconSize) {
+		Bitmap theResult = null;
 		try {
 			if (mVideo_GetFrameAtTime==null) {
 				try { //API 10+
-					mVideo_GetFrameAtTime = theRetriever.getClass().getMethod("getFrameAtTime");
+					mVideo_GetFrameAtTime = aRetriever.getClass().getMethod("getFrameAtTime");
 				} catch (NoSuchMethodException nsme) {
 					//failure, must be older device
 					try { //API >4, <10
-						mVideo_GetFrameAtTime = theRetriever.getClass().getMethod("captureFrame");
+						mVideo_GetFrameAtTime = aRetriever.getClass().getMethod("captureFrame");
 					} catch (NoSuchMethodException e) {
 						//leave method as null
 					}
 				}
 			}
 			if (mVideo_GetFrameAtTime!=null) {
-				theRetriever.setDataSource(aFile.getPath());
+				aRetriever.setDataSource(aFile.getPath());
 				try {
-					theResult = (Bitmap)mVideo_GetFrameAtTime.invoke(theRetriever);
+					theResult = (Bitmap)mVideo_GetFrameAtTime.invoke(aRetriever);
 				} catch (IllegalArgumentException e) {
 				} catch (IllegalAccessException e) {
 				} catch (InvocationTargetException e) {
@@ -94,16 +126,82 @@ public final class BitsThumbnailUtils {
 			}
 		} catch (Exception e) {
 			return null;
-		} finally {
+		}
+		if (theResult!=null && aIconSize>0 && theResult.getHeight()>aIconSize) {
+			Bitmap theFrame = theResult;
+			theResult = Bitmap.createScaledBitmap(theFrame,aIconSize,aIconSize,true);
+			if (theResult!=theFrame)
+				BitsGraphicsUtils.releaseImage(theFrame);
+		}
+		return theResult;
+	}
+
+	/**
+	 * Get a thumbnail of a photo, upright according to its EXIF orientation. The thumbnail a
+	 * camera embeds in the JPEG header is used when it is at least as large as requested,
+	 * which avoids decoding the full image; otherwise the image itself is subsampled.
+	 * @param aContext - context required to check for avail mem
+	 * @param aFile - the image file
+	 * @param aThumbSize - the thumbnail will fit within a square of this size
+	 * @return Returns the thumbnail or NULL if the image could not be loaded.
+	 */
+	static public Bitmap getImageThumbnail(Context aContext, File aFile, int aThumbSize) {
+		BitsExifUtils.ExifInfo theExif = BitsExifUtils.readExifInfo(aFile);
+		Bitmap theResult = null;
+		if (theExif!=null && theExif.thumbnailData!=null) {
 			try {
-				theRetriever.release();
-				theRetriever = null;
-			} catch (RuntimeException ex) {
-				return null;
+				theResult = decodeEmbeddedThumbnail(theExif,aThumbSize);
+			} catch (Exception e) {
+				theResult = null;
 			}
 		}
-		if (theResult!=null && aIconSize>0 && theResult.getHeight()>aIconSize) {
-			theResult = Bitmap.createScaledBitmap(theResult,aIconSize,aIconSize,true);
+		if (theResult==null) {
+			Thread.yield();
+			theResult = BitsGraphicsUtils.getImage(aContext,aFile,-1,aThumbSize,aThumbSize,true);
+		}
+		if (theExif!=null && theResult!=null) {
+			theResult = BitsExifUtils.applyOrientation(theResult,theExif.orientation);
+		}
+		return theResult;
+	}
+
+	/**
+	 * Decode the thumbnail embedded in the EXIF header if it will do for the size requested.
+	 * @param aExif - the EXIF info read from the file.
+	 * @param aThumbSize - the thumbnail will fit within a square of this size.
+	 * @return Returns the thumbnail or NULL if the embedded one is too small or unusable.
+	 */
+	static protected Bitmap decodeEmbeddedThumbnail(BitsExifUtils.ExifInfo aExif, int aThumbSize) {
+		byte[] theData = aExif.thumbnailData;
+		BitmapFactory.Options theBounds = new BitmapFactory.Options();
+		theBounds.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(theData,0,theData.length,theBounds);
+		int theW = theBounds.outWidth;
+		int theH = theBounds.outHeight;
+		if (theW<=0 || theH<=0 || Math.max(theW,theH)<aThumbSize)
+			return null;
+		//some cameras letterbox the thumbnail, do not use one whose shape differs from the image
+		if (aExif.imageWidth>0 && aExif.imageHeight>0) {
+			float theImageRatio = (float)aExif.imageWidth/aExif.imageHeight;
+			float theThumbRatio = (float)theW/theH;
+			if (Math.abs(theImageRatio-theThumbRatio)>theImageRatio*0.05f)
+				return null;
+		}
+		BitmapFactory.Options theOptions = new BitmapFactory.Options();
+		theOptions.inSampleSize = Math.max(BitsGraphicsUtils.computeSampleSize(theBounds,
+				aThumbSize,aThumbSize,false),1);
+		theOptions.inTempStorage = BitmapPool.getDecodeScratch();
+		Bitmap theResult = BitmapFactory.decodeByteArray(theData,0,theData.length,theOptions);
+		if (theResult!=null) {
+			float p = Math.min((float)aThumbSize/theResult.getWidth(),(float)aThumbSize/theResult.getHeight());
+			int newW = Math.max(Math.round(theResult.getWidth()*p),1);
+			int newH = Math.max(Math.round(theResult.getHeight()*p),1);
+			if (Math.abs(theResult.getWidth()-newW)>1 || Math.abs(theResult.getHeight()-newH)>1) {
+				Bitmap theDecoded = theResult;
+				theResult = Bitmap.createScaledBitmap(theDecoded,newW,newH,true);
+				if (theResult!=theDecoded)
+					BitsGraphicsUtils.releaseImage(theDecoded);
+			}
 		}
 		return theResult;
 	}
@@ -172,8 +270,7 @@ public final class BitsThumbnailUtils {
 					} else if (theMIMEcategory.equals("image/*") && aFile.isFile() && bLoadImageIcon) {
 						theResult = loadThumbnailFromCache(aFile,aScale);
 						if (theResult==null || (theResult.getIntrinsicHeight()>theIconSize) ) {
-							theResult = new BitmapDrawable(BitsGraphicsUtils.getImage(aContext,aFile,-1,
-									theIconSize,theIconSize,true));
+							theResult = new BitmapDrawable(getImageThumbnail(aContext,aFile,theIconSize));
 						}
 					} else if (theMIMEcategory.equals("video/*") && aFile.isFile() && bLoadImageIcon) {
 						theResult = loadThumbnailFromCache(aFile,aScale);
@@ -213,12 +310,49 @@ public final class BitsThumbnailUtils {
 		return theResult;
 	}
 
+	/**
+	 * Returns the packed thumbnail store living in {@link #mThumbnailCacheFolder}, opening it
+	 * if necessary. If the folder has changed since the store was opened, the old store is
+	 * closed and the new one is opened in its place.
+	 * @return Returns the store or NULL if no cache folder is defined or it cannot be opened.
+	 */
+	static public synchronized ThumbnailPackStore getThumbnailStore() {
+		File theFolder = mThumbnailCacheFolder;
+		if (mThumbnailStore!=null && !mThumbnailStore.getFolder().equals(theFolder)) {
+			mThumbnailStore.close();
+			mThumbnailStore = null;
+		}
+		if (mThumbnailStore==null && theFolder!=null) {
+			try {
+				long theBudget = mThumbnailCacheBudget;
+				long theFreeSpace = getFreeSpace(theFolder);
+				if (theFreeSpace>0)
+					theBudget = Math.min(theBudget, theFreeSpace/4);
+				mThumbnailStore = new ThumbnailPackStore(theFolder, null, theBudget);
+			} catch (IOException e) {
+				mThumbnailStore = null;
+			}
+		}
+		return mThumbnailStore;
+	}
+
+	/**
+	 * Close the thumbnail store, saving its index. It will be reopened on next use.
+	 */
+	static public synchronized void closeThumbnailStore() {
+		if (mThumbnailStore!=null) {
+			mThumbnailStore.close();
+			mThumbnailStore = null;
+		}
+	}
+
 	/**
 	 * Returns the File object used to access the cache file.
 	 * @param aFile - Image file to determine cache file object
 	 * @param aScale - thumbnails come in different sizes
 	 * @return Returns File object representing the cached thumbnail. If aFile is in cache folder already,
 	 * then aFile is returned.
+	 * @deprecated thumbnails are kept in the packed {@link #getThumbnailStore()} now.
 	 */
 	static public File getThumbnailCacheFile(File aFile, int aScale) {
 		if (mThumbnailCacheFolder!=null && aFile!=null && !mThumbnailCacheFolder.equals(aFile.getParentFile()))
@@ -233,6 +367,7 @@ public final class BitsThumbnailUtils {
 	 * @param aCacheFile - file object where the thumbnail will be stored.
 	 * @param aThumbnail - BitmapDrawable of the thumbnail.
 	 * @return Returns TRUE if succeeded, otherwise FALSE.
+	 * @deprecated thumbnails are kept in the packed {@link #getThumbnailStore()} now.
 	 */
 	static public boolean createThumbnailCacheFile(File aCacheFile, BitmapDrawable aThumbnail) {
 		if (aThumbnail!=null && aCacheFile!=null) {
@@ -256,62 +391,104 @@ public final class BitsThumbnailUtils {
 	}
 
 	/**
-	 * Returns the File object used to access the cache file.
-	 * @param aFile - Image file to determine cache file object
+	 * Remove the cached thumbnail of aFile, if any.
+	 * @param aFile - Image file whose thumbnail is to be removed
 	 * @param aScale - thumbnails come in different sizes
 	 */
 	static public void removeThumbnailCacheFile(File aFile, int aScale) {
-		File tempFile = getThumbnailCacheFile(aFile,aScale);
-		if (tempFile!=null && tempFile.exists()) {
-			tempFile.delete();
+		ThumbnailPackStore theStore = getThumbnailStore();
+		if (theStore!=null && aFile!=null) {
+			theStore.remove(ThumbnailPackStore.getThumbnailKey(aFile,aScale));
 		}
 	}
 
 	/**
 	 * Returns the drawable saved in thumbnail cache, if it exists, for the file passed in.
 	 * @param aFile - file that may have a cached thumbnail
+	 * @param aScale - thumbnails come in different sizes
 	 * @return Returns the drawable containing the thumbnail.
 	 */
 	static public Drawable loadThumbnailFromCache(File aFile, int aScale) {
-		File theThumbnailFile = getThumbnailCacheFile(aFile,aScale);
-		if (theThumbnailFile!=null && theThumbnailFile.exists() && theThumbnailFile.canRead()) {
-			try {
-				if (theThumbnailFile.canWrite()) {
-					//touch the file so compactFolder will avoid deleting from staleness
-					Long theNow = System.currentTimeMillis();
-					if ((theNow - theThumbnailFile.lastModified())>THUMBNAIL_TOUCH_FREQUENCY) {
-						theThumbnailFile.setLastModified(theNow);
-					}
-				}
-				BitmapDrawable theThumbnail = new BitmapDrawable(theThumbnailFile.getPath());
-				if (theThumbnail==null || theThumbnail.getBitmap()==null)
-					throw new IOException();
-				return theThumbnail;
-			} catch (Exception e) {
-				theThumbnailFile.delete(); //a problem with the thumbnail file? remove it
-				return null;
-			}
+		byte[] theData = loadThumbnailDataFromCache(aFile,aScale);
+		Drawable theResult = decodeThumbnailData(theData);
+		if (theResult==null && theData!=null)
+			removeThumbnailCacheFile(aFile,aScale); //a problem with the thumbnail data? remove it
+		return theResult;
+	}
+
+	/**
+	 * Returns the encoded thumbnail saved in thumbnail cache, if it exists, without decoding it.
+	 * Lets an I/O bound worker fetch the bytes and a CPU bound worker decode them.
+	 * @param aFile - file that may have a cached thumbnail
+	 * @param aScale - thumbnails come in different sizes
+	 * @return Returns the encoded thumbnail or NULL if not cached.
+	 */
+	static public byte[] loadThumbnailDataFromCache(File aFile, int aScale) {
+		ThumbnailPackStore theStore = getThumbnailStore();
+		if (theStore!=null && aFile!=null) {
+			return theStore.get(ThumbnailPackStore.getThumbnailKey(aFile,aScale));
+		}
+		return null;
+	}
+
+	/**
+	 * Decode thumbnail data as returned by {@link #loadThumbnailDataFromCache(File, int)}
+	 * into a pooled Bitmap, if one fits.
+	 * @param aData - the encoded thumbnail.
+	 * @return Returns the drawable containing the thumbnail or NULL if it could not be decoded.
+	 */
+	static public Drawable decodeThumbnailData(byte[] aData) {
+		if (aData!=null) {
+			BitmapFactory.Options theOptions = new BitmapFactory.Options();
+			theOptions.inTempStorage = BitmapPool.getDecodeScratch();
+			Bitmap theBitmap = BitsGraphicsUtils.decodeByteArrayReusing(aData,theOptions);
+			if (theBitmap!=null)
+				return new BitmapDrawable(theBitmap);
 		}
 		return null;
 	}
 
 	/**
 	 * Save off the thumbnail for aFile in thumbnail cache, if defined.
+	 * Opaque thumbnails are stored as JPEG, those with transparency as PNG.
 	 * @param aFile - original file object the thumbnail represents.
 	 * @param aThumbnail - thumbnail to be saved.
+	 * @param aScale - thumbnails come in different sizes
 	 */
 	static public void saveThumbnailToCache(File aFile, BitmapDrawable aThumbnail, int aScale) {
 		try {
-			File theCacheFile = getThumbnailCacheFile(aFile,aScale);
-			if (theCacheFile!=null && aThumbnail!=null && isEnoughRoomForThumbnail(theCacheFile,
-					aThumbnail.getBounds().width()*aThumbnail.getBounds().height()*4)) { //only need a maximally approx size
-				createThumbnailCacheFile(theCacheFile,aThumbnail);
+			ThumbnailPackStore theStore = getThumbnailStore();
+			if (theStore!=null && aFile!=null && aThumbnail!=null && aThumbnail.getBitmap()!=null) {
+				Bitmap theBitmap = aThumbnail.getBitmap();
+				ByteArrayOutputStream theOut = new ByteArrayOutputStream(
+						theBitmap.getWidth()*theBitmap.getHeight()/4+64);
+				boolean bOk = (theBitmap.hasAlpha())
+						? theBitmap.compress(CompressFormat.PNG,100,theOut)
+						: theBitmap.compress(CompressFormat.JPEG,mThumbnailQuality,theOut);
+				if (bOk)
+					theStore.put(ThumbnailPackStore.getThumbnailKey(aFile,aScale),theOut.toByteArray());
 			}
 		} catch (Exception e) {
 			//don't care if fail
 		}
 	}
 
+	/**
+	 * Determine the free space of the filesystem containing aFolder.
+	 * @param aFolder - folder to check
+	 * @return Returns the number of bytes available or -1 if unknown.
+	 */
+	static public long getFreeSpace(File aFolder) {
+		try {
+			StatFs theStats = new StatFs(aFolder.getPath());
+			//having the * on same line gives terrible results when > max_int
+			long theFreeSpace = theStats.getAvailableBlocks();
+			return theFreeSpace*theStats.getBlockSize();
+		} catch (IllegalArgumentException e) {
+			return -1L;
+		}
+	}
+
 	/**
 	 * Determine if there's enough room in the cache to store a thumbnail.
 	 * @param aFile - file of thumbnail about to be saved
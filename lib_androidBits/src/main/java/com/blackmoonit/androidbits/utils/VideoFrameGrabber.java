@@ -0,0 +1,262 @@
+package com.blackmoonit.androidbits.utils;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+
+import com.blackmoonit.androidbits.concurrent.ThreadTask;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Grabs representative video frames on its own small lane of grabber threads using a pool
+ * of reusable {@link MediaMetadataRetriever}s, so the native retriever is not set up again
+ * for every file. Each grab gets a time budget; a file that takes longer is abandoned so the
+ * caller can move on to the next one. The abandoned grab keeps its grabber thread until it
+ * finishes and then hands its frame to the {@link OnLateFrame} listener. Once every grabber
+ * thread is stuck on an abandoned grab, new grabs give up right away.
+ *
+ * @author baracudda
+ */
+@TargetApi(10)
+public class VideoFrameGrabber {
+	/** Default number of milliseconds a single file may take. */
+	static public final long DEFAULT_TIME_BUDGET = 1500L;
+	static private final int GRAB_QUEUED = 0;
+	static private final int GRAB_RUNNING = 1;
+	static private final int GRAB_DONE = 2;
+	static private final int GRAB_ABANDONED = 3;
+	/** Number of grabber threads, which is also the most idle retrievers kept. */
+	protected final int mMaxPooled;
+	protected final LinkedList<MediaMetadataRetriever> mPool = new LinkedList<MediaMetadataRetriever>();
+	protected final LinkedBlockingQueue<Grab> mGrabQueue = new LinkedBlockingQueue<Grab>();
+	protected final ArrayList<ThreadTask> mGrabbers = new ArrayList<ThreadTask>();
+	/** Grabs abandoned over their time budget which still occupy a grabber thread. */
+	protected final AtomicInteger mAbandoned = new AtomicInteger(0);
+	protected volatile boolean bClosed = false;
+	/** Number of milliseconds a single file may take before it is abandoned. */
+	public volatile long mTimeBudget;
+
+	/**
+	 * Receives the frame of a grab which ran over its time budget.
+	 */
+	public interface OnLateFrame {
+		/**
+		 * Called on the grabbing thread once the abandoned grab finishes.
+		 * @param aFile - the video file.
+		 * @param aFrame - the frame, never NULL.
+		 */
+		public void onLateFrame(File aFile, Bitmap aFrame);
+	}
+
+	/**
+	 * A single grab; whoever moves it out of the running state first, the finished grab or
+	 * the expired wait, decides who gets the frame.
+	 */
+	protected class Grab implements Runnable {
+		protected final File mFile;
+		protected final int mIconSize;
+		protected final OnLateFrame mLateListener;
+		protected final AtomicInteger mState = new AtomicInteger(GRAB_QUEUED);
+		protected final CountDownLatch mDone = new CountDownLatch(1);
+		protected Bitmap mResult = null;
+
+		protected Grab(File aFile, int aIconSize, OnLateFrame aLateListener) {
+			mFile = aFile;
+			mIconSize = aIconSize;
+			mLateListener = aLateListener;
+		}
+
+		@Override
+		public void run() {
+			//abandoned before its turn came, nobody wants it anymore
+			if (!mState.compareAndSet(GRAB_QUEUED,GRAB_RUNNING))
+				return;
+			Bitmap theResult = null;
+			try {
+				theResult = grab(mFile,mIconSize);
+			} finally {
+				mResult = theResult;
+				if (mState.compareAndSet(GRAB_RUNNING,GRAB_DONE)) {
+					mDone.countDown();
+				} else {
+					mAbandoned.decrementAndGet();
+					if (theResult!=null && mLateListener!=null)
+						mLateListener.onLateFrame(mFile,theResult);
+				}
+			}
+		}
+
+		/**
+		 * Give up on the grab.
+		 * @return Returns TRUE if abandoned, FALSE if it finished meanwhile.
+		 */
+		protected boolean abandon() {
+			if (mState.compareAndSet(GRAB_QUEUED,GRAB_ABANDONED))
+				return true;
+			//counted first so the grab cannot finish and uncount it before we do
+			mAbandoned.incrementAndGet();
+			if (mState.compareAndSet(GRAB_RUNNING,GRAB_ABANDONED))
+				return true;
+			mAbandoned.decrementAndGet();
+			return false;
+		}
+	}
+
+	/**
+	 * @param aMaxPooled - number of grabber threads and idle retrievers kept around for reuse.
+	 * @param aTimeBudget - number of milliseconds a single file may take.
+	 */
+	public VideoFrameGrabber(int aMaxPooled, long aTimeBudget) {
+		mMaxPooled = Math.max(aMaxPooled,1);
+		mTimeBudget = aTimeBudget;
+	}
+
+	protected MediaMetadataRetriever obtainRetriever() {
+		synchronized (mPool) {
+			if (!mPool.isEmpty())
+				return mPool.removeFirst();
+		}
+		return new MediaMetadataRetriever();
+	}
+
+	protected void recycleRetriever(MediaMetadataRetriever aRetriever) {
+		synchronized (mPool) {
+			if (!bClosed && mPool.size()<mMaxPooled) {
+				mPool.addLast(aRetriever);
+				return;
+			}
+		}
+		releaseRetriever(aRetriever);
+	}
+
+	protected void releaseRetriever(MediaMetadataRetriever aRetriever) {
+		try {
+			aRetriever.release();
+		} catch (RuntimeException e) {
+			//nothing to do
+		}
+	}
+
+	/**
+	 * Grab the frame with a pooled retriever; runs on a grabber thread.
+	 * @param aFile - the video file.
+	 * @param aIconSize - scale the frame to this square size, 0 means do not scale.
+	 * @return Returns the frame or NULL if none could be grabbed.
+	 */
+	protected Bitmap grab(File aFile, int aIconSize) {
+		MediaMetadataRetriever theRetriever = obtainRetriever();
+		boolean bRetrieverOk = false;
+		try {
+			Bitmap theResult = BitsThumbnailUtils.getVideoThumbnail(theRetriever,aFile,aIconSize);
+			bRetrieverOk = true;
+			return theResult;
+		} catch (RuntimeException e) {
+			return null;
+		} finally {
+			if (bRetrieverOk)
+				recycleRetriever(theRetriever);
+			else
+				releaseRetriever(theRetriever);
+		}
+	}
+
+	/**
+	 * Start the grabber threads the first time they are needed.
+	 */
+	protected void ensureGrabbers() {
+		synchronized (mGrabbers) {
+			if (!mGrabbers.isEmpty() || bClosed)
+				return;
+			for (int i=0; i<mMaxPooled; i++) {
+				mGrabbers.add(ThreadTask.runThisTask(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							while (!bClosed) {
+								Grab theGrab = mGrabQueue.take();
+								try {
+									theGrab.run();
+								} catch (RuntimeException e) {
+									//a failing listener must not cost the lane a thread
+								}
+							}
+						} catch (InterruptedException ie) {
+							//closed
+						}
+					}
+				}, "VideoFrameGrabber"));
+			}
+		}
+	}
+
+	/**
+	 * Grab a frame to represent the video, waiting at most {@link #mTimeBudget} for it.
+	 * @param aFile - the video file.
+	 * @param aIconSize - scale the frame to this square size, 0 means do not scale.
+	 * @param aLateListener - receives the frame if it arrives after the time budget ran
+	 * out, may be NULL.
+	 * @return Returns the frame or NULL if none could be grabbed within the time budget,
+	 * right away if every grabber thread is stuck on an abandoned grab.
+	 * @throws InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public Bitmap grabFrame(File aFile, int aIconSize, OnLateFrame aLateListener)
+			throws InterruptedException {
+		if (aFile==null || bClosed || mAbandoned.get()>=mMaxPooled)
+			return null;
+		ensureGrabbers();
+		Grab theGrab = new Grab(aFile,aIconSize,aLateListener);
+		mGrabQueue.offer(theGrab);
+		boolean bDone = false;
+		try {
+			bDone = theGrab.mDone.await(mTimeBudget,TimeUnit.MILLISECONDS);
+		} finally {
+			//a grab finishing just now keeps the frame for us
+			if (!bDone && theGrab.abandon())
+				mGrabQueue.remove(theGrab);
+		}
+		return theGrab.mResult;
+	}
+
+	/**
+	 * Stop the grabber threads and release the idle retrievers; grabs still running
+	 * release theirs when done.
+	 */
+	public void close() {
+		synchronized (mPool) {
+			bClosed = true;
+			while (!mPool.isEmpty()) {
+				releaseRetriever(mPool.removeFirst());
+			}
+		}
+		synchronized (mGrabbers) {
+			for (ThreadTask theGrabber : mGrabbers) {
+				theGrabber.halt();
+			}
+			mGrabbers.clear();
+		}
+		mGrabQueue.clear();
+	}
+
+}
@@ -0,0 +1,502 @@
+package com.blackmoonit.androidbits.processor;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a RowVarBinder for each RowVar class marked with BindRowVar. The generated code
+ * mirrors what RowVarBinding does by reflection: columns are the COL_* and _ID String
+ * constants of the table contract, each bound to the public RowVar field of the same name
+ * with spaces replaced by "_"; columns without such a field are skipped with a warning.
+ * RowVars overriding cnvColNameToRowFieldName() or getColNamesFromMyContract() should not
+ * use generated binders.
+ *
+ * @author baracudda
+ */
+public class RowVarBinderProcessor extends AbstractProcessor {
+	static public final String ANNOTATION_NAME = "com.blackmoonit.androidbits.database.BindRowVar";
+	static public final String ROWVAR_NAME = "com.blackmoonit.androidbits.database.ProviderContract.RowVar";
+	static public final String BINDER_NAME = "com.blackmoonit.androidbits.database.RowVarBinder";
+	static public final String BINDER_SUFFIX = "_Binder";
+
+	static protected final int KIND_OTHER = 0;
+	static protected final int KIND_STRING = 1;
+	static protected final int KIND_INT = 2;
+	static protected final int KIND_LONG = 3;
+	static protected final int KIND_FLOAT = 4;
+	static protected final int KIND_DOUBLE = 5;
+	static protected final int KIND_BOOLEAN = 6;
+	static protected final int KIND_CHAR = 7;
+	static protected final int KIND_BYTE = 8;
+	static protected final int KIND_SHORT = 9;
+
+	/**
+	 * Boxed class names by their kind, index matches the KIND_* constants.
+	 */
+	static protected final String[] BOXED_NAMES = { null, "java.lang.String",
+			"java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double",
+			"java.lang.Boolean", "java.lang.Character", "java.lang.Byte", "java.lang.Short" };
+	/**
+	 * Name used by the Bundle/Cursor/Parcel method of each kind, e.g. putInt().
+	 */
+	static protected final String[] METHOD_NAMES = { null, "String", "Int", "Long", "Float",
+			"Double", "Boolean", "Char", "Byte", "Short" };
+
+	/**
+	 * One bound column of the RowVar being generated.
+	 */
+	static protected class Column {
+		protected final String mColName;
+		protected final String mFieldName;
+		/** Erased source type of the field, used for casts. */
+		protected final String mTypeName;
+		protected final int mKind;
+		protected final boolean bPrimitive;
+		/** Final fields are written out, but never assigned. */
+		protected final boolean bWritable;
+
+		protected Column(String aColName, VariableElement aField, String aTypeName, int aKind) {
+			mColName = aColName;
+			mFieldName = aField.getSimpleName().toString();
+			mTypeName = aTypeName;
+			mKind = aKind;
+			bPrimitive = aField.asType().getKind().isPrimitive();
+			bWritable = !aField.getModifiers().contains(Modifier.FINAL);
+		}
+
+		/** @return Returns the field access expression. */
+		protected String getField() {
+			return "aRow."+mFieldName;
+		}
+	}
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(ANNOTATION_NAME);
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> aAnnotations, RoundEnvironment aRoundEnv) {
+		for (TypeElement theAnnotation : aAnnotations) {
+			for (Element theElement : aRoundEnv.getElementsAnnotatedWith(theAnnotation)) {
+				if (theElement.getKind()==ElementKind.CLASS) {
+					processRowVar((TypeElement)theElement);
+				} else {
+					error(theElement, "@BindRowVar only applies to RowVar classes.");
+				}
+			}
+		}
+		return true;
+	}
+
+	protected void error(Element aElement, String aMsg) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, aMsg, aElement);
+	}
+
+	protected void warning(Element aElement, String aMsg) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, aMsg, aElement);
+	}
+
+	/**
+	 * Validate the RowVar class, work out its columns and write its binder.
+	 * @param aRowVar - the annotated class.
+	 */
+	protected void processRowVar(TypeElement aRowVar) {
+		TypeElement theRowVarBase = processingEnv.getElementUtils().getTypeElement(ROWVAR_NAME);
+		if (theRowVarBase==null || !processingEnv.getTypeUtils().isSubtype(
+				processingEnv.getTypeUtils().erasure(aRowVar.asType()),
+				processingEnv.getTypeUtils().erasure(theRowVarBase.asType()))) {
+			error(aRowVar, "@BindRowVar classes must descend from ProviderContract.RowVar.");
+			return;
+		}
+		for (Element theScope = aRowVar; theScope.getKind()!=ElementKind.PACKAGE;
+				theScope = theScope.getEnclosingElement()) {
+			if (theScope.getModifiers().contains(Modifier.PRIVATE)) {
+				error(aRowVar, "@BindRowVar classes cannot be private, nor be nested in private classes.");
+				return;
+			}
+		}
+		TypeElement theContract = getContract(aRowVar);
+		if (theContract==null) {
+			error(aRowVar, "@BindRowVar needs the table contract class.");
+			return;
+		}
+		Map<String, VariableElement> theFields = getRowFields(aRowVar);
+		ArrayList<Column> theColumns = new ArrayList<Column>();
+		for (String theColName : getColNames(theContract)) {
+			String theFieldName = theColName.replace(" ", "_");
+			VariableElement theField = theFields.get(theFieldName);
+			if (theField==null) {
+				warning(aRowVar, aRowVar.getSimpleName()+" has no public field for column "+theColName);
+				continue;
+			}
+			TypeMirror theType = processingEnv.getTypeUtils().erasure(theField.asType());
+			theColumns.add(new Column(theColName, theField, theType.toString(), getKind(theType)));
+		}
+		try {
+			writeBinder(aRowVar, theColumns);
+		} catch (IOException e) {
+			error(aRowVar, "Could not write the binder of "+aRowVar.getSimpleName()+": "+e);
+		}
+	}
+
+	/**
+	 * @param aRowVar - the annotated class.
+	 * @return Returns the class given to the annotation, NULL if not found.
+	 */
+	protected TypeElement getContract(TypeElement aRowVar) {
+		for (AnnotationMirror theMirror : aRowVar.getAnnotationMirrors()) {
+			TypeElement theType = (TypeElement)theMirror.getAnnotationType().asElement();
+			if (!theType.getQualifiedName().contentEquals(ANNOTATION_NAME))
+				continue;
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> theEntry :
+					theMirror.getElementValues().entrySet()) {
+				if (theEntry.getKey().getSimpleName().contentEquals("value") &&
+						theEntry.getValue().getValue() instanceof DeclaredType) {
+					return (TypeElement)((DeclaredType)theEntry.getValue().getValue()).asElement();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Collect the column names the same way TableProviderInfo.getColNamesFromMyContract()
+	 * does: public COL_* and _ID String constants, inherited ones included.
+	 * @param aContract - the table contract class.
+	 * @return Returns the column names in declaration order, subclass first.
+	 */
+	protected Set<String> getColNames(TypeElement aContract) {
+		LinkedHashSet<String> theResults = new LinkedHashSet<String>();
+		ArrayList<TypeElement> theTypes = new ArrayList<TypeElement>();
+		theTypes.add(aContract);
+		for (int i=0; i<theTypes.size(); i++) {
+			TypeElement theType = theTypes.get(i);
+			boolean bInterface = (theType.getKind()==ElementKind.INTERFACE);
+			for (VariableElement theField : ElementFilter.fieldsIn(theType.getEnclosedElements())) {
+				String theName = theField.getSimpleName().toString();
+				if (!theName.startsWith("COL_") && !theName.equals("_ID"))
+					continue;
+				if (!bInterface && !theField.getModifiers().contains(Modifier.PUBLIC))
+					continue;
+				Object theValue = theField.getConstantValue();
+				if (theValue instanceof String)
+					theResults.add((String)theValue);
+				else
+					warning(theField, theName+" is not a String constant, it is not bound.");
+			}
+			addSuperTypes(theType, theTypes);
+		}
+		return theResults;
+	}
+
+	/**
+	 * Queue the superclass and interfaces of aType.
+	 */
+	protected void addSuperTypes(TypeElement aType, ArrayList<TypeElement> aTypes) {
+		ArrayList<TypeMirror> theSupers = new ArrayList<TypeMirror>(aType.getInterfaces());
+		theSupers.add(0, aType.getSuperclass());
+		for (TypeMirror theSuper : theSupers) {
+			if (theSuper.getKind()==TypeKind.DECLARED) {
+				TypeElement theElement = (TypeElement)((DeclaredType)theSuper).asElement();
+				if (!aTypes.contains(theElement))
+					aTypes.add(theElement);
+			}
+		}
+	}
+
+	/**
+	 * Public instance fields of the RowVar and its ancestors, nearest declaration wins.
+	 * @param aRowVar - the annotated class.
+	 * @return Returns the fields by name.
+	 */
+	protected Map<String, VariableElement> getRowFields(TypeElement aRowVar) {
+		HashMap<String, VariableElement> theResults = new HashMap<String, VariableElement>();
+		TypeElement theType = aRowVar;
+		while (theType!=null) {
+			for (VariableElement theField : ElementFilter.fieldsIn(theType.getEnclosedElements())) {
+				Set<Modifier> theModifiers = theField.getModifiers();
+				String theName = theField.getSimpleName().toString();
+				if (theModifiers.contains(Modifier.PUBLIC) && !theModifiers.contains(Modifier.STATIC)
+						&& !theResults.containsKey(theName)) {
+					theResults.put(theName, theField);
+				}
+			}
+			TypeMirror theSuper = theType.getSuperclass();
+			theType = (theSuper.getKind()==TypeKind.DECLARED)
+					? (TypeElement)((DeclaredType)theSuper).asElement() : null;
+		}
+		return theResults;
+	}
+
+	/**
+	 * @param aType - the erased field type.
+	 * @return Returns the KIND_* constant of the type.
+	 */
+	protected int getKind(TypeMirror aType) {
+		switch (aType.getKind()) {
+			case INT: return KIND_INT;
+			case LONG: return KIND_LONG;
+			case FLOAT: return KIND_FLOAT;
+			case DOUBLE: return KIND_DOUBLE;
+			case BOOLEAN: return KIND_BOOLEAN;
+			case CHAR: return KIND_CHAR;
+			case BYTE: return KIND_BYTE;
+			case SHORT: return KIND_SHORT;
+			case DECLARED: {
+				String theName = aType.toString();
+				for (int i=1; i<BOXED_NAMES.length; i++) {
+					if (BOXED_NAMES[i].equals(theName))
+						return i;
+				}
+				return KIND_OTHER;
+			}
+			default:
+				return KIND_OTHER;
+		}
+	}
+
+	/**
+	 * @return Returns a Java string literal of aValue.
+	 */
+	static protected String quote(String aValue) {
+		return "\""+aValue.replace("\\", "\\\\").replace("\"", "\\\"")+"\"";
+	}
+
+	/**
+	 * Write the binder source of aRowVar.
+	 * @param aRowVar - the annotated class.
+	 * @param aColumns - its bound columns.
+	 * @throws IOException if the source file cannot be written.
+	 */
+	protected void writeBinder(TypeElement aRowVar, ArrayList<Column> aColumns) throws IOException {
+		PackageElement thePackage = processingEnv.getElementUtils().getPackageOf(aRowVar);
+		String thePackageName = thePackage.isUnnamed() ? "" : thePackage.getQualifiedName().toString();
+		String theBinaryName = processingEnv.getElementUtils().getBinaryName(aRowVar).toString();
+		String theBinderName = theBinaryName.substring(thePackageName.isEmpty() ? 0 : thePackageName.length()+1)
+				.replace('$', '_')+BINDER_SUFFIX;
+		String theRowType = aRowVar.getQualifiedName().toString();
+
+		StringBuilder s = new StringBuilder();
+		if (!thePackageName.isEmpty())
+			s.append("package ").append(thePackageName).append(";\n\n");
+		s.append("// Generated by ").append(getClass().getSimpleName()).append(", do not edit.\n");
+		s.append("public final class ").append(theBinderName).append(" extends ").append(BINDER_NAME)
+				.append("<").append(theRowType).append("> {\n");
+
+		s.append("\tstatic private final String[] PROJECTION = {");
+		for (int i=0; i<aColumns.size(); i++) {
+			s.append((i>0) ? ", " : " ").append(quote(aColumns.get(i).mColName));
+		}
+		s.append(" };\n\n");
+		s.append("\t@Override\n\tpublic String[] getProjection() {\n\t\treturn PROJECTION;\n\t}\n\n");
+
+		s.append("\t@Override\n\tprotected void readCursor(").append(theRowType)
+				.append(" aRow, android.database.Cursor aCursor, int[] aColIdx) {\n");
+		for (int i=0; i<aColumns.size(); i++) {
+			appendReadCursor(s, aColumns.get(i), "aColIdx["+i+"]");
+		}
+		s.append("\t}\n\n");
+
+		s.append("\t@Override\n\tpublic void setFromBundle(").append(theRowType)
+				.append(" aRow, android.os.Bundle aBundle) {\n\t\tObject theValue;\n");
+		for (Column theColumn : aColumns) {
+			appendReadBundle(s, theColumn);
+		}
+		s.append("\t}\n\n");
+
+		s.append("\t@Override\n\tpublic void writeToContentValues(").append(theRowType)
+				.append(" aRow, android.content.ContentValues aValues, boolean bOmitNulls) {\n");
+		for (Column theColumn : aColumns) {
+			appendWriteValues(s, theColumn);
+		}
+		s.append("\t}\n\n");
+
+		s.append("\t@Override\n\tpublic void writeToBundle(").append(theRowType)
+				.append(" aRow, android.os.Bundle aBundle) {\n");
+		for (Column theColumn : aColumns) {
+			appendWriteBundle(s, theColumn);
+		}
+		s.append("\t}\n\n");
+
+		s.append("\t@Override\n\tpublic void writeToParcel(").append(theRowType)
+				.append(" aRow, android.os.Parcel aDest) {\n");
+		for (Column theColumn : aColumns) {
+			appendWriteParcel(s, theColumn);
+		}
+		s.append("\t}\n\n");
+
+		s.append("\t@Override\n\tpublic void setFromParcel(").append(theRowType)
+				.append(" aRow, android.os.Parcel aSource) {\n\t\tObject theValue;\n");
+		for (Column theColumn : aColumns) {
+			appendReadParcel(s, theColumn);
+		}
+		s.append("\t}\n\n");
+		s.append("}\n");
+
+		String theSourceName = thePackageName.isEmpty() ? theBinderName : thePackageName+"."+theBinderName;
+		Writer theWriter = processingEnv.getFiler().createSourceFile(theSourceName, aRowVar).openWriter();
+		try {
+			theWriter.write(s.toString());
+		} finally {
+			theWriter.close();
+		}
+	}
+
+	protected void appendReadCursor(StringBuilder s, Column aColumn, String aIdx) {
+		if (!aColumn.bWritable || aColumn.mKind==KIND_OTHER)
+			return; //Cursor does not have a generic GET method
+		String theField = aColumn.getField();
+		s.append("\t\tif (").append(aIdx).append(">=0) ");
+		switch (aColumn.mKind) {
+			case KIND_BOOLEAN:
+				s.append(theField).append(" = (aCursor.getInt(").append(aIdx).append(")>0);\n");
+				break;
+			case KIND_CHAR:
+				s.append("{\n\t\t\tString theValue = aCursor.getString(").append(aIdx).append(");\n");
+				s.append("\t\t\tif (theValue!=null && theValue.length()>0)\n\t\t\t\t")
+						.append(theField).append(" = theValue.charAt(0);\n\t\t}\n");
+				break;
+			case KIND_BYTE:
+				s.append(theField).append(" = Byte.parseByte(aCursor.getString(").append(aIdx).append("));\n");
+				break;
+			default:
+				s.append(theField).append(" = aCursor.get").append(METHOD_NAMES[aColumn.mKind])
+						.append("(").append(aIdx).append(");\n");
+		}
+	}
+
+	protected void appendReadBundle(StringBuilder s, Column aColumn) {
+		if (!aColumn.bWritable)
+			return;
+		String theCast = (aColumn.bPrimitive) ? BOXED_NAMES[aColumn.mKind] : aColumn.mTypeName;
+		s.append("\t\ttheValue = aBundle.get(").append(quote(aColumn.mFieldName)).append(");\n");
+		//primitives cannot hold a missing value
+		s.append("\t\t").append((aColumn.bPrimitive) ? "if (theValue!=null) " : "")
+				.append(aColumn.getField()).append(" = (").append(theCast).append(")theValue;\n");
+	}
+
+	protected void appendWriteValues(StringBuilder s, Column aColumn) {
+		String theField = aColumn.getField();
+		String theCol = quote(aColumn.mColName);
+		String theValue = (aColumn.mKind==KIND_CHAR) ? "String.valueOf("+theField+")" : theField;
+		if (aColumn.bPrimitive) {
+			s.append("\t\taValues.put(").append(theCol).append(", ").append(theValue).append(");\n");
+		} else if (aColumn.mKind==KIND_OTHER) {
+			//ContentValues does not have a generic PUT method
+			s.append("\t\tif (").append(theField).append("==null && !bOmitNulls)\n\t\t\taValues.putNull(")
+					.append(theCol).append(");\n");
+		} else {
+			s.append("\t\tif (").append(theField).append("!=null)\n\t\t\taValues.put(").append(theCol)
+					.append(", ").append(theValue).append(");\n");
+			s.append("\t\telse if (!bOmitNulls)\n\t\t\taValues.putNull(").append(theCol).append(");\n");
+		}
+	}
+
+	protected void appendWriteBundle(StringBuilder s, Column aColumn) {
+		if (aColumn.mKind==KIND_OTHER)
+			return; //Bundle does not have a generic PUT method
+		String theField = aColumn.getField();
+		String thePut = "aBundle.put"+METHOD_NAMES[aColumn.mKind]+"("+quote(aColumn.mFieldName)+", "+theField+");\n";
+		if (aColumn.bPrimitive)
+			s.append("\t\t").append(thePut);
+		else
+			s.append("\t\tif (").append(theField).append("!=null)\n\t\t\t").append(thePut);
+	}
+
+	/**
+	 * @return Returns the statement writing aValue, of the column's kind, to aDest.
+	 */
+	protected String getParcelWrite(Column aColumn, String aValue) {
+		switch (aColumn.mKind) {
+			case KIND_STRING: return "aDest.writeString("+aValue+");";
+			case KIND_BOOLEAN: return "aDest.writeInt(("+aValue+") ? 1 : 0);";
+			case KIND_CHAR:
+			case KIND_SHORT: return "aDest.writeInt("+aValue+");";
+			case KIND_OTHER: return "aDest.writeValue("+aValue+");";
+			default: return "aDest.write"+METHOD_NAMES[aColumn.mKind]+"("+aValue+");";
+		}
+	}
+
+	/**
+	 * @return Returns the expression reading a value of the column's kind from aSource.
+	 */
+	protected String getParcelRead(Column aColumn) {
+		switch (aColumn.mKind) {
+			case KIND_STRING: return "aSource.readString()";
+			case KIND_BOOLEAN: return "(aSource.readInt()!=0)";
+			case KIND_CHAR: return "(char)aSource.readInt()";
+			case KIND_SHORT: return "(short)aSource.readInt()";
+			case KIND_OTHER: return "("+aColumn.mTypeName+")aSource.readValue(aRow.getClass().getClassLoader())";
+			default: return "aSource.read"+METHOD_NAMES[aColumn.mKind]+"()";
+		}
+	}
+
+	protected void appendWriteParcel(StringBuilder s, Column aColumn) {
+		String theField = aColumn.getField();
+		if (aColumn.bPrimitive || aColumn.mKind==KIND_STRING || aColumn.mKind==KIND_OTHER) {
+			s.append("\t\t").append(getParcelWrite(aColumn, theField)).append("\n");
+		} else {
+			//boxed values are preceded by a NULL marker
+			s.append("\t\tif (").append(theField).append("!=null) {\n\t\t\taDest.writeInt(1);\n\t\t\t")
+					.append(getParcelWrite(aColumn, theField)).append("\n\t\t} else\n\t\t\taDest.writeInt(0);\n");
+		}
+	}
+
+	protected void appendReadParcel(StringBuilder s, Column aColumn) {
+		//read into theValue when it cannot be assigned so that the Parcel stays in step
+		String theTarget = (aColumn.bWritable) ? aColumn.getField() : "theValue";
+		if (aColumn.bPrimitive || aColumn.mKind==KIND_STRING || aColumn.mKind==KIND_OTHER) {
+			s.append("\t\t").append(theTarget).append(" = ").append(getParcelRead(aColumn)).append(";\n");
+		} else {
+			s.append("\t\t").append(theTarget).append(" = (aSource.readInt()!=0) ? (")
+					.append(BOXED_NAMES[aColumn.mKind]).append(")").append(getParcelRead(aColumn))
+					.append(" : null;\n");
+		}
+	}
+
+}
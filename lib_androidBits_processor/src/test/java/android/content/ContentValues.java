@@ -0,0 +1,38 @@
+package android.content;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+
+/**
+ * Test stand-in for the Android class.
+ */
+public final class ContentValues {
+	private final HashMap<String, Object> mValues = new HashMap<String, Object>();
+
+	public Object get(String aKey) { return mValues.get(aKey); }
+	public boolean containsKey(String aKey) { return mValues.containsKey(aKey); }
+	public void putNull(String aKey) { mValues.put(aKey, null); }
+	public void put(String aKey, String aValue) { mValues.put(aKey, aValue); }
+	public void put(String aKey, Integer aValue) { mValues.put(aKey, aValue); }
+	public void put(String aKey, Long aValue) { mValues.put(aKey, aValue); }
+	public void put(String aKey, Float aValue) { mValues.put(aKey, aValue); }
+	public void put(String aKey, Double aValue) { mValues.put(aKey, aValue); }
+	public void put(String aKey, Boolean aValue) { mValues.put(aKey, aValue); }
+	public void put(String aKey, Byte aValue) { mValues.put(aKey, aValue); }
+	public void put(String aKey, Short aValue) { mValues.put(aKey, aValue); }
+
+}
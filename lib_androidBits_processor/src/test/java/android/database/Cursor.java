@@ -0,0 +1,28 @@
+package android.database;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Test stand-in for the Android interface, only what generated binders call.
+ */
+public interface Cursor {
+	public String getString(int aColIdx);
+	public short getShort(int aColIdx);
+	public int getInt(int aColIdx);
+	public long getLong(int aColIdx);
+	public float getFloat(int aColIdx);
+	public double getDouble(int aColIdx);
+}
@@ -0,0 +1,39 @@
+package android.os;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+
+/**
+ * Test stand-in for the Android class.
+ */
+public final class Bundle {
+	private final HashMap<String, Object> mValues = new HashMap<String, Object>();
+
+	public Object get(String aKey) { return mValues.get(aKey); }
+	public boolean containsKey(String aKey) { return mValues.containsKey(aKey); }
+	public int size() { return mValues.size(); }
+	public void putString(String aKey, String aValue) { mValues.put(aKey, aValue); }
+	public void putInt(String aKey, int aValue) { mValues.put(aKey, aValue); }
+	public void putLong(String aKey, long aValue) { mValues.put(aKey, aValue); }
+	public void putFloat(String aKey, float aValue) { mValues.put(aKey, aValue); }
+	public void putDouble(String aKey, double aValue) { mValues.put(aKey, aValue); }
+	public void putBoolean(String aKey, boolean aValue) { mValues.put(aKey, aValue); }
+	public void putChar(String aKey, char aValue) { mValues.put(aKey, aValue); }
+	public void putByte(String aKey, byte aValue) { mValues.put(aKey, aValue); }
+	public void putShort(String aKey, short aValue) { mValues.put(aKey, aValue); }
+
+}
@@ -0,0 +1,59 @@
+package android.os;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+
+/**
+ * Test stand-in for the Android class: values are kept as objects in write order, so reading
+ * one of another type than was written fails with a ClassCastException.
+ */
+public final class Parcel {
+	private final ArrayList<Object> mValues = new ArrayList<Object>();
+	private int mPos = 0;
+
+	static public Parcel obtain() {
+		return new Parcel();
+	}
+
+	public void setDataPosition(int aPos) {
+		mPos = aPos;
+	}
+
+	public int dataAvail() {
+		return mValues.size()-mPos;
+	}
+
+	private Object read() {
+		return mValues.get(mPos++);
+	}
+
+	public void writeInt(int aValue) { mValues.add(aValue); }
+	public int readInt() { return (Integer)read(); }
+	public void writeLong(long aValue) { mValues.add(aValue); }
+	public long readLong() { return (Long)read(); }
+	public void writeFloat(float aValue) { mValues.add(aValue); }
+	public float readFloat() { return (Float)read(); }
+	public void writeDouble(double aValue) { mValues.add(aValue); }
+	public double readDouble() { return (Double)read(); }
+	public void writeByte(byte aValue) { mValues.add(aValue); }
+	public byte readByte() { return (Byte)read(); }
+	public void writeString(String aValue) { mValues.add(aValue); }
+	public String readString() { return (String)read(); }
+	public void writeValue(Object aValue) { mValues.add(aValue); }
+	public Object readValue(ClassLoader aLoader) { return read(); }
+
+}
@@ -0,0 +1,34 @@
+package com.blackmoonit.androidbits.database;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.Parcel;
+
+/**
+ * Test stand-in for the library class, just the methods generated binders implement.
+ */
+public abstract class RowVarBinder<T extends ProviderContract.RowVar> {
+	abstract public String[] getProjection();
+	abstract protected void readCursor(T aRow, Cursor aCursor, int[] aColIdx);
+	abstract public void setFromBundle(T aRow, Bundle aBundle);
+	abstract public void writeToContentValues(T aRow, ContentValues aValues, boolean bOmitNulls);
+	abstract public void writeToBundle(T aRow, Bundle aBundle);
+	abstract public void writeToParcel(T aRow, Parcel aDest);
+	abstract public void setFromParcel(T aRow, Parcel aSource);
+}
@@ -0,0 +1,297 @@
+package com.blackmoonit.androidbits.processor;
+/*
+ * Copyright (C) 2026 Blackmoon Info Tech Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.os.Parcel;
+
+import com.blackmoonit.androidbits.database.ProviderContract;
+import com.blackmoonit.androidbits.database.RowVarBinder;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles a RowVar and its contract with {@link RowVarBinderProcessor}, against the stub
+ * Android classes of this source set, then round-trips rows through the generated binder.
+ *
+ * @author baracudda
+ */
+public class RowVarBinderProcessorTest {
+	static protected final String ROW_PACKAGE = "com.example.widgets";
+	static protected final String BINDER_CLASS = ROW_PACKAGE+".WidgetContract_Widget_Binder";
+	/** One field of every kind, boxed and primitive; "created" is final. */
+	static protected final String ROW_SOURCE = ""
+			+"package "+ROW_PACKAGE+";\n"
+			+"import com.blackmoonit.androidbits.database.BindRowVar;\n"
+			+"import com.blackmoonit.androidbits.database.ProviderContract;\n"
+			+"public class WidgetContract implements ProviderContract.Table {\n"
+			+"	static public final String COL_NAME = \"name\";\n"
+			+"	static public final String COL_COUNT = \"count\";\n"
+			+"	static public final String COL_TOTAL = \"total\";\n"
+			+"	static public final String COL_CREATED = \"created\";\n"
+			+"	static public final String COL_SIZE = \"size\";\n"
+			+"	static public final String COL_RATIO = \"ratio\";\n"
+			+"	static public final String COL_WEIGHT = \"weight\";\n"
+			+"	static public final String COL_ENABLED = \"enabled\";\n"
+			+"	static public final String COL_VISIBLE = \"visible\";\n"
+			+"	static public final String COL_GRADE = \"grade\";\n"
+			+"	static public final String COL_INITIAL = \"initial\";\n"
+			+"	static public final String COL_FLAGS = \"flags\";\n"
+			+"	static public final String COL_LEVEL = \"level\";\n"
+			+"	static public final String COL_RANK = \"rank\";\n"
+			+"	static public final String COL_SLOT = \"slot\";\n"
+			+"	static public final String COL_NOTE = \"note\";\n"
+			+"	static public final String COL_MISSING = \"missing\";\n"
+			+"	@BindRowVar(WidgetContract.class)\n"
+			+"	static public class Widget extends ProviderContract.RowVar {\n"
+			+"		public String name;\n"
+			+"		public int count;\n"
+			+"		public Integer total;\n"
+			+"		public final long created;\n"
+			+"		public long size;\n"
+			+"		public float ratio;\n"
+			+"		public Double weight;\n"
+			+"		public boolean enabled;\n"
+			+"		public Boolean visible;\n"
+			+"		public char grade;\n"
+			+"		public Character initial;\n"
+			+"		public byte flags;\n"
+			+"		public Byte level;\n"
+			+"		public short rank;\n"
+			+"		public Short slot;\n"
+			+"		public Integer note;\n"
+			+"		public Widget(long aCreated) { created = aCreated; }\n"
+			+"	}\n"
+			+"}\n";
+	/** Assignable fields of the row, compared after each round trip. */
+	static protected final List<String> ROW_FIELDS = Arrays.asList("_id", "name", "count",
+			"total", "size", "ratio", "weight", "enabled", "visible", "grade", "initial", "flags",
+			"level", "rank", "slot", "note");
+
+	static private File mOutDir;
+	static private URLClassLoader mLoader;
+	static private DiagnosticCollector<JavaFileObject> mDiagnostics;
+
+	@BeforeClass
+	static public void compileRowVar() throws Exception {
+		mOutDir = Files.createTempDirectory("rowvarbinder").toFile();
+		JavaCompiler theCompiler = ToolProvider.getSystemJavaCompiler();
+		assertNotNull("tests need a JDK, not a JRE", theCompiler);
+		mDiagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager theFileManager = theCompiler.getStandardFileManager(mDiagnostics, null, null);
+		JavaFileObject theSource = new SimpleJavaFileObject(URI.create("string:///"
+				+ROW_PACKAGE.replace('.', '/')+"/WidgetContract.java"), JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean bIgnoreEncodingErrors) {
+				return ROW_SOURCE;
+			}
+		};
+		//the stubs were compiled with this test, so that is the classpath the row needs
+		String theStubPath = new File(Parcel.class.getProtectionDomain().getCodeSource()
+				.getLocation().toURI()).getPath();
+		List<String> theOptions = Arrays.asList("-classpath", theStubPath,
+				"-d", mOutDir.getPath(), "-s", mOutDir.getPath());
+		JavaCompiler.CompilationTask theTask = theCompiler.getTask(null, theFileManager,
+				mDiagnostics, theOptions, null, Collections.singletonList(theSource));
+		theTask.setProcessors(Collections.singletonList(new RowVarBinderProcessor()));
+		boolean bCompiled = theTask.call();
+		theFileManager.close();
+		assertTrue("compile failed: "+mDiagnostics.getDiagnostics(), bCompiled);
+		mLoader = new URLClassLoader(new URL[] { mOutDir.toURI().toURL() },
+				RowVarBinderProcessorTest.class.getClassLoader());
+	}
+
+	@AfterClass
+	static public void cleanUp() throws IOException {
+		if (mLoader!=null)
+			mLoader.close();
+		deleteAll(mOutDir);
+	}
+
+	static protected void deleteAll(File aFile) {
+		if (aFile==null)
+			return;
+		File[] theChildren = aFile.listFiles();
+		if (theChildren!=null) {
+			for (File theChild : theChildren) {
+				deleteAll(theChild);
+			}
+		}
+		aFile.delete();
+	}
+
+	@SuppressWarnings("unchecked")
+	protected RowVarBinder<ProviderContract.RowVar> newBinder() throws Exception {
+		return (RowVarBinder<ProviderContract.RowVar>)mLoader.loadClass(BINDER_CLASS).newInstance();
+	}
+
+	protected ProviderContract.RowVar newRow(long aCreated) throws Exception {
+		return (ProviderContract.RowVar)mLoader.loadClass(ROW_PACKAGE+".WidgetContract$Widget")
+				.getConstructor(long.class).newInstance(aCreated);
+	}
+
+	static protected Object get(Object aRow, String aFieldName) throws Exception {
+		return aRow.getClass().getField(aFieldName).get(aRow);
+	}
+
+	static protected void set(Object aRow, String aFieldName, Object aValue) throws Exception {
+		aRow.getClass().getField(aFieldName).set(aRow, aValue);
+	}
+
+	/**
+	 * @return Returns a row with every field but "note" set, to values that would not survive
+	 * being narrowed or widened to the wrong type.
+	 */
+	protected ProviderContract.RowVar newFilledRow() throws Exception {
+		ProviderContract.RowVar theRow = newRow(42L);
+		theRow._id = 77L;
+		set(theRow, "name", "gear");
+		set(theRow, "count", -3);
+		set(theRow, "total", 12);
+		set(theRow, "size", 1L<<40);
+		set(theRow, "ratio", 0.5f);
+		set(theRow, "weight", 2.25d);
+		set(theRow, "enabled", true);
+		set(theRow, "visible", Boolean.FALSE);
+		set(theRow, "grade", '\u263A');
+		set(theRow, "initial", 'q');
+		set(theRow, "flags", (byte)-7);
+		set(theRow, "level", (byte)100);
+		set(theRow, "rank", (short)-30000);
+		set(theRow, "slot", (short)12345);
+		return theRow;
+	}
+
+	protected void assertSameFields(Object aExpected, Object aActual) throws Exception {
+		for (String theFieldName : ROW_FIELDS) {
+			assertEquals(theFieldName, get(aExpected, theFieldName), get(aActual, theFieldName));
+		}
+	}
+
+	@Test
+	public void compilesWithWarningForUnboundColumn() {
+		boolean bWarned = false;
+		for (Diagnostic<? extends JavaFileObject> theDiagnostic : mDiagnostics.getDiagnostics()) {
+			assertFalse(theDiagnostic.toString(), theDiagnostic.getKind()==Diagnostic.Kind.ERROR);
+			if (theDiagnostic.getKind()==Diagnostic.Kind.WARNING &&
+					theDiagnostic.getMessage(null).contains("column missing"))
+				bWarned = true;
+		}
+		assertTrue("no warning for the column without a field", bWarned);
+	}
+
+	@Test
+	public void projectionListsBoundColumns() throws Exception {
+		List<String> theProjection = Arrays.asList(newBinder().getProjection());
+		assertTrue(theProjection.contains("_id"));
+		assertTrue(theProjection.contains("created"));
+		assertFalse(theProjection.contains("missing"));
+		assertEquals(ROW_FIELDS.size()+1, theProjection.size());
+	}
+
+	@Test
+	public void parcelRoundTrip() throws Exception {
+		RowVarBinder<ProviderContract.RowVar> theBinder = newBinder();
+		ProviderContract.RowVar theSource = newFilledRow();
+		Parcel theParcel = Parcel.obtain();
+		theBinder.writeToParcel(theSource, theParcel);
+
+		ProviderContract.RowVar theCopy = newRow(7L);
+		set(theCopy, "note", 99);
+		theParcel.setDataPosition(0);
+		theBinder.setFromParcel(theCopy, theParcel);
+		assertEquals("Parcel not fully read", 0, theParcel.dataAvail());
+		assertSameFields(theSource, theCopy);
+		//the NULL boxed field arrives as NULL, the final one is read past but left alone
+		assertNull(get(theCopy, "note"));
+		assertEquals(7L, get(theCopy, "created"));
+	}
+
+	@Test
+	public void bundleRoundTrip() throws Exception {
+		RowVarBinder<ProviderContract.RowVar> theBinder = newBinder();
+		ProviderContract.RowVar theSource = newFilledRow();
+		Bundle theBundle = new Bundle();
+		theBinder.writeToBundle(theSource, theBundle);
+		assertFalse("NULL fields are not written", theBundle.containsKey("note"));
+		assertEquals(42L, theBundle.get("created"));
+		assertEquals(Character.valueOf('\u263A'), theBundle.get("grade"));
+		assertEquals(Byte.valueOf((byte)-7), theBundle.get("flags"));
+		assertEquals(Short.valueOf((short)12345), theBundle.get("slot"));
+
+		ProviderContract.RowVar theCopy = newRow(7L);
+		set(theCopy, "note", 99);
+		theBinder.setFromBundle(theCopy, theBundle);
+		assertSameFields(theSource, theCopy);
+		assertNull(get(theCopy, "note"));
+		assertEquals(7L, get(theCopy, "created"));
+	}
+
+	@Test
+	public void bundleMissingValues() throws Exception {
+		ProviderContract.RowVar theRow = newFilledRow();
+		newBinder().setFromBundle(theRow, new Bundle());
+		//primitives cannot hold a missing value and keep theirs, boxed fields become NULL
+		assertEquals(-3, get(theRow, "count"));
+		assertEquals('\u263A', get(theRow, "grade"));
+		assertNull(get(theRow, "total"));
+		assertNull(get(theRow, "level"));
+	}
+
+	@Test
+	public void contentValuesNulls() throws Exception {
+		RowVarBinder<ProviderContract.RowVar> theBinder = newBinder();
+		ProviderContract.RowVar theRow = newFilledRow();
+		ContentValues theValues = new ContentValues();
+		theBinder.writeToContentValues(theRow, theValues, false);
+		assertTrue(theValues.containsKey("note"));
+		assertNull(theValues.get("note"));
+		assertEquals("\u263A", theValues.get("grade"));
+		assertEquals(42L, theValues.get("created"));
+
+		theValues = new ContentValues();
+		theBinder.writeToContentValues(theRow, theValues, true);
+		assertFalse(theValues.containsKey("note"));
+	}
+
+}